@@ -78,6 +78,9 @@ public class DrJavaRoot {
   
   private static volatile boolean anyLineNumbersSpecified = false;
   
+  /** System property naming the directory of the language level symbol cache (SymbolCache.DIRECTORY_PROPERTY). */
+  private static final String SYMBOL_CACHE_PROPERTY = "edu.rice.cs.javalanglevels.symbolcache";
+  
   /** Main frame of this DrJava instance. */
   private static volatile MainFrame _mainFrame = null;
   
@@ -96,6 +99,11 @@ public class DrJavaRoot {
       System.exit(0);
     }
     
+    // Language level conversion caches library signatures next to the configuration file, unless told otherwise.
+    if (System.getProperty(SYMBOL_CACHE_PROPERTY) == null) {
+      System.setProperty(SYMBOL_CACHE_PROPERTY, DrJava.getPropertiesFile().getPath() + ".symbols");
+    }
+    
     DrJava.warnIfLinuxWithCompiz();
     new SplashScreen().flash();
     
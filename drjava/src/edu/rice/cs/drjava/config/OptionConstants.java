@@ -1394,6 +1394,11 @@ public interface OptionConstants {
   public static final NonNegativeIntegerOption HISTORY_MAX_SIZE =
     new NonNegativeIntegerOption("history.max.size", Integer.valueOf(500));
   
+  /** Maximum number of characters kept in the Interactions and Console panes; older output is moved to a temporary
+    * file and paged back in on demand.  0 means no limit. */
+  public static final NonNegativeIntegerOption SCROLLBACK_MAX_SIZE =
+    new NonNegativeIntegerOption("scrollback.max.size", Integer.valueOf(1000000));
+  
   /** Number of files to list in the recent file list */
   public static final NonNegativeIntegerOption RECENT_FILES_MAX_SIZE =
     new NonNegativeIntegerOption("recent.files.max.size", Integer.valueOf(5));
@@ -1421,6 +1426,10 @@ public interface OptionConstants {
   /** Whether to force test classes in projects to end in "Test". */
   public static final BooleanOption FORCE_TEST_SUFFIX = new BooleanOption("force.test.suffix", Boolean.FALSE);
   
+  /** The number of worker JVMs used to run unit tests in parallel; 0 or 1 runs them in the Interactions JVM. */
+  public static final NonNegativeIntegerOption JUNIT_PARALLEL_WORKERS =
+    new NonNegativeIntegerOption("junit.parallel.workers", Integer.valueOf(0));
+  
   /** Whether remote control using sockets is enabled. */
   public static final BooleanOption REMOTE_CONTROL_ENABLED = new BooleanOption("remote.control.enabled", Boolean.TRUE);
   
@@ -1430,6 +1439,10 @@ public interface OptionConstants {
   /** Whether to warn if Compiz is being used */
   public static final BooleanOption WARN_IF_COMPIZ = new BooleanOption("warn.if.compiz", Boolean.TRUE);
   
+  /** Whether newly created documents use a reduced model indexed by an order-statistic tree, which makes seeks
+    * logarithmic in very large documents. */
+  public static final BooleanOption INDEXED_REDUCED_MODEL = new BooleanOption("indexed.reduced.model", Boolean.FALSE);
+  
   /* ---------- COMPILER OPTIONS ------------- */
   
   /** Whether to show unchecked warnings */
@@ -1455,6 +1468,14 @@ public interface OptionConstants {
   public static final BooleanOption SHOW_PATH_WARNINGS = 
     new BooleanOption("show.path.warnings", Boolean.FALSE);
   
+  /** Whether to recompile only the files that changed since the last compilation and the files depending on them */
+  public static final BooleanOption INCREMENTAL_COMPILATION = 
+    new BooleanOption("incremental.compilation", Boolean.FALSE);
+  
+  /** Whether to check edited documents for errors in the background and underline the errors in the editor */
+  public static final BooleanOption BACKGROUND_COMPILATION = 
+    new BooleanOption("background.compilation", Boolean.FALSE);
+  
   /** Default compiler to use
     * Stores the name of the compiler to use, set by changing the selection in
     * the ForcedChoiceOption created by COMPILER_PREFERENCE_CONTROL.evaluate()
@@ -1632,6 +1653,9 @@ public interface OptionConstants {
   public static final ForcedChoiceOption SLAVE_JVM_XMX =
     new ForcedChoiceOption("slave.jvm.xmx", "default", heapSizeChoices);
   
+  /** Whether to keep a started standby Interactions JVM ready, so that resetting the Interactions Pane is fast. */
+  public static final BooleanOption STANDBY_INTERPRETER_JVM = new BooleanOption("slave.jvm.standby", Boolean.TRUE);
+  
   /** The last state of the "Clipboard History" dialog. */
   public static final StringOption DIALOG_CLIPBOARD_HISTORY_STATE = new StringOption("dialog.clipboard.history.state", "default");
   
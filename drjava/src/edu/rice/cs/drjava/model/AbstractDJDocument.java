@@ -36,6 +36,7 @@ import edu.rice.cs.drjava.config.OptionListener;
 import edu.rice.cs.drjava.model.definitions.indent.Indenter;
 import edu.rice.cs.drjava.model.definitions.reducedmodel.BraceInfo;
 import edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelControl;
+import edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelSnapshot;
 import edu.rice.cs.drjava.model.definitions.reducedmodel.HighlightStatus;
 import edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelState;
 
@@ -47,19 +48,23 @@ import edu.rice.cs.util.text.SwingDocument;
 
 import java.awt.EventQueue;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Set;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.SortedMap;
-import java.util.StringTokenizer;
 import java.util.TreeMap;
 import javax.swing.ProgressMonitor;
 import javax.swing.text.AbstractDocument;
 import javax.swing.text.AttributeSet;
 import javax.swing.text.BadLocationException;
+import javax.swing.text.Element;
 import javax.swing.text.Position;
+import javax.swing.text.Segment;
 
 import static edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelStates.*;
 
@@ -89,10 +94,14 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     new HashSet<String>(edu.rice.cs.drjava.model.compiler.JavacCompiler.JAVA_KEYWORDS);
   /** A set of Java primitive types. */
   protected static final HashSet<String> _primTypes = _makePrimTypes();
+  /** Table of the characters in delimiters, indexed by character code. */
+  private static final boolean[] _delimiterTable = _makeDelimiterTable();
   /** The default indent setting. */
   protected volatile int _indent = 2;
   /** Initial number of elements in _queryCache (see below). */
-  private static final int INIT_CACHE_SIZE = 0x10000;  // 16**4 = 16384 
+  private static final int INIT_CACHE_SIZE = 0x400;
+  /** Maximum number of elements in _queryCache; the least recently used query is evicted beyond this size. */
+  public static final int MAX_CACHE_SIZE = 0x10000;
   /** Constant specifying how large pos must be before incremental analysis is applied in posInBlockComment */
   public static final int POS_THRESHOLD = 10000; 
 //  /** Constant specifying how large pos must be before incremental analysis is applied in posInParenPhrase */
@@ -106,21 +115,59 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     * track of state.  This field together with _currentLocation function as a virtual object for purposes of 
     * synchronization.  All operations that access or modify this virtual object should be synchronized on _reduced.
     */
-  public final ReducedModelControl _reduced = new ReducedModelControl();  // public only for locking purposes
+  public final ReducedModelControl _reduced =   // public only for locking purposes
+    new ReducedModelControl(DrJava.getConfig().getSetting(INDEXED_REDUCED_MODEL).booleanValue());
   
   /** The absolute character offset in the document. Treated as part of the _reduced (model) for locking 
     * purposes. */
   protected volatile int _currentLocation = 0;
   
-  /* The fields _queryCache, _offsetToQueries, and _cacheModified function as an extension of the reduced model. 
-   * When enabled in blockIndent, this data structure caches calls to the reduced model to speed up indent performance.
-   * Must be cleared every time the document is changed.  Use by calling _checkCache, _storeInCache, and _clearCache.
-   * When _queryCache = null, the cache is disabled.
+  /** Reduced model to install in place of lexing the text inserted by restoreText; null at all other times. */
+  private volatile ReducedModelSnapshot _restoredModel = null;
+  
+  /** Trie over _keywords and _primTypes mapping each word to its HighlightStatus state; rebuilt by setKeywords. */
+  private volatile KeywordTrie _keywordTrie = _makeKeywordTrie(_keywords);
+  
+  /* The fields _lineHighlights, _firstDirtyLine and _lastEditedLine cache the highlight runs computed by
+   * getHighlightStatus for each line that has been painted.  Entry i describes line i (null if the line has never
+   * been painted); it holds the runs of the line and the reduced model state at its terminating newline.  An edit on
+   * line k only invalidates entries from line k on: lines at or after _firstDirtyLine are recomputed when they are next
+   * requested, and the recomputation stops at the first line at or after _lastEditedLine whose state at the newline is
+   * unchanged, since the text and the starting state of every later line are then unchanged too.  Like the reduced
+   * model, these fields are only accessed in the event thread.
    */
-  private volatile HashMap<Query, Object> _queryCache;
+  private final ArrayList<LineHighlights> _lineHighlights = new ArrayList<LineHighlights>();
+  private int _firstDirtyLine = Integer.MAX_VALUE;
+  private int _lastEditedLine = -1;
+  
+  /** Segment reused to read the text scanned for keywords. */
+  private final Segment _highlightText = new Segment();
+  
+  /* The fields _queryCache and _offsetToQueries function as an extension of the reduced model.  This data structure
+   * caches calls to the reduced model made by the indenter and the brace/line queries for the lifetime of the 
+   * document.  Every cached answer records the offset bounding the text on which it depends, so a change at offset k
+   * only evicts the answers that depend on text at or after k (see _clearCache).  The cache holds at most 
+   * MAX_CACHE_SIZE answers and evicts the least recently used one beyond that.  Use by calling _checkCache, 
+   * _storeInCache, and _clearCache.  Like the reduced model, it is only accessed in the event thread.
+   */
+  private final LinkedHashMap<Query, CachedAnswer> _queryCache = 
+    new LinkedHashMap<Query, CachedAnswer>(INIT_CACHE_SIZE, 0.75f, true) {
+    private static final long serialVersionUID = -2837105634512947351L;
+    protected boolean removeEldestEntry(Map.Entry<Query, CachedAnswer> eldest) {
+      if (size() <= MAX_CACHE_SIZE) return false;
+      _removeFromOffsetsToQueries(eldest.getKey(), eldest.getValue()._offset);
+      return true;
+    }
+  };
   
   /** Records the set of queries (as a list) for each offset. */
-  private volatile SortedMap<Integer, List<Query>> _offsetToQueries;
+  private final SortedMap<Integer, List<Query>> _offsetToQueries = new TreeMap<Integer, List<Query>>();
+  
+  /** The number of _checkCache calls answered from the cache. */
+  private volatile long _cacheHits = 0;
+  
+  /** The number of _checkCache calls not answered from the cache. */
+  private volatile long _cacheMisses = 0;
   
   /** The instance of the indent decision tree used by Definitions documents. */
   private volatile Indenter _indenter;
@@ -146,8 +193,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     */
   protected AbstractDJDocument(Indenter indenter) { 
     _indenter = indenter;
-    _queryCache = null;
-    _offsetToQueries = null;
     _initNewIndenter();
 //     System.err.println("AbstractDJDocument constructor with indent level " + indenter.getIndentLevel() 
 //    + " invoked on " + this);
@@ -220,6 +265,30 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   public void setKeywords(Set<String> keywords) {
     _keywords.clear();
     _keywords.addAll(keywords);
+    _keywordTrie = _makeKeywordTrie(_keywords);
+    _lineHighlights.clear();
+    _firstDirtyLine = Integer.MAX_VALUE;
+    _lastEditedLine = -1;
+  }
+  
+  /** Creates a trie mapping the given keywords to KEYWORD and the primitive types to TYPE.
+    * @param keywords the keywords to highlight
+    * @return the trie
+    */
+  private static KeywordTrie _makeKeywordTrie(Set<String> keywords) {
+    HashMap<String, Integer> words = new HashMap<String, Integer>();
+    for (String w: keywords) words.put(w, HighlightStatus.KEYWORD);
+    for (String w: _primTypes) words.put(w, HighlightStatus.TYPE);  // primitive types take precedence over keywords
+    return new KeywordTrie(words);
+  }
+  
+  /** Creates the table of delimiter characters used to split NORMAL text into words.
+    * @return table indexed by character code
+    */
+  private static boolean[] _makeDelimiterTable() {
+    boolean[] table = new boolean[128];
+    for (int i = 0; i < delimiters.length(); i++) table[delimiters.charAt(i)] = true;
+    return table;
   }
   
   /** Create a set of Java/GJ primitive types for special coloring.
@@ -235,116 +304,224 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   }
   
   /** Return all highlight status info for text between start and end. This should collapse adjoining blocks with the
-    * same status into one.  ONLY runs in the event thread.  Perturbs _currentLocation to improve performance.
+    * same status into one.  ONLY runs in the event thread.  Perturbs _currentLocation to improve performance.  When
+    * [start, end) covers exactly one line, the returned list is the cached list for that line, which callers must not
+    * modify; repainting an unchanged line therefore allocates nothing.
     */
   public ArrayList<HighlightStatus> getHighlightStatus(int start, int end) {
     
     assert EventQueue.isDispatchThread();
     
     if (start == end) return new ArrayList<HighlightStatus>(0);
-    ArrayList<HighlightStatus> v;
     
-    setCurrentLocation(start);
-    /* Now ask reduced model for highlight status for chars till end */
-    v = _reduced.getHighlightStatus(start, end - start);
+    final Element root = getDefaultRootElement();
+    final int line = root.getElementIndex(start);
+    final Element lineElt = root.getElement(line);
+    final int lineStart = lineElt.getStartOffset();
+    final int lineEnd = Math.min(lineElt.getEndOffset(), getLength());
+    
+    // Ranges spanning several lines (which the views never request) are not cached
+    if (end > lineEnd) {
+      ArrayList<HighlightStatus> v = new ArrayList<HighlightStatus>();
+      _computeHighlightStatus(start, end, v);
+      return v;
+    }
     
-    /* Go through and find any NORMAL blocks. Within them check for keywords. */
-    for (int i = 0; i < v.size(); i++) {
-      HighlightStatus stat = v.get(i);
-      if (stat.getState() == HighlightStatus.NORMAL) i = _highlightKeywords(v, i);
+    final ArrayList<HighlightStatus> runs = _getLineHighlights(line, lineStart, lineEnd)._runs;
+    if (start == lineStart && end == lineEnd) return runs;
+    
+    // Part of a line, e.g. around a selection: clip the cached runs to [start, end)
+    ArrayList<HighlightStatus> v = new ArrayList<HighlightStatus>();
+    for (HighlightStatus stat: runs) {
+      int from = Math.max(start, stat.getLocation());
+      int to = Math.min(end, stat.getLocation() + stat.getLength());
+      if (from < to) v.add(new HighlightStatus(from, to - from, stat.getState()));
     }
+    return v;
     
     /* bstoler: Previously we moved back to the old location. This implementation choice severely slowed down 
      * rendering when scrolling because parts are rendered in order. Thus, if old location is 0, but now we've
      * scrolled to display 100000-100100, if we keep jumping back to 0 after getting every bit of highlight, it 
      * slows stuff down incredibly. */
-    //setCurrentLocation(oldLocation);
-    return v;
+  }
+  
+  /** Computes the highlight status of the text between start and end, splitting NORMAL blocks into keywords, types
+    * and numbers, and appends it to v.  Only runs in the event thread.
+    * @param start the beginning of the text
+    * @param end the end of the text
+    * @param v the list to which the blocks are appended
+    */
+  private void _computeHighlightStatus(int start, int end, ArrayList<HighlightStatus> v) {
+    setCurrentLocation(start);
+    /* Now ask reduced model for highlight status for chars till end */
+    for (HighlightStatus stat: _reduced.getHighlightStatus(start, end - start)) {
+      /* Find any NORMAL blocks. Within them check for keywords. */
+      if (stat.getState() == HighlightStatus.NORMAL) _highlightKeywords(stat, v);
+      else v.add(stat);
+    }
+  }
+  
+  /** Returns the cached highlight information for the given line, first revalidating any lines invalidated by edits
+    * up to and including this one.  Only runs in the event thread.
+    * @param line the index of the line
+    * @param lineStart the offset of the first character of the line
+    * @param lineEnd the offset just past the last character of the line, including its newline if any
+    * @return the cached highlight information with the runs of the line
+    */
+  private LineHighlights _getLineHighlights(int line, int lineStart, int lineEnd) {
+    while (_lineHighlights.size() <= line) _lineHighlights.add(null);
+    
+    // Recompute the invalidated lines in order until the state at a newline is unchanged or this line is reached
+    final Element root = getDefaultRootElement();
+    while (_firstDirtyLine <= line) {
+      final int l = _firstDirtyLine;
+      final LineHighlights old = _lineHighlights.get(l);
+      final ReducedModelState exit = _lineExitState(root.getElement(l));
+      _lineHighlights.set(l, new LineHighlights(exit));
+      if (l + 1 >= _lineHighlights.size() || (l >= _lastEditedLine && old != null && old._exit == exit)) {
+        // no later line is cached or every later line is unaffected
+        _firstDirtyLine = Integer.MAX_VALUE;
+        _lastEditedLine = -1;
+      }
+      else _firstDirtyLine = l + 1;
+    }
+    
+    LineHighlights lh = _lineHighlights.get(line);
+    if (lh == null) {
+      lh = new LineHighlights(_lineExitState(root.getElement(line)));
+      _lineHighlights.set(line, lh);
+    }
+    if (lh._runs == null) {
+      lh._runs = new ArrayList<HighlightStatus>();
+      _computeHighlightStatus(lineStart, lineEnd, lh._runs);
+      lh._start = lineStart;
+    }
+    else if (lh._start != lineStart) {  // an edit in an earlier line moved this line
+      final int delta = lineStart - lh._start;
+      final ArrayList<HighlightStatus> runs = lh._runs;
+      for (int i = 0; i < runs.size(); i++) {
+        HighlightStatus stat = runs.get(i);
+        runs.set(i, new HighlightStatus(stat.getLocation() + delta, stat.getLength(), stat.getState()));
+      }
+      lh._start = lineStart;
+    }
+    return lh;
+  }
+  
+  /** Returns the state of the reduced model just after the newline terminating the given line (FREE for the last
+    * line).  Only runs in the event thread.
+    * @param lineElt the element of the line
+    * @return the state of the reduced model at the start of the following line
+    */
+  private ReducedModelState _lineExitState(Element lineElt) {
+    final int next = lineElt.getEndOffset();
+    if (next > getLength()) return FREE;
+    setCurrentLocation(next);
+    return _reduced.getStateAtCurrent();
+  }
+  
+  /** Updates the cached highlight runs to reflect an edit at the given offset.  The lines from the edited line on are
+    * revalidated when they are next painted.
+    * @param offset the offset of the edit
+    * @param linesAdded the number of newlines inserted, or minus the number of newlines removed
+    */
+  protected void _highlightsChanged(int offset, int linesAdded) {
+    final int line = getDefaultRootElement().getElementIndex(offset);
+    final int size = _lineHighlights.size();
+    
+    // Keep the entry of the edited line with the newline that ended it before the edit
+    if (line < size) {
+      if (linesAdded > 0) _lineHighlights.addAll(line, Collections.<LineHighlights>nCopies(linesAdded, null));
+      else if (linesAdded < 0) _lineHighlights.subList(line, Math.min(line - linesAdded, size)).clear();
+    }
+    
+    if (_lastEditedLine > line) _lastEditedLine = Math.max(line, _lastEditedLine + linesAdded);
+    _lastEditedLine = Math.max(_lastEditedLine, line + Math.max(linesAdded, 0));
+    _firstDirtyLine = Math.min(_firstDirtyLine, line);
+  }
+  
+  /** @param text some text
+    * @return the number of newlines in text
+    */
+  private static int _countNewlines(String text) {
+    int count = 0;
+    for (int i = text.indexOf(newline); i >= 0; i = text.indexOf(newline, i + 1)) count++;
+    return count;
+  }
+  
+  /** The cached highlight information for a line. */
+  private static class LineHighlights {
+    /** The state of the reduced model just after the newline ending the line. */
+    private final ReducedModelState _exit;
+    /** The highlight runs of the line, or null if they have not been computed. */
+    private ArrayList<HighlightStatus> _runs = null;
+    /** The offset of the line when _runs was computed. */
+    private int _start;
+    private LineHighlights(ReducedModelState exit) { _exit = exit; }
   }
   
   /** Distinguishes keywords from normal text in the given HighlightStatus element. Specifically, it looks to see
     * if the given text contains a keyword. If it does, it splits the HighlightStatus block into separate blocks
     * so that each keyword has its own block. This process identifies all keywords in the given block.
     * Note that the given block must have state NORMAL.  Only runs in the event thread.
-    * @param v Vector with highlight info
-    * @param i Index of the single HighlightStatus to check for keywords in
-    * @return the index into the vector of the last processed element
+    * @param original the NORMAL block to check for keywords
+    * @param v the list to which the resulting blocks are appended
     */
-  private int _highlightKeywords(ArrayList<HighlightStatus> v, int i) {
-    // Basically all non-alphanumeric chars are delimiters
-    final HighlightStatus original = v.get(i);
-    final String text;
-    
+  private void _highlightKeywords(HighlightStatus original, ArrayList<HighlightStatus> v) {
+    final int location = original.getLocation();
+    final int length = original.getLength();
+    final Segment text = _highlightText;
     
-    try { text = getText(original.getLocation(), original.getLength()); }
+    try { getText(location, length, text); }
     catch (BadLocationException e) { throw new UnexpectedException(e); }
     
-    // Because this text is not quoted or commented, we can use the simpler tokenizer StringTokenizer. We have 
-    // to return delimiters as tokens so we can keep track of positions in the original string.
-    StringTokenizer tokenizer = new StringTokenizer(text, delimiters, true);
-    
-    // start and length of the text that has not yet been put back into the vector.
-    int start = original.getLocation();
-    int length = 0;
-    
-    // Remove the old element from the vector.
-    v.remove(i);
-    
-    // Index where we are in the vector. It's the location we would insert new things into.
-    int index = i;
-    
-    boolean process;
-    int state = 0;
-    while (tokenizer.hasMoreTokens()) {
-      String token = tokenizer.nextToken();
+    // Because this text is not quoted or commented, words are simply the maximal runs of non-delimiters.
+    final char[] chars = text.array;
+    final int base = text.offset;
+    
+    // relative start of the text that has not yet been put into v
+    int pending = 0;
+    int i = 0;
+    while (i < length) {
+      if (_isDelimiter(chars[base + i])) { i++; continue; }
+      int j = i + 1;
+      while (j < length && ! _isDelimiter(chars[base + j])) j++;
       
-      //first check to see if we need highlighting
-      process = false;
-      if (_isType(token)) {
-        //right now keywords incl prim types, so must put this first
-        state = HighlightStatus.TYPE;
-        process = true;
-      } 
-      else if (_keywords.contains(token)) {
-        state = HighlightStatus.KEYWORD;
-        process = true;
-      } 
-      else if (_isNum(token)) {
-        state = HighlightStatus.NUMBER;
-        process = true;
-      }
-      
-      if (process) {
-        // first check if we had any text before the token
-        if (length != 0) {
-          HighlightStatus newStat = new HighlightStatus(start, length, original.getState());
-          v.add(index, newStat);
-          index++;
-          start += length;
-          length = 0;
-        }
-        
-        // Now pull off the keyword
-        int keywordLength = token.length();
-        v.add(index, new HighlightStatus(start, keywordLength, state));
-        index++;
-        // Move start to the end of the keyword
-        start += keywordLength;
+      final int state = _wordState(chars, base + i, j - i);
+      if (state != HighlightStatus.NORMAL) {
+        // first add any text before the word, then the word itself
+        if (pending < i) v.add(new HighlightStatus(location + pending, i - pending, original.getState()));
+        v.add(new HighlightStatus(location + i, j - i, state));
+        pending = j;
       }
-      else {
-        // This is not a keyword, so just keep accumulating length
-        length += token.length();
-      }
-    }
-    // Now check if there was any text left after the keywords.
-    if (length != 0) {
-      HighlightStatus newStat = new HighlightStatus(start, length, original.getState());
-      v.add(index, newStat);
-      index++;
-      length = 0;
+      i = j;
     }
-    // return one before because we need to point to the last one we inserted
-    return index - 1;
+    
+    // Now add any text left after the keywords.
+    if (pending == 0) v.add(original);
+    else if (pending < length) v.add(new HighlightStatus(location + pending, length - pending, original.getState()));
+  }
+  
+  /** @param c a character
+    * @return true if c separates words in NORMAL text
+    */
+  private static boolean _isDelimiter(char c) { return c < _delimiterTable.length && _delimiterTable[c]; }
+  
+  /** Classifies a word of NORMAL text.  A type is a primitive type or anything else that begins with a capitalized
+    * character; types take precedence over keywords, which take precedence over numbers.
+    * @param chars the text containing the word
+    * @param offset the index of the first character of the word
+    * @param length the length of the word
+    * @return TYPE, KEYWORD, NUMBER or NORMAL
+    */
+  private int _wordState(char[] chars, int offset, int length) {
+    final int kind = _keywordTrie.lookup(chars, offset, length);
+    if (kind == HighlightStatus.TYPE || Character.isUpperCase(chars[offset])) return HighlightStatus.TYPE;
+    if (kind == HighlightStatus.KEYWORD) return HighlightStatus.KEYWORD;
+    // every word accepted by _isNum starts with a digit; only then is a String created
+    final char first = chars[offset];
+    if (first >= '0' && first <= '9' && _isNum(new String(chars, offset, length))) return HighlightStatus.NUMBER;
+    return HighlightStatus.NORMAL;
   }
   
   /** Checks to see if the current string is a number
@@ -417,18 +594,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     }
   }
   
-  /** Checks to see if the current string is a type. A type is assumed to be 
-   * a primitive type OR anything else that begins with a capitalized character
-   * @param x the string to check
-   * @return true if x is a type; false otherwise
-   */
-  private boolean _isType(String x) {
-    if (_primTypes.contains(x)) return true;
-    
-    try { return Character.isUpperCase(x.charAt(0)); } 
-    catch (IndexOutOfBoundsException e) { return false; }
-  }
-  
   /** Returns whether the given text only has spaces. 
    * @param text the text to check
    * @return true if text only has spaces; false otherwise
@@ -456,7 +621,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   /** Add a character to the underlying reduced model. ASSUMEs _reduced lock is already held!
     * @param curChar the character to be added. */
   private void _addCharToReducedModel(char curChar) {
-//    _clearCache(_currentLocation);  // redundant; already done in insertUpdate
+//    _clearCache(_currentLocation);  // redundant; already done in InsertCommand
     _reduced.insertChar(curChar);
   }
   
@@ -536,6 +701,26 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     */
   public ReducedModelControl getReduced() { return _reduced; } 
   
+  /** Captures a compact copy of the reduced model so that the current text can later be reloaded into a fresh 
+    * document by {@link #restoreText} without re-lexing it.  Only runs in the event thread or on a quiescent document.
+    * @return the snapshot, or null if the reduced model cannot be captured
+    */
+  public ReducedModelSnapshot snapshotReducedModel() { return _reduced.snapshot(); }
+  
+  /** Inserts text into this empty document, installing the given snapshot as its reduced model instead of lexing the 
+    * text.  The snapshot must have been taken from a document containing exactly this text.  Leaves the current
+    * location at 0.
+    * @param text the text of the document
+    * @param snapshot the reduced model of text
+    * @throws BadLocationException never, since the text is inserted at offset 0
+    */
+  public void restoreText(String text, ReducedModelSnapshot snapshot) throws BadLocationException {
+    assert getLength() == 0 && snapshot.getLength() == text.length();
+    _restoredModel = snapshot;
+    try { insertString(0, text, null); }
+    finally { _restoredModel = null; }
+  }
+  
   /** Assumes that read lock and reduced lock are already held. 
    * @param dist the relative distance
    * @return the state at dist
@@ -684,8 +869,12 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     
     setCurrentLocation(origPos);    // Restore the state of the reduced model;
     
-    if (i == text.length()) reducedPos = -1; // No matching char was found
-    _storeInCache(key, reducedPos, reducedPos);
+    if (i == text.length()) {
+      // No matching char was found; the answer depends on all of the text after pos, including text appended later
+      reducedPos = -1;
+      _storeInCache(key, reducedPos, Integer.MAX_VALUE);
+    }
+    else _storeInCache(key, reducedPos, reducedPos);  // Cached answer depends only on text(0:reducedPos]
     // Return position of matching char or ERROR_INDEX (-1)     
     return reducedPos;  
   }
@@ -918,8 +1107,13 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    * @return the object in the cache associated with key; null if not in the cache.
    */
   protected Object _checkCache(final Query key) {
-    if (_queryCache == null) return null;
-    return _queryCache.get(key); 
+    final CachedAnswer cached = _queryCache.get(key);
+    if (cached == null) {
+      _cacheMisses++;
+      return null;
+    }
+    _cacheHits++;
+    return cached._answer;
   }
   
   /** Stores the given result in the helper method cache. 
@@ -932,8 +1126,8 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    *                unchanged, the query should return the same answer.
    */
   protected void _storeInCache(final Query query, final Object answer, final int offset) {
-    if (_queryCache == null) return;
-    _queryCache.put(query, answer);
+    final CachedAnswer old = _queryCache.put(query, new CachedAnswer(answer, offset));
+    if (old != null) _removeFromOffsetsToQueries(query, old._offset);
     _addToOffsetsToQueries(query, offset);
   }
   
@@ -942,7 +1136,7 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
    * @param offset the offset beyond which to clear
    */
   protected void _clearCache(int offset) {
-    if (_queryCache == null) return;
+    if (_queryCache.isEmpty()) return;
     
     if (offset <= 0) {
       _queryCache.clear();
@@ -971,6 +1165,36 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
     selectedQueries.add(query);
   }
   
+  /** Removes {@literal <query,offset>} pair from _offsetToQueries map. 
+   * @param query the query
+   * @param offset the offset
+   */
+  private void _removeFromOffsetsToQueries(final Query query, final int offset) {
+    List<Query> selectedQueries = _offsetToQueries.get(offset);
+    if (selectedQueries == null) return;
+    selectedQueries.remove(query);
+    if (selectedQueries.isEmpty()) _offsetToQueries.remove(offset);
+  }
+  
+  /** @return the number of query cache lookups that were answered from the cache. */
+  public long getQueryCacheHits() { return _cacheHits; }
+  
+  /** @return the number of query cache lookups that had to be recomputed from the reduced model. */
+  public long getQueryCacheMisses() { return _cacheMisses; }
+  
+  /** @return the number of answers currently held in the query cache. */
+  public int getQueryCacheSize() { return _queryCache.size(); }
+  
+  /** A cached query answer together with the offset bounding the text on which it depends. */
+  private static class CachedAnswer {
+    private final Object _answer;
+    private final int _offset;
+    CachedAnswer(Object answer, int offset) {
+      _answer = answer;
+      _offset = offset;
+    }
+  }
+  
   /** Default indentation - uses OTHER flag and no progress indicator.  Assume write lock is already held.
     * @param selStart the offset of the initial character of the region to indent
     * @param selEnd the offset of the last character of the region to indent
@@ -1038,10 +1262,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
   private void _indentBlock(final int start, final int end, Indenter.IndentReason reason, ProgressMonitor pm)
     throws OperationCanceledException, BadLocationException {
     
-    // Set up the query cache;
-    _queryCache = new HashMap<Query, Object>(INIT_CACHE_SIZE);
-    _offsetToQueries = new TreeMap<Integer, List<Query>>();
-    
     // Keep marker at the end. This Position will be the correct endpoint no matter how we change 
     // the doc doing the indentLine calls.
     final Position endPos = this.createUnwrappedPosition(end);
@@ -1068,10 +1288,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       // location yet. That happens at the top of the loop, after we check if we're past the end. 
       walker += _reduced.getDistToNextNewline() + 1;
     }
-    
-    // disable the query cache
-    _queryCache = null;
-    _offsetToQueries = null;
   }
   
   /** Indents a line using the Indenter.  Public ONLY for testing purposes. 
@@ -1788,8 +2004,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       final int length = chng.getLength();
       final String str = getText(offset, length);
       
-      if (length > 0) _clearCache(offset);    // Selectively clear the query cache
-      
       Runnable doCommand = 
         (length == 1) ? new CharInsertCommand(offset, str.charAt(0)) : new InsertCommand(offset, str);
       RemoveCommand undoCommand = new UninsertCommand(offset, length, str);
@@ -1798,11 +2012,26 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       addUndoRedo(chng, undoCommand, doCommand);
       //chng.addEdit(new CommandUndoableEdit(undoCommand, doCommand));
       // actually do the insert
-      doCommand.run();  // This method runs in the updating thread with exclusive access to the updated document
+      final ReducedModelSnapshot snapshot = _restoredModel;
+      if (snapshot != null) _restoreReducedModel(str, snapshot);
+      else doCommand.run();  // This method runs in the updating thread with exclusive access to the updated document
     }
     catch (BadLocationException ble) { throw new UnexpectedException(ble); }
   }
   
+  /** Performs the reduced model side of restoreText: the counterpart of InsertCommand.run() for text inserted at 
+    * offset 0 of an empty document.
+    */
+  private void _restoreReducedModel(String text, ReducedModelSnapshot snapshot) {
+    _clearCache(0);
+    _highlightsChanged(0, _countNewlines(text));
+    int newLineOffset = text.indexOf(newline);
+    if (newLineOffset >= 0) _numLinesChanged(newLineOffset);
+    _reduced.restore(snapshot);
+    _currentLocation = 0;
+    _styleChanged();
+  }
+  
   /** Updates document structure as a result of text removal. This happens 
    * within the swing remove operation before the text has actually been 
    * removed. Updates the reduced model (using a 
@@ -1825,8 +2054,6 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       final String removedText = getText(offset, length);
       super.removeUpdate(chng);
       
-      if (length > 0) _clearCache(offset);  // Selectively clear the query cache
-      
       Runnable doCommand = new RemoveCommand(offset, length, removedText);
       Runnable undoCommand = new UnremoveCommand(offset, removedText);
       
@@ -1916,11 +2143,15 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       _text = text;
     }
     
-    /** Inserts chars in reduced model and moves location to end of insert; cache has already been cleared. */
+    /** Selectively clears the query cache, inserts chars in reduced model and moves location to end of insert. */
     public void run() {
       
-      _reduced.move(_offset - _currentLocation);  
       int len = _text.length();
+      if (len > 0) {
+        _clearCache(_offset);  // runs on undo/redo as well as on the original edit
+        _highlightsChanged(_offset, _countNewlines(_text));
+      }
+      _reduced.move(_offset - _currentLocation);  
       // Record any change to line numbering
       int newLineOffset = _text.indexOf(newline);
       if (newLineOffset >= 0) _numLinesChanged(_offset + newLineOffset);
@@ -1956,9 +2187,11 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       _ch = ch;
     }
     
-    /** Inserts chars in reduced model and moves location to end of insert; cache has already been cleared. */
+    /** Selectively clears the query cache, inserts char in reduced model and moves location to end of insert. */
     public void run() {
       
+      _clearCache(_offset);
+      _highlightsChanged(_offset, _ch == newline ? 1 : 0);
       _reduced.move(_offset - _currentLocation);  
       if (_ch == newline) _numLinesChanged(_offset);  // record change to line numbering
       _addCharToReducedModel(_ch);
@@ -1978,8 +2211,12 @@ public abstract class AbstractDJDocument extends SwingDocument implements DJDocu
       _removedText = removedText;
     }
     
-    /** Removes chars from reduced model; cache has already been selectively cleared. */
+    /** Selectively clears the query cache and removes chars from reduced model. */
     public void run() {
+      if (_length > 0) {
+        _clearCache(_offset);  // runs on undo/redo as well as on the original edit
+        _highlightsChanged(_offset, - _countNewlines(_removedText));
+      }
       setCurrentLocation(_offset);
       if (_removedText.indexOf(newline) >= 0) _numLinesChanged(_offset);  // record change to line numbering
       _reduced.delete(_length);    
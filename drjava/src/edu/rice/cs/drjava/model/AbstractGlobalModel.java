@@ -83,6 +83,7 @@ import edu.rice.cs.drjava.config.OptionListener;
 import edu.rice.cs.drjava.model.cache.DCacheAdapter;
 import edu.rice.cs.drjava.model.cache.DDReconstructor;
 import edu.rice.cs.drjava.model.cache.DocumentCache ;
+import edu.rice.cs.drjava.model.cache.DocumentImage;
 import edu.rice.cs.drjava.model.compiler.CompilerModel;
 import edu.rice.cs.drjava.model.debug.Breakpoint;
 import edu.rice.cs.drjava.model.debug.DebugBreakpointData;
@@ -360,6 +361,13 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     };
     DrJava.getConfig().addOptionListener(BROWSER_HISTORY_MAX_SIZE, browserHistoryMaxSizeListener);
     getBrowserHistoryManager().setMaximumSize(DrJava.getConfig().getSetting(BROWSER_HISTORY_MAX_SIZE).intValue());
+    
+    // setup option listener for the console scrollback limit
+    OptionListener<Integer> scrollbackListener = new OptionListener<Integer>() {
+      public void optionChanged(OptionEvent<Integer> oce) { _consoleDoc.setScrollbackLimit(oce.value); }
+    };
+    DrJava.getConfig().addOptionListener(SCROLLBACK_MAX_SIZE, scrollbackListener);
+    _consoleDoc.setScrollbackLimit(DrJava.getConfig().getSetting(SCROLLBACK_MAX_SIZE).intValue());
   }
   
   // ----- STATE -----
@@ -3073,6 +3081,9 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
         private volatile List<FinalizationListener<DefinitionsDocument>> _finalListeners =
           new LinkedList<FinalizationListener<DefinitionsDocument>>();
         
+        // Whether the document was modified when saveDocInfo was called
+        private volatile boolean _modifiedWhenSaved = false;
+        
         // Weak hashmap that associates a WrappedPosition with its offset when saveDocInfo was called
         private volatile WeakHashMap< DefinitionsDocument.WrappedPosition, Integer> _positions =
           new WeakHashMap<DefinitionsDocument.WrappedPosition, Integer>();
@@ -3094,19 +3105,33 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
         }
         
         public DefinitionsDocument make() throws IOException, BadLocationException, FileMovedException {
+          return make(null);
+        }
+        
+        public DefinitionsDocument make(DocumentImage docImage) throws IOException, BadLocationException, 
+          FileMovedException {
           
 //          System.err.println("DDReconstructor.make() called on " + ConcreteOpenDefDoc.this);
           DefinitionsDocument newDefDoc = new DefinitionsDocument(_notifier);
           newDefDoc.setOpenDefDoc(ConcreteOpenDefDoc.this);
           
           /* Initialize doc text contents */
-          String image = getText();  // retrieves _image if it has already been set
-          assert image != null;  // getText() never returns null
-          
-          _editorKit.read(new StringReader(image), newDefDoc, 0);
+          final String image;
+          if (docImage != null && docImage.getReducedModel() != null) {
+            // The image was taken from this document when it was evicted, so its text needs no conversion
+            image = docImage.getText();
+            newDefDoc.restoreText(image, docImage.getReducedModel());
+            _log.log("Restoring compressed image for " + _file + " containing " + image.length() + " chars");
+          }
+          else {
+            image = (docImage != null) ? docImage.getText() : getText();  // getText() retrieves _image if set
+            assert image != null;  // getText() never returns null
+            _editorKit.read(new StringReader(image), newDefDoc, 0);
+            _log.log("Reading from image for " + _file + " containing " + image.length() + " chars");    
+          }
+          _image = null;  // the text now lives in newDefDoc
           //  Set document property to write out document using newLine conventions of the host platform.
           newDefDoc.putProperty(DefaultEditorKit.EndOfLineStringProperty, StringOps.EOL);
-          _log.log("Reading from image for " + _file + " containing " + _image.length() + " chars");    
           
           _loc = Math.min(_loc, image.length()); // make sure not past end
           _loc = Math.max(_loc, 0); // make sure not less than 0
@@ -3140,12 +3165,8 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
 // These lines were commented out to fix a memory leak; evidently, the undomanager holds on to the document          
 //          _undo = doc.getUndoManager();
 //          _undoListeners = doc.getUndoableEditListeners();
-          // Save document image.  Note: this could be optimized to eliminate redundant updates to _image
-          String text = doc.getText();
-          if (text.length() > 0) {
-            _image = text;  
-//            _log.log("Saving image containing " + _image.length() + " chars for " + _file);
-          }
+          // The document text is not saved here; the document cache keeps a compressed image of it
+          _modifiedWhenSaved = doc.isModifiedSinceSave();
           _loc = doc.getCurrentLocation();
           _list = doc.getDocumentListeners();
           _finalListeners = doc.getFinalizationListeners ();
@@ -3155,12 +3176,27 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
           _positions = doc.getWrappedPositionOffsets();
         }
         
+        /** Keeps the text of a discarded image unless the document can be read from its file again: reading an edited
+          * document would lose the edits, and reading a changed file would bypass the modified-on-disk check. 
+          */
+        public void imageDiscarded(DocumentImage docImage) {
+          if (_modifiedWhenSaved || isUntitled() || _file.lastModified() != _timestamp) {
+            _image = docImage.getText();
+            _log.log("Keeping the text of the discarded image for " + _file);
+          }
+        }
+        
         public void addDocumentListener(DocumentListener dl) {
           ArrayList<DocumentListener> tmp = new ArrayList<DocumentListener>();
           for (DocumentListener l: _list) { if (dl != l) tmp.add(l); }
           tmp.add(dl);
           _list = tmp.toArray (new DocumentListener[tmp.size()]);
         }
+        public void removeDocumentListener(DocumentListener dl) {
+          ArrayList<DocumentListener> tmp = new ArrayList<DocumentListener>();
+          for (DocumentListener l: _list) { if (dl != l) tmp.add(l); }
+          _list = tmp.toArray(new DocumentListener[tmp.size()]);
+        }
         public String toString() { return ConcreteOpenDefDoc.this.toString(); }
       };
     }
@@ -3756,7 +3792,10 @@ public class AbstractGlobalModel implements SingleDisplayModel, OptionConstants,
     
     public void remove(int offs, int len) throws BadLocationException { getDocument().remove(offs, len); }
     
-    public void removeDocumentListener(DocumentListener listener) { getDocument().removeDocumentListener(listener); }
+    public void removeDocumentListener(DocumentListener listener) {
+      if (_cacheAdapter.isReady()) getDocument().removeDocumentListener(listener);
+      else _cacheAdapter.removeDocumentListener(listener);
+    }
     
     public void render(Runnable r) { getDocument().render(r); }
     
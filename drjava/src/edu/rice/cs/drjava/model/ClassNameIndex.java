@@ -0,0 +1,388 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.drjava.model;
+
+import java.io.*;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.*;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.util.Log;
+
+/** A persistent index of class names, used to fill the auto-completion and "Open Java API Javadoc" lists without 
+  * rescanning unchanged sources.  The index records, for each source, a stamp and the sorted names found in it:
+  * <ul>
+  * <li>for a directory (e.g. the build directory), the class files and subdirectories it directly contains, stamped
+  *     with its modification time, which changes exactly when entries are added, removed or renamed;</li>
+  * <li>for a jar file, its class files, stamped with its modification time and size;</li>
+  * <li>for a Javadoc class list page, the classes and the links to their pages, stamped like the file containing the 
+  *     page.  Pages that are not in local files are not indexed.</li>
+  * </ul>
+  * The index is stored as a sorted binary file that is read into memory when the index is created; the names of a
+  * source are only decoded when the source is looked up.  The file is not kept open or mapped, so that save can
+  * replace it on every platform.  Stamps less than a few seconds old are not trusted, since file 
+  * system time stamps may be coarse.
+  */
+public class ClassNameIndex {
+  
+  /** Log for the index. */
+  public static final Log _log = new Log("ClassNameIndex.txt", false);
+  
+  /** Version of the file format; files with a different version are ignored. */
+  public static final int VERSION = 1;
+  
+  private static final int MAGIC = 0x444a4349;  // "DJCI"
+  
+  /** Stamp of a source that must not be reused. */
+  private static final long NO_STAMP = -1L;
+  
+  /** Stamps within this many milliseconds of the current time are not trusted. */
+  private static final long STAMP_GRANULARITY = 2000L;
+  
+  /** A name in a source, with an optional link (the empty string if there is none). */
+  public static class Entry implements Comparable<Entry> {
+    public final String name;
+    public final String link;
+    public Entry(String n, String l) {
+      name = n;
+      link = l;
+    }
+    public Entry(String n) { this(n, ""); }
+    public int compareTo(Entry other) {
+      int result = name.compareTo(other.name);
+      return (result != 0) ? result : link.compareTo(other.link);
+    }
+    public boolean equals(Object o) {
+      return (o instanceof Entry) && name.equals(((Entry) o).name) && link.equals(((Entry) o).link);
+    }
+    public int hashCode() { return name.hashCode() * 31 + link.hashCode(); }
+    public String toString() { return (link.length() == 0) ? name : (name + " -> " + link); }
+  }
+  
+  /** The indexed names of one source.  The entries are either decoded (or new), or at the given position of the
+    * data read from the file. */
+  private static class Source {
+    final long stamp;
+    List<Entry> entries;
+    final int offset;
+    final int count;
+    Source(long s, List<Entry> e) {
+      stamp = s;
+      entries = e;
+      offset = -1;
+      count = e.size();
+    }
+    Source(long s, int o, int c) {
+      stamp = s;
+      entries = null;
+      offset = o;
+      count = c;
+    }
+  }
+  
+  /** The file holding the index. */
+  private final File _file;
+  
+  /** The indexed sources, sorted by name. */
+  private final TreeMap<String, Source> _sources = new TreeMap<String, Source>();
+  
+  /** The data region of the index file, or null if no valid file was found. */
+  private ByteBuffer _data = null;
+  
+  /** True if sources were added or replaced since the index was loaded or saved. */
+  private boolean _changed = false;
+  
+  /** Number of directories listed (rather than taken from the index); for testing and diagnostics. */
+  private int _listedDirectories = 0;
+  
+  /** Creates an index stored in the given file, reading the file if it exists and has the current version.
+    * @param file the file holding the index
+    */
+  public ClassNameIndex(File file) {
+    _file = file;
+    _load();
+  }
+  
+  /** Reads the index file and its table of sources. */
+  private void _load() {
+    if (! _file.isFile()) return;
+    try {
+      ByteBuffer buffer = ByteBuffer.wrap(IOUtil.toByteArray(_file));
+      ByteBuffer header = buffer.duplicate();
+      DataInputStream in = new DataInputStream(new ByteBufferInputStream(header));
+      if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+        _log.log("Ignoring index " + _file + " with another version");
+        return;
+      }
+      int count = in.readInt();
+      TreeMap<String, Source> sources = new TreeMap<String, Source>();
+      for (int i = 0; i < count; ++i) {
+        String name = in.readUTF();
+        long stamp = in.readLong();
+        int offset = in.readInt();
+        sources.put(name, new Source(stamp, offset, in.readInt()));
+      }
+      buffer.position(header.position());
+      _data = buffer.slice();
+      _sources.putAll(sources);
+    }
+    catch (IOException e) { _log.log("Could not read index " + _file + ": " + e); }
+    catch (RuntimeException e) { _log.log("Corrupt index " + _file + ": " + e); }
+  }
+  
+  /** Returns the entries of a source, decoding them from the data read from the file if necessary. */
+  private List<Entry> _entries(Source s) {
+    if (s.entries == null) {
+      List<Entry> entries = new ArrayList<Entry>(s.count);
+      try {
+        ByteBuffer b = _data.duplicate();
+        b.position(s.offset);
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(b));
+        for (int i = 0; i < s.count; ++i) { entries.add(new Entry(in.readUTF(), in.readUTF())); }
+      }
+      catch (IOException e) { throw new IllegalStateException("Corrupt index " + _file, e); }
+      s.entries = Collections.unmodifiableList(entries);
+    }
+    return s.entries;
+  }
+  
+  /** Returns the indexed entries of a source, or null if the source has not been indexed with the given stamp.
+    * @param source name of the source
+    * @param stamp current stamp of the source
+    * @return sorted entries of the source, or null
+    */
+  public synchronized List<Entry> get(String source, long stamp) {
+    if (stamp == NO_STAMP) return null;
+    Source s = _sources.get(source);
+    if (s == null || s.stamp != stamp) return null;
+    try { return _entries(s); }
+    catch (IllegalStateException e) {
+      _log.log(e.getMessage());
+      _sources.remove(source);
+      return null;
+    }
+  }
+  
+  /** Records the entries of a source.  They are written to the file by the next call to save.
+    * @param source name of the source
+    * @param stamp current stamp of the source
+    * @param entries entries of the source
+    */
+  public synchronized void put(String source, long stamp, Collection<Entry> entries) {
+    List<Entry> sorted = new ArrayList<Entry>(entries);
+    Collections.sort(sorted);
+    _sources.put(source, new Source(stamp, Collections.unmodifiableList(sorted)));
+    _changed = true;
+  }
+  
+  /** Returns the stamp of a file, or NO_STAMP if it does not exist or was modified too recently to be trusted. */
+  private static long _stamp(File f, boolean includeSize) {
+    long modified = f.lastModified();
+    if (modified == 0L || modified > System.currentTimeMillis() - STAMP_GRANULARITY) return NO_STAMP;
+    return includeSize ? (modified * 31 + f.length()) : modified;
+  }
+  
+  /** Returns the stamp of a page, or NO_STAMP if it is not in a local file or jar file.
+    * @param page URL of the page
+    * @return the stamp of the page
+    */
+  public static long stampOf(URL page) {
+    String path = page.toString();
+    if (path.startsWith("jar:")) {
+      int sep = path.indexOf("!/");
+      if (sep < 0) return NO_STAMP;
+      path = path.substring(4, sep);
+    }
+    if (! path.startsWith("file:")) return NO_STAMP;
+    try { return _stamp(new File(new URL(path).toURI()), true); }
+    catch (MalformedURLException e) { return NO_STAMP; }
+    catch (java.net.URISyntaxException e) { return NO_STAMP; }
+    catch (IllegalArgumentException e) { return NO_STAMP; }
+  }
+  
+  /** Returns the indexed classes and links of a Javadoc class list page, or null if the page has not been indexed or
+    * has changed.
+    * @param page URL of the page
+    * @return entries with fully qualified class names and links, or null
+    */
+  public List<Entry> getPage(URL page) { return get("url:" + page, stampOf(page)); }
+  
+  /** Records the classes and links of a Javadoc class list page, if it is in a local file or jar file.
+    * @param page URL of the page
+    * @param entries entries with fully qualified class names and links
+    */
+  public void putPage(URL page, Collection<Entry> entries) {
+    long stamp = stampOf(page);
+    if (stamp != NO_STAMP) { put("url:" + page, stamp, entries); }
+  }
+  
+  /** Returns the fully qualified names of the classes in the class files below a directory, in which inner classes 
+    * contain '$'.  Only directories changed since they were indexed are listed.
+    * @param root root of the class files, e.g. the build directory
+    * @return fully qualified class names
+    */
+  public synchronized List<String> classesInDirectory(File root) {
+    List<String> result = new ArrayList<String>();
+    _scanDirectory(root.getAbsoluteFile(), "", result);
+    return result;
+  }
+  
+  private void _scanDirectory(File dir, String prefix, List<String> acc) {
+    String source = "dir:" + dir.getPath();
+    long stamp = _stamp(dir, false);
+    List<Entry> entries = get(source, stamp);
+    if (entries == null) {
+      File[] files = dir.listFiles();
+      if (files == null) return;
+      ++_listedDirectories;
+      entries = new ArrayList<Entry>();
+      for (File f: files) {
+        String name = f.getName();
+        if (f.isDirectory()) { entries.add(new Entry(name + "/")); }  // '/' cannot occur in a file name
+        else if (name.endsWith(".class")) { entries.add(new Entry(name.substring(0, name.length() - 6))); }
+      }
+      put(source, stamp, entries);
+    }
+    for (Entry e: entries) {
+      if (e.name.endsWith("/")) {
+        String name = e.name.substring(0, e.name.length() - 1);
+        _scanDirectory(new File(dir, name), prefix + name + ".", acc);
+      }
+      else { acc.add(prefix + e.name); }
+    }
+  }
+  
+  /** Returns the fully qualified names of the classes in a jar file, in which inner classes contain '$'.
+    * @param jar the jar file
+    * @return fully qualified class names, or an empty list if the jar file cannot be read
+    */
+  public synchronized List<String> classesInJar(File jar) {
+    jar = jar.getAbsoluteFile();
+    String source = "jar:" + jar.getPath();
+    long stamp = _stamp(jar, true);
+    List<Entry> entries = get(source, stamp);
+    if (entries == null) {
+      entries = new ArrayList<Entry>();
+      try {
+        JarFile jf = new JarFile(jar);
+        try {
+          for (Enumeration<JarEntry> en = jf.entries(); en.hasMoreElements(); ) {
+            String name = en.nextElement().getName();
+            if (name.endsWith(".class")) {
+              entries.add(new Entry(name.substring(0, name.length() - 6).replace('/', '.')));
+            }
+          }
+        }
+        finally { jf.close(); }
+      }
+      catch (IOException e) {
+        _log.log("Could not read " + jar + ": " + e);
+        return new ArrayList<String>();
+      }
+      put(source, stamp, entries);
+    }
+    List<String> result = new ArrayList<String>(entries.size());
+    for (Entry e: entries) { result.add(e.name); }
+    return result;
+  }
+  
+  /** @return the number of directories that were listed because they were not indexed or had changed. */
+  public synchronized int getListedDirectoryCount() { return _listedDirectories; }
+  
+  /** Writes the index to its file, if it has changed.  Directories and jar files that no longer exist are dropped.
+    * Failures are logged and otherwise ignored; the index is only a cache. */
+  public synchronized void save() {
+    if (! _changed) return;
+    try {
+      ByteArrayOutputStream table = new ByteArrayOutputStream();
+      DataOutputStream tableOut = new DataOutputStream(table);
+      ByteArrayOutputStream data = new ByteArrayOutputStream();
+      DataOutputStream dataOut = new DataOutputStream(data);
+      List<String> written = new ArrayList<String>();
+      for (Map.Entry<String, Source> e: _sources.entrySet()) {
+        String name = e.getKey();
+        Source s = e.getValue();
+        if (s.stamp == NO_STAMP) continue;
+        if ((name.startsWith("dir:") || name.startsWith("jar:")) && ! new File(name.substring(4)).exists()) continue;
+        List<Entry> entries = _entries(s);
+        tableOut.writeUTF(name);
+        tableOut.writeLong(s.stamp);
+        tableOut.writeInt(dataOut.size());
+        tableOut.writeInt(entries.size());
+        for (Entry entry: entries) {
+          dataOut.writeUTF(entry.name);
+          dataOut.writeUTF(entry.link);
+        }
+        written.add(name);
+      }
+      tableOut.flush();
+      dataOut.flush();
+      
+      File dir = _file.getAbsoluteFile().getParentFile();
+      File temp = File.createTempFile(_file.getName(), ".tmp", dir);
+      DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+      try {
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeInt(written.size());
+        table.writeTo(out);
+        data.writeTo(out);
+      }
+      finally { out.close(); }
+      if (! temp.renameTo(_file)) {
+        _file.delete();
+        if (! temp.renameTo(_file)) {
+          temp.delete();
+          throw new IOException("Could not replace " + _file);
+        }
+      }
+      _sources.keySet().retainAll(written);
+      _changed = false;
+    }
+    catch (IOException e) { _log.log("Could not save index " + _file + ": " + e); }
+    catch (IllegalStateException e) { _log.log("Could not save index " + _file + ": " + e); }
+  }
+  
+  /** An input stream reading from a ByteBuffer. */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer _b;
+    ByteBufferInputStream(ByteBuffer b) { _b = b; }
+    public int read() { return _b.hasRemaining() ? (_b.get() & 0xFF) : -1; }
+    public int read(byte[] bytes, int off, int len) {
+      if (! _b.hasRemaining()) return -1;
+      len = Math.min(len, _b.remaining());
+      _b.get(bytes, off, len);
+      return len;
+    }
+  }
+}
@@ -0,0 +1,191 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.util.FileOps;
+
+import java.io.*;
+import java.net.URL;
+import java.util.*;
+import java.util.jar.JarOutputStream;
+import java.util.zip.ZipEntry;
+
+/** Tests for ClassNameIndex.
+  * @version $Id$
+  */
+public final class ClassNameIndexTest extends DrJavaTestCase {
+  
+  private File _dir;
+  private File _indexFile;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    _dir = FileOps.createTempDirectory("classNameIndex");
+    _indexFile = new File(_dir, "index");
+  }
+  
+  public void tearDown() throws Exception {
+    IOUtil.deleteRecursively(_dir);
+    super.tearDown();
+  }
+  
+  /** Creates an empty file and its parent directories. */
+  private static void _touch(File f) throws IOException {
+    f.getParentFile().mkdirs();
+    new FileOutputStream(f).close();
+  }
+  
+  /** Sets the modification time of f to the given number of seconds in the past. */
+  private static void _age(File f, int seconds) {
+    assertTrue("set time of " + f, f.setLastModified((System.currentTimeMillis() / 1000 - seconds) * 1000));
+  }
+  
+  private static Set<String> _set(Collection<String> c) { return new TreeSet<String>(c); }
+  
+  public void testDirectoryOnlyRelistsChangedDirectories() throws IOException {
+    File build = new File(_dir, "build");
+    _touch(new File(build, "Top.class"));
+    _touch(new File(build, "a/B.class"));
+    _touch(new File(build, "a/b/C.class"));
+    _touch(new File(build, "a/b/C$1.class"));
+    _touch(new File(build, "a/b/notes.txt"));
+    File a = new File(build, "a");
+    File b = new File(a, "b");
+    for (File d: new File[] { build, a, b }) { _age(d, 100); }
+    
+    Set<String> expected = _set(Arrays.asList("Top", "a.B", "a.b.C", "a.b.C$1"));
+    ClassNameIndex index = new ClassNameIndex(_indexFile);
+    assertEquals(expected, _set(index.classesInDirectory(build)));
+    assertEquals("all directories listed", 3, index.getListedDirectoryCount());
+    index.save();
+    
+    ClassNameIndex reloaded = new ClassNameIndex(_indexFile);
+    assertEquals(expected, _set(reloaded.classesInDirectory(build)));
+    assertEquals("nothing listed again", 0, reloaded.getListedDirectoryCount());
+    
+    _touch(new File(b, "D.class"));
+    _age(b, 50);
+    assertEquals(_set(Arrays.asList("Top", "a.B", "a.b.C", "a.b.C$1", "a.b.D")), 
+                 _set(reloaded.classesInDirectory(build)));
+    assertEquals("only the changed directory listed", 1, reloaded.getListedDirectoryCount());
+  }
+  
+  /** Saving an index that was read from its file must replace that file, which is therefore not kept open. */
+  public void testSaveReplacesLoadedIndex() throws IOException {
+    List<ClassNameIndex.Entry> a = Arrays.asList(new ClassNameIndex.Entry("p.A", "p/A.html"));
+    List<ClassNameIndex.Entry> b = Arrays.asList(new ClassNameIndex.Entry("p.B"));
+    ClassNameIndex index = new ClassNameIndex(_indexFile);
+    index.put("url:a", 1L, a);
+    index.save();
+    
+    ClassNameIndex reloaded = new ClassNameIndex(_indexFile);
+    reloaded.put("url:b", 2L, b);
+    reloaded.save();
+    assertEquals("entries read before the file was replaced", a, reloaded.get("url:a", 1L));
+    
+    ClassNameIndex third = new ClassNameIndex(_indexFile);
+    assertEquals(a, third.get("url:a", 1L));
+    assertEquals(b, third.get("url:b", 2L));
+    assertEquals("only the index file is left", 1, _dir.listFiles().length);
+  }
+  
+  public void testRecentDirectoriesAreNotTrusted() throws IOException {
+    File build = new File(_dir, "build");
+    _touch(new File(build, "A.class"));  // modified just now
+    ClassNameIndex index = new ClassNameIndex(_indexFile);
+    index.classesInDirectory(build);
+    index.classesInDirectory(build);
+    assertEquals("listed both times", 2, index.getListedDirectoryCount());
+  }
+  
+  public void testJar() throws IOException {
+    File jar = new File(_dir, "lib.jar");
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+    out.putNextEntry(new ZipEntry("p/Q.class"));
+    out.closeEntry();
+    out.putNextEntry(new ZipEntry("p/Q$Inner.class"));
+    out.closeEntry();
+    out.putNextEntry(new ZipEntry("p/readme.txt"));
+    out.closeEntry();
+    out.close();
+    _age(jar, 100);
+    
+    ClassNameIndex index = new ClassNameIndex(_indexFile);
+    assertEquals(_set(Arrays.asList("p.Q", "p.Q$Inner")), _set(index.classesInJar(jar)));
+    index.save();
+    assertNotNull("jar indexed", new ClassNameIndex(_indexFile).get("jar:" + jar.getAbsolutePath(), 
+                                                                    (jar.lastModified() * 31 + jar.length())));
+    
+    assertTrue(jar.delete());
+    _touch(jar);  // no longer a jar file
+    _age(jar, 50);
+    assertEquals("changed jar is read again", 0, new ClassNameIndex(_indexFile).classesInJar(jar).size());
+  }
+  
+  public void testPages() throws IOException {
+    File page = new File(_dir, "allclasses.html");
+    _touch(page);
+    _age(page, 100);
+    URL url = page.toURI().toURL();
+    
+    ClassNameIndex index = new ClassNameIndex(_indexFile);
+    assertNull("not indexed", index.getPage(url));
+    index.putPage(url, Arrays.asList(new ClassNameIndex.Entry("java.lang.String", "http://x/String.html"),
+                                     new ClassNameIndex.Entry("java.lang.Object", "http://x/Object.html")));
+    index.putPage(new URL("http://example.com/allclasses.html"), 
+                  Arrays.asList(new ClassNameIndex.Entry("remote.A", "http://example.com/A.html")));
+    index.save();
+    
+    ClassNameIndex reloaded = new ClassNameIndex(_indexFile);
+    assertEquals("sorted entries",
+                 Arrays.asList(new ClassNameIndex.Entry("java.lang.Object", "http://x/Object.html"),
+                               new ClassNameIndex.Entry("java.lang.String", "http://x/String.html")),
+                 reloaded.getPage(url));
+    assertNull("remote pages are not indexed", reloaded.getPage(new URL("http://example.com/allclasses.html")));
+    
+    _age(page, 50);
+    assertNull("changed page", reloaded.getPage(url));
+  }
+  
+  public void testInvalidFileIsIgnored() throws IOException {
+    FileOutputStream out = new FileOutputStream(_indexFile);
+    out.write("not an index".getBytes("UTF-8"));
+    out.close();
+    File build = new File(_dir, "build");
+    _touch(new File(build, "A.class"));
+    _age(build, 100);
+    ClassNameIndex index = new ClassNameIndex(_indexFile);
+    assertEquals(Arrays.asList("A"), index.classesInDirectory(build));
+    index.save();
+    assertEquals(Arrays.asList("A"), new ClassNameIndex(_indexFile).classesInDirectory(build));
+  }
+}
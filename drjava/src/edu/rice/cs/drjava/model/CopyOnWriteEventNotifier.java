@@ -0,0 +1,217 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.drjava.model;
+
+import java.lang.reflect.Array;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/** Base class for component-specific EventNotifiers whose notifications are far more frequent than changes to the set
+  * of listeners.  Instead of guarding a list with a ReaderWriterLock (as in {@link EventNotifier}), the listeners are
+  * kept in an array that is replaced, never modified, when a listener is added or removed.  A notification therefore
+  * reads a single volatile field and iterates over the array without acquiring any lock or allocating an iterator.
+  * <p>
+  * Because a notification works on the array that was current when it started, a listener may be added or removed
+  * while a notification is in progress, even by a listener on the notifying thread.  As with EventNotifier, it is NOT 
+  * guaranteed that a removed listener will not be executed once more by a notification that is already running.
+  * <p>
+  * Notification methods in subclasses should follow the pattern
+  * <pre>
+  *   final long start = _startDispatch();
+  *   try { for (T l : _listeners) { l.someEvent(); } }
+  *   finally { _endDispatch("someEvent", start); }
+  * </pre>
+  * so that the time spent in the listeners can be recorded per event type.  Recording is off unless enabled with
+  * {@link #setStatisticsEnabled} or with the system property {@value #STATISTICS_PROPERTY}.
+  * @param <T> the type of the listener class to be managed
+  * @version $Id$
+  */
+public abstract class CopyOnWriteEventNotifier<T> {
+  /** System property that enables dispatch statistics in all new notifiers. */
+  public static final String STATISTICS_PROPERTY = "drjava.notifier.statistics";
+  
+  /** All T listeners that are listening to the model.  The array is never modified after it has been published; 
+    * adding or removing a listener replaces it under the monitor of this notifier.  Notifications must read this 
+    * field exactly once, e.g. in the header of an enhanced for loop.
+    */
+  protected volatile T[] _listeners;
+  
+  /** Dispatch statistics per event type, or null if statistics are not being recorded. */
+  private volatile ConcurrentHashMap<String, DispatchStatistics> _statistics;
+  
+  /** Creates a notifier without listeners.
+    * @param listenerClass the class of the listeners, used to create the listener arrays
+    */
+  @SuppressWarnings("unchecked")
+  protected CopyOnWriteEventNotifier(Class<T> listenerClass) {
+    _listeners = (T[]) Array.newInstance(listenerClass, 0);
+    if (Boolean.getBoolean(STATISTICS_PROPERTY)) { setStatisticsEnabled(true); }
+  }
+  
+  /** Adds a listener to the notifier.
+    * @param listener a listener that reacts on events
+    */
+  public void addListener(T listener) {
+    synchronized(this) {
+      T[] old = _listeners;
+      T[] updated = Arrays.copyOf(old, old.length + 1);
+      updated[old.length] = listener;
+      _listeners = updated;
+    }
+  }
+  
+  /** Removes a listener from the notifier.  The first occurrence of the listener is removed.
+    * Note: It is NOT guaranteed that the listener will not be executed again by a notification that is in progress.
+    * @param listener a listener that reacts on events
+    */
+  public void removeListener(T listener) {
+    synchronized(this) {
+      T[] old = _listeners;
+      for (int i = 0; i < old.length; ++i) {
+        if (old[i] == null ? listener == null : old[i].equals(listener)) {
+          T[] updated = Arrays.copyOf(old, old.length - 1);
+          System.arraycopy(old, i + 1, updated, i, old.length - i - 1);
+          _listeners = updated;
+          return;
+        }
+      }
+    }
+  }
+  
+  /** Removes all listeners from this notifier.
+    * Note: It is NOT guaranteed that the listeners will not be executed again by a notification that is in progress.
+    */
+  public void removeAllListeners() {
+    synchronized(this) { _listeners = Arrays.copyOf(_listeners, 0); }
+  }
+  
+  /** @return the number of listeners currently registered */
+  public int getListenerCount() { return _listeners.length; }
+  
+  /** Marks the beginning of a notification.
+    * @return the start time to pass to {@link #_endDispatch}, or 0 if statistics are not being recorded
+    */
+  protected final long _startDispatch() {
+    return (_statistics == null) ? 0L : System.nanoTime();
+  }
+  
+  /** Marks the end of a notification and records the time spent in the listeners.  Only the first notification of
+    * each event type allocates; later ones update the existing counters.
+    * @param event the name of the event, usually the name of the listener method
+    * @param start the value returned by the matching call to {@link #_startDispatch}
+    */
+  protected final void _endDispatch(String event, long start) {
+    ConcurrentHashMap<String, DispatchStatistics> statistics = _statistics;
+    if (statistics == null || start == 0L) { return; }
+    long elapsed = System.nanoTime() - start;
+    DispatchStatistics s = statistics.get(event);
+    if (s == null) {
+      DispatchStatistics fresh = new DispatchStatistics(event);
+      s = statistics.putIfAbsent(event, fresh);
+      if (s == null) { s = fresh; }
+    }
+    s._record(elapsed);
+  }
+  
+  /** Starts or stops recording dispatch statistics.  Starting discards any statistics recorded before.
+    * @param enabled true to record statistics, false to stop recording them
+    */
+  public void setStatisticsEnabled(boolean enabled) {
+    _statistics = enabled ? new ConcurrentHashMap<String, DispatchStatistics>() : null;
+  }
+  
+  /** @return whether dispatch statistics are being recorded */
+  public boolean isStatisticsEnabled() { return _statistics != null; }
+  
+  /** @return the dispatch statistics per event type, ordered by decreasing total time; empty if statistics are not
+    *         being recorded
+    */
+  public List<DispatchStatistics> getDispatchStatistics() {
+    ConcurrentHashMap<String, DispatchStatistics> statistics = _statistics;
+    if (statistics == null) { return Collections.emptyList(); }
+    List<DispatchStatistics> result = new ArrayList<DispatchStatistics>(statistics.values());
+    Collections.sort(result, new Comparator<DispatchStatistics>() {
+      public int compare(DispatchStatistics a, DispatchStatistics b) {
+        long ta = a.getTotalTime();
+        long tb = b.getTotalTime();
+        return (ta < tb) ? 1 : ((ta == tb) ? a.getEvent().compareTo(b.getEvent()) : -1);
+      }
+    });
+    return result;
+  }
+  
+  /** @return a human-readable report of the dispatch statistics, one line per event type */
+  public String getDispatchReport() {
+    StringBuilder sb = new StringBuilder();
+    sb.append(getClass().getSimpleName()).append(": ").append(_listeners.length).append(" listeners\n");
+    for (DispatchStatistics s : getDispatchStatistics()) { sb.append("  ").append(s).append('\n'); }
+    return sb.toString();
+  }
+  
+  /** Accumulated dispatch latency of one event type.  All times are in nanoseconds. */
+  public static final class DispatchStatistics {
+    private final String _event;
+    private final AtomicLong _count = new AtomicLong();
+    private final AtomicLong _totalTime = new AtomicLong();
+    private final AtomicLong _maxTime = new AtomicLong();
+    
+    DispatchStatistics(String event) { _event = event; }
+    
+    void _record(long elapsed) {
+      _count.incrementAndGet();
+      _totalTime.addAndGet(elapsed);
+      long max = _maxTime.get();
+      while (elapsed > max && ! _maxTime.compareAndSet(max, elapsed)) { max = _maxTime.get(); }
+    }
+    
+    /** @return the name of the event */
+    public String getEvent() { return _event; }
+    /** @return the number of notifications */
+    public long getCount() { return _count.get(); }
+    /** @return the total time spent notifying listeners */
+    public long getTotalTime() { return _totalTime.get(); }
+    /** @return the longest time spent in a single notification */
+    public long getMaxTime() { return _maxTime.get(); }
+    /** @return the average time spent in a notification, or 0 if there were none */
+    public long getAverageTime() {
+      long count = _count.get();
+      return (count == 0) ? 0 : _totalTime.get() / count;
+    }
+    
+    public String toString() {
+      return _event + ": " + getCount() + " events, total " + (getTotalTime() / 1000) + " us, avg " +
+        (getAverageTime() / 1000) + " us, max " + (getMaxTime() / 1000) + " us";
+    }
+  }
+}
@@ -445,6 +445,8 @@ public class DefaultGlobalModel extends AbstractGlobalModel {
     _log.log("DefaultGlobalModel.resetInteractions(" + wd + ", " + forceReset + ") called");
     File workDir = _interactionsModel.getWorkingDirectory();
     if (wd == null) { wd = workDir; }
+    // the standby interpreter has the old class path, which may contain entries that have since been removed
+    if (isClassPathChanged()) { _jvm.discardStandbyInterpreter(); }
     forceReset |= isClassPathChanged();
     forceReset |= !wd.equals(workDir);
     // update the setting
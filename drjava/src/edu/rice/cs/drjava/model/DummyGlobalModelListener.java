@@ -79,6 +79,9 @@ public class DummyGlobalModelListener extends DummyInteractionsListener implemen
   /** Called when a compile has finished running. */
   public void compileEnded(File workDir, List<? extends File> excludedFiles) { }
   
+  /** Called when background error checking has replaced the errors reported for some files. */
+  public void compileErrorsUpdated(List<? extends File> files) { }
+  
   /** Called if a compile is aborted. */
   public void compileAborted(Exception e) { }
 
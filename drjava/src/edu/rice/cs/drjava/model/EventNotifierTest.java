@@ -102,4 +102,61 @@ public final class EventNotifierTest extends DrJavaTestCase {
     result = _notifier.canAbandonFile(null);
     assertTrue("should not be able to abandon file", !result);
   }
+  
+  /** Checks that a listener can remove itself and add another listener while it is being notified, and that the
+    * change only takes effect for later notifications.
+    */
+  public void testChangeListenersDuringNotification() {
+    final TestListener added = new TestListener() {
+      public void interpreterExited(int status) { interpreterExitedCount++; }
+    };
+    TestListener remover = new TestListener() {
+      public void interpreterExited(int status) {
+        interpreterExitedCount++;
+        _notifier.removeListener(this);
+        _notifier.addListener(added);
+      }
+    };
+    
+    _notifier.addListener(remover);
+    _notifier.interpreterExited(0);
+    remover.assertInterpreterExitedCount(1);
+    added.assertInterpreterExitedCount(0);
+    assertEquals("listener count", 1, _notifier.getListenerCount());
+    
+    _notifier.interpreterExited(0);
+    remover.assertInterpreterExitedCount(1);
+    added.assertInterpreterExitedCount(1);
+    
+    _notifier.removeAllListeners();
+    assertEquals("listener count", 0, _notifier.getListenerCount());
+  }
+  
+  /** Checks that dispatch statistics are recorded per event type only when enabled. */
+  public void testDispatchStatistics() {
+    _notifier.addListener(new TestListener() {
+      public void junitSuiteStarted(int numTests) { junitSuiteStartedCount++; }
+      public void interpreterExited(int status) { interpreterExitedCount++; }
+    });
+    _notifier.setStatisticsEnabled(false);
+    _notifier.junitSuiteStarted(1);
+    assertTrue("no statistics when disabled", _notifier.getDispatchStatistics().isEmpty());
+    
+    _notifier.setStatisticsEnabled(true);
+    _notifier.junitSuiteStarted(1);
+    _notifier.junitSuiteStarted(2);
+    _notifier.interpreterExited(0);
+    
+    java.util.List<CopyOnWriteEventNotifier.DispatchStatistics> stats = _notifier.getDispatchStatistics();
+    assertEquals("two event types", 2, stats.size());
+    for (CopyOnWriteEventNotifier.DispatchStatistics s : stats) {
+      if (s.getEvent().equals("junitSuiteStarted")) assertEquals("junitSuiteStarted count", 2, s.getCount());
+      else {
+        assertEquals("event name", "interpreterExited", s.getEvent());
+        assertEquals("interpreterExited count", 1, s.getCount());
+      }
+      assertTrue("max time bounded by total", s.getMaxTime() <= s.getTotalTime());
+    }
+    assertTrue("report names events", _notifier.getDispatchReport().indexOf("junitSuiteStarted") >= 0);
+  }
 }
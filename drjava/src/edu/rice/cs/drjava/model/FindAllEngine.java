@@ -0,0 +1,280 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import edu.rice.cs.drjava.model.definitions.DocumentUIListener;
+import edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelControl;
+import edu.rice.cs.util.swing.Utilities;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import javax.swing.event.DocumentEvent;
+
+/** Performs "find all" over snapshots of the text of documents.  The snapshots are taken in the event thread (see
+  * FindReplaceMachine.snapshotDocuments); they are searched in parallel in a fork-join pool, so neither the event
+  * thread nor the document cache is involved in the matching.  The matches of each document are passed to a Listener
+  * in the event thread as soon as they and the matches of all preceding documents are available.  The matching
+  * follows FindReplaceMachine.processAll: a forward search for non-overlapping occurrences, optionally restricted to 
+  * whole words and to text outside of comments and strings.
+  * @version $Id$
+  */
+public class FindAllEngine {
+  
+  /** The pool shared by all searches; its worker threads are daemon threads. */
+  private static final ForkJoinPool _pool = new ForkJoinPool();
+  
+  private final String _findWord;
+  private final boolean _matchCase;
+  private final boolean _matchWholeWord;
+  private final boolean _ignoreCommentsAndStrings;
+  
+  /** Creates an engine that searches for the given word.
+    * @param findWord the non-empty word to find
+    * @param matchCase true if the search is case-sensitive
+    * @param matchWholeWord true if only whole words match
+    * @param ignoreCommentsAndStrings true if matches inside comments and strings are ignored
+    */
+  public FindAllEngine(String findWord, boolean matchCase, boolean matchWholeWord, boolean ignoreCommentsAndStrings) {
+    if (findWord.length() == 0) throw new IllegalArgumentException("Empty find word");
+    _findWord = findWord;
+    _matchCase = matchCase;
+    _matchWholeWord = matchWholeWord;
+    _ignoreCommentsAndStrings = ignoreCommentsAndStrings;
+  }
+  
+  /** Receives the results of a search.  Both methods are called in the event thread. */
+  public interface Listener {
+    /** Called with the matches in one document; documents are reported in the order in which they were given.
+      * A document without matches is reported only if it was edited during the search, since its current text may 
+      * contain matches.
+      * @param snapshot the searched snapshot
+      * @param results the matches in the snapshot, in increasing order of offset
+      */
+    public void resultsFound(Snapshot snapshot, List<FindResult> results);
+    
+    /** Called after all documents have been searched and all results have been reported.
+      * @param count the total number of matches
+      */
+    public void searchFinished(int count);
+  }
+  
+  /** The text of a document and the region of it to be searched.  While it is being searched, the snapshot tracks 
+    * whether the document is edited, so that stale results can be detected without comparing texts.
+    */
+  public static class Snapshot {
+    private final OpenDefinitionsDocument _doc;
+    private final String _text;
+    private final int _start;
+    private final int _end;
+    
+    /** Whether the document has been edited since edit tracking started.  Written in the event thread. */
+    private volatile boolean _edited = false;
+    
+    /** Records edits of the document.  Survives the document being evicted from the document cache. */
+    private final DocumentUIListener _editListener = new DocumentUIListener() {
+      public void insertUpdate(DocumentEvent e) { _edited = true; }
+      public void removeUpdate(DocumentEvent e) { _edited = true; }
+      public void changedUpdate(DocumentEvent e) { }
+    };
+    
+    /** Creates a snapshot.
+      * @param doc the document, or null
+      * @param text the text of the document
+      * @param start the start offset of the region to search
+      * @param end the end offset of the region to search
+      */
+    public Snapshot(OpenDefinitionsDocument doc, String text, int start, int end) {
+      _doc = doc;
+      _text = text;
+      _start = start;
+      _end = end;
+    }
+    
+    /** @return the document of this snapshot */
+    public OpenDefinitionsDocument getDocument() { return _doc; }
+    
+    /** @return the text of the document when this snapshot was taken */
+    public String getText() { return _text; }
+    
+    /** @return true if the document was edited after the search of this snapshot started, so its text may differ */
+    public boolean isEdited() { return _edited; }
+    
+    /** Starts tracking edits of the document. */
+    void startTrackingEdits() { if (_doc != null) _doc.addDocumentListener(_editListener); }
+    
+    /** Stops tracking edits of the document.  Does not reload the document if it has been evicted or closed. */
+    void stopTrackingEdits() { if (_doc != null) _doc.removeDocumentListener(_editListener); }
+    
+    /** @param pos an offset in the snapshot
+      * @return the offset of the first character of the line containing pos in the snapshot
+      */
+    public int getLineStartPos(int pos) { return _text.lastIndexOf('\n', pos - 1) + 1; }
+    
+    /** @param pos an offset in the snapshot
+      * @return the offset of the end of the line containing pos (before its newline) in the snapshot
+      */
+    public int getLineEndPos(int pos) { 
+      int end = _text.indexOf('\n', pos);
+      return end < 0 ? _text.length() : end;
+    }
+  }
+  
+  /** Searches the given snapshots in the background and reports the results to the listener in the event thread.
+    * Should be called in the event thread, immediately after the snapshots are taken; the snapshots track edits of 
+    * their documents until the search has finished.
+    * @param snapshots the snapshots to search
+    * @param listener the listener to notify
+    */
+  public void findAll(List<Snapshot> snapshots, Listener listener) {
+    for (Snapshot s: snapshots) s.startTrackingEdits();
+    _pool.execute(new SearchAll(new ArrayList<Snapshot>(snapshots), listener));
+  }
+  
+  /** Finds the matches in one snapshot.  May run in any thread.
+    * @param snapshot the snapshot to search
+    * @return a FindResult (with the right edge of the match as the found offset) for each match, in increasing order
+    */
+  public List<FindResult> search(Snapshot snapshot) {
+    final ArrayList<FindResult> results = new ArrayList<FindResult>();
+    final String findWord = _matchCase ? _findWord : _findWord.toLowerCase();
+    final String text = _matchCase ? snapshot._text : snapshot._text.toLowerCase();
+    final int wordLen = findWord.length();
+    
+    ReducedModelControl reduced = null;  // built on demand to check shadowing
+    int reducedPos = 0;
+    
+    int from = snapshot._start;
+    while (true) {
+      final int found = text.indexOf(findWord, from);
+      if (found < 0 || found + wordLen > snapshot._end) break;
+      from = found + wordLen;  // ignored matches are skipped as a whole, as in FindReplaceMachine
+      
+      if (_matchWholeWord && ! _wholeWordAt(snapshot._text, found, wordLen)) continue;
+      if (_ignoreCommentsAndStrings) {
+        if (reduced == null) {
+          reduced = new ReducedModelControl();
+          for (int i = 0; i < snapshot._text.length(); i++) reduced.insertChar(snapshot._text.charAt(i));
+          reducedPos = snapshot._text.length();
+        }
+        reduced.move(found - reducedPos);
+        reducedPos = found;
+        if (reduced.isShadowed()) continue;
+      }
+      results.add(new FindResult(snapshot._doc, found + wordLen, false, false));
+    }
+    return results;
+  }
+  
+  /** Determines whether the match text[found, found + len) is a whole word.
+    * @param text the text containing the match
+    * @param found the offset of the match
+    * @param len the length of the match
+    * @return true if the match is delimited on both sides
+    */
+  private static boolean _wholeWordAt(String text, int found, int len) {
+    return (found == 0 || _isDelimiter(text.charAt(found - 1))) &&
+      (found + len == text.length() || _isDelimiter(text.charAt(found + len)));
+  }
+  
+  /** @param ch a character
+    * @return true if ch is a delimiter (not a letter, digit or underscore)
+    */
+  private static boolean _isDelimiter(char ch) { return ! Character.isLetterOrDigit(ch)  &&  ch != '_'; }
+  
+  /** The root task of a search.  It searches the snapshots with one subtask each, reports completed prefixes of the
+    * snapshot list to the listener, and finally reports the end of the search.
+    */
+  private class SearchAll extends RecursiveAction {
+    private static final long serialVersionUID = 4720961831752214706L;
+    private final ArrayList<Snapshot> _snapshots;
+    private final Listener _listener;
+    /** Results of the snapshots that have been searched but not yet reported; guarded by this. */
+    private final ArrayList<List<FindResult>> _results;
+    /** Index of the first snapshot not yet reported; guarded by this. */
+    private int _nextToReport = 0;
+    /** Number of matches found so far; guarded by this. */
+    private int _count = 0;
+    
+    SearchAll(ArrayList<Snapshot> snapshots, Listener listener) {
+      _snapshots = snapshots;
+      _listener = listener;
+      _results = new ArrayList<List<FindResult>>(snapshots.size());
+      for (int i = 0; i < snapshots.size(); i++) _results.add(null);
+    }
+    
+    protected void compute() {
+      final ArrayList<SearchOne> tasks = new ArrayList<SearchOne>(_snapshots.size());
+      for (int i = 0; i < _snapshots.size(); i++) tasks.add(new SearchOne(this, i));
+      try { invokeAll(tasks); }
+      finally {  // the listener must hear about the end of the search even if a subtask failed
+        final int count;
+        synchronized(this) { count = _count; }
+        Utilities.invokeLater(new Runnable() { 
+          public void run() { 
+            for (Snapshot s: _snapshots) s.stopTrackingEdits();
+            _listener.searchFinished(count); 
+          } 
+        });
+      }
+    }
+    
+    /** Records the results for snapshot i and reports every snapshot whose predecessors have all been reported.
+      * @param i the index of the searched snapshot
+      * @param results the matches in snapshot i
+      */
+    synchronized void done(int i, List<FindResult> results) {
+      _results.set(i, results);
+      _count += results.size();
+      while (_nextToReport < _results.size() && _results.get(_nextToReport) != null) {
+        final Snapshot snapshot = _snapshots.get(_nextToReport);
+        final List<FindResult> found = _results.get(_nextToReport);
+        _nextToReport++;
+        if (! found.isEmpty() || snapshot.isEdited()) 
+          Utilities.invokeLater(new Runnable() { public void run() { _listener.resultsFound(snapshot, found); } });
+      }
+    }
+  }
+  
+  /** Searches a single snapshot. */
+  private class SearchOne extends RecursiveAction {
+    private static final long serialVersionUID = -6193028471556390812L;
+    private final SearchAll _parent;
+    private final int _index;
+    
+    SearchOne(SearchAll parent, int index) {
+      _parent = parent;
+      _index = index;
+    }
+    
+    protected void compute() { _parent.done(_index, search(_parent._snapshots.get(_index))); }
+  }
+}
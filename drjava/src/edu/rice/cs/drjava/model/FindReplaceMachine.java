@@ -39,8 +39,10 @@ import edu.rice.cs.drjava.config.OptionConstants;
 import java.awt.Component;
 import java.awt.EventQueue;
 
+import java.util.ArrayList;
+import java.util.List;
+
 import javax.swing.text.BadLocationException;
-import javax.swing.text.BadLocationException;;
 
 /** Implementation of logic of the find/replace command over a given document or all open documents.
   * @version $Id$
@@ -395,6 +397,51 @@ public class FindReplaceMachine {
       return _processAllInCurrentDoc(findAction);
   }
   
+  /** Takes snapshots of the text to be searched by a "find all" command, using the same documents and regions as
+    * processAll(findAction, region): all documents starting with _doc if _searchAllDocuments is set, otherwise the
+    * given region of _doc if _searchSelectionOnly is set, otherwise all of _doc.  Test cases are omitted if
+    * _ignoreTestCases is set.  Taking a snapshot does not reload documents that the document cache has evicted.  Only
+    * executes in event thread.
+    * @param region the selection region
+    * @return the snapshots to pass to FindAllEngine.findAll
+    */
+  public List<FindAllEngine.Snapshot> snapshotDocuments(MovingDocumentRegion region) {
+    
+    assert EventQueue.isDispatchThread() || Utilities.TEST_MODE;
+    
+    final ArrayList<FindAllEngine.Snapshot> snapshots = new ArrayList<FindAllEngine.Snapshot>();
+    if (_searchAllDocuments) {
+      _searchSelectionOnly = false;  // force _searchSelectionOnly to be false
+      OpenDefinitionsDocument doc = _doc;
+      final int n = _docIterator.getDocumentCount();
+      for (int i = 0; i < n && doc != null; i++) {
+        if (! _isIgnoredTestCase(doc)) {
+          final String text = doc.getText();
+          snapshots.add(new FindAllEngine.Snapshot(doc, text, 0, text.length()));
+        }
+        doc = _docIterator.getNextDocument(doc, _frame);
+      }
+    }
+    else if (! _isIgnoredTestCase(_doc)) {
+      final String text = _doc.getText();
+      if (_searchSelectionOnly) 
+        snapshots.add(new FindAllEngine.Snapshot(_doc, text, region.getStartOffset(), region.getEndOffset()));
+      else snapshots.add(new FindAllEngine.Snapshot(_doc, text, 0, text.length()));
+    }
+    return snapshots;
+  }
+  
+  /** @param doc a document
+    * @return true if test cases are ignored and doc is a test case
+    */
+  private boolean _isIgnoredTestCase(OpenDefinitionsDocument doc) {
+    if (! _ignoreTestCases) return false;
+    for (String ext: OptionConstants.LANGUAGE_LEVEL_EXTENSIONS) {
+      if (doc.getFileName().endsWith("Test" + ext)) return true;
+    }
+    return false;
+  }
+  
   /** Processes all occurences of _findWord in _doc depending the values of fields _searchSelectionOnly,
     * _selectionRegion and _isForward.  Ignores value of _searchAllDocuments.  Processes selected region (which may be 
     * the whole document) sequentially depending on find direction. This convention ensures that matches created by 
@@ -37,6 +37,9 @@ import edu.rice.cs.util.swing.Utilities;
 
 import javax.swing.text.BadLocationException;
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
 
 /** Tests the FindReplaceMachine.
   * @version $Id$
@@ -110,6 +113,96 @@ public class FindReplaceMachineTest extends DrJavaTestCase {
   
   private void _initFrm(int pos) { _frm.setPosition(pos); }
   
+  /** Returns the found offsets reported by processAll with the current settings of _frm. */
+  private List<Integer> _processAllOffsets() {
+    final List<Integer> offsets = new ArrayList<Integer>();
+    Utilities.invokeAndWait(new Runnable() {
+      public void run() {
+        _frm.processAll(new Runnable1<FindResult>() { 
+          public void run(FindResult fr) { offsets.add(fr.getFoundOffset()); }
+        });
+      }
+    });
+    return offsets;
+  }
+  
+  /** Returns the found offsets reported by a FindAllEngine searching the snapshots taken with the current settings of
+    * _frm, and checks that the results are reported in document order.
+    */
+  private List<Integer> _findAllOffsets() throws InterruptedException {
+    final List<FindAllEngine.Snapshot> snapshots = _frm.snapshotDocuments(null);
+    final FindAllEngine engine = new FindAllEngine(_frm.getFindWord(), _frm.getMatchCase(), _frm.getMatchWholeWord(),
+                                                   _frm.getIgnoreCommentsAndStrings());
+    final List<Integer> offsets = new ArrayList<Integer>();
+    final List<OpenDefinitionsDocument> docs = new ArrayList<OpenDefinitionsDocument>();
+    final int[] count = new int[] { -1 };
+    final CountDownLatch done = new CountDownLatch(1);
+    engine.findAll(snapshots, new FindAllEngine.Listener() {
+      public void resultsFound(FindAllEngine.Snapshot snapshot, List<FindResult> results) {
+        docs.add(snapshot.getDocument());
+        for (FindResult fr: results) offsets.add(fr.getFoundOffset());
+      }
+      public void searchFinished(int c) { 
+        count[0] = c;
+        done.countDown();
+      }
+    });
+    done.await();
+    assertEquals("count", offsets.size(), count[0]);
+    int last = -1;
+    for (OpenDefinitionsDocument doc: docs) {
+      int index = -1;
+      for (int i = 0; i < snapshots.size(); i++) if (snapshots.get(i).getDocument() == doc) index = i;
+      assertTrue("document order", index > last);
+      last = index;
+    }
+    return offsets;
+  }
+  
+  public void testFindAllEngineMatchesProcessAll() throws Exception {
+    _doc.insertString(0, IGNORE_TEXT, null);
+    _frm.setSearchBackwards(false);
+    for (String word: new String[] { "plt", "comment", "@", "string", "is", "This", "\n" }) {
+      _frm.setFindWord(word);
+      for (int options = 0; options < 8; options++) {
+        _frm.setMatchCase((options & 1) != 0);
+        if ((options & 2) != 0) _frm.setMatchWholeWord(); 
+        else _frm.setFindAnyOccurrence();
+        _frm.setIgnoreCommentsAndStrings((options & 4) != 0);
+        _frm.setDocument(_doc);
+        assertEquals("'" + word + "' with options " + options, _processAllOffsets(), _findAllOffsets());
+      }
+    }
+  }
+  
+  public void testFindAllEngineInAllOpenFiles() throws Exception {
+    _doc.insertString(0, EVIL_TEXT, null);
+    _docPrev.insertString(0, EVIL_TEXT_PREV, null);
+    _docNext.insertString(0, EVIL_TEXT_NEXT, null);
+    _frm.setFindWord("evil");
+    _frm.setMatchCase(false);
+    _frm.setSearchBackwards(false);
+    _frm.setSearchAllDocuments(true);
+    
+    List<Integer> expected = _processAllOffsets();
+    assertEquals("matches in three documents", 9, expected.size());
+    _frm.setDocument(_doc);
+    assertEquals("same matches in the same order", expected, _findAllOffsets());
+  }
+  
+  public void testSnapshotTracksEdits() throws BadLocationException {
+    _doc.insertString(0, EVIL_TEXT, null);
+    final FindAllEngine.Snapshot snapshot = _frm.snapshotDocuments(null).get(0);
+    final int listeners = _doc.getDocumentListeners().length;
+    snapshot.startTrackingEdits();
+    assertEquals("listener added", listeners + 1, _doc.getDocumentListeners().length);
+    assertFalse("not edited", snapshot.isEdited());
+    _doc.insertString(0, " ", null);
+    assertTrue("edited", snapshot.isEdited());
+    snapshot.stopTrackingEdits();
+    assertEquals("listener removed", listeners, _doc.getDocumentListeners().length);
+  }
+  
   public void testCreateMachineSuccess() throws BadLocationException {
     _doc.insertString(0, EVIL_TEXT, null);
     _initFrm(4);
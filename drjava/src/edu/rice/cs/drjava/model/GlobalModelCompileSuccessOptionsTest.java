@@ -34,6 +34,8 @@ import javax.swing.text.BadLocationException;
 
 import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.config.OptionConstants;
+import edu.rice.cs.util.UnexpectedException;
+import edu.rice.cs.util.swing.Utilities;
 
 /** * Tests to ensure that compilation succeeds when expected.
  * 
@@ -173,4 +175,64 @@ public final class GlobalModelCompileSuccessOptionsTest extends GlobalModelCompi
       assertTrue(_name() + "FooGenerics Class file doesn't exist after compile", compiled.exists());
     }
   }
+  
+  /** Runs compileAll and waits for it to finish successfully. */
+  private void _compileAll() throws InterruptedException {
+    CompileShouldSucceedListener listener = new CompileShouldSucceedListener();
+    _model.addListener(listener);
+    listener.logCompileStart();
+    Utilities.invokeLater(new Runnable() { 
+      public void run() { 
+        try { _model.getCompilerModel().compileAll(); }
+        catch(IOException e) { throw new UnexpectedException(e); }
+      } 
+    });
+    listener.waitCompileDone();
+    if (_model.getCompilerModel().getNumErrors() > 0) fail("compile failed: " + getCompilerErrorString());
+    listener.checkCompileOccurred();
+    _model.removeListener(listener);
+  }
+  
+  /** Appends a comment to a document, saves it, and advances its modification time so the change is visible even on
+    * file systems with coarse timestamps. */
+  private void _editAndSave(OpenDefinitionsDocument doc, File file) throws BadLocationException {
+    doc.append(" // edited", null);
+    saveFile(doc, new FileSelector(file));
+    assertTrue("advance modification time", file.setLastModified(file.lastModified() + 2000));
+  }
+  
+  /** Tests that incremental compilation only recompiles changed files and the files depending on them.
+    * @throws BadLocationException if attempts to reference an invalid location
+    * @throws IOException if an IO operation fails
+    * @throws InterruptedException if execution is interrupted unexpectedly
+    */
+  public void testIncrementalCompileAll() throws BadLocationException, IOException, InterruptedException {
+    DrJava.getConfig().setSetting(OptionConstants.INCREMENTAL_COMPILATION, Boolean.TRUE);
+    try {
+      OpenDefinitionsDocument foo = setupDocument(FOO_TEXT);
+      OpenDefinitionsDocument foo2 = setupDocument(FOO2_EXTENDS_FOO_TEXT);
+      OpenDefinitionsDocument bar = setupDocument("class DrJavaTestBar {}");
+      final File fooFile = new File(_tempDir, "DrJavaTestFoo.java");
+      final File foo2File = new File(_tempDir, "DrJavaTestFoo2.java");
+      final File barFile = new File(_tempDir, "DrJavaTestBar.java");
+      saveFile(foo, new FileSelector(fooFile));
+      saveFile(foo2, new FileSelector(foo2File));
+      saveFile(bar, new FileSelector(barFile));
+      
+      _compileAll();
+      assertEquals("first build compiles everything", 0, _model.getCompilerModel().getNumSkippedFiles());
+      _compileAll();
+      assertEquals("nothing changed", 3, _model.getCompilerModel().getNumSkippedFiles());
+      
+      _editAndSave(foo2, foo2File);
+      _compileAll();
+      assertEquals("only DrJavaTestFoo2 recompiled", 2, _model.getCompilerModel().getNumSkippedFiles());
+      
+      _editAndSave(foo, fooFile);
+      _compileAll();
+      assertEquals("DrJavaTestFoo and its subclass recompiled", 1, _model.getCompilerModel().getNumSkippedFiles());
+      assertTrue("class file exists", classForJava(foo2File, "DrJavaTestFoo2").exists());
+    }
+    finally { DrJava.getConfig().setSetting(OptionConstants.INCREMENTAL_COMPILATION, Boolean.FALSE); }
+  }
 }
@@ -961,6 +961,9 @@ public abstract class GlobalModelTestCase extends MultiThreadedTestCase {
     public void compileEnded(File workDir, List<? extends File> excludedFiles) { 
       listenerFail("compileEnded fired unexpectedly"); 
     }
+    public void compileErrorsUpdated(List<? extends File> files) { 
+      listenerFail("compileErrorsUpdated fired unexpectedly"); 
+    }
     public void compileAborted(Exception e) { listenerFail("compileAborted fired unexpectedly"); }
     public void activeCompilerChanged() { listenerFail("activeCompilerChanged fired unexpectedly"); }
 
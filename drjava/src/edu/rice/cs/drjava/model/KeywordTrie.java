@@ -0,0 +1,118 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.TreeMap;
+
+/** An immutable trie mapping words to int values, used by the syntax highlighter to classify identifiers without
+  * creating a String for every token.  Each node stores its child labels as a sorted char array, so a lookup is a
+  * binary search per character and allocates nothing.
+  * @version $Id$
+  */
+final class KeywordTrie {
+  
+  /** The value returned by lookup for words that are not in the trie. */
+  public static final int NONE = -1;
+  
+  /** For each node, the sorted labels of its outgoing edges. */
+  private final char[][] _labels;
+  /** For each node, the child node indices parallel to _labels. */
+  private final int[][] _children;
+  /** For each node, the value of the word ending at that node, or NONE. */
+  private final int[] _values;
+  
+  /** Builds a trie containing the given words.
+    * @param words map from each word to the value returned by lookup
+    */
+  public KeywordTrie(Map<String, Integer> words) {
+    ArrayList<TreeMap<Character, Integer>> edges = new ArrayList<TreeMap<Character, Integer>>();
+    ArrayList<Integer> values = new ArrayList<Integer>();
+    edges.add(new TreeMap<Character, Integer>());
+    values.add(NONE);
+    
+    for (Map.Entry<String, Integer> e: words.entrySet()) {
+      String word = e.getKey();
+      int node = 0;
+      for (int i = 0; i < word.length(); i++) {
+        Integer child = edges.get(node).get(word.charAt(i));
+        if (child == null) {
+          child = edges.size();
+          edges.add(new TreeMap<Character, Integer>());
+          values.add(NONE);
+          edges.get(node).put(word.charAt(i), child);
+        }
+        node = child;
+      }
+      values.set(node, e.getValue());
+    }
+    
+    int n = edges.size();
+    _labels = new char[n][];
+    _children = new int[n][];
+    _values = new int[n];
+    for (int node = 0; node < n; node++) {
+      TreeMap<Character, Integer> out = edges.get(node);
+      _labels[node] = new char[out.size()];
+      _children[node] = new int[out.size()];
+      int k = 0;
+      for (Map.Entry<Character, Integer> e: out.entrySet()) {
+        _labels[node][k] = e.getKey();
+        _children[node][k] = e.getValue();
+        k++;
+      }
+      _values[node] = values.get(node);
+    }
+  }
+  
+  /** Looks up the word text[offset, offset + length).
+    * @param text the characters to search
+    * @param offset the index of the first character of the word
+    * @param length the length of the word
+    * @return the value associated with the word, or NONE if it is not in the trie
+    */
+  public int lookup(char[] text, int offset, int length) {
+    int node = 0;
+    for (int i = offset; i < offset + length; i++) {
+      int k = Arrays.binarySearch(_labels[node], text[i]);
+      if (k < 0) return NONE;
+      node = _children[node][k];
+    }
+    return _values[node];
+  }
+  
+  /** Looks up the given word.
+    * @param word the word to find
+    * @return the value associated with the word, or NONE if it is not in the trie
+    */
+  public int lookup(String word) { return lookup(word.toCharArray(), 0, word.length()); }
+}
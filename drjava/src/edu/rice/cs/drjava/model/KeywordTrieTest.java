@@ -0,0 +1,76 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+import java.util.HashMap;
+
+/** Tests for KeywordTrie.
+  * @version $Id$
+  */
+public final class KeywordTrieTest extends DrJavaTestCase {
+  
+  private KeywordTrie _trie;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    HashMap<String, Integer> words = new HashMap<String, Integer>();
+    words.put("int", 1);
+    words.put("interface", 2);
+    words.put("in", 3);
+    words.put("for", 4);
+    _trie = new KeywordTrie(words);
+  }
+  
+  public void testLookup() {
+    assertEquals("int", 1, _trie.lookup("int"));
+    assertEquals("interface", 2, _trie.lookup("interface"));
+    assertEquals("in", 3, _trie.lookup("in"));
+    assertEquals("for", 4, _trie.lookup("for"));
+  }
+  
+  public void testMissing() {
+    assertEquals("prefix", KeywordTrie.NONE, _trie.lookup("i"));
+    assertEquals("inner node", KeywordTrie.NONE, _trie.lookup("inter"));
+    assertEquals("extension", KeywordTrie.NONE, _trie.lookup("ints"));
+    assertEquals("empty", KeywordTrie.NONE, _trie.lookup(""));
+    assertEquals("case", KeywordTrie.NONE, _trie.lookup("Int"));
+  }
+  
+  public void testLookupInArray() {
+    char[] text = "for (int i in interfaces)".toCharArray();
+    assertEquals("for", 4, _trie.lookup(text, 0, 3));
+    assertEquals("int", 1, _trie.lookup(text, 5, 3));
+    assertEquals("in", 3, _trie.lookup(text, 11, 2));
+    assertEquals("interfaces", KeywordTrie.NONE, _trie.lookup(text, 14, 10));
+    assertEquals("interface", 2, _trie.lookup(text, 14, 9));
+  }
+}
@@ -96,6 +96,7 @@ public class TestDocGetter extends DummyGlobalModel {
 
     /** Okay, I lied.  We need this one, too. */
     public File getFile() throws FileMovedException  { return _file; }
+    public File getRawFile() { return _file; }
     
     public void setFile(File f) { _file = f; }
   }
@@ -76,6 +76,11 @@ public interface DCacheAdapter {
    */
   public void addDocumentListener(DocumentListener l);
   
+  /** Removes a DocumentListener from the reconstructor. 
+   * @param l the listener to be removed
+   */
+  public void removeDocumentListener(DocumentListener l);
+  
   /** Method for notifying the DCacheAdapter that this document has been saved to a file. */
   public void documentSaved();
   
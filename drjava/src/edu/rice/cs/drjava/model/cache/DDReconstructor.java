@@ -46,17 +46,40 @@ public interface DDReconstructor {
    */
   public DefinitionsDocument make() throws IOException, BadLocationException, FileMovedException;
   
+  /** Rebuilds the document from an image taken by the DocumentCache when it was evicted.
+   * @param image the compressed text and reduced model of the document
+   * @return a new DefinitionsDocument 
+   * @throws BadLocationException if attempts to reference an invalid location
+   * @throws IOException if an IO operation fails
+   * @throws FileMovedException if the file has moved
+   */
+  public DefinitionsDocument make(DocumentImage image) throws IOException, BadLocationException, FileMovedException;
+  
   /** Saves information (like cursor location, highlight, etc.) from the DefinitionsDocument before the cache deletes it
-    * so that those pieces of info can be restored when reconstructing the DefinitionsDocument again.
+    * so that those pieces of info can be restored when reconstructing the DefinitionsDocument again.  The text of the
+    * document is not retained; the cache keeps a compressed image of it (see imageDiscarded).
     * @param doc the DefinitionsDocument whose data needs saving
     */
   public void saveDocInfo(DefinitionsDocument doc);
   
+  /** Called when the cache discards the image of the evicted document to stay within its memory budget.  If the
+    * document cannot be rebuilt from its file (because it was modified when it was evicted or its file has changed 
+    * since it was last read or written), the reconstructor keeps the text of the image and rebuilds the document from
+    * it; otherwise the document is rebuilt from its file.
+    * @param image the image being discarded
+    */
+  public void imageDiscarded(DocumentImage image);
+  
   /** Sets a document listener to be added to the definitions document when it is created
    * @param dl the listener to add to the document
    */
   public void addDocumentListener(DocumentListener dl);
   
+  /** Removes a document listener that was to be added to the definitions document when it is created
+   * @param dl the listener to remove
+   */
+  public void removeDocumentListener(DocumentListener dl);
+  
   /** @return the string text for document that has been kicked out; null otherwise. */
   public String getText();
 }
@@ -63,6 +63,14 @@ import edu.rice.cs.plt.iter.IterUtil;
   * UNMANAGED document remains in memory until it is saved or closed without being saved.  If such a document is
   * saved, it is inserted again in the resident queue.
   * <p>
+  * When a document is evicted from the resident queue, the cache keeps a {@link DocumentImage} of it: its text, 
+  * deflated, together with a snapshot of its reduced model.  Rebuilding the document from its image neither reads its 
+  * file nor re-lexes its text.  The images form a second, compressed tier of the cache.  Both tiers share a memory 
+  * budget: resident documents (whose size is estimated from their length) are evicted when they alone exceed the 
+  * budget or when the resident queue exceeds its maximum size, and the oldest images are discarded whenever the two
+  * tiers together exceed the budget.  A document whose image has been discarded is rebuilt from its file, unless it 
+  * was modified when it was evicted or its file has changed; the reconstructor then keeps its text uncompressed.
+  * <p>
   * Since the cache and document managers can both be concurrently accessed from multiple threads, the methods in the
   * DocumentCache and DocManager classes are synchronized.  Some operations require locks on both the cache and a
   * document manager, but the code is written so that none of them require these locks to be held simultaneously.
@@ -75,18 +83,51 @@ public class DocumentCache {
   
   private static final int INIT_CACHE_SIZE = 32;
   
+  /** Default memory budget shared by resident documents and compressed images. */
+  private static final long INIT_MEMORY_BUDGET = 64L << 20;
+  
+  /** Estimated heap bytes per character of a resident DefinitionsDocument: the text itself, its element structure, 
+    * its reduced model, and its highlighting caches. */
+  static final int RESIDENT_BYTES_PER_CHAR = 8;
+  
   /** invariant {@code _residentQueue.size() <= CACHE_SIZE} */
   private volatile int CACHE_SIZE;
   
+  /** invariant {@code _residentBytes + _compressedBytes <= _memoryBudget} except when the most recently used resident 
+    * document alone exceeds the budget */
+  private volatile long _memoryBudget;
+  
   /** Data structure representing the queue of resident unmodified documents. */
   private final LinkedHashSet<DocManager> _residentQueue;
   
+  /** The managers of evicted documents holding a compressed image, least recently evicted first. */
+  private final LinkedHashSet<DocManager> _compressedQueue = new LinkedHashSet<DocManager>();
+  
+  /** Estimated bytes of the documents in _residentQueue. */
+  private volatile long _residentBytes = 0;
+  
+  /** Estimated bytes of the images held by the managers in _compressedQueue. */
+  private volatile long _compressedBytes = 0;
+  
+  /** Number of documents built from their reconstructor's text (normally read from disk). */
+  private volatile int _numRebuilds = 0;
+  
+  /** Number of documents rebuilt from a compressed image. */
+  private volatile int _numImageRebuilds = 0;
+  
   private final Object _cacheLock = new Object();
   
   /* General constructor.  Not currently used except when called by default constructor. */
-  public DocumentCache(int size) {
+  public DocumentCache(int size) { this(size, INIT_MEMORY_BUDGET); }
+  
+  /** Creates a cache.
+    * @param size the maximum number of resident unmodified documents
+    * @param memoryBudget the number of bytes that resident unmodified documents and compressed images may occupy
+    */
+  public DocumentCache(int size, long memoryBudget) {
 //    Utilities.showDebug("DocumentCache created with size = " + size);
     CACHE_SIZE = size;
+    _memoryBudget = memoryBudget;
     _residentQueue = new LinkedHashSet<DocManager>();
   }
   
@@ -116,17 +157,55 @@ public class DocumentCache {
     if (size <= 0) throw new IllegalArgumentException("Cannot set the cache size to zero or less.");
     synchronized(_cacheLock) {    // lock the cache so entries can be removed if necessary
       CACHE_SIZE = size;
-      int diff = _residentQueue.size() - CACHE_SIZE;
-      if (diff > 0) {
-        Iterable<DocManager> toRemove = IterUtil.snapshot(IterUtil.truncate(_residentQueue, diff));
-        for (DocManager dm : toRemove) { _residentQueue.remove(dm); dm.kickOut(); }
-      }
+      _enforceLimits();
+    }
+  }
+  
+  /** Changes the number of bytes that resident unmodified documents and compressed images may occupy.
+    * @param budget the new memory budget in bytes
+    */
+  public void setMemoryBudget(long budget) {
+    if (budget < 0) throw new IllegalArgumentException("Cannot set the memory budget to less than zero.");
+    synchronized(_cacheLock) {
+      _memoryBudget = budget;
+      _enforceLimits();
     }
   }
   
   public int getCacheSize() { return CACHE_SIZE; }
+  public long getMemoryBudget() { return _memoryBudget; }
+  
+  /** @return the number of unmodified documents resident in memory */
   public int getNumInCache() { return _residentQueue.size(); }
   
+  /** @return the number of evicted documents held as compressed images */
+  public int getNumCompressed() { synchronized(_cacheLock) { return _compressedQueue.size(); } }
+  
+  /** @return the estimated number of bytes occupied by the resident unmodified documents */
+  public long getResidentBytes() { return _residentBytes; }
+  
+  /** @return the estimated number of bytes occupied by compressed images */
+  public long getCompressedBytes() { return _compressedBytes; }
+  
+  /** @return the number of documents built from their text (normally read from disk) rather than from an image */
+  public int getNumRebuilds() { return _numRebuilds; }
+  
+  /** @return the number of documents rebuilt from a compressed image */
+  public int getNumImageRebuilds() { return _numImageRebuilds; }
+  
+  /** Evicts the least recently used resident documents while there are more than CACHE_SIZE of them or they exceed
+    * the memory budget (but always keeps the most recently used one), then discards the oldest compressed images while
+    * both tiers together exceed the budget.  Assumes _cacheLock is already held. 
+    */
+  private void _enforceLimits() {
+    while (_residentQueue.size() > CACHE_SIZE || (_residentQueue.size() > 1 && _residentBytes > _memoryBudget)) {
+      IterUtil.first(_residentQueue).remove();
+    }
+    while (! _compressedQueue.isEmpty() && _residentBytes + _compressedBytes > _memoryBudget) {
+      IterUtil.first(_compressedQueue).dropImage();
+    }
+  }
+  
   public String toString() { return _residentQueue.toString(); }
   
   
@@ -155,6 +234,12 @@ public class DocumentCache {
     private volatile int _stat; // I know, this is not very OO
     private volatile DefinitionsDocument _doc;
     
+    /** The compressed image of the document if it has been evicted and the image has not been discarded; else null. */
+    private volatile DocumentImage _image = null;
+    
+    /** The estimated size of _doc charged to _residentBytes while this manager is in the resident queue. */
+    private volatile long _residentSize = 0;
+    
     /** Instantiates a manager for the documents that are produced by the given document reconstructor.
      * @param rec The reconstructor used to create the document
      * @param isUntitled true if the document is untitled; false otherwise
@@ -171,12 +256,24 @@ public class DocumentCache {
     /** Adds DocumentListener to the reconstructor. */
     public void addDocumentListener(DocumentListener l) { _rec.addDocumentListener(l); }
     
+    /** Removes DocumentListener from the reconstructor. */
+    public void removeDocumentListener(DocumentListener l) { _rec.removeDocumentListener(l); }
+    
     /** Makes this document; assumes that cacheLock is already held. 
      * @return the newly-created document
      */
     private DefinitionsDocument makeDocument() {
       try { // _doc is not in memory
-        _doc = _rec.make();
+        final DocumentImage image = _image;
+        if (image != null) {
+          _doc = _rec.make(image);
+          discardImage();
+          _numImageRebuilds++;
+        }
+        else {
+          _doc = _rec.make();
+          _numRebuilds++;
+        }
         assert _doc != null;
         // update documents if necessary
         if (_keywords != null) {  // copy cached keywords to new copy of doc
@@ -188,6 +285,10 @@ public class DocumentCache {
 //        Utilities.showDebug("Document " + _doc + " reconstructed; _stat = " + _stat);
 //      System.err.println("Making document for " + this);
       if (_stat == NOT_IN_QUEUE) add();       // add this to queue 
+      else if (_stat == IN_QUEUE) {
+        _updateResidentSize();
+        _enforceLimits();
+      }
       return _doc;
     }
     
@@ -213,7 +314,10 @@ public class DocumentCache {
       * to be loaded. */
     public int getLength() {
       final DefinitionsDocument doc = _doc;  // create a snapshot of _doc
-      if (doc == null /* || ! doc.isModifiedSinceSave()*/) return _rec.getText().length();
+      if (doc == null /* || ! doc.isModifiedSinceSave()*/) {
+        final DocumentImage image = _image;
+        return (image != null) ? image.getLength() : _rec.getText().length();
+      }
       return doc.getLength();
     }
     
@@ -221,7 +325,7 @@ public class DocumentCache {
       * If document is not locked, may return stale data. */
     public String getText() {
       final DefinitionsDocument doc = _doc;  // create a snapshot of _doc
-      if (doc == null /* || ! doc.isModifiedSinceSave() */) return _rec.getText();  
+      if (doc == null /* || ! doc.isModifiedSinceSave() */) return _getEvictedText();
 //      if (doc == null) return _rec.getText();
       return doc.getText();
     }
@@ -230,13 +334,19 @@ public class DocumentCache {
     public String getText(int offset, int len) throws BadLocationException { 
       final DefinitionsDocument doc = _doc; // create a snapshot of _doc
       if (doc == null) {
-        try { return _rec.getText().substring(offset, offset + len); }
+        try { return _getEvictedText().substring(offset, offset + len); }
         catch(IndexOutOfBoundsException e) { throw new BadLocationException(e.getMessage(), offset); }  
       }
 //      _log.log("getText(" + offset + ", " + len + ") called on '" + text + "' which has " + text.length() + " chars");
       return doc.getText(offset, len); 
     }
     
+    /** @return the text of the evicted document, from its image if it has one */
+    private String _getEvictedText() {
+      final DocumentImage image = _image;
+      return (image != null) ? image.getText() : _rec.getText();
+    }
+    
     /** Checks whether the document is resident (in the cache or modified). 
       * @return if the document is resident.
       */
@@ -246,14 +356,14 @@ public class DocumentCache {
     public void close() {
 //      Utilities.showDebug("close() called on " + this);
       synchronized(_cacheLock) {
-        _residentQueue.remove(this);
+        _removeFromQueue();
         closingKickOut();
       }
     }
     
     public void documentModified() {
       synchronized(_cacheLock) { 
-        _residentQueue.remove(this); // remove modified document from queue if present
+        _removeFromQueue(); // remove modified document from queue if present
         _stat = UNMANAGED;
       }
     }
@@ -283,15 +393,57 @@ public class DocumentCache {
         _residentQueue.add(this);
         _stat = IN_QUEUE;
       }
-      if (_residentQueue.size() > CACHE_SIZE) IterUtil.first(_residentQueue).remove();
+      _updateResidentSize();
+      _enforceLimits();
+    }
+    
+    /** Recomputes the estimated size of this document charged to _residentBytes.  Assumes _cacheLock is already held.
+      * The document may be added to the queue while it is being made (when its reconstructor resets its modification
+      * state), before _doc is set, so makeDocument calls this method again.
+      */
+    private void _updateResidentSize() {
+      if (! _residentQueue.contains(this)) return;
+      final DefinitionsDocument doc = _doc;
+      _residentBytes -= _residentSize;
+      _residentSize = (doc == null) ? 0 : (long) RESIDENT_BYTES_PER_CHAR * doc.getLength();
+      _residentBytes += _residentSize;
     }
     
     /** Removes this DocManager from the queue and sets status to NOT_IN_QUEUE.  Assumes _cacheLock is already held. */
     private void remove() { 
-      _residentQueue.remove(this);
+      _removeFromQueue();
       kickOut();
     }
     
+    /** Removes this DocManager from the resident queue if present.  Assumes _cacheLock is already held. */
+    private void _removeFromQueue() {
+      if (_residentQueue.remove(this)) {
+        _residentBytes -= _residentSize;
+        _residentSize = 0;
+      }
+    }
+    
+    /** Discards the compressed image of this document, if any.  Assumes _cacheLock is already held. */
+    void discardImage() {
+      final DocumentImage image = _image;
+      if (image != null) {
+        _compressedQueue.remove(this);
+        _compressedBytes -= image.sizeInBytes();
+        _image = null;
+      }
+    }
+    
+    /** Discards the compressed image of this document to stay within the memory budget, letting the reconstructor 
+      * keep its text if the document cannot be rebuilt from its file.  Assumes _cacheLock is already held.
+      */
+    void dropImage() {
+      final DocumentImage image = _image;
+      if (image != null) {
+        _rec.imageDiscarded(image);
+        discardImage();
+      }
+    }
+    
     /* All of the following private methods presume that _cacheLock is held */
     private boolean isUnmanagedOrUntitled() { return (_stat & 0x1) != 0; }  // tests if _stat is odd
     
@@ -314,7 +466,14 @@ public class DocumentCache {
         /* virtualize this document */
 //        Utilities.showDebug("Virtualizing " + _doc);
         _rec.saveDocInfo(_doc);
+        if (_doc != null) {
+          discardImage();
+          _image = DocumentImage.capture(_doc);
+          _compressedQueue.add(this);
+          _compressedBytes += _image.sizeInBytes();
+        }
       }
+      else discardImage();
       if (_doc != null) {
         _doc.close(); 
         _doc = null;
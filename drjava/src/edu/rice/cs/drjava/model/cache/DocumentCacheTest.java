@@ -529,6 +529,118 @@ public class DocumentCacheTest extends DrJavaTestCase {
   }
   private int _memLeakCounter;
   
+  private static final String SOURCE = 
+    "/* Block comment with a brace { */\nclass A {\n  String s = \"} // not a comment\";\n  char c = '\\'';\n" +
+    "  int f() { return (1 + 2) * 3; }  // trailing }\n}\n";
+  
+  /** Creates a file containing a variation of SOURCE and opens it, loading it into the cache. */
+  private OpenDefinitionsDocument _openSource(int i) throws IOException {
+    File f = tempFile(i);
+    IOUtil.writeStringToFile(f, SOURCE + "// file " + i + "\n");
+    OpenDefinitionsDocument doc = openFile(f);
+    doc.getCurrentLine();  // forces document to be read into memory
+    return doc;
+  }
+  
+  /** Opens n files created by _openSource, loading each into the cache in order. */
+  private OpenDefinitionsDocument[] _openSources(int n) throws IOException {
+    OpenDefinitionsDocument[] docs = new OpenDefinitionsDocument[n];
+    for (int i = 0; i < n; i++) docs[i] = _openSource(i);
+    return docs;
+  }
+  
+  public void testEvictedDocumentsAreCompressed() throws BadLocationException, IOException {
+    OpenDefinitionsDocument[] docs = _openSources(4);
+    DCacheAdapter adapter0 = _adapterTable.get(docs[0]);
+    String text0 = docs[0].getText();
+    String model0 = adapter0.getDocument().getReduced().simpleString();
+    assertEquals("No documents compressed yet", 0, _cache.getNumCompressed());
+    assertEquals("Four documents built from disk", 4, _cache.getNumRebuilds());
+    
+    OpenDefinitionsDocument doc4 = _openSource(4);
+    assertTrue("doc4 is resident", _adapterTable.get(doc4).isReady());
+    assertFalse("doc0 was evicted", adapter0.isReady());
+    assertEquals("There should be 4 documents in the cache", 4, _cache.getNumInCache());
+    assertEquals("doc0 is held compressed", 1, _cache.getNumCompressed());
+    assertTrue("compressed bytes are counted", _cache.getCompressedBytes() > 0);
+    
+    // The image, not the file, supplies the text of an evicted document
+    assertTrue("delete file of doc0", docs[0].getFile().delete());
+    assertEquals("evicted text", text0, docs[0].getText());
+    assertEquals("evicted length", text0.length(), docs[0].getLength());
+    assertEquals("evicted substring", text0.substring(3, 20), adapter0.getText(3, 17));
+    
+    docs[0].getCurrentLine();  // rebuilds doc0 from its image, evicting doc1
+    assertTrue("doc0 is resident again", adapter0.isReady());
+    assertEquals("doc0 rebuilt from its image", 1, _cache.getNumImageRebuilds());
+    assertEquals("no further disk reads", 5, _cache.getNumRebuilds());
+    assertEquals("doc1 replaced doc0 in the compressed tier", 1, _cache.getNumCompressed());
+    assertEquals("rebuilt text", text0, docs[0].getText());
+    assertFalse("rebuilt document is unmodified", docs[0].isModifiedSinceSave());
+    
+    DefinitionsDocument dd0 = adapter0.getDocument();
+    assertEquals("restored reduced model", model0, dd0.getReduced().simpleString());
+    
+    // The restored reduced model must track subsequent edits like a freshly lexed one
+    docs[0].insertString(text0.indexOf("int f"), "/* ", null);
+    DefinitionsDocument fresh = new DefinitionsDocument(new GlobalEventNotifier());
+    fresh.insertString(0, docs[0].getText(), null);
+    fresh.setCurrentLocation(0);
+    dd0.setCurrentLocation(0);
+    assertEquals("edited reduced model", fresh.getReduced().simpleString(), dd0.getReduced().simpleString());
+  }
+  
+  public void testMemoryBudget() throws BadLocationException, IOException {
+    OpenDefinitionsDocument[] docs = _openSources(6);
+    assertEquals("two documents compressed", 2, _cache.getNumCompressed());
+    assertEquals("resident bytes", 4L * DocumentCache.RESIDENT_BYTES_PER_CHAR * docs[5].getLength(), 
+                 _cache.getResidentBytes());
+    
+    // A budget that fits the resident documents but no images discards the images
+    _cache.setMemoryBudget(_cache.getResidentBytes());
+    assertEquals("images discarded", 0, _cache.getNumCompressed());
+    assertEquals("no compressed bytes", 0L, _cache.getCompressedBytes());
+    assertEquals("all four documents still resident", 4, _cache.getNumInCache());
+    
+    // A document whose image was discarded is read from disk again
+    docs[0].getCurrentLine();
+    assertEquals("doc0 rebuilt from disk", 7, _cache.getNumRebuilds());
+    assertEquals("no image rebuilds", 0, _cache.getNumImageRebuilds());
+    assertTrue("doc0 text", docs[0].getText().endsWith("// file 0\n"));
+    
+    // A budget smaller than one document keeps only the most recently used document resident
+    _cache.setMemoryBudget(1);
+    assertEquals("only one document resident", 1, _cache.getNumInCache());
+    assertTrue("doc0 stays resident", _adapterTable.get(docs[0]).isReady());
+    assertEquals("no images fit", 0, _cache.getNumCompressed());
+  }
+  
+  public void testDiscardedImageOfChangedFile() throws BadLocationException, IOException {
+    OpenDefinitionsDocument[] docs = _openSources(6);
+    assertEquals("two documents compressed", 2, _cache.getNumCompressed());
+    String text0 = docs[0].getText();
+    
+    // The file of evicted doc0 changes behind DrJava's back
+    File f0 = docs[0].getFile();
+    IOUtil.writeStringToFile(f0, "class Changed { }\n");
+    assertTrue("set modification time", f0.setLastModified(docs[0].getTimestamp() + 10000));
+    
+    _cache.setMemoryBudget(_cache.getResidentBytes());
+    assertEquals("images discarded", 0, _cache.getNumCompressed());
+    assertEquals("evicted text kept", text0, docs[0].getText());
+    
+    // doc0 is rebuilt from the kept text, so the change is left to the modified-on-disk check
+    docs[0].getCurrentLine();
+    assertEquals("rebuilt text", text0, docs[0].getText());
+    assertEquals("no image rebuilds", 0, _cache.getNumImageRebuilds());
+    assertTrue("change on disk is detected", docs[0].modifiedOnDisk());
+    
+    // doc1 is unchanged on disk, so it is read from its file
+    docs[1].getCurrentLine();
+    assertTrue("doc1 text", docs[1].getText().endsWith("// file 1\n"));
+    assertFalse("doc1 unchanged on disk", docs[1].modifiedOnDisk());
+  }
+  
   /** This is just so that we can have an instance of a DefaultGlobalModel rather than a single display model. */
   private static class TestGlobalModel extends DefaultGlobalModel {
     public void aboutToSaveFromSaveAll(OpenDefinitionsDocument doc) { /* dummy method */ }
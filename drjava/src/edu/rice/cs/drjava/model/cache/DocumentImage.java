@@ -0,0 +1,128 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.cache;
+
+import java.io.UnsupportedEncodingException;
+import java.util.Arrays;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+import edu.rice.cs.drjava.model.definitions.DefinitionsDocument;
+import edu.rice.cs.drjava.model.definitions.reducedmodel.ReducedModelSnapshot;
+import edu.rice.cs.util.UnexpectedException;
+
+/** The compressed image of an unmodified DefinitionsDocument that has been evicted from the resident queue of the
+  * DocumentCache.  It holds the deflated text of the document together with a snapshot of its reduced model, so the 
+  * document can be rebuilt without reading its file or re-lexing its text.  Instances are immutable.
+  * @version $Id$
+  */
+public final class DocumentImage {
+  
+  private static final String ENCODING = "UTF-8";
+  
+  /** Fixed per-image overhead (object headers and array headers) used in memory estimates. */
+  private static final int OVERHEAD_BYTES = 64;
+  
+  private final byte[] _deflated;
+  private final int _byteLength;
+  private final int _length;
+  private final ReducedModelSnapshot _reducedModel;
+  
+  private DocumentImage(byte[] deflated, int byteLength, int length, ReducedModelSnapshot reducedModel) {
+    _deflated = deflated;
+    _byteLength = byteLength;
+    _length = length;
+    _reducedModel = reducedModel;
+  }
+  
+  /** Compresses the text and reduced model of a document.
+    * @param doc the document to capture
+    * @return the image of doc
+    */
+  public static DocumentImage capture(DefinitionsDocument doc) {
+    return compress(doc.getText(), doc.snapshotReducedModel());
+  }
+  
+  /** Compresses the given text.
+    * @param text the text of the document
+    * @param reducedModel the reduced model of text, or null if it is not available
+    * @return the image of text
+    */
+  public static DocumentImage compress(String text, ReducedModelSnapshot reducedModel) {
+    try {
+      final byte[] bytes = text.getBytes(ENCODING);
+      final Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+      try {
+        deflater.setInput(bytes);
+        deflater.finish();
+        byte[] buffer = new byte[Math.max(64, bytes.length / 3)];
+        int size = 0;
+        while (! deflater.finished()) {
+          if (size == buffer.length) buffer = Arrays.copyOf(buffer, 2 * buffer.length);
+          size += deflater.deflate(buffer, size, buffer.length - size);
+        }
+        return new DocumentImage(Arrays.copyOf(buffer, size), bytes.length, text.length(), reducedModel);
+      }
+      finally { deflater.end(); }
+    }
+    catch(UnsupportedEncodingException e) { throw new UnexpectedException(e); }
+  }
+  
+  /** @return the decompressed text of the document */
+  public String getText() {
+    final Inflater inflater = new Inflater();
+    try {
+      inflater.setInput(_deflated);
+      final byte[] bytes = new byte[_byteLength];
+      int size = 0;
+      while (size < _byteLength) {
+        final int n = inflater.inflate(bytes, size, _byteLength - size);
+        if (n == 0 && (inflater.finished() || inflater.needsInput())) throw new DataFormatException("Truncated image");
+        size += n;
+      }
+      return new String(bytes, ENCODING);
+    }
+    catch(DataFormatException e) { throw new UnexpectedException(e); }
+    catch(UnsupportedEncodingException e) { throw new UnexpectedException(e); }
+    finally { inflater.end(); }
+  }
+  
+  /** @return the length of the text of the document in characters; does not decompress the text */
+  public int getLength() { return _length; }
+  
+  /** @return the snapshot of the reduced model of the document, or null if none was captured */
+  public ReducedModelSnapshot getReducedModel() { return _reducedModel; }
+  
+  /** @return an estimate of the number of bytes of heap occupied by this image */
+  public long sizeInBytes() {
+    return OVERHEAD_BYTES + _deflated.length + (_reducedModel == null ? 0 : _reducedModel.sizeInBytes());
+  }
+}
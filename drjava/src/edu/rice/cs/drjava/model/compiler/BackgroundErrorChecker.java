@@ -0,0 +1,228 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.awt.event.ActionEvent;
+import java.awt.event.ActionListener;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+import javax.swing.Timer;
+import javax.swing.event.DocumentEvent;
+
+import edu.rice.cs.drjava.DrJava;
+import edu.rice.cs.drjava.config.OptionConstants;
+import edu.rice.cs.drjava.config.OptionEvent;
+import edu.rice.cs.drjava.config.OptionListener;
+import edu.rice.cs.drjava.model.DJError;
+import edu.rice.cs.drjava.model.DrJavaFileUtils;
+import edu.rice.cs.drjava.model.DummyGlobalModelListener;
+import edu.rice.cs.drjava.model.GlobalModel;
+import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
+import edu.rice.cs.drjava.model.definitions.DocumentUIListener;
+import edu.rice.cs.util.FileOps;
+import edu.rice.cs.util.Log;
+import edu.rice.cs.util.swing.Utilities;
+
+/** Checks edited documents for errors while the user types.  Shortly after the last edit, the edited documents and the
+  * open documents depending on them are compiled in memory on a low-priority thread, and their errors replace the ones
+  * in the compiler error model.  The result of a check is dropped if the documents are edited again or a regular
+  * compilation starts in the meantime.  Only active if {@link OptionConstants#BACKGROUND_COMPILATION} is set and the
+  * active compiler is an {@link InMemoryCompiler}.
+  * @version $Id$
+  */
+class BackgroundErrorChecker {
+  
+  /** for logging debug info */
+  private static final Log _log = new Log("BackgroundErrorChecker.txt", false);
+  
+  /** Milliseconds without edits before a check starts. */
+  static final int DELAY = 500;
+  
+  private final DefaultCompilerModel _compilerModel;
+  private final GlobalModel _model;
+  
+  /** Incremented by every edit and cancellation; a check only reports its errors if this did not change. */
+  private final AtomicInteger _generation = new AtomicInteger();
+  
+  /** The documents edited since their last completed check.  Only accessed in the event thread. */
+  private final LinkedHashSet<OpenDefinitionsDocument> _edited = new LinkedHashSet<OpenDefinitionsDocument>();
+  
+  /** Starts a check once no edits have happened for DELAY milliseconds. */
+  private final Timer _timer;
+  
+  /** Runs the checks, one at a time. */
+  private final ExecutorService _executor = Executors.newSingleThreadExecutor(new ThreadFactory() {
+    public Thread newThread(Runnable r) {
+      Thread t = new Thread(r, "Background error checker");
+      t.setDaemon(true);
+      t.setPriority(Thread.MIN_PRIORITY);
+      return t;
+    }
+  });
+  
+  /** The last check submitted to _executor.  Only accessed in the event thread. */
+  private Future<?> _running = null;
+  
+  private volatile boolean _enabled;
+  
+  BackgroundErrorChecker(DefaultCompilerModel compilerModel, GlobalModel model) {
+    _compilerModel = compilerModel;
+    _model = model;
+    _timer = new Timer(DELAY, new ActionListener() {
+      public void actionPerformed(ActionEvent e) { _startCheck(); }
+    });
+    _timer.setRepeats(false);
+    
+    _enabled = DrJava.getConfig().getSetting(OptionConstants.BACKGROUND_COMPILATION).booleanValue();
+    DrJava.getConfig().addOptionListener(OptionConstants.BACKGROUND_COMPILATION, new OptionListener<Boolean>() {
+      public void optionChanged(OptionEvent<Boolean> oe) {
+        _enabled = oe.value.booleanValue();
+        if (! _enabled) cancel();
+      }
+    });
+    
+    _model.addListener(new DummyGlobalModelListener() {
+      public void newFileCreated(OpenDefinitionsDocument doc) { doc.addDocumentListener(new EditListener(doc)); }
+      public void fileOpened(OpenDefinitionsDocument doc) { doc.addDocumentListener(new EditListener(doc)); }
+      public void fileClosed(final OpenDefinitionsDocument doc) {
+        Utilities.invokeLater(new Runnable() { public void run() { _edited.remove(doc); } });
+      }
+    });
+  }
+  
+  /** Drops the result of a running check and the pending start of a new one.  May be called from any thread. */
+  void cancel() {
+    _generation.incrementAndGet();
+    _timer.stop();
+  }
+  
+  /** Records an edit of doc and restarts the timer. */
+  private void _documentEdited(final OpenDefinitionsDocument doc) {
+    if (! _enabled) return;
+    _generation.incrementAndGet();
+    Utilities.invokeLater(new Runnable() {
+      public void run() {
+        _edited.add(doc);
+        _timer.restart();
+      }
+    });
+  }
+  
+  /** Snapshots the edited documents and submits a check for them.  Runs in the event thread. */
+  private void _startCheck() {
+    if (! _enabled || _edited.isEmpty()) return;
+    if (! (_compilerModel.getActiveCompiler() instanceof InMemoryCompiler)) return;
+    
+    final ArrayList<SourceSnapshot> sources = new ArrayList<SourceSnapshot>();
+    final ArrayList<File> files = new ArrayList<File>();
+    for (OpenDefinitionsDocument doc: _edited) _addSnapshot(doc, sources, files);
+    if (sources.isEmpty()) {
+      _edited.clear();
+      return;
+    }
+    
+    final int generation = _generation.get();
+    if (_running != null) _running.cancel(false);
+    _running = _executor.submit(new Runnable() {
+      public void run() { _check(generation, sources, files); }
+    });
+  }
+  
+  /** Adds a snapshot of doc to sources and its file to files, unless doc is not a Java source file or untitled. */
+  private static void _addSnapshot(OpenDefinitionsDocument doc, List<SourceSnapshot> sources, List<File> files) {
+    File f = doc.getRawFile();
+    if (! doc.isSourceFile() || f == null || f == FileOps.NULL_FILE || DrJavaFileUtils.isLLFile(f)) return;
+    sources.add(SourceSnapshot.make(doc));
+    files.add(f);
+  }
+  
+  /** Compiles the snapshots together with the open documents depending on them and, unless the check has been
+    * superseded, reports the errors to the compiler model.  Runs in the executor thread.
+    */
+  private void _check(final int generation, final List<SourceSnapshot> sources, final List<File> files) {
+    try {
+      final Set<File> dependents = _compilerModel.getDependents(files);
+      if (! dependents.isEmpty()) {
+        Utilities.invokeAndWait(new Runnable() {
+          public void run() {
+            for (OpenDefinitionsDocument doc: _model.getOpenDefinitionsDocuments()) {
+              if (dependents.contains(doc.getRawFile())) _addSnapshot(doc, sources, files);
+            }
+          }
+        });
+      }
+      if (_generation.get() != generation) return;
+      
+      // Only keep errors in the checked files, since only their errors are replaced in the error model
+      final HashSet<File> checked = new HashSet<File>();
+      for (File f: files) checked.add(_canonicalFile(f));
+      final ArrayList<DJError> errors = new ArrayList<DJError>();
+      for (DJError e: _compilerModel.compileSnapshots(sources, new InMemoryClassStore())) {
+        if (e.file() != null && checked.contains(_canonicalFile(e.file()))) errors.add(e);
+      }
+      _log.log("Checked " + files + " and found " + errors.size() + " errors");
+      
+      Utilities.invokeLater(new Runnable() {
+        public void run() {
+          if (_generation.get() != generation || ! _enabled) return;
+          _edited.clear();
+          _compilerModel.updateErrors(files, errors);
+        }
+      });
+    }
+    catch (RuntimeException e) { _log.log("Background check of " + files + " failed", e); }
+  }
+  
+  /** @return the canonical version of f, or f itself if it cannot be canonicalized */
+  private static File _canonicalFile(File f) {
+    try { return f.getCanonicalFile(); }
+    catch (IOException ioe) { return f; }
+  }
+  
+  /** Reports edits of a document.  Survives the document being evicted from the document cache. */
+  private class EditListener implements DocumentUIListener {
+    private final OpenDefinitionsDocument _doc;
+    EditListener(OpenDefinitionsDocument doc) { _doc = doc; }
+    public void insertUpdate(DocumentEvent e) { _documentEdited(_doc); }
+    public void removeUpdate(DocumentEvent e) { _documentEdited(_doc); }
+    /* Attribute changes, such as syntax coloring, are not edits. */
+    public void changedUpdate(DocumentEvent e) { }
+  }
+}
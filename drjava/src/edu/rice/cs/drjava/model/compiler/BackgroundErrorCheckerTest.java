@@ -0,0 +1,241 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import javax.swing.filechooser.FileFilter;
+import javax.swing.text.BadLocationException;
+import javax.tools.JavaFileObject;
+
+import edu.rice.cs.drjava.DrJava;
+import edu.rice.cs.drjava.config.OptionConstants;
+import edu.rice.cs.drjava.model.DJError;
+import edu.rice.cs.drjava.model.DrJavaFileUtils;
+import edu.rice.cs.drjava.model.GlobalModelTestCase;
+import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
+import edu.rice.cs.plt.reflect.JavaVersion;
+import edu.rice.cs.util.UnexpectedException;
+import edu.rice.cs.util.swing.Utilities;
+
+/** Tests the BackgroundErrorChecker with a stub compiler that records when it is called.
+  * @version $Id$
+  */
+public final class BackgroundErrorCheckerTest extends GlobalModelTestCase {
+  
+  /** The longest time to wait for a check to start or to be reported. */
+  private static final int TIMEOUT = 10000;
+  
+  private StubCompiler _compiler;
+  private DefaultCompilerModel _compilerModel;
+  
+  /** The messages of the errors reported by each background check, in order. */
+  private final List<List<String>> _updates = Collections.synchronizedList(new ArrayList<List<String>>());
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    DrJava.getConfig().setSetting(OptionConstants.BACKGROUND_COMPILATION, Boolean.TRUE);
+    _compiler = new StubCompiler();
+    _compilerModel = new DefaultCompilerModel(_model, Arrays.asList(_compiler));
+    _compilerModel.addListener(new DummyCompilerListener() {
+      public void compileErrorsUpdated(List<? extends File> files) {
+        List<String> messages = new ArrayList<String>();
+        for (DJError e: _compilerModel.getCompilerErrorModel().getErrors()) messages.add(e.message());
+        _updates.add(messages);
+      }
+    });
+  }
+  
+  /** Several edits in quick succession start a single check, DELAY milliseconds after the last one. */
+  public void testCheckStartsAfterEditsStop() throws Exception {
+    OpenDefinitionsDocument doc = _openDocument();
+    long lastEdit = 0;
+    for (int i = 0; i < 3; i++) {
+      lastEdit = System.currentTimeMillis();
+      _insert(doc, "// edit " + i + "\n");
+      Thread.sleep(BackgroundErrorChecker.DELAY / 5);
+    }
+    _compiler.awaitCalls(1);
+    // Swing timers fire no earlier than their delay; allow for the granularity of the clock
+    assertTrue("check started too early", _compiler.startTime(0) - lastEdit >= BackgroundErrorChecker.DELAY - 20);
+    _awaitUpdates(1);
+    assertEquals("errors of the check", Arrays.asList("check 1"), _updates.get(0));
+    
+    Thread.sleep(2 * BackgroundErrorChecker.DELAY);
+    assertEquals("one check for all edits", 1, _compiler.calls());
+  }
+  
+  /** The result of a check is dropped if the document is edited while it runs. */
+  public void testEditDropsRunningCheck() throws Exception {
+    OpenDefinitionsDocument doc = _openDocument();
+    _compiler.block();
+    _insert(doc, "// first edit\n");
+    _compiler.awaitCalls(1);
+    _insert(doc, "// second edit\n");
+    _compiler.release();
+    _compiler.awaitCalls(2);
+    _awaitUpdates(1);
+    assertEquals("only the second check is reported", Arrays.asList(Arrays.asList("check 2")), _updates);
+  }
+  
+  /** A regular compilation stops a pending check from starting. */
+  public void testCompileCancelsPendingCheck() throws Exception {
+    OpenDefinitionsDocument doc = _openDocument();
+    _insert(doc, "// edit\n");
+    saveFile(doc, new FileSelector(doc.getFile()));  // only saved documents are compiled
+    _compile(doc);
+    Thread.sleep(3 * BackgroundErrorChecker.DELAY);
+    assertEquals("no check after the compilation", 0, _compiler.calls());
+    assertTrue("nothing reported", _updates.isEmpty());
+  }
+  
+  /** A regular compilation drops the result of a running check. */
+  public void testCompileDropsRunningCheck() throws Exception {
+    OpenDefinitionsDocument doc = _openDocument();
+    _compiler.block();
+    _insert(doc, "// edit\n");
+    _compiler.awaitCalls(1);
+    saveFile(doc, new FileSelector(doc.getFile()));
+    _compile(doc);
+    _compiler.release();
+    Thread.sleep(3 * BackgroundErrorChecker.DELAY);
+    assertEquals("only the running check", 1, _compiler.calls());
+    assertTrue("nothing reported", _updates.isEmpty());
+  }
+  
+  /** @return an open document for a new source file */
+  private OpenDefinitionsDocument _openDocument() throws Exception {
+    final File file = writeToNewTempFile("class A { }\n");
+    final OpenDefinitionsDocument[] doc = new OpenDefinitionsDocument[1];
+    Utilities.invokeAndWait(new Runnable() {
+      public void run() {
+        try { doc[0] = _model.openFile(new FileSelector(file)); }
+        catch (Exception e) { throw new UnexpectedException(e); }
+      }
+    });
+    return doc[0];
+  }
+  
+  /** Inserts text at the start of the document in the event thread. */
+  private static void _insert(final OpenDefinitionsDocument doc, final String text) {
+    Utilities.invokeAndWait(new Runnable() {
+      public void run() {
+        try { doc.insertString(0, text, null); }
+        catch (BadLocationException e) { throw new UnexpectedException(e); }
+      }
+    });
+  }
+  
+  /** Compiles the document with the test's compiler model in the event thread. */
+  private void _compile(final OpenDefinitionsDocument doc) {
+    Utilities.invokeAndWait(new Runnable() {
+      public void run() {
+        try { _compilerModel.compile(doc); }
+        catch (Exception e) { throw new UnexpectedException(e); }
+      }
+    });
+  }
+  
+  /** Waits until the given number of background checks has been reported. */
+  private void _awaitUpdates(int count) throws InterruptedException {
+    long end = System.currentTimeMillis() + TIMEOUT;
+    while (_updates.size() < count) {
+      assertTrue("timed out waiting for " + count + " reported checks", System.currentTimeMillis() < end);
+      Thread.sleep(20);
+    }
+  }
+  
+  /** A compiler whose in-memory compilations report a single error naming the number of the call.  Calls can be
+    * blocked until they are released, to simulate a long check.
+    */
+  private static class StubCompiler implements InMemoryCompiler {
+    private final List<Long> _startTimes = new ArrayList<Long>();
+    private volatile CountDownLatch _blocker = new CountDownLatch(0);
+    
+    public synchronized int calls() { return _startTimes.size(); }
+    public synchronized long startTime(int i) { return _startTimes.get(i); }
+    
+    public synchronized void awaitCalls(int count) throws InterruptedException {
+      long end = System.currentTimeMillis() + TIMEOUT;
+      while (_startTimes.size() < count) {
+        long left = end - System.currentTimeMillis();
+        assertTrue("timed out waiting for " + count + " checks", left > 0);
+        wait(left);
+      }
+    }
+    
+    /** Makes later calls wait until release is called. */
+    public void block() { _blocker = new CountDownLatch(1); }
+    public void release() { _blocker.countDown(); }
+    
+    public List<? extends DJError> compileInMemory(List<? extends JavaFileObject> sources, 
+                                                   List<? extends File> classPath, List<? extends File> bootClassPath,
+                                                   String sourceVersion, boolean showWarnings, 
+                                                   InMemoryClassStore output) {
+      int call;
+      synchronized(this) {
+        _startTimes.add(System.currentTimeMillis());
+        call = _startTimes.size();
+        notifyAll();
+      }
+      try { _blocker.await(); }
+      catch (InterruptedException e) { throw new UnexpectedException(e); }
+      File file = ((SourceSnapshot) sources.get(0)).getFile();
+      return Arrays.asList(new DJError(file, 0, 0, "check " + call, false));
+    }
+    
+    public List<? extends DJError> compile(List<? extends File> files, List<? extends File> classPath, 
+                                           List<? extends File> sourcePath, File destination, 
+                                           List<? extends File> bootClassPath, String sourceVersion,
+                                           boolean showWarnings) {
+      return Collections.<DJError>emptyList();
+    }
+    
+    public boolean isAvailable() { return true; }
+    public JavaVersion version() { return JavaVersion.JAVA_8; }
+    public String getName() { return "Stub compiler"; }
+    public String getDescription() { return getName(); }
+    public String toString() { return getName(); }
+    public List<File> additionalBootClassPathForInteractions() { return Collections.<File>emptyList(); }
+    public String transformCommands(String interactionsString) { return interactionsString; }
+    public boolean isSourceFileForThisCompiler(File f) { return DrJavaFileUtils.isSourceFile(f); }
+    public Set<String> getSourceFileExtensions() { return DrJavaFileUtils.getSourceFileExtensions(); }
+    public String getSuggestedFileExtension() { return DrJavaFileUtils.getSuggestedFileExtension(); }
+    public FileFilter getFileFilter() { return NoCompilerAvailable.ONLY.getFileFilter(); }
+    public String getOpenAllFilesInFolderExtension() { return getSuggestedFileExtension(); }
+    public Set<String> getKeywordsForFile(File f) { return JavacCompiler.JAVA_KEYWORDS; }
+    public boolean supportsLanguageLevels() { return false; }
+  }
+}
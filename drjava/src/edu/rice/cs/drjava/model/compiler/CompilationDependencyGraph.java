@@ -0,0 +1,404 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.zip.CRC32;
+
+import org.objectweb.asm.*;
+
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.util.Log;
+
+/** The class-level dependency graph of the source files compiled by DefaultCompilerModel in incremental mode.  After 
+  * each successful build, the class files generated from each compiled source file are read with ASM: the class
+  * references in their constant pools and the descriptors of their members give the classes the source file depends
+  * on, and their non-private members (including constant values, which javac inlines into dependents) give a hash of 
+  * the source file's API.  Before a build, the graph selects the files that must be recompiled: the files that changed 
+  * since they were last compiled, or were never compiled, together with every file that transitively depends on them.
+  * The graph is only accessed while the compiler lock is held.
+  * @version $Id$
+  */
+final class CompilationDependencyGraph {
+  
+  /** for logging debug info */
+  private static final Log _log = new Log("CompilationDependencyGraph.txt", false);
+  
+  private static final String CLASS_EXT = ".class";
+  
+  /** Modification times within this many milliseconds of the current time are not trusted on their own. */
+  private static final long STAMP_GRANULARITY = 2000L;
+  
+  /** The state of a source file when a build started.  A modification time alone misses edits made in the same tick
+    * of a coarse file system clock (1-2 seconds on FAT, HFS+ and many network file systems), so the length is 
+    * recorded as well, and so is a checksum of the contents if the file was modified too recently to trust its 
+    * modification time.
+    */
+  static final class Stamp {
+    /** Checksum of a file whose modification time is trusted. */
+    private static final long NO_CHECKSUM = -1L;
+    
+    private final long _modified;
+    private final long _length;
+    private final long _checksum;
+    
+    private Stamp(long modified, long length, long checksum) {
+      _modified = modified;
+      _length = length;
+      _checksum = checksum;
+    }
+    
+    /** @param f a source file
+      * @return the current stamp of f; a stamp that matches no file if f cannot be read
+      */
+    static Stamp of(File f) {
+      final long modified = f.lastModified();
+      final long length = f.length();
+      if (modified <= System.currentTimeMillis() - STAMP_GRANULARITY) return new Stamp(modified, length, NO_CHECKSUM);
+      try { return new Stamp(modified, length, _checksum(f)); }
+      catch(IOException ioe) { return new Stamp(-1L, -1L, NO_CHECKSUM); }
+    }
+    
+    /** @param f a source file
+      * @return true if f is unchanged since this stamp was taken
+      */
+    boolean matches(File f) {
+      if (_modified != f.lastModified() || _length != f.length()) return false;
+      if (_checksum == NO_CHECKSUM) return true;
+      try { return _checksum == _checksum(f); }
+      catch(IOException ioe) { return false; }
+    }
+    
+    /** @return the CRC-32 checksum of the contents of f */
+    private static long _checksum(File f) throws IOException {
+      final CRC32 crc = new CRC32();
+      crc.update(IOUtil.toByteArray(f));
+      return crc.getValue();
+    }
+  }
+  
+  /** What the graph knows about a source file from its last successful compilation. */
+  private static final class SourceEntry {
+    /** The modification time of the source file when it was compiled. */
+    final Stamp _stamp;
+    final List<File> _classFiles;
+    /** Internal names of the classes generated from the source file. */
+    final Set<String> _classNames;
+    /** Internal names of the classes referred to by the generated classes. */
+    final Set<String> _references;
+    final long _apiHash;
+    
+    SourceEntry(Stamp stamp, List<File> classFiles, Set<String> classNames, Set<String> references, long apiHash) {
+      _stamp = stamp;
+      _classFiles = classFiles;
+      _classNames = classNames;
+      _references = references;
+      _apiHash = apiHash;
+    }
+  }
+  
+  private final HashMap<File, SourceEntry> _entries = new HashMap<File, SourceEntry>();
+  
+  /** Maps the internal name of each class in the graph to the source file it was generated from. */
+  private final HashMap<String, File> _definingSource = new HashMap<String, File>();
+  
+  /** Description of the compiler, class path and build directory that produced the graph. */
+  private String _configuration = null;
+  
+  /** Forgets all dependency information, so the next build is a full build. */
+  void clear() {
+    _entries.clear();
+    _definingSource.clear();
+    _configuration = null;
+  }
+  
+  /** @return the number of source files in the graph */
+  int size() { return _entries.size(); }
+  
+  /** Selects the files that must be recompiled.  If the configuration differs from that of the previous build, 
+    * the graph is cleared and all files are selected.
+    * @param files the files requested for compilation
+    * @param configuration a description of the compiler, class path and build directory used for this build
+    * @return the files, in their original order, that changed or depend transitively on a changed file
+    */
+  List<File> selectFiles(List<File> files, String configuration) {
+    if (! configuration.equals(_configuration)) {
+      clear();
+      _configuration = configuration;
+      return new ArrayList<File>(files);
+    }
+    
+    final HashMap<File, List<File>> dependents = _reverseEdges();
+    final HashSet<File> selected = new HashSet<File>();
+    final LinkedList<File> work = new LinkedList<File>();
+    for (File f: files) {
+      if (_isStale(f) && selected.add(f)) work.add(f);
+    }
+    while (! work.isEmpty()) {
+      final List<File> list = dependents.get(work.removeFirst());
+      if (list == null) continue;
+      for (File d: list) { if (selected.add(d)) work.add(d); }
+    }
+    
+    final ArrayList<File> result = new ArrayList<File>();
+    for (File f: files) { if (selected.contains(f)) result.add(f); }
+    return result;
+  }
+  
+  /** Returns the source files that directly refer to one of the classes generated from the given files.
+    * @param files the files whose dependents are wanted
+    * @return the direct dependents, excluding the given files themselves
+    */
+  Set<File> getDependents(Collection<File> files) {
+    final HashMap<File, List<File>> dependents = _reverseEdges();
+    final LinkedHashSet<File> result = new LinkedHashSet<File>();
+    for (File f: files) {
+      final List<File> list = dependents.get(f);
+      if (list != null) result.addAll(list);
+    }
+    result.removeAll(files);
+    return result;
+  }
+  
+  /** @return the reverse dependency edges: source file -> source files referring to one of its classes */
+  private HashMap<File, List<File>> _reverseEdges() {
+    final HashMap<File, List<File>> dependents = new HashMap<File, List<File>>();
+    for (Map.Entry<File, SourceEntry> e: _entries.entrySet()) {
+      for (String ref: e.getValue()._references) {
+        final File target = _definingSource.get(ref);
+        if (target == null || target.equals(e.getKey())) continue;
+        List<File> list = dependents.get(target);
+        if (list == null) { list = new ArrayList<File>(); dependents.put(target, list); }
+        list.add(e.getKey());
+      }
+    }
+    return dependents;
+  }
+  
+  /** @return true if f was never compiled, was modified since it was compiled, or lost one of its class files */
+  private boolean _isStale(File f) {
+    final SourceEntry entry = _entries.get(f);
+    if (entry == null || ! entry._stamp.matches(f)) return true;
+    for (File cf: entry._classFiles) { if (! cf.isFile()) return true; }
+    return false;
+  }
+  
+  /** Removes the given files from the graph, so they are recompiled by the next build. 
+    * @param files the files whose dependency information is no longer valid
+    */
+  void remove(Collection<File> files) {
+    for (File f: files) {
+      final SourceEntry entry = _entries.remove(f);
+      if (entry != null) {
+        for (String c: entry._classNames) {
+          if (f.equals(_definingSource.get(c))) _definingSource.remove(c);
+        }
+      }
+    }
+  }
+  
+  /** Reads the class files generated from the given source files by a successful build and records them.
+    * @param files the source files that were compiled
+    * @param outputDirs maps each source file to the directory containing its class files
+    * @param stamps maps each source file to its stamp when the build started
+    * @return true if the API of a previously compiled file changed, so that files not selected for this build may 
+    *         be stale
+    */
+  boolean update(Collection<File> files, Map<File, File> outputDirs, Map<File, Stamp> stamps) {
+    // Group the sources by output directory so each directory is listed and read once
+    final LinkedHashMap<File, Map<String, File>> byDir = new LinkedHashMap<File, Map<String, File>>();
+    for (File f: files) {
+      final File dir = outputDirs.get(f);
+      Map<String, File> sources = byDir.get(dir);
+      if (sources == null) { sources = new HashMap<String, File>(); byDir.put(dir, sources); }
+      sources.put(f.getName(), f);
+    }
+    
+    final HashMap<File, ClassSummary> summaries = new HashMap<File, ClassSummary>();
+    for (Map.Entry<File, Map<String, File>> e: byDir.entrySet()) {
+      final File[] classFiles = e.getKey().listFiles();
+      if (classFiles == null) continue;
+      for (File cf: classFiles) {
+        if (! cf.getName().endsWith(CLASS_EXT)) continue;
+        try {
+          final ClassReader reader = new ClassReader(IOUtil.toByteArray(cf));
+          final ClassSummary s = new ClassSummary();
+          s.read(reader);
+          String sourceName = s._sourceFile;
+          if (sourceName == null) {  // no debugging information; guess from the name of the class file
+            final String n = cf.getName();
+            final int end = n.indexOf('$') >= 0 ? n.indexOf('$') : n.length() - CLASS_EXT.length();
+            sourceName = n.substring(0, end) + ".java";
+          }
+          final File source = e.getValue().get(sourceName);
+          if (source == null) continue;
+          ClassSummary total = summaries.get(source);
+          if (total == null) { total = new ClassSummary(); summaries.put(source, total); }
+          total.merge(s, cf);
+        }
+        catch(IOException ioe) { _log.log("Could not read " + cf + ": " + ioe); }
+        catch(RuntimeException re) { _log.log("Could not parse " + cf + ": " + re); }  // malformed class file
+      }
+    }
+    
+    boolean apiChanged = false;
+    for (File f: files) {
+      ClassSummary s = summaries.get(f);
+      if (s == null) s = new ClassSummary();
+      s._references.removeAll(s._classNames);
+      final Stamp stamp = stamps.get(f);
+      final SourceEntry old = _entries.get(f);
+      if (old != null && (old._apiHash != s.apiHash() || ! old._classNames.equals(s._classNames))) apiChanged = true;
+      remove(Collections.singleton(f));
+      _entries.put(f, new SourceEntry(stamp == null ? Stamp.of(f) : stamp, s._classFiles, 
+                                      s._classNames, s._references, s.apiHash()));
+      for (String c: s._classNames) _definingSource.put(c, f);
+    }
+    return apiChanged;
+  }
+  
+  /** The dependency and API information extracted from one or more class files. */
+  private static final class ClassSummary extends ClassVisitor {
+    String _sourceFile = null;
+    final List<File> _classFiles = new ArrayList<File>();
+    final Set<String> _classNames = new HashSet<String>();
+    final Set<String> _references = new HashSet<String>();
+    /** The API elements (class headers and non-private members) of the classes, sorted. */
+    final TreeSet<String> _api = new TreeSet<String>();
+    
+    private String _className;
+    
+    ClassSummary() { super(Opcodes.ASM5); }
+    
+    /** Extracts the information from a class file, including the class references in its constant pool. */
+    void read(ClassReader reader) {
+      reader.accept(this, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+      final char[] buf = new char[reader.getMaxStringLength()];
+      for (int i = 1; i < reader.getItemCount(); i++) {
+        final int index = reader.getItem(i);
+        if (index == 0) continue;  // second slot of a long or double constant
+        switch(reader.b[index - 1]) {
+          case 7:  // CONSTANT_Class
+            _addType(reader.readUTF8(index, buf));
+            break;
+          case 12: // CONSTANT_NameAndType
+            _addDescriptor(reader.readUTF8(index + 2, buf));
+            break;
+          case 16: // CONSTANT_MethodType
+            _addDescriptor(reader.readUTF8(index, buf));
+            break;
+          default:
+        }
+      }
+    }
+    
+    void merge(ClassSummary s, File classFile) {
+      _classFiles.add(classFile);
+      _classNames.addAll(s._classNames);
+      _references.addAll(s._references);
+      _api.addAll(s._api);
+    }
+    
+    /** @return a 64-bit FNV-1a hash of the API elements */
+    long apiHash() {
+      long h = 0xcbf29ce484222325L;
+      for (String s: _api) {
+        for (int i = 0; i < s.length(); i++) { h ^= s.charAt(i); h *= 0x100000001b3L; }
+        h ^= '\n'; h *= 0x100000001b3L;
+      }
+      return h;
+    }
+    
+    /** Adds a class name or array descriptor found in a CONSTANT_Class entry. */
+    private void _addType(String name) {
+      if (name.startsWith("[")) _addDescriptor(name);
+      else _references.add(name);
+    }
+    
+    /** Adds every class named in a descriptor or generic signature.  Over-approximation is harmless: names that are
+      * not classes in the graph are ignored.
+      */
+    private void _addDescriptor(String desc) {
+      if (desc == null) return;
+      final int len = desc.length();
+      int i = 0;
+      while (i < len) {
+        final char c = desc.charAt(i++);
+        if (c == 'L') {  // class type, terminated by ';' or by type arguments
+          final int start = i;
+          while (i < len && desc.charAt(i) != ';' && desc.charAt(i) != '<') i++;
+          if (i > start) _references.add(desc.substring(start, i));
+        }
+        else if (c == 'T') { while (i < len && desc.charAt(i) != ';') i++; }  // type variable
+      }
+    }
+    
+    public void visit(int version, int access, String name, String signature, String superName, String[] interfaces) {
+      _className = name;
+      _classNames.add(name);
+      _addDescriptor(signature);
+      _api.add(name + " " + (access & ~Opcodes.ACC_SUPER) + " " + signature + " " + superName + " " + 
+               Arrays.toString(interfaces));
+    }
+    
+    public void visitSource(String source, String debug) { _sourceFile = source; }
+    
+    public void visitInnerClass(String name, String outerName, String innerName, int access) {
+      if (_className.equals(name)) _api.add(name + " inner " + access);
+    }
+    
+    public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+      _addDescriptor(desc);
+      _api.add(_className + " @" + desc);
+      return null;
+    }
+    
+    public FieldVisitor visitField(int access, String name, String desc, String signature, Object value) {
+      _addDescriptor(desc);
+      _addDescriptor(signature);
+      if ((access & Opcodes.ACC_PRIVATE) == 0) {
+        _api.add(_className + " F " + access + " " + name + " " + desc + " " + signature + " " + value);
+      }
+      return null;
+    }
+    
+    public MethodVisitor visitMethod(int access, String name, String desc, String signature, String[] exceptions) {
+      _addDescriptor(desc);
+      _addDescriptor(signature);
+      if ((access & Opcodes.ACC_PRIVATE) == 0) {
+        _api.add(_className + " M " + access + " " + name + " " + desc + " " + signature + " " + 
+                 Arrays.toString(exceptions));
+      }
+      return null;
+    }
+  }
+}
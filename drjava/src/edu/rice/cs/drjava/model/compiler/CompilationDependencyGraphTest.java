@@ -0,0 +1,171 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests the dependency tracking used by incremental compilation, compiling small sources with the system compiler.
+  * @version $Id$
+  */
+public final class CompilationDependencyGraphTest extends DrJavaTestCase {
+  
+  private static final String CONFIG = "javac|test";
+  
+  private File _dir;
+  private File _a, _b, _c, _d;
+  private List<File> _all;
+  private CompilationDependencyGraph _graph;
+  private long _time;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    _dir = IOUtil.createAndMarkTempDirectory("DrJava-test-graph", "");
+    _time = System.currentTimeMillis() - 100000;
+    _a = _write("A", "public class A { public static final int K = 1; public int f() { return 1; } }");
+    _b = _write("B", "public class B { int g() { return new A().f(); } }");
+    _c = _write("C", "public class C { }");
+    _d = _write("D", "public class D extends B { }");
+    _all = Arrays.asList(_a, _b, _c, _d);
+    _graph = new CompilationDependencyGraph();
+  }
+  
+  public void tearDown() throws Exception {
+    IOUtil.deleteRecursively(_dir);
+    super.tearDown();
+  }
+  
+  /** Writes a source file with a distinct modification time. */
+  private File _write(String name, String text) throws IOException {
+    File f = new File(_dir, name + ".java");
+    IOUtil.writeStringToFile(f, text);
+    _time += 2000;
+    assertTrue("set modification time", f.setLastModified(_time));
+    return f;
+  }
+  
+  /** Compiles the files with the system compiler and records them in the graph.
+    * @return whether the graph reported an API change
+    */
+  private boolean _compile(List<File> files) {
+    JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    ArrayList<String> args = new ArrayList<String>(Arrays.asList("-d", _dir.getPath(), "-cp", _dir.getPath()));
+    for (File f: files) args.add(f.getPath());
+    assertEquals("compilation succeeded", 0, javac.run(null, null, null, args.toArray(new String[args.size()])));
+    HashMap<File, File> outputDirs = new HashMap<File, File>();
+    HashMap<File, CompilationDependencyGraph.Stamp> stamps = new HashMap<File, CompilationDependencyGraph.Stamp>();
+    for (File f: files) { outputDirs.put(f, _dir); stamps.put(f, CompilationDependencyGraph.Stamp.of(f)); }
+    return _graph.update(files, outputDirs, stamps);
+  }
+  
+  public void testSelectsChangedFilesAndDependents() throws IOException {
+    if (ToolProvider.getSystemJavaCompiler() == null) return;  // not running on a JDK
+    
+    assertEquals("first build compiles everything", _all, _graph.selectFiles(_all, CONFIG));
+    assertFalse("no previous API", _compile(_all));
+    assertEquals("four sources", 4, _graph.size());
+    assertEquals("nothing changed", Collections.<File>emptyList(), _graph.selectFiles(_all, CONFIG));
+    
+    // A changes: B refers to A and D extends B, but C is independent
+    _write("A", "public class A { public static final int K = 1; public int f() { return 2; } }");
+    List<File> selected = _graph.selectFiles(_all, CONFIG);
+    assertEquals("A and its transitive dependents", Arrays.asList(_a, _b, _d), selected);
+    assertFalse("method body change keeps the API", _compile(selected));
+    assertEquals("up to date", Collections.<File>emptyList(), _graph.selectFiles(_all, CONFIG));
+    
+    // Changing an inlined constant changes the API
+    _write("A", "public class A { public static final int K = 2; public int f() { return 2; } }");
+    assertTrue("constant change is an API change", _compile(_graph.selectFiles(_all, CONFIG)));
+    
+    // Only C changes; nothing depends on it
+    _write("C", "public class C { private int x; }");
+    assertEquals("only C", Arrays.asList(_c), _graph.selectFiles(_all, CONFIG));
+    assertFalse("private members are not API", _compile(Arrays.asList(_c)));
+  }
+  
+  public void testGetDependents() throws IOException {
+    if (ToolProvider.getSystemJavaCompiler() == null) return;  // not running on a JDK
+    
+    assertEquals("empty graph", Collections.<File>emptySet(), _graph.getDependents(Arrays.asList(_a)));
+    _graph.selectFiles(_all, CONFIG);
+    _compile(_all);
+    assertEquals("direct dependents only", new HashSet<File>(Arrays.asList(_b)), 
+                 _graph.getDependents(Arrays.asList(_a)));
+    assertEquals("given files are excluded", new HashSet<File>(Arrays.asList(_d)), 
+                 _graph.getDependents(Arrays.asList(_a, _b)));
+    assertEquals("no dependents", Collections.<File>emptySet(), _graph.getDependents(Arrays.asList(_c)));
+  }
+  
+  public void testInvalidation() throws IOException {
+    if (ToolProvider.getSystemJavaCompiler() == null) return;  // not running on a JDK
+    
+    _graph.selectFiles(_all, CONFIG);
+    _compile(_all);
+    assertEquals("new configuration forces a full build", _all, _graph.selectFiles(_all, CONFIG + "2"));
+    _compile(_all);
+    
+    assertTrue("delete C.class", new File(_dir, "C.class").delete());
+    assertEquals("missing class file", Arrays.asList(_c), _graph.selectFiles(_all, CONFIG + "2"));
+    _compile(Arrays.asList(_c));
+    
+    _graph.remove(Arrays.asList(_b));
+    assertEquals("removed file", Arrays.asList(_b), _graph.selectFiles(_all, CONFIG + "2"));
+  }
+  
+  public void testEditWithinTimestampGranularity() throws IOException {
+    if (ToolProvider.getSystemJavaCompiler() == null) return;  // not running on a JDK
+    
+    _graph.selectFiles(_all, CONFIG);
+    _compile(_all);
+    
+    // Same modification time, different length
+    long modified = _c.lastModified();
+    IOUtil.writeStringToFile(_c, "public class C { int x; }");
+    assertTrue("set modification time", _c.setLastModified(modified));
+    assertEquals("length changed", Arrays.asList(_c), _graph.selectFiles(_all, CONFIG));
+    _compile(Arrays.asList(_c));
+    
+    // A recent modification time is not trusted, so the contents are compared
+    assertTrue("set modification time", _c.setLastModified(System.currentTimeMillis()));
+    assertEquals("touched", Arrays.asList(_c), _graph.selectFiles(_all, CONFIG));
+    _compile(Arrays.asList(_c));
+    assertEquals("recent but unchanged", Collections.<File>emptyList(), _graph.selectFiles(_all, CONFIG));
+    modified = _c.lastModified();
+    IOUtil.writeStringToFile(_c, "public class C { int y; }");
+    assertTrue("set modification time", _c.setLastModified(modified));
+    assertEquals("same time and length, new contents", Arrays.asList(_c), _graph.selectFiles(_all, CONFIG));
+  }
+}
@@ -31,7 +31,12 @@ package edu.rice.cs.drjava.model.compiler;
 import java.io.File;
 import java.io.IOException;
 import javax.swing.text.*;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.HashMap;
@@ -45,7 +50,6 @@ import edu.rice.cs.drjava.model.FileMovedException;
 import edu.rice.cs.drjava.model.DrJavaFileUtils;
 import edu.rice.cs.util.FileOps;
 import edu.rice.cs.util.OperationCanceledException;
-import edu.rice.cs.util.StringOps;
 import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.swing.Utilities;
 
@@ -53,7 +57,6 @@ import edu.rice.cs.util.swing.Utilities;
   * @version $Id$
   */
 public class CompilerErrorModel {
-  private static final String newLine = StringOps.EOL;
   /** An array of errors to be displayed in the CompilerErrorPanel associated with this model.  After model
     * construction, this array should be sorted in this order:
     * (i)  Errors with no file.
@@ -87,10 +90,13 @@ public class CompilerErrorModel {
     */
   private volatile int _onlyWarnings = -1;
   
-  /** Used internally in building _positions.  The file used as the index *must* be a canonical file, or else
+  /** The errors with positions in each document.  The file used as the key *must* be a canonical file, or else
     * errors won't always be associated with the right documents.
     */
-  private final HashMap<File, StartAndEndIndex> _filesToIndexes = new HashMap<File, StartAndEndIndex>();
+  private final HashMap<File, ErrorIndex> _indexes = new HashMap<File, ErrorIndex>();
+  
+  /** Caches the canonical files of the documents looked up in _indexes. */
+  private final HashMap<File, File> _canonicalFiles = new HashMap<File, File>();
   
   /** The global model which created/controls this object. */
   private final GlobalModel _model;
@@ -122,6 +128,17 @@ public class CompilerErrorModel {
     * @param model is the model to find documents from
     */
   public CompilerErrorModel(DJError[] errors, GlobalModel model) {
+    this(errors, model, new IdentityHashMap<DJError, Position>());
+  }
+  
+  /** Constructs a new CompilerErrorModel that reuses the already computed positions of some of its errors.  Used by
+    * {@link #update} so that errors carried over from a previous model keep tracking the same document locations.
+    * @param errors the list of DJError's (or a subclass).
+    * @param model is the model to find documents from
+    * @param knownPositions positions of errors (compared by identity) that need not be recomputed
+    */
+  private CompilerErrorModel(DJError[] errors, GlobalModel model, 
+                             final IdentityHashMap<DJError, Position> knownPositions) {
     
 //    System.err.println("Constructing CompilerErrorModel for errors: " + Arrays.toString(errors));
     _model = model;
@@ -173,7 +190,85 @@ public class CompilerErrorModel {
     Arrays.sort(_errors);
     
     // Populates _positions.  Must run in event thread because it may open files.
-    Utilities.invokeLater(new Runnable() { public void run() { _calculatePositions(); } });
+    Utilities.invokeLater(new Runnable() { public void run() { _calculatePositions(knownPositions); } });
+  }
+  
+  /** Returns a new model in which all errors for the given files are replaced by newErrors; errors for other files are
+    * carried over unchanged.  A new error that matches an old error of the same file (same column, message and
+    * severity, on the line where the position of the old error is now) takes the document position of the old error.
+    * If it is also still on the same line number, it is replaced by the old error object, so listeners comparing errors by
+    * identity only see the errors that actually appeared, disappeared or moved.  Errors are never modified, since the
+    * previous model and its listeners still refer to them.  New errors without a file are ignored.
+    * @param files the files whose errors are replaced
+    * @param newErrors the current errors for those files
+    * @return the updated model
+    */
+  public CompilerErrorModel update(Collection<? extends File> files, List<? extends DJError> newErrors) {
+    HashSet<File> replacedFiles = new HashSet<File>();
+    for (File f: files) replacedFiles.add(_canonicalFile(f));
+    
+    IdentityHashMap<DJError, Position> knownPositions = new IdentityHashMap<DJError, Position>();
+    ArrayList<DJError> result = new ArrayList<DJError>();
+    LinkedList<Integer> replaced = new LinkedList<Integer>();
+    for (int i = 0; i < _numErrors; i++) {
+      DJError e = _errors[i];
+      if (e.file() != null && replacedFiles.contains(_canonicalFile(e.file()))) replaced.add(i);
+      else {
+        result.add(e);
+        if (_positions[i] != null) knownPositions.put(e, _positions[i]);
+      }
+    }
+    
+    // The open documents of the replaced files, in which the old errors' positions give their current lines
+    HashMap<File, OpenDefinitionsDocument> documents = new HashMap<File, OpenDefinitionsDocument>();
+    if (! replaced.isEmpty()) {
+      for (OpenDefinitionsDocument doc: _model.getOpenDefinitionsDocuments()) {
+        File f = doc.getRawFile();
+        if (f != null && replacedFiles.contains(_canonicalFile(f))) documents.put(_canonicalFile(f), doc);
+      }
+    }
+    
+    for (DJError e: newErrors) {
+      if (e.file() == null) continue;
+      File file = _canonicalFile(e.file());
+      DJError kept = e;
+      for (Iterator<Integer> it = replaced.iterator(); it.hasNext(); ) {
+        int i = it.next();
+        if (_sameError(i, e, file, documents.get(file))) {
+          if (_errors[i].lineNumber() == e.lineNumber()) { kept = _errors[i]; }
+          // otherwise lines were inserted or removed above it; the new error takes the old position
+          if (_positions[i] != null) knownPositions.put(kept, _positions[i]);
+          it.remove();
+          break;
+        }
+      }
+      result.add(kept);
+    }
+    return new CompilerErrorModel(result.toArray(new DJError[result.size()]), _model, knownPositions);
+  }
+  
+  /** @param i the index of an old error
+    * @param e a new error
+    * @param file the canonical file of e
+    * @param doc the open document of file, or null
+    * @return true if both errors describe the same problem at the same location of the same file.  The line of the
+    *         old error is taken from its position in doc, since its line number is stale after edits above it.
+    */
+  private boolean _sameError(int i, DJError e, File file, OpenDefinitionsDocument doc) {
+    DJError old = _errors[i];
+    if (old.startColumn() != e.startColumn() || old.isWarning() != e.isWarning() || 
+        ! old.message().equals(e.message()) || ! _canonicalFile(old.file()).equals(file)) {
+      return false;
+    }
+    int line = (doc == null || _positions[i] == null) ? old.lineNumber() :
+      doc.getDefaultRootElement().getElementIndex(_positions[i].getOffset());
+    return line == e.lineNumber();
+  }
+  
+  /** @return the canonical version of f, or f itself if it cannot be canonicalized */
+  private static File _canonicalFile(File f) {
+    try { return f.getCanonicalFile(); }
+    catch (IOException ioe) { return f; }
   }
   
   /** Accessor for errors field; only used in testing and debugging. */
@@ -215,96 +310,65 @@ public class CompilerErrorModel {
     return buf.toString();
   }
   
-  /** This method finds and returns the error that is at the given offset
+  /** This method finds and returns the error that is at the given offset.  Takes time logarithmic in the number of
+    * errors in the document and the number of lines, so it may be called on every caret move.
     * @param odd the OpenDefinitionsDocument where you want to find the error at the caret
     * @param offset the offset into the document
     * @return the DJError at the given offset, null if no error corresponds to this location
     */
   public DJError getErrorAtOffset(OpenDefinitionsDocument odd, int offset) {
-    File file;
-    try { 
-      file = odd.getFile(); 
-      if (file == null) return null;
-    }
-    catch (FileMovedException e) { file = e.getFile(); }
-    
-    // Use the canonical file if possible
-    try { file = file.getCanonicalFile(); }
-    catch (IOException ioe) {
-      // Oh well, we'll look for it as is.
-    }
-    
-    StartAndEndIndex saei = _filesToIndexes.get(file);
-    if (saei == null) return null;
-    int start = saei.getStartPos();
-    int end = saei.getEndPos();
-    if (start == end) return null;
-    
-    // check if the dot is on a line with an error.
-    // Find the first error that is on or after the dot. If this comes
-    // before the newline after the dot, it's on the same line.
-    int errorAfter; // index of the first error after the dot
-    for (errorAfter = start; errorAfter < end; errorAfter++) {
-      if (_positions[errorAfter] == null) {
-        //This indicates something wrong, but it was happening before so...
-        return null;
-      }
-      if (_positions[errorAfter].getOffset() >=offset) break;
-    }
-    
-    // index of the first error before the dot
-    int errorBefore = errorAfter - 1;
-    
-    // this will be set to what we want to select, or -1 if nothing
-    int shouldSelect = -1;
+    final ErrorIndex index = _indexFor(odd);
+    if (index == null) return null;
     
-    if (errorBefore >= start) { // there's an error before the dot
-      int errPos = _positions[errorBefore].getOffset();
-      try {
-        String betweenDotAndErr = odd.getText(errPos, offset - errPos);
-        if (betweenDotAndErr.indexOf('\n') == -1) shouldSelect = errorBefore;
-      }
-      catch (BadLocationException e) { /* source document has been edited; fail silently */ }
-      catch (StringIndexOutOfBoundsException e) { /* source document has been edited; fail silently */ }
+    // check if the dot is on a line with an error: either the last error before the dot or the first error on or
+    // after the dot must be on the same line
+    final int errorAfter = index.firstAtOrAfter(offset);
+    final Element root = odd.getDefaultRootElement();
+    final int line = root.getElementIndex(offset);
+    if (errorAfter > 0 && root.getElementIndex(index.positions[errorAfter - 1].getOffset()) == line) {
+      return index.errors[errorAfter - 1];
     }
-    
-    if ((shouldSelect == -1) && (errorAfter < end)) {// (errorAfter != _positions.length)) {
-      // we found an error on/after the dot
-      // if there's a newline between dot and error,
-      // then it's not on this line
-      int errPos = _positions[errorAfter].getOffset();
-      try {
-        String betweenDotAndErr = odd.getText(offset, errPos - offset);
-        if (betweenDotAndErr.indexOf('\n') == -1) shouldSelect = errorAfter;
-      }
-      catch (BadLocationException e) { /* source document has been edited; fail silently */ }
-      catch (StringIndexOutOfBoundsException e) { /* source document has been edited; fail silently */ }
+    if (errorAfter < index.errors.length && root.getElementIndex(index.positions[errorAfter].getOffset()) == line) {
+      return index.errors[errorAfter];
     }
-    
-    if (shouldSelect == -1) return null;
-    return _errors[shouldSelect];
+    return null;
   }
   
   /** This function tells if there are errors with source locations associated with the given file. 
    * @param odd the document to check
    * @return true if there are errors with source locations; false otherwise
    */
-  public boolean hasErrorsWithPositions(OpenDefinitionsDocument odd) {
-    File file = FileOps.NULL_FILE;
+  public boolean hasErrorsWithPositions(OpenDefinitionsDocument odd) { return _indexFor(odd) != null; }
+  
+  /** Returns the errors in the given document whose positions are known, in document order.
+    * @param odd the document to check
+    * @return the errors with source locations in odd
+    */
+  public List<DJError> getErrorsWithPositions(OpenDefinitionsDocument odd) {
+    final ErrorIndex index = _indexFor(odd);
+    if (index == null) return new ArrayList<DJError>();
+    return new ArrayList<DJError>(Arrays.asList(index.errors));
+  }
+  
+  /** @return the index of the errors with positions in odd, or null if there are none */
+  private ErrorIndex _indexFor(OpenDefinitionsDocument odd) {
+    File file;
     try { 
       file = odd.getFile();
-      if (file == null || file == FileOps.NULL_FILE) return false;
+      if (file == null || file == FileOps.NULL_FILE) return null;
     }
     catch (FileMovedException fme) { file = fme.getFile(); }
     
-    // Try to use the canonical file
-    try { file = file.getCanonicalFile(); }
-    catch (IOException ioe) { /* Oh well, look for the file as is.*/ }
-    
-    StartAndEndIndex saei = _filesToIndexes.get(file);
-    if (saei == null) return false;
-    if (saei.getStartPos() == saei.getEndPos()) return false;
-    return true;
+    // The index is keyed by canonical files; avoid touching the file system on every caret move
+    File canonical;
+    synchronized(_canonicalFiles) {
+      canonical = _canonicalFiles.get(file);
+      if (canonical == null) {
+        canonical = _canonicalFile(file);
+        _canonicalFiles.put(file, canonical);
+      }
+    }
+    return _indexes.get(canonical);
   }
   
   /** Checks whether all CompilerErrors contained here are actually warnings. This would indicate that there were no
@@ -327,113 +391,70 @@ public class CompilerErrorModel {
     }
   }
   
-  /** Create array of positions where each error occurred. Positions are related their corresponding documents. */
-  private void _calculatePositions() {
+  /** Create array of positions where each error occurred, and the index of the errors in each document.  Positions
+    * are related their corresponding documents.  The offset of each line is looked up in the line structure of the
+    * document, so the text of the documents is never copied or scanned.
+    * @param knownPositions positions of errors that are reused instead of being recomputed
+    */
+  private void _calculatePositions(IdentityHashMap<DJError, Position> knownPositions) {
     try {
-      int curError = 0;
-      
-      // for (; numProcessed < _numErrors; numProcessed++) {
-      while ((curError < _numErrors)) {
-        // find the next error with a line number (skipping others)
-        curError = nextErrorWithLine(curError);
-        if (curError >= _numErrors) {break;}
-        
-        //Now find the file and document we are working on
-        File file = _errors[curError].file();
-        OpenDefinitionsDocument document;
-        try { document = _model.getDocumentForFile(file); }
-        catch (Exception e) {
-          // This is intended to catch IOException or OperationCanceledException
-          // skip positions for these errors if the document couldn't be loaded
-          if ((e instanceof IOException) || (e instanceof OperationCanceledException)) {
-            document = null;
-          }
-          else throw new UnexpectedException(e);
-        }
-        if (document == null) {
-          do { curError++;}
-          while ((curError < _numErrors) && (_errors[curError].file().equals(file)));
-          //If the document couldn't be loaded, start the loop over at the top
-          continue;
+      int curError = nextErrorWithLine(0);
+      while (curError < _numErrors) {
+        // The errors of a file are adjacent; errors without line numbers come first
+        final File file = _errors[curError].file();
+        int fileEnd = curError;
+        boolean allKnown = true;
+        while (fileEnd < _numErrors && file.equals(_errors[fileEnd].file())) {
+          if (! _errors[fileEnd].hasNoLocation() && ! knownPositions.containsKey(_errors[fileEnd])) allKnown = false;
+          fileEnd++;
         }
-        if (curError >= _numErrors) break;
-        
-        // curError is the first error in a file, and its document is open.
-        final int fileStartIndex = curError;
-        final int defsLength = document.getLength();
-        final String defsText = document.getText(0, defsLength);
-        int curLine = 0;
-        int offset = 0; // offset is number of chars from beginning of file
         
-        // offset is always pointing to the first character in the line
-        // containing an error (or the last line of the previous file) at the top of this loop
-        while ((curError < _numErrors) && // we still have errors to find
-               file.equals(_errors[curError].file()) &&  // the next error is in this file
-               (offset <= defsLength)) { // we haven't gone past the end of the file
-          // create new positions for all errors on this line
-          boolean didNotAdvance = false;
-          if (_errors[curError].lineNumber() != curLine) {
-            // if this happens, then we will not advance to the next error in the loop below.
-            // that means we have to advance curError when we reach the end of the document
-            // or we get stuck in an infinite loop (bug 1679178)
-            // this seems to be a problem with incompatible line endings (Windows vs. Unix)
-            didNotAdvance = true;
-          }
-          else {
-            while ((curError < _numErrors) &&
-                   file.equals(_errors[curError].file()) &&  // we are still in this file
-                   (_errors[curError].lineNumber() == curLine)) {
-              _positions[curError] = document.createPosition(offset + _errors[curError].startColumn());
-              curError++;
-            }
-          }
-
-          // At this point, offset is the starting index of the previous error's line.
-          // Update offset to be appropriate for the current error.
-          // ... but don't bother looking if it isn't in this file.
-          // ... or if we're done with all errors already.
-          if (curError < _numErrors) {
-            int curErrorLine = _errors[curError].lineNumber();
-            int nextNewline = 0;
-            while ((curLine != curErrorLine)
-                     && (nextNewline != -1)
-                     && (file.equals(_errors[curError].file()))) {
-              nextNewline = defsText.indexOf(newLine, offset);
-              if (nextNewline == -1) nextNewline = defsText.indexOf("\n", offset);
-              if (nextNewline != -1) {
-                curLine++;
-                offset = nextNewline + 1;
-              }
-              else {
-                // we're at the end of the document
-                if (didNotAdvance) {
-                  // we did not advance to the next error above, so unless we want to
-                  // get stuck in an infinite loop (bug 1679178), we have to advance now.
-                  // otherwise we would never leave the while loop and keep processing
-                  // the same error.
-                  // this situation probably means that the line number information of the
-                  // compiler is different from our line number information;
-                  // probably a Windows vs. Unix line ending problem
-                  _positions[curError] = null;
-                  curError++;
-                }
-              }
+        // Only look up (and possibly open) the document if a position must be created
+        OpenDefinitionsDocument document = null;
+        if (! allKnown) {
+          try { document = _model.getDocumentForFile(file); }
+          catch (Exception e) {
+            // This is intended to catch IOException or OperationCanceledException
+            // skip positions for these errors if the document couldn't be loaded
+            if (! (e instanceof IOException) && ! (e instanceof OperationCanceledException)) {
+              throw new UnexpectedException(e);
             }
           }
         }
-        //Remember the indexes in the _errors and _positions arrays that
-        // are for the errors in this file
-        int fileEndIndex = curError;
-        if (fileEndIndex != fileStartIndex) {
-          // Try to use the canonical file if possible
-          try { file = file.getCanonicalFile(); }
-          catch (IOException ioe) { /* Oh well, store it as is */ }
-          _filesToIndexes.put(file, new StartAndEndIndex(fileStartIndex, fileEndIndex));
+        
+        final ArrayList<DJError> errors = new ArrayList<DJError>();
+        final ArrayList<Position> positions = new ArrayList<Position>();
+        for (int i = curError; i < fileEnd; i++) {
+          if (_errors[i].hasNoLocation()) continue;
+          Position pos = knownPositions.get(_errors[i]);
+          if (pos == null && document != null) pos = _createPosition(document, _errors[i]);
+          _positions[i] = pos;
+          if (pos != null) {
+            errors.add(_errors[i]);
+            positions.add(pos);
+          }
         }
+        if (! errors.isEmpty()) _indexes.put(_canonicalFile(file), new ErrorIndex(errors, positions));
+        curError = nextErrorWithLine(fileEnd);
       }
     }
     catch (BadLocationException ble) { throw new UnexpectedException(ble); }
-    catch (StringIndexOutOfBoundsException e) { throw new UnexpectedException(e); }
+  }
+  
+  /** Creates a position for the line and column of an error.
+    * @param document the document containing the error
+    * @param error the error
+    * @return the position, or null if the document has fewer lines than the compiler reported (as it happens with
+    *         incompatible line endings, see bug 1679178)
+    * @throws BadLocationException if the position cannot be created
+    */
+  private static Position _createPosition(OpenDefinitionsDocument document, DJError error) 
+    throws BadLocationException {
+    final Element root = document.getDefaultRootElement();
+    final int line = error.lineNumber();
+    if (line < 0 || line >= root.getElementCount()) return null;
+    final int offset = root.getElement(line).getStartOffset() + Math.max(0, error.startColumn());
+    return document.createPosition(Math.min(offset, document.getLength()));
   }
   
   /** Finds the first error after numProcessed which has a file and line number.
@@ -445,18 +466,42 @@ public class CompilerErrorModel {
     return idx;
   }
   
-  /** This class is used only to track where the errors with positions for a file begin and end.  The beginning index 
-    * is inclusive, the ending index is exclusive.
+  /** The errors with positions in one document, ordered by position.  Swing positions keep their relative order as
+    * the document is edited, so the order (and thus the binary search) remains valid through edits.
     */
-  private static class StartAndEndIndex {
-    private final int startPos;
-    private final int endPos;
+  private static class ErrorIndex {
+    final DJError[] errors;
+    final Position[] positions;
+    
+    ErrorIndex(List<DJError> errorList, final List<Position> positionList) {
+      // Errors carried over by update() may have stale line numbers, so sort by the current offsets
+      Integer[] order = new Integer[errorList.size()];
+      for (int i = 0; i < order.length; i++) order[i] = i;
+      Arrays.sort(order, new Comparator<Integer>() {
+        public int compare(Integer i, Integer j) {
+          int oi = positionList.get(i).getOffset();
+          int oj = positionList.get(j).getOffset();
+          return (oi < oj) ? -1 : ((oi == oj) ? 0 : 1);
+        }
+      });
+      errors = new DJError[order.length];
+      positions = new Position[order.length];
+      for (int i = 0; i < order.length; i++) {
+        errors[i] = errorList.get(order[i]);
+        positions[i] = positionList.get(order[i]);
+      }
+    }
     
-    public StartAndEndIndex(int startPos, int endPos) {
-      this.startPos = startPos;
-      this.endPos = endPos;
+    /** @return the index of the first error at or after offset, or errors.length if there is none */
+    int firstAtOrAfter(int offset) {
+      int lo = 0;
+      int hi = positions.length;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (positions[mid].getOffset() < offset) lo = mid + 1;
+        else hi = mid;
+      }
+      return lo;
     }
-    public int getStartPos() { return startPos; }
-    public int getEndPos() { return endPos; }
   }
 }
@@ -35,11 +35,15 @@ package edu.rice.cs.drjava.model.compiler;
 
 import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import javax.swing.text.BadLocationException;
 import javax.swing.text.Position;
 
 import edu.rice.cs.drjava.model.*;
 import edu.rice.cs.drjava.DrJavaTestCase;
 import edu.rice.cs.util.OperationCanceledException;
+import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.swing.Utilities;
 
 /** Tests the CompilerErrorModel.
@@ -301,6 +305,22 @@ public final class CompilerErrorModelTest extends DrJavaTestCase {
                  model.getErrorAtOffset(doc, 38));
   }
   
+  /** Tests that CompilerErrorModel.getErrorAtOffset(int) follows edits of the document.
+   * @throws IOException if an IO operation fails
+   * @throws OperationCanceledException if an operation is canceled unexpectedly
+   * @throws BadLocationException if an edit fails
+   */
+  public void testGetErrorAtOffsetAfterEdit() throws IOException, OperationCanceledException, BadLocationException {
+    fullSetup();
+    
+    OpenDefinitionsDocument doc = getter.getDocumentForFile(files[4]);
+    doc.insertString(0, "A new first line\n", null);
+    assertEquals("Error should move with its line", errors[1], model.getErrorAtOffset(doc, 125 + 17));
+    assertEquals("Error should move with its line", errors[5], model.getErrorAtOffset(doc, 38 + 17 + 5));
+    assertNull("No error on the inserted line", model.getErrorAtOffset(doc, 3));
+    assertNull("No error on the line after the first error", model.getErrorAtOffset(doc, 75 + 17));
+  }
+  
   /** Tests CompilerErrorModel.hasErrorsWithPositions(OpenDefinitionsDocument). 
    * @throws IOException if an IO operation fails
    * @throws OperationCanceledException if an operation is canceled unexpectedly
@@ -321,6 +341,59 @@ public final class CompilerErrorModelTest extends DrJavaTestCase {
     assertTrue("File shouldn't have errors with lines.", !model.hasErrorsWithPositions(doc));
   }
   
+  /** Tests CompilerErrorModel.update(Collection, List). 
+   * @throws IOException if an IO operation fails
+   * @throws OperationCanceledException if an operation is canceled unexpectedly
+   */
+  public void testUpdate() throws IOException, OperationCanceledException {
+    fullSetup();
+    Position oldPos = model.getPosition(errors[1]);
+    Position otherPos = model.getPosition(errors[12]);
+    
+    DJError same = new DJError(files[4], 3, 0, "Test error with File", false);
+    DJError added = new DJError(files[4], 2, 0, "Another error", false);
+    CompilerErrorModel updated = model.update(Arrays.asList(files[4]), Arrays.asList(same, added));
+    Utilities.clearEventQueue();  // constructor for CompilerErrorModel calls invokeLater
+    
+    assertEquals("Errors of files[4] should be replaced", 13, updated.getNumErrors());
+    List<DJError> inDoc = updated.getErrorsWithPositions(getter.getDocumentForFile(files[4]));
+    assertEquals("Two errors with positions in files[4]", 2, inDoc.size());
+    assertSame("New error should come first", added, inDoc.get(0));
+    assertSame("Unchanged error should be kept", errors[1], inDoc.get(1));
+    assertSame("Unchanged error should keep its position", oldPos, updated.getPosition(errors[1]));
+    assertEquals("Position of new error", 75, updated.getPosition(added).getOffset());
+    assertSame("Errors of other files should keep their positions", otherPos, updated.getPosition(errors[12]));
+    assertEquals("Old model should not change", 15, model.getNumErrors());
+  }
+  
+  /** Tests that update matches old errors by the current lines of their positions, not by their old line numbers.
+   * @throws IOException if an IO operation fails
+   * @throws OperationCanceledException if an operation is canceled unexpectedly
+   */
+  public void testUpdateAfterLinesInserted() throws IOException, OperationCanceledException {
+    fullSetup();
+    final OpenDefinitionsDocument doc = getter.getDocumentForFile(files[4]);
+    Position oldPos = model.getPosition(errors[1]);
+    Utilities.invokeAndWait(new Runnable() {
+      public void run() {
+        try { doc.insertString(0, "An inserted line.\n", null); }
+        catch (BadLocationException e) { throw new UnexpectedException(e); }
+      }
+    });
+    
+    DJError atOldLine = new DJError(files[4], 3, 0, "Test error with File", false);
+    DJError moved = new DJError(files[4], 4, 0, "Test error with File", false);
+    CompilerErrorModel updated = model.update(Arrays.asList(files[4]), Arrays.asList(atOldLine, moved));
+    Utilities.clearEventQueue();  // constructor for CompilerErrorModel calls invokeLater
+    
+    List<DJError> inDoc = updated.getErrorsWithPositions(doc);
+    assertEquals("Two errors with positions in files[4]", 2, inDoc.size());
+    assertSame("Error at the old line number is new", atOldLine, inDoc.get(0));
+    assertSame("Moved error should be the new error", moved, inDoc.get(1));
+    assertEquals("Old error should not change", 3, errors[1].lineNumber());
+    assertSame("Moved error should keep its position", oldPos, updated.getPosition(moved));
+  }
+  
   public void testErrorsInMultipleDocuments() throws IOException, OperationCanceledException {
     files = new File[] { 
       new File("/tmp/nowhere1"),
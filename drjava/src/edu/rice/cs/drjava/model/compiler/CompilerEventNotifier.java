@@ -31,7 +31,7 @@ package edu.rice.cs.drjava.model.compiler;
 import java.io.File;
 import java.util.List;
 
-import edu.rice.cs.drjava.model.EventNotifier;
+import edu.rice.cs.drjava.model.CopyOnWriteEventNotifier;
 
 /** * Keeps track of all listeners to a CompilerModel, and has the ability
  * to notify them of some event.
@@ -51,68 +51,69 @@ import edu.rice.cs.drjava.model.EventNotifier;
  * components, and should not be used directly outside of the "host" component.
  * <p>
  *
- * All methods in this class must use the synchronization methods
- * provided by ReaderWriterLock.  This ensures that multiple notifications
- * (reads) can occur simultaneously, but only one thread can be adding
- * or removing listeners (writing) at a time, and no reads can occur
- * during a write.
- * <p>
- *
- * <i>No</i> methods on this class should be synchronized using traditional
- * Java synchronization!
+ * Listeners are kept and notified by {@link CopyOnWriteEventNotifier}.
  * <p>
  *
  * @version $Id$
  */
-class CompilerEventNotifier extends EventNotifier<CompilerListener> implements CompilerListener {
+class CompilerEventNotifier extends CopyOnWriteEventNotifier<CompilerListener> implements CompilerListener {
+  
+  public CompilerEventNotifier() { super(CompilerListener.class); }
   
   /** Called after a compile is started by the GlobalModel. */
   public void compileStarted() {
 //    new ScrollableDialog(null, "CompilerEventNotifier.compileStarted() called for listeners " + _listeners, "", "").show();
-    _lock.startRead();
+    final long start = _startDispatch();
     try { for (CompilerListener cl : _listeners) { cl.compileStarted(); } }
-    finally { _lock.endRead(); }
+    finally { _endDispatch("compileStarted", start); }
   }
   
   /** Called when a compile has finished running. */
   public void compileEnded(File workDir, List<? extends File> excludedFiles) {
-    _lock.startRead();
+    final long start = _startDispatch();
     try { for (CompilerListener cl : _listeners) { cl.compileEnded(workDir, excludedFiles); } }
-    finally { _lock.endRead(); }
+    finally { _endDispatch("compileEnded", start); }
+  }
+
+  /** Called when background error checking has replaced the errors reported for some files. */
+  public void compileErrorsUpdated(List<? extends File> files) {
+    final long start = _startDispatch();
+    try { for (CompilerListener cl : _listeners) { cl.compileErrorsUpdated(files); } }
+    finally { _endDispatch("compileErrorsUpdated", start); }
   }
 
   /** Called if the compile cannot be performed. By default, the Exception is an UnexpectedException containing an
     * explanatory message.
     */
   public void compileAborted(Exception e) {
-    _lock.startRead();
+    final long start = _startDispatch();
     try { for (CompilerListener cl : _listeners) { cl.compileAborted(e); } }
-    finally { _lock.endRead(); }
+    finally { _endDispatch("compileAborted", start); }
   }
   
   /** Called when files are saved before compiling. It is up to the caller of this method to check if the 
     * documents have been saved, using IGetDocuments.hasModifiedDocuments().
     */
   public void saveBeforeCompile() {
-    _lock.startRead();
+    final long start = _startDispatch();
     try { for (CompilerListener cl : _listeners) { cl.saveBeforeCompile(); } }
-    finally { _lock.endRead(); }
+    finally { _endDispatch("saveBeforeCompile", start); }
   }
   
   /** Called when files are saved before compiling. It is up to the caller of this method to check if the 
     * documents have been saved, using IGetDocuments.hasModifiedDocuments().
     */
   public void saveUntitled() {
-    _lock.startRead();
+    final long start = _startDispatch();
     try { for (CompilerListener cl : _listeners) { cl.saveUntitled(); } }
-    finally { _lock.endRead(); }
+    finally { _endDispatch("saveUntitled", start); }
   }
   
   /** Called after the active compiler has been changed. */
   public void activeCompilerChanged() {
 //    new ScrollableDialog(null, "CompilerEventNotifier.compileStarted() called for listeners " + _listeners, "", "").show();
-    _lock.startRead();
+    final long start = _startDispatch();
     try { for (CompilerListener cl : _listeners) { cl.activeCompilerChanged(); } }
-    finally { _lock.endRead(); }
+    finally { _endDispatch("activeCompilerChanged", start); }
   }
 }
@@ -45,6 +45,12 @@ public interface CompilerListener {
    */
   public void compileEnded(File workDir, List<? extends File> excludedFiles);
   
+  /** Called when background error checking has replaced the errors reported for some files.  The new errors are
+    * available from the compiler model's CompilerErrorModel.  Runs in the event thread.
+    * @param files the files whose errors were replaced
+    */
+  public void compileErrorsUpdated(List<? extends File> files);
+  
   /** Called if a compilation is aborted. 
    * @param e the exception with which the compilation terminated
    */
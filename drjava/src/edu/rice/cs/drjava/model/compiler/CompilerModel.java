@@ -30,6 +30,7 @@ package edu.rice.cs.drjava.model.compiler;
 
 import java.io.IOException;
 import java.util.List;
+import edu.rice.cs.drjava.model.DJError;
 import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
 
 /** Interface for all compiler functionality in the model.  The compilation process itself can be monitored through
@@ -84,6 +85,18 @@ public interface CompilerModel {
     */
   public void compile(OpenDefinitionsDocument doc) throws IOException;
   
+  /** Compiles the current text of the given documents, whether or not they are saved, without writing any source or
+    * class files.  The classes go to an in-memory store and, if there are no errors, to the interactions pane, which 
+    * loads them in preference to the class files on disk until it is reset.  Does not notify listeners and does not
+    * change the compiler error model.
+    * @param docs the documents to be compiled
+    * @return the errors and warnings of the compilation
+    */
+  public List<DJError> compileInMemory(List<OpenDefinitionsDocument> docs);
+  
+  /** @return the classes produced by the last successful in-memory compilation */
+  public InMemoryClassStore getInMemoryClasses();
+  
   //----------------------------- Error Results -----------------------------//
   
   /** @return the CompilerErrorModel representing the last compile. */
@@ -95,6 +108,10 @@ public interface CompilerModel {
   /** Resets the compiler error state to have no errors. */
   public void resetCompilerErrors();
   
+  /** @return the number of requested files that the last compilation skipped because they were up to date, which is
+    * always 0 unless incremental compilation is enabled. */
+  public int getNumSkippedFiles();
+  
   //-------------------------- Compiler Management --------------------------//
   
   /** @return all registered compilers that are actually available.  If there are none,
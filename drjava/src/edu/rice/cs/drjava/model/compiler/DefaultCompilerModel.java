@@ -33,6 +33,7 @@ import java.io.IOException;
 
 import javax.swing.JButton;
 import javax.swing.AbstractAction;
+import java.awt.EventQueue;
 import java.awt.event.ActionEvent;
 import javax.swing.JOptionPane;
 import java.util.*;
@@ -40,6 +41,7 @@ import java.util.*;
 import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.config.OptionConstants;
 import edu.rice.cs.drjava.model.DJError;
+import edu.rice.cs.drjava.model.DefaultGlobalModel;
 import edu.rice.cs.drjava.model.GlobalModel;
 import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
 import edu.rice.cs.drjava.model.DrJavaFileUtils;
@@ -82,7 +84,7 @@ public class DefaultCompilerModel implements CompilerModel {
   private final GlobalModel _model;
   
   /** The error model containing all current compiler errors. */
-  private CompilerErrorModel _compilerErrorModel;
+  private volatile CompilerErrorModel _compilerErrorModel;
   
   /** The lock providing mutual exclustion between compilation and unit testing */
   private Object _compilerLock = new Object();
@@ -91,6 +93,18 @@ public class DefaultCompilerModel implements CompilerModel {
     * numbers to .dj* line numbers when an error is thrown */
   public LanguageLevelStackTraceMapper _LLSTM;
   
+  /** The class dependencies of the files compiled in incremental mode; guarded by _compilerLock. */
+  private final CompilationDependencyGraph _dependencyGraph = new CompilationDependencyGraph();
+  
+  /** The number of requested files that the last compilation did not need to recompile. */
+  private volatile int _numSkippedFiles = 0;
+  
+  /** The classes produced by the last successful in-memory compilation. */
+  private volatile InMemoryClassStore _inMemoryClasses = new InMemoryClassStore();
+  
+  /** Checks edited documents for errors in the background. */
+  private final BackgroundErrorChecker _checker;
+  
   /** Main constructor.  
     * @param m the GlobalModel that is the source of documents for this CompilerModel
     * @param compilers  The compilers to use.  The first will be made active; all are assumed
@@ -120,6 +134,7 @@ public class DefaultCompilerModel implements CompilerModel {
     _model = m;
     _compilerErrorModel = new CompilerErrorModel(new DJError[0], _model);
     _LLSTM = new LanguageLevelStackTraceMapper(_model);
+    _checker = new BackgroundErrorChecker(this, _model);
   }
   
   
@@ -156,7 +171,9 @@ public class DefaultCompilerModel implements CompilerModel {
     * <p>This method formerly only compiled documents which were out of sync with their class file, as a performance 
     * optimization.  However, bug #634386 pointed out that unmodified files could depend on modified files, in which 
     * case this command would not recompile a file in some situations when it should.  Since we value correctness over
-    * performance, we now always compile all open documents.</p>
+    * performance, we now always compile all open documents, unless {@link OptionConstants#INCREMENTAL_COMPILATION} is
+    * set.  In that case only the documents that changed since they were last compiled and the documents that depend 
+    * on them (according to the class files of the previous build) are recompiled; see _compileIncrementally.</p>
     * @throws IOException if a filesystem-related problem prevents compilation
     */
   public void compileAll() throws IOException {
@@ -215,6 +232,83 @@ public class DefaultCompilerModel implements CompilerModel {
     else _notifier.compileAborted(new UnexpectedException(doc + "is modified but unsaved"));
   }
   
+  /** Compiles the current text of the given documents without saving them and without writing class files.  Source
+    * files that are not among the documents are not compiled; their classes are found on the class path, which includes
+    * the build directory.  Language level documents are not supported.
+    * @param docs the documents to be compiled
+    * @return the errors and warnings of the compilation
+    */
+  public List<DJError> compileInMemory(List<OpenDefinitionsDocument> docs) {
+    final ArrayList<DJError> errors = new ArrayList<DJError>();
+    final ArrayList<SourceSnapshot> sources = new ArrayList<SourceSnapshot>();
+    for (OpenDefinitionsDocument doc : docs) {
+      File f = doc.getRawFile();
+      if (! doc.isSourceFile() || f == null || f == FileOps.NULL_FILE) continue;
+      if (DrJavaFileUtils.isLLFile(f)) {
+        errors.add(new DJError(f, "Language level files cannot be compiled in memory", false));
+      }
+      else sources.add(SourceSnapshot.make(doc));
+    }
+    if (! errors.isEmpty() || sources.isEmpty()) return errors;
+    
+    final InMemoryClassStore store = new InMemoryClassStore();
+    errors.addAll(compileSnapshots(sources, store));
+    for (DJError e : errors) { if (! e.isWarning()) return errors; }
+    _inMemoryClasses = store;
+    // only a DefaultGlobalModel has an interactions pane; the other global models throw from getInteractionsModel
+    if (_model instanceof DefaultGlobalModel) { _model.getInteractionsModel().setInMemoryClasses(store.getClasses()); }
+    return errors;
+  }
+  
+  /** Compiles source snapshots with the active compiler without writing class files.  May be called from any thread;
+    * does not fire events or change the error model.
+    * @param sources the snapshots to compile
+    * @param output receives the generated classes
+    * @return the errors and warnings of the compilation
+    */
+  List<DJError> compileSnapshots(List<SourceSnapshot> sources, InMemoryClassStore output) {
+    final ArrayList<DJError> errors = new ArrayList<DJError>();
+    CompilerInterface compiler = getActiveCompiler();
+    if (! (compiler instanceof InMemoryCompiler)) {
+      errors.add(new DJError(compiler.getName() + " does not support compiling unsaved documents", false));
+      return errors;
+    }
+    
+    List<File> classPath = CollectUtil.makeList(_model.getClassPath());
+    List<File> bootClassPath = null;
+    String bootProp = System.getProperty("drjava.bootclasspath");
+    if (bootProp != null) { bootClassPath = CollectUtil.makeList(IOUtil.parsePath(bootProp)); }
+    
+    long start = System.currentTimeMillis();
+    errors.addAll(((InMemoryCompiler) compiler).compileInMemory(sources, classPath, bootClassPath, null, true, output));
+    _log.log("In-memory compilation of " + sources.size() + " documents took " + 
+             (System.currentTimeMillis() - start) + " ms");
+    return errors;
+  }
+  
+  /** Returns the source files that directly depend on the given files, as recorded by the last incremental
+    * compilation.  Waits for a running compilation to finish.
+    * @param files the files whose dependents are wanted
+    * @return the direct dependents of files
+    */
+  Set<File> getDependents(Collection<File> files) {
+    synchronized(_compilerLock) { return _dependencyGraph.getDependents(files); }
+  }
+  
+  /** Replaces the errors of the given files in the error model with the result of a background check and notifies
+    * listeners.  Only runs in the event thread, so the positions of the new errors are known when listeners run.
+    * @param files the files that were checked
+    * @param errors the errors found in those files
+    */
+  void updateErrors(List<File> files, List<? extends DJError> errors) {
+    assert EventQueue.isDispatchThread();
+    _compilerErrorModel = _compilerErrorModel.update(files, errors);
+    _notifier.compileErrorsUpdated(files);
+  }
+  
+  /** @return the classes produced by the last successful in-memory compilation */
+  public InMemoryClassStore getInMemoryClasses() { return _inMemoryClasses; }
+  
   /** Check that there are no unsaved or untitled files currently open.
     * @return  {@code true} iff compilation should continue
     */
@@ -229,16 +323,18 @@ public class DefaultCompilerModel implements CompilerModel {
     * @throws IOException if an IO operation fails
     */
   private void _doCompile(List<OpenDefinitionsDocument> docs) throws IOException {
+    _checker.cancel();  // a running background check would overwrite the results of this compilation
     _LLSTM.clearCache();
     final ArrayList<File> filesToCompile = new ArrayList<File>();
     final ArrayList<File> excludedFiles = new ArrayList<File>();
     final ArrayList<DJError> packageErrors = new ArrayList<DJError>();
+    final HashMap<File, String> packages = new HashMap<File, String>();
     
     for (OpenDefinitionsDocument doc : docs) {
       if (doc.isSourceFile()) {
         File f = doc.getFile();
         // Check for null in case the file is untitled (not sure this is the correct check)
-        if (f != null && f != FileOps.NULL_FILE) { filesToCompile.add(f); }
+        if (f != null && f != FileOps.NULL_FILE) { filesToCompile.add(f); packages.put(f, doc.getPackageName()); }
         doc.setCachedClassFile(FileOps.NULL_FILE); // clear cached class file
         
         try { doc.getSourceRoot(); }
@@ -261,7 +357,7 @@ public class DefaultCompilerModel implements CompilerModel {
         if (buildDir != null && buildDir != FileOps.NULL_FILE && ! buildDir.exists() && ! buildDir.mkdirs())
           throw new IOException("Could not create build directory: " + buildDir);
         
-        _compileFiles(filesToCompile, buildDir);
+        _compileFiles(filesToCompile, buildDir, packages);
       }
       catch (Throwable t) {
         DJError err = new DJError(t.toString(), false);
@@ -324,9 +420,11 @@ public class DefaultCompilerModel implements CompilerModel {
    * @param files The files to be compiled
    * @param buildDir The output directory for all the .class files; @code{null} 
    *        means output to the same directory as the source file
+   * @param packages maps each file to the name of its package
    * @throws IOException if an IO operation fails
    */
-  private void _compileFiles(List<File> files, File buildDir) throws IOException {
+  private void _compileFiles(List<File> files, File buildDir, Map<File, String> packages) throws IOException {
+    _numSkippedFiles = 0;
     if (! files.isEmpty()) {
       /* Canonicalize buildDir */
       if (buildDir == FileOps.NULL_FILE) buildDir = null; // compiler interface wants null pointer if no build directory
@@ -351,10 +449,15 @@ public class DefaultCompilerModel implements CompilerModel {
         
         // Mutual exclusion with JUnit code that finds all test classes (in DefaultJUnitModel)
         synchronized(_compilerLock) {
-          if (preprocessedFiles == null) {
+          if (preprocessedFiles == null && DrJava.getConfig().getSetting(OptionConstants.INCREMENTAL_COMPILATION)) {
+            _compileIncrementally(compiler, files, classPath, buildDir, bootClassPath, packages, errors);
+          }
+          else if (preprocessedFiles == null) {
+            _dependencyGraph.clear();
             errors.addAll(compiler.compile(files, classPath, null, buildDir, bootClassPath, null, true));
           }
           else {
+            _dependencyGraph.clear();
             /** If compiling a language level file, do not show warnings, as these are not caught by the language level 
               * parser */
             errors.addAll(compiler.compile(preprocessedFiles, classPath, null, buildDir, bootClassPath, null, false));
@@ -369,6 +472,72 @@ public class DefaultCompilerModel implements CompilerModel {
     }
   }
   
+  /** Compiles the files that changed since the last build and the files that depend on them, skipping the rest.  If
+    * the API of a recompiled file changed (including the values of its constants, which javac inlines), the skipped
+    * files are compiled as well, so the build is equivalent to a full build.  Assumes _compilerLock is held.
+    * @param compiler the compiler to use
+    * @param files the files requested for compilation
+    * @param classPath the class path
+    * @param buildDir the canonical build directory, or null to place class files next to their sources
+    * @param bootClassPath the boot class path, or null
+    * @param packages maps each file to the name of its package
+    * @param errors to be populated with the errors and warnings of the compilation
+    */
+  private void _compileIncrementally(CompilerInterface compiler, List<File> files, List<File> classPath, 
+                                     File buildDir, List<File> bootClassPath, Map<File, String> packages,
+                                     List<DJError> errors) {
+    final HashMap<File, CompilationDependencyGraph.Stamp> stamps = 
+      new HashMap<File, CompilationDependencyGraph.Stamp>();
+    final HashMap<File, File> outputDirs = new HashMap<File, File>();
+    for (File f: files) {
+      stamps.put(f, CompilationDependencyGraph.Stamp.of(f));
+      String pkg = packages.get(f);
+      if (buildDir == null || pkg == null) outputDirs.put(f, f.getParentFile());
+      else outputDirs.put(f, pkg.equals("") ? buildDir : new File(buildDir, pkg.replace('.', File.separatorChar)));
+    }
+    
+    final String configuration = compiler.getName() + "|" + buildDir + "|" + classPath + "|" + bootClassPath;
+    final List<File> selected = _dependencyGraph.selectFiles(files, configuration);
+    int compiled = selected.size();
+    if (! selected.isEmpty()) {
+      boolean apiChanged = _compileAndRecord(compiler, selected, classPath, buildDir, bootClassPath, outputDirs, 
+                                             stamps, errors);
+      if (apiChanged && selected.size() < files.size()) {
+        final ArrayList<File> rest = new ArrayList<File>(files);
+        rest.removeAll(selected);
+        _log.log("API change detected; compiling the remaining " + rest.size() + " files");
+        _compileAndRecord(compiler, rest, classPath, buildDir, bootClassPath, outputDirs, stamps, errors);
+        compiled = files.size();
+      }
+    }
+    _numSkippedFiles = files.size() - compiled;
+    _log.log("Incremental compilation recompiled " + compiled + " files and skipped " + _numSkippedFiles + 
+             " unchanged files");
+  }
+  
+  /** Compiles files and, if there are no errors, records their class files in the dependency graph; otherwise drops
+    * them from the graph.  Assumes _compilerLock is held.
+    * @return true if the API of a previously compiled file changed
+    */
+  private boolean _compileAndRecord(CompilerInterface compiler, List<File> files, List<File> classPath, 
+                                    File buildDir, List<File> bootClassPath, Map<File, File> outputDirs, 
+                                    Map<File, CompilationDependencyGraph.Stamp> stamps, 
+                                    List<DJError> errors) {
+    final List<? extends DJError> result = 
+      compiler.compile(files, classPath, null, buildDir, bootClassPath, null, true);
+    errors.addAll(result);
+    for (DJError e: result) {
+      if (! e.isWarning()) {
+        _dependencyGraph.remove(files);
+        return false;
+      }
+    }
+    return _dependencyGraph.update(files, outputDirs, stamps);
+  }
+  
+  /** @return the number of requested files that the last compilation skipped because they were up to date */
+  public int getNumSkippedFiles() { return _numSkippedFiles; }
+  
   /** Reorders files so that all file names containing "Test" are at the end.  
    * @param files the files to be sorted
    * @return the sorted list of files
@@ -37,6 +37,7 @@ import java.util.List;
 public class DummyCompilerListener implements CompilerListener {
   public void compileStarted() { }
   public void compileEnded(File workDir, List<? extends File> excludedFiles) { }
+  public void compileErrorsUpdated(List<? extends File> files) { }
   public void compileAborted(Exception e) { }
   public void saveBeforeCompile() { }
   public void saveUntitled() { }
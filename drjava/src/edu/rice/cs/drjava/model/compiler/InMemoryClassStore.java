@@ -0,0 +1,87 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.URI;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import javax.tools.JavaFileObject;
+import javax.tools.SimpleJavaFileObject;
+
+/** Holds class files produced by an {@link InMemoryCompiler}, keyed by binary class name (e.g. {@code p.A$B}).
+  * May be accessed concurrently.
+  * @version $Id$
+  */
+public class InMemoryClassStore {
+  
+  private final Map<String, byte[]> _classes = new HashMap<String, byte[]>();
+  
+  /** Creates a class file object whose contents are put into this store when its output stream is closed.
+    * @param className the binary name of the class
+    * @return the class file object
+    */
+  public JavaFileObject makeClassFile(final String className) {
+    URI uri = URI.create("memory:///" + className.replace('.', '/') + JavaFileObject.Kind.CLASS.extension);
+    return new SimpleJavaFileObject(uri, JavaFileObject.Kind.CLASS) {
+      @Override public OutputStream openOutputStream() {
+        return new ByteArrayOutputStream() {
+          @Override public void close() { put(className, toByteArray()); }
+        };
+      }
+    };
+  }
+  
+  /** Stores a class file, replacing an earlier version of the class. 
+    * @param className the binary name of the class
+    * @param bytes the contents of the class file
+    */
+  public synchronized void put(String className, byte[] bytes) { _classes.put(className, bytes); }
+  
+  /** @param className the binary name of a class
+    * @return the contents of the class file, or {@code null} if the store does not hold the class */
+  public synchronized byte[] get(String className) { return _classes.get(className); }
+  
+  /** @return the names of the stored classes, sorted */
+  public synchronized Set<String> getClassNames() { return new TreeSet<String>(_classes.keySet()); }
+  
+  /** @return a copy of the stored classes, suitable to be sent to the interpreter JVM */
+  public synchronized HashMap<String, byte[]> getClasses() { return new HashMap<String, byte[]>(_classes); }
+  
+  /** @return the number of stored classes */
+  public synchronized int size() { return _classes.size(); }
+  
+  /** Removes all classes. */
+  public synchronized void clear() { _classes.clear(); }
+}
@@ -0,0 +1,60 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.File;
+import java.util.List;
+
+import javax.tools.JavaFileObject;
+
+import edu.rice.cs.drjava.model.DJError;
+
+/** A compiler that can compile sources held in memory, such as snapshots of the text of unsaved documents, and
+  * write the resulting class files to memory instead of disk.  Compilers that do not implement this interface
+  * (including those from older platform libraries) only compile files on disk.
+  * @version $Id$
+  */
+public interface InMemoryCompiler extends CompilerInterface {
+  
+  /** Compile the given sources without reading or writing any source or class files of their own.
+    * @param sources  Source objects to compile, typically {@link SourceSnapshot}s.
+    * @param classPath  Support jars or directories that should be on the classpath.  If {@code null}, the default is 
+    *                   used.
+    * @param bootClassPath  The bootclasspath; should be consistent with {@code sourceVersion}.  If {@code null}, the
+    *                       default is used.
+    * @param sourceVersion  The language version of the sources.  If {@code null}, the default is used.
+    * @param showWarnings  Whether compiler warnings should be shown or ignored.
+    * @param output  The store that receives the compiled classes.
+    * @return Errors that occurred. If no errors, should be zero length (not null).
+    */
+  List<? extends DJError> compileInMemory(List<? extends JavaFileObject> sources, List<? extends File> classPath,
+                                          List<? extends File> bootClassPath, String sourceVersion, 
+                                          boolean showWarnings, InMemoryClassStore output);
+}
@@ -0,0 +1,68 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.File;
+
+import javax.tools.SimpleJavaFileObject;
+
+import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
+
+/** A Java source file object holding a snapshot of the text of a document.  Its URI is that of the document's file,
+  * so compiler errors refer to the document's file as if the source had been read from disk.
+  * @version $Id$
+  */
+public class SourceSnapshot extends SimpleJavaFileObject {
+  
+  private final File _file;
+  private final String _text;
+  
+  /** @param file the file of the document, which need not exist or be up to date
+    * @param text the text of the document
+    */
+  public SourceSnapshot(File file, String text) {
+    super(file.getAbsoluteFile().toURI(), Kind.SOURCE);
+    _file = file;
+    _text = text;
+  }
+  
+  /** Takes a snapshot of the current text of the given document.  Assumes the document has a file.
+    * @param doc the document
+    * @return the snapshot
+    */
+  public static SourceSnapshot make(OpenDefinitionsDocument doc) {
+    return new SourceSnapshot(doc.getRawFile(), doc.getText());
+  }
+  
+  /** @return the file of the document */
+  public File getFile() { return _file; }
+  
+  @Override public CharSequence getCharContent(boolean ignoreEncodingErrors) { return _text; }
+}
@@ -144,7 +144,7 @@ public abstract class DocumentDebugAction<T extends EventRequest> extends DebugA
     if (refTypes.size() > 0) createRequests(refTypes);
     else {
       if (_exactClassName != null) {
-        List<ReferenceType> referenceTypes = _manager.getVM().classesByName(_exactClassName);
+        List<ReferenceType> referenceTypes = _manager.getTypeCache().classesByName(_exactClassName);
         if (referenceTypes.size() > 0) {
           // class has been loaded, but couldn't find this line number
           throw new LineNotExecutableException("Cannot set breakpoint, line " + getLineNumber() + 
@@ -139,6 +139,7 @@ public class EventHandlerThread extends Thread {
     //  _handleModificationWatchpointEvent((ModificationWatchpointEvent) e);
     //}
     else if (e instanceof ClassPrepareEvent) _handleClassPrepareEvent((ClassPrepareEvent) e);
+    else if (e instanceof ClassUnloadEvent) _handleClassUnloadEvent((ClassUnloadEvent) e);
     else if (e instanceof ThreadStartEvent) _handleThreadStartEvent((ThreadStartEvent) e);
     else if (e instanceof ThreadDeathEvent) _handleThreadDeathEvent((ThreadDeathEvent) e);
     else if (e instanceof VMDeathEvent) _handleVMDeathEvent((VMDeathEvent) e);
@@ -233,6 +234,16 @@ public class EventHandlerThread extends Thread {
     });
   }
   
+  /** Responds to a class unload event.
+    * @param e class unload event from JPDA
+    */
+  private void _handleClassUnloadEvent(final ClassUnloadEvent e) {
+    // To ensure non-interference, run in Event thread
+    SwingUtilities.invokeLater(new Runnable() {
+      public void run() { _debugger.classUnloaded(e.className()); }
+    });
+  }
+  
   /** Responds to a thread start event.  Not run in event thread because threadStarted forces event thread execution.
     * @param e thread start event from JPDA
     */
@@ -127,7 +127,7 @@ public class JPDABreakpoint extends DocumentDebugAction<BreakpointRequest> imple
         }
         
         // Get locations for the line number, use the first
-        List<Location> lines = rt.locationsOfLine(_manager.LLBreakpointLineNum(this));
+        List<Location> lines = _manager.getTypeCache().locationsOfLine(rt, _manager.LLBreakpointLineNum(this));
         if (lines.size() == 0) {
           // Can't find a location on this line
           setEnabled(false);          
@@ -108,6 +108,9 @@ public class JPDADebugger implements Debugger {
   /** Manages all event requests in JDI. */
   private volatile EventRequestManager _eventManager;
   
+  /** Caches the classes and line tables looked up in the interactions JVM. */
+  private volatile ReferenceTypeCache _typeCache;
+  
   /** Vector of all current Watches. */
   private final ArrayList<DebugWatchData> _watches = new ArrayList<DebugWatchData>();
   
@@ -145,6 +148,7 @@ public class JPDADebugger implements Debugger {
     _model = model;
     _vm = null;
     _eventManager = null;
+    _typeCache = null;
     
     _suspendedThreads = new RandomAccessStack();
     _runningThread = null;
@@ -228,6 +232,11 @@ public class JPDADebugger implements Debugger {
       tdr.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
       tdr.enable();
       
+      // Listen for events when classes are unloaded, so that they can be dropped from the type cache
+      ClassUnloadRequest cur = _eventManager.createClassUnloadRequest();
+      cur.setSuspendPolicy(EventRequest.SUSPEND_NONE);
+      cur.enable();
+      
       // Listen for events from JPDA in a new thread
       EventHandlerThread eventHandler = new EventHandlerThread(this, _vm);
       eventHandler.start();
@@ -273,6 +282,7 @@ public class JPDADebugger implements Debugger {
         _vm = null;
         _suspendedThreads = new RandomAccessStack();
         _eventManager = null;
+        _typeCache = null;
         _runningThread = null;
         _updateWatches();
       }
@@ -959,6 +969,9 @@ public class JPDADebugger implements Debugger {
   /** @return the current EventRequestManager from JDI, or null if startUp() has not been called. */
   EventRequestManager getEventRequestManager() { return _eventManager; }
   
+  /** @return the cache of classes and line tables in the interactions JVM, or null if startUp() has not been called. */
+  ReferenceTypeCache getTypeCache() { return _typeCache; }
+  
   /** @return the pending request manager used by the debugger. */
   PendingRequestManager getPendingRequestManager() { return _pendingRequestManager; }
   
@@ -1017,6 +1030,7 @@ public class JPDADebugger implements Debugger {
       host.setValue("127.0.0.1"); // necessary if hostname can't be resolved
       _vm = connector.attach(args);
       _eventManager = _vm.eventRequestManager();
+      _typeCache = new ReferenceTypeCache(_vm);
     }
     catch(Exception e) { 
 //      System.err.println("Could not connect to VM: " + e);
@@ -1088,7 +1102,7 @@ public class JPDADebugger implements Debugger {
     // Get all classes that match this name
     List<ReferenceType> classes;
     
-    try { classes = _vm.classesByName(className); }
+    try { classes = _typeCache.classesByName(className); }
     catch (VMDisconnectedException vmde) {
       // We're quitting, return empty Vector.
       return new Vector<ReferenceType>();
@@ -1103,7 +1117,7 @@ public class JPDADebugger implements Debugger {
       if (lineNumber != DebugAction.ANY_LINE) {
         List<Location> lines = new LinkedList<Location>();
         try {
-          lines = ref.locationsOfLine(lineNumber);
+          lines = _typeCache.locationsOfLine(ref, lineNumber);
         }
         catch (AbsentInformationException aie) {
           // try looking in inner classes
@@ -1116,12 +1130,12 @@ public class JPDADebugger implements Debugger {
         if (lines.size() == 0) {
           // The ReferenceType might be in an inner class, so
           //  look for locationsOfLine for nestedTypes
-          List<ReferenceType> innerRefs = ref.nestedTypes();
+          List<ReferenceType> innerRefs = _typeCache.nestedTypes(ref);
           ref = null;
           for (int j = 0; j < innerRefs.size(); j++) {
             try {
               ReferenceType currRef = innerRefs.get(j);
-              lines = currRef.locationsOfLine(lineNumber);
+              lines = _typeCache.locationsOfLine(currRef, lineNumber);
               if (lines.size() > 0) {
                 ref = currRef;
                 break;
@@ -1682,7 +1696,7 @@ public class JPDADebugger implements Debugger {
    * @throws DebugException  If no loaded class has the given name.
    */
   private ReferenceType _getClass(String name) throws DebugException {
-    List<ReferenceType> classes = _vm.classesByName(name);
+    List<ReferenceType> classes = _typeCache.someClassesByName(name);
     if (classes.isEmpty()) {
       throw new DebugException("Class '" + name + "' is not loaded");
     }
@@ -1931,6 +1945,15 @@ public class JPDADebugger implements Debugger {
     EventQueue.invokeLater(new Runnable() { public void run() { _notifier.nonCurrThreadDied(); } }); 
   }
   
+  /** Drops an unloaded class from the type cache.
+    * @param className the name of the unloaded class
+    */
+  void classUnloaded(String className) {
+    assert EventQueue.isDispatchThread();
+    ReferenceTypeCache cache = _typeCache;
+    if (cache != null) cache.classUnloaded(className);
+  }
+  
   /** Notifies all listeners that the debugger has shut down. updateThreads is set to true if the threads and stack 
     * tables need to be updated, false if there are no suspended threads
     */
@@ -72,6 +72,7 @@ public class PendingRequestManager {
       request.addClassFilter(className + "*");
       request.setSuspendPolicy(EventRequest.SUSPEND_EVENT_THREAD);
       request.enable();
+      _manager.getTypeCache().track(className);
       //System.out.println("Creating prepareRequest in class " + className);
     }
     actions.add(action);
@@ -100,11 +101,10 @@ public class PendingRequestManager {
     * @return true if line number is found
     */
   private boolean recursiveFindLineNumber(int lineNumber, ReferenceType rt) {
+    ReferenceTypeCache cache = _manager.getTypeCache();
     try {
-      for(Location l: rt.allLineLocations()) {
-        if (l.lineNumber() == lineNumber) { return true; }
-      }
-      for(ReferenceType nested: rt.nestedTypes()) {
+      if (cache.locationsOfLine(rt, lineNumber).size() > 0) { return true; }
+      for(ReferenceType nested: cache.nestedTypes(rt)) {
         if (recursiveFindLineNumber(lineNumber, nested) == true) { return true; }
       }
     }
@@ -145,6 +145,8 @@ public class PendingRequestManager {
    */
   public void classPrepared (ClassPrepareEvent event) throws DebugException {
     ReferenceType rt = event.referenceType();
+    ReferenceTypeCache cache = _manager.getTypeCache();
+    cache.classPrepared(rt);
     //DrJava.consoleOut().println("In classPrepared. rt: " + rt);
     //DrJava.consoleOut().println("equals getReferenceType: " +
     //                   rt.equals(_manager.getReferenceType(rt.name())));
@@ -177,7 +179,8 @@ public class PendingRequestManager {
       int lineNumber = LLDDALineNum(a);//a.getLineNumber();
       if (lineNumber != DebugAction.ANY_LINE) {
         try {
-          List<Location> lines = rt.locationsOfLine(lineNumber);
+          // all actions share the line table of rt, which the cache fetches only once
+          List<Location> lines = cache.locationsOfLine(rt, lineNumber);
           if (lines.size() == 0) {
             // Do not disable action; the line number might just be in another class in the same file
             String exactClassName = a.getExactClassName();
@@ -0,0 +1,181 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.drjava.model.debug.jpda;
+
+import com.sun.jdi.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+
+/** Caches the loaded classes and line tables that the debugger looks up in the interactions JVM, since every JDI query
+  * is a round trip to that JVM.  The cache is kept current by class prepare events, which the PendingRequestManager
+  * receives for the classes containing breakpoints, and by class unload events.  Because a class may be loaded again
+  * by a different class loader, the loaded copies of a class are only cached while class prepare events are delivered
+  * for it.  Only accessed in the event thread.
+  * @version $Id$
+  */
+class ReferenceTypeCache {
+  
+  private final VirtualMachine _vm;
+  
+  /** Names of the outer classes for which class prepare events are delivered. */
+  private final HashSet<String> _tracked = new HashSet<String>();
+  
+  /** All loaded copies of tracked classes, by name. */
+  private final HashMap<String, List<ReferenceType>> _classes = new HashMap<String, List<ReferenceType>>();
+  
+  /** Some loaded copies of untracked classes, by name. */
+  private final HashMap<String, List<ReferenceType>> _someClasses = new HashMap<String, List<ReferenceType>>();
+  
+  /** The loaded nested types of tracked classes. */
+  private final HashMap<ReferenceType, List<ReferenceType>> _nested = new HashMap<ReferenceType, List<ReferenceType>>();
+  
+  /** The line tables of classes: line number -> locations on that line, in code order. */
+  private final HashMap<ReferenceType, HashMap<Integer, List<Location>>> _lines = 
+    new HashMap<ReferenceType, HashMap<Integer, List<Location>>>();
+  
+  ReferenceTypeCache(VirtualMachine vm) { _vm = vm; }
+  
+  /** Records that class prepare events are delivered for the given class and its nested classes.
+    * @param className the name of an outer class
+    */
+  void track(String className) { _tracked.add(className); }
+  
+  /** Returns all loaded copies of a class, like VirtualMachine.classesByName.
+    * @param name the fully qualified name of the class
+    * @return the loaded reference types with the given name
+    */
+  List<ReferenceType> classesByName(String name) {
+    if (! _isTracked(name)) return _vm.classesByName(name);
+    List<ReferenceType> classes = _classes.get(name);
+    if (classes == null) {
+      classes = new ArrayList<ReferenceType>(_vm.classesByName(name));
+      _classes.put(name, classes);
+    }
+    return Collections.unmodifiableList(classes);
+  }
+  
+  /** Returns loaded copies of a class, caching them even if the class is not tracked.  Copies loaded later by other
+    * class loaders may be missing, so this is only suitable where any loaded copy will do.
+    * @param name the fully qualified name of the class
+    * @return some loaded reference types with the given name; empty if the class is not loaded
+    */
+  List<ReferenceType> someClassesByName(String name) {
+    if (_isTracked(name)) return classesByName(name);
+    List<ReferenceType> classes = _someClasses.get(name);
+    if (classes == null) {
+      classes = _vm.classesByName(name);
+      if (classes.isEmpty()) return classes;  // it may be loaded later
+      _someClasses.put(name, classes);
+    }
+    return classes;
+  }
+  
+  /** Returns the loaded types nested in a class, like ReferenceType.nestedTypes, which scans all loaded classes.
+    * @param rt a reference type
+    * @return the loaded nested types of rt
+    */
+  List<ReferenceType> nestedTypes(ReferenceType rt) {
+    if (! _isTracked(rt.name())) return rt.nestedTypes();
+    List<ReferenceType> nested = _nested.get(rt);
+    if (nested == null) {
+      nested = rt.nestedTypes();
+      _nested.put(rt, nested);
+    }
+    return nested;
+  }
+  
+  /** Returns the locations on a line, like ReferenceType.locationsOfLine.  The whole line table of the type is fetched
+    * on the first request, so later requests for any line of the type need no round trip.
+    * @param rt a prepared reference type
+    * @param lineNumber the line number
+    * @return the locations on the line, in code order; empty if the line has no code
+    * @throws AbsentInformationException if rt has no line number information
+    */
+  List<Location> locationsOfLine(ReferenceType rt, int lineNumber) throws AbsentInformationException {
+    HashMap<Integer, List<Location>> table = _lines.get(rt);
+    if (table == null) {
+      table = new HashMap<Integer, List<Location>>();
+      for (Location l: rt.allLineLocations()) {
+        List<Location> onLine = table.get(l.lineNumber());
+        if (onLine == null) {
+          onLine = new ArrayList<Location>();
+          table.put(l.lineNumber(), onLine);
+        }
+        onLine.add(l);
+      }
+      _lines.put(rt, table);
+    }
+    List<Location> onLine = table.get(lineNumber);
+    if (onLine == null) return Collections.emptyList();
+    return Collections.unmodifiableList(onLine);
+  }
+  
+  /** Updates the cache after a class was prepared.
+    * @param rt the prepared reference type
+    */
+  void classPrepared(ReferenceType rt) {
+    final String name = rt.name();
+    List<ReferenceType> classes = _classes.get(name);
+    if (classes != null && ! classes.contains(rt)) classes.add(rt);
+    _invalidateNested(name);
+  }
+  
+  /** Updates the cache after a class was unloaded.
+    * @param name the name of the unloaded class
+    */
+  void classUnloaded(String name) {
+    _classes.remove(name);
+    _someClasses.remove(name);
+    _invalidateNested(name);
+    for (Iterator<ReferenceType> i = _lines.keySet().iterator(); i.hasNext(); ) {
+      if (i.next().name().equals(name)) i.remove();
+    }
+  }
+  
+  /** Drops the nested types of the class with the given name and of the classes enclosing it. */
+  private void _invalidateNested(String name) {
+    for (Iterator<ReferenceType> i = _nested.keySet().iterator(); i.hasNext(); ) {
+      String outer = i.next().name();
+      if (name.equals(outer) || name.startsWith(outer + "$")) i.remove();
+    }
+  }
+  
+  /** @return true if class prepare events are delivered for the class with the given name */
+  private boolean _isTracked(String name) {
+    // Same rule as in PendingRequestManager.classPrepared: crop off the $ and anything after it
+    int indexOfDollar = name.indexOf('$');
+    if (indexOfDollar > 1) name = name.substring(0, indexOfDollar);
+    return _tracked.contains(name);
+  }
+}
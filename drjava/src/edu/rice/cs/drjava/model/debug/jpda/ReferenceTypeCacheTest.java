@@ -0,0 +1,181 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.drjava.model.debug.jpda;
+
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import com.sun.jdi.*;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Tests the cache of JDI lookups, using stand-ins for the interactions JVM that count the queries made.
+  * @version $Id$
+  */
+public final class ReferenceTypeCacheTest extends DrJavaTestCase {
+  
+  /** Classes loaded in the fake VM, by name. */
+  private final HashMap<String, List<ReferenceType>> _loaded = new HashMap<String, List<ReferenceType>>();
+  
+  /** Number of queries made, by method name. */
+  private final HashMap<String, Integer> _queries = new HashMap<String, Integer>();
+  
+  private ReferenceTypeCache _cache;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    _loaded.clear();
+    _queries.clear();
+    _cache = new ReferenceTypeCache(_proxy(VirtualMachine.class, new InvocationHandler() {
+      public Object invoke(Object proxy, Method m, Object[] args) {
+        _count(m.getName());
+        if (m.getName().equals("classesByName")) return new ArrayList<ReferenceType>(_loaded(args[0].toString()));
+        throw new UnsupportedOperationException(m.getName());
+      }
+    }));
+  }
+  
+  private <T> T _proxy(Class<T> c, InvocationHandler h) {
+    return c.cast(Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] { c }, h));
+  }
+  
+  private void _count(String query) {
+    Integer n = _queries.get(query);
+    _queries.put(query, (n == null) ? 1 : n + 1);
+  }
+  
+  private int _queries(String query) {
+    Integer n = _queries.get(query);
+    return (n == null) ? 0 : n;
+  }
+  
+  private List<ReferenceType> _loaded(String name) {
+    List<ReferenceType> types = _loaded.get(name);
+    if (types == null) {
+      types = new ArrayList<ReferenceType>();
+      _loaded.put(name, types);
+    }
+    return types;
+  }
+  
+  /** Creates a loaded type with code on the given lines and adds it to the fake VM. */
+  private ReferenceType _load(final String name, int... lines) {
+    final List<Location> locations = new ArrayList<Location>();
+    for (final int line: lines) {
+      locations.add(_proxy(Location.class, new InvocationHandler() {
+        public Object invoke(Object proxy, Method m, Object[] args) {
+          if (m.getName().equals("lineNumber")) return line;
+          throw new UnsupportedOperationException(m.getName());
+        }
+      }));
+    }
+    ReferenceType rt = _proxy(ReferenceType.class, new InvocationHandler() {
+      public Object invoke(Object proxy, Method m, Object[] args) {
+        String method = m.getName();
+        if (method.equals("equals")) return proxy == args[0];
+        if (method.equals("hashCode")) return System.identityHashCode(proxy);
+        if (method.equals("toString")) return name;
+        if (method.equals("name")) return name;
+        _count(method);
+        if (method.equals("allLineLocations")) return locations;
+        if (method.equals("nestedTypes")) {
+          List<ReferenceType> nested = new ArrayList<ReferenceType>();
+          for (Map.Entry<String, List<ReferenceType>> e: _loaded.entrySet()) {
+            if (e.getKey().startsWith(name + "$")) nested.addAll(e.getValue());
+          }
+          return nested;
+        }
+        throw new UnsupportedOperationException(method);
+      }
+    });
+    _loaded(name).add(rt);
+    return rt;
+  }
+  
+  public void testLocationsOfLine() throws AbsentInformationException {
+    ReferenceType a = _load("A", 3, 4, 4, 7);
+    assertEquals("two locations on line 4", 2, _cache.locationsOfLine(a, 4).size());
+    assertEquals("line 4 in code order", 4, _cache.locationsOfLine(a, 4).get(1).lineNumber());
+    assertEquals("no code on line 5", 0, _cache.locationsOfLine(a, 5).size());
+    assertEquals("one location on line 7", 1, _cache.locationsOfLine(a, 7).size());
+    assertEquals("line table fetched once", 1, _queries("allLineLocations"));
+    
+    _cache.classUnloaded("A");
+    _cache.locationsOfLine(a, 3);
+    assertEquals("line table fetched again after unload", 2, _queries("allLineLocations"));
+  }
+  
+  public void testTrackedClasses() {
+    ReferenceType a1 = _load("A");
+    _cache.track("A");
+    assertEquals("one copy", Arrays.asList(a1), _cache.classesByName("A"));
+    assertEquals("one copy", Arrays.asList(a1), _cache.classesByName("A"));
+    assertEquals("cached", 1, _queries("classesByName"));
+    
+    // Another class loader loads A; its prepare event updates the cache
+    ReferenceType a2 = _load("A");
+    _cache.classPrepared(a2);
+    assertEquals("both copies", Arrays.asList(a1, a2), _cache.classesByName("A"));
+    _cache.classPrepared(a2);
+    assertEquals("no duplicates", Arrays.asList(a1, a2), _cache.classesByName("A"));
+    assertEquals("still cached", 1, _queries("classesByName"));
+    
+    // Nested classes are tracked along with their outer class
+    assertEquals("no nested class loaded", 0, _cache.nestedTypes(a1).size());
+    assertEquals("no nested class loaded", 0, _cache.nestedTypes(a1).size());
+    assertEquals("nested types cached", 1, _queries("nestedTypes"));
+    ReferenceType inner = _load("A$Inner");
+    _cache.classPrepared(inner);
+    assertEquals("inner class prepared", Arrays.asList(inner), _cache.nestedTypes(a1));
+    assertEquals("nested types fetched again", 2, _queries("nestedTypes"));
+    assertTrue("nested classes are tracked", _cache.classesByName("A$Inner").contains(inner));
+    
+    _cache.classUnloaded("A");
+    _cache.classesByName("A");
+    assertEquals("copies fetched again after unload", 3, _queries("classesByName"));
+  }
+  
+  public void testUntrackedClasses() {
+    _load("B");
+    _cache.classesByName("B");
+    _cache.classesByName("B");
+    assertEquals("untracked classes are not cached", 2, _queries("classesByName"));
+    _cache.nestedTypes(_loaded("B").get(0));
+    _cache.nestedTypes(_loaded("B").get(0));
+    assertEquals("untracked nested types are not cached", 2, _queries("nestedTypes"));
+    
+    assertEquals("C is not loaded", 0, _cache.someClassesByName("C").size());
+    ReferenceType c = _load("C");
+    assertEquals("C is loaded", Arrays.asList(c), _cache.someClassesByName("C"));
+    assertEquals("C is loaded", Arrays.asList(c), _cache.someClassesByName("C"));
+    assertEquals("loaded copies are cached", 4, _queries("classesByName"));
+  }
+}
@@ -2608,4 +2608,143 @@ public final class DefinitionsDocumentTest extends MultiThreadedTestCase impleme
     assertFalse(_doc.containsClassOrInterfaceOrEnum());
     _doc.remove(0, _doc.getText().length());
   }
+  
+  /** Tests that the query cache persists across calls and is only invalidated at and after an edit offset.
+   * @throws BadLocationException if attempts to reference an invalid location
+   */
+  public void testQueryCacheInvalidation() throws BadLocationException {
+    final String text = "class A {\n  void f() {\n    int x;\n  }\n}\n";
+    _doc.insertString(0, text, null);
+    final int inner = text.indexOf("int x");
+    final int outer = text.indexOf("void f");
+    
+    long misses = _doc.getQueryCacheMisses();
+    final int innerBrace = _doc.findPrevEnclosingBrace(inner, '{', '}');
+    final int outerBrace = _doc.findPrevEnclosingBrace(outer, '{', '}');
+    assertEquals("opening brace of f", text.indexOf("{\n    int"), innerBrace);
+    assertEquals("opening brace of A", text.indexOf('{'), outerBrace);
+    assertTrue("first queries miss", _doc.getQueryCacheMisses() >= misses + 2);
+    
+    long hits = _doc.getQueryCacheHits();
+    assertEquals("cached inner", innerBrace, _doc.findPrevEnclosingBrace(inner, '{', '}'));
+    assertEquals("cached outer", outerBrace, _doc.findPrevEnclosingBrace(outer, '{', '}'));
+    assertEquals("repeated queries hit", hits + 2, _doc.getQueryCacheHits());
+    
+    // An edit after outer leaves the answer for outer cached but invalidates the answer for inner
+    _doc.insertString(inner, "  ", null);
+    hits = _doc.getQueryCacheHits();
+    misses = _doc.getQueryCacheMisses();
+    assertEquals("outer after edit", outerBrace, _doc.findPrevEnclosingBrace(outer, '{', '}'));
+    assertEquals("outer still cached", hits + 1, _doc.getQueryCacheHits());
+    assertEquals("inner after edit", innerBrace, _doc.findPrevEnclosingBrace(inner + 2, '{', '}'));
+    assertTrue("inner recomputed", _doc.getQueryCacheMisses() > misses);
+    
+    // An edit before both invalidates both
+    _doc.insertString(0, "{", null);
+    hits = _doc.getQueryCacheHits();
+    assertEquals("outer after prefix edit", outerBrace + 1, _doc.findPrevEnclosingBrace(outer, '{', '}'));
+    assertEquals("nothing stale was served", hits, _doc.getQueryCacheHits());
+    
+    _doc.remove(0, _doc.getLength());
+    assertEquals("cache cleared", 0, _doc.getQueryCacheSize());
+  }
+  
+  /** Returns the highlight state of each character in [start, end) as a string of digits. */
+  private static String _statesOf(List<HighlightStatus> v, int start, int end) {
+    char[] states = new char[end - start];
+    for (HighlightStatus stat: v) {
+      for (int i = Math.max(start, stat.getLocation()); i < Math.min(end, stat.getLocation() + stat.getLength()); i++)
+        states[i - start] = (char) ('0' + stat.getState());
+    }
+    return new String(states);
+  }
+  
+  /** Returns the highlight states of the document computed line by line through the line cache, and in one piece. */
+  private String[] _lineAndDocumentStates() {
+    final String[] result = new String[2];
+    Utilities.invokeAndWait(new Runnable() {
+      public void run() {
+        final int length = _doc.getLength();
+        final javax.swing.text.Element root = _doc.getDefaultRootElement();
+        StringBuilder byLine = new StringBuilder();
+        for (int i = 0; i < root.getElementCount(); i++) {
+          int start = root.getElement(i).getStartOffset();
+          int end = Math.min(root.getElement(i).getEndOffset(), length);
+          if (start < end) byLine.append(_statesOf(_doc.getHighlightStatus(start, end), start, end));
+        }
+        result[0] = byLine.toString();
+        result[1] = length == 0 ? "" : _statesOf(_doc.getHighlightStatus(0, length), 0, length);
+      }
+    });
+    return result;
+  }
+  
+  /** Tests that the per-line highlight cache agrees with highlighting the whole document after edits that change
+    * the lexical state of later lines, and that repainting an unchanged line reuses its cached runs.
+    * @throws BadLocationException if attempts to reference an invalid location
+    */
+  public void testHighlightLineCache() throws BadLocationException {
+    final String text = "public class Foo {\n  int x = 10; // int\n  String s = \"class\";\n  char c = 'a';\n}\n";
+    _doc.insertString(0, text, null);
+    String[] states = _lineAndDocumentStates();
+    assertEquals("initial", states[1], states[0]);
+    
+    final int line2 = text.indexOf("  String");
+    final int line2End = text.indexOf("\n", line2) + 1;
+    final Object[] lists = new Object[2];
+    Utilities.invokeAndWait(new Runnable() {
+      public void run() {
+        lists[0] = _doc.getHighlightStatus(line2, line2End);
+        lists[1] = _doc.getHighlightStatus(line2, line2End);
+      }
+    });
+    assertSame("repaint of unchanged line reuses runs", lists[0], lists[1]);
+    
+    // Open a block comment on the first line: every later line changes state
+    _doc.insertString(text.indexOf("{"), "/*", null);
+    states = _lineAndDocumentStates();
+    assertEquals("after opening comment", states[1], states[0]);
+    
+    // Close it on the third line
+    _doc.insertString(_doc.getText().indexOf("  String"), "*/", null);
+    states = _lineAndDocumentStates();
+    assertEquals("after closing comment", states[1], states[0]);
+    
+    // Insert and remove lines above cached lines
+    _doc.insertString(0, "import java.util.*;\n\n", null);
+    states = _lineAndDocumentStates();
+    assertEquals("after inserting lines", states[1], states[0]);
+    _doc.remove(0, _doc.getText().indexOf("*/") + 2);
+    states = _lineAndDocumentStates();
+    assertEquals("after removing lines", states[1], states[0]);
+    
+    // Edits on two lines before either is repainted
+    _doc.insertString(_doc.getText().indexOf("String s"), "\"", null);
+    _doc.insertString(_doc.getText().indexOf("char"), "/* ", null);
+    states = _lineAndDocumentStates();
+    assertEquals("after two edits", states[1], states[0]);
+  }
+  
+  /** Tests that a failed forward brace search is not served from the cache once the closing brace is typed.
+   * @throws BadLocationException if attempts to reference an invalid location
+   */
+  public void testQueryCacheNextBraceNotFound() throws BadLocationException {
+    Utilities.invokeAndWait(new Runnable() {
+      public void run() {
+        try {
+          final String text = "class A {\n  void f(int x";
+          _doc.insertString(0, text, null);
+          final int open = text.indexOf('(');
+          assertEquals("no closing paren yet", -1, _doc.findNextEnclosingBrace(open, '(', ')'));
+          assertEquals("still none", -1, _doc.findNextEnclosingBrace(open, '(', ')'));
+          
+          _doc.insertString(_doc.getLength(), ")", null);
+          assertEquals("closing paren typed", text.length(), _doc.findNextEnclosingBrace(open, '(', ')'));
+          
+          _doc.remove(0, _doc.getLength());
+        }
+        catch(BadLocationException e) { throw new UnexpectedException(e); }
+      }
+    });
+  }
 }
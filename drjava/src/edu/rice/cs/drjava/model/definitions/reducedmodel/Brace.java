@@ -75,6 +75,16 @@ class Brace extends ReducedToken implements ReducedModelStates {
     else return new Brace(index, state);
   }
 
+  /** Virtual constructor taking a type index, which distinguishes the open and closed forms of quotes.
+    * @param type the index of the brace text in braces
+    * @param state whether the brace is shadowed by a comment, quote etc
+    * @return a new Brace
+    */
+  static Brace MakeBrace(int type, ReducedModelState state) {
+    if (type < 0 || type >= BRACES_LENGTH) throw new BraceException("Invalid brace type index " + type);
+    return new Brace(type, state);
+  }
+
   /** Constructor.
     * @param type the brace type
     * @param state the state of the reduced model
@@ -90,6 +100,9 @@ class Brace extends ReducedToken implements ReducedModelStates {
     */
   public String getType() { return (_type == BRACES_LENGTH) ? "!" : braces[_type]; }
 
+  /** @return the index of this brace's text in {@link #braces} */
+  int getTypeIndex() { return _type; }
+
   /** @return the size of the brace and its preceding gap. */
   public int getSize() { return _size; }
 
@@ -140,6 +153,7 @@ class Brace extends ReducedToken implements ReducedModelStates {
     if (index == braces.length) throw new BraceException("Invalid brace type \"" + type + "\"");
     _type = index;
     _size = getType().length();
+    sizeChanged();
   }
 
   /** Determine the brace _type of the given String. The integer value returned is only used internally.
@@ -67,12 +67,22 @@ class Gap extends ReducedToken {
   /** Increases the size of the gap.
     * @param delta the amount by which the gap is augmented.
     */
-  public void grow(int delta) { if (delta >= 0) _size += delta; }
+  public void grow(int delta) { 
+    if (delta >= 0) {
+      _size += delta; 
+      sizeChanged();
+    }
+  }
   
   /** Decreases the size of the gap.
     * @param delta the amount by which the gap is diminished.
     */
-  public void shrink(int delta) { if (delta <= _size && delta >= 0) _size -= delta; }
+  public void shrink(int delta) { 
+    if (delta <= _size && delta >= 0) {
+      _size -= delta;
+      sizeChanged();
+    }
+  }
   
   /** Converts a Brace to a String.  Used for debugging.
     * @return the String representation of the Gap
@@ -0,0 +1,164 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ *
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ *
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES,
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL,
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY,
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ *
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or
+ * http://sourceforge.net/projects/drjava/
+ *
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.definitions.reducedmodel;
+
+import java.util.ArrayList;
+import java.util.Random;
+
+/** Tests that a ReducedModelControl over indexed token lists behaves exactly like the list-based one.  The main method
+  * runs a seek benchmark comparing the two representations.
+  * @version $Id$
+  */
+public final class IndexedReducedModelTest extends BraceReductionTestCase {
+
+  private static final String CHARS = "{}()[]/*\"'\\\n abc";
+
+  private ReducedModelControl _list;
+  private ReducedModelControl _indexed;
+
+  protected void setUp() throws Exception {
+    super.setUp();
+    _list = new ReducedModelControl(false);
+    _indexed = new ReducedModelControl(true);
+  }
+
+  /** Inserts the given text into both models at their common cursor. */
+  private void _insert(String text) {
+    for (int i = 0; i < text.length(); i++) {
+      _list.insertChar(text.charAt(i));
+      _indexed.insertChar(text.charAt(i));
+    }
+  }
+
+  private void _move(int count) {
+    _list.move(count);
+    _indexed.move(count);
+  }
+
+  private void _assertSame(String msg) {
+    assertEquals(msg + " model", _list.simpleString(), _indexed.simpleString());
+    assertEquals(msg + " offset", _list.absOffset(), _indexed.absOffset());
+    assertEquals(msg + " state", _list.getStateAtCurrent(), _indexed.getStateAtCurrent());
+  }
+
+  private static String _describe(ArrayList<HighlightStatus> statuses) {
+    StringBuilder sb = new StringBuilder();
+    for (HighlightStatus hs: statuses) {
+      sb.append('[').append(hs.getLocation()).append(',').append(hs.getLength()).append(',').append(hs.getState());
+      sb.append(']');
+    }
+    return sb.toString();
+  }
+
+  public void testIsIndexed() {
+    assertFalse("list model", _list.isIndexed());
+    assertTrue("indexed model", _indexed.isIndexed());
+  }
+
+  public void testLongMoves() {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 200; i++) sb.append("class A { /* c */ String s = \"}\"; // x\n int[] a = {1}; }\n");
+    String text = sb.toString();
+    _insert(text);
+    _assertSame("after insert");
+
+    _move(- text.length());
+    _assertSame("at start");
+    _move(text.length() / 2);
+    _assertSame("middle");
+    _move(text.length() - text.length() / 2);
+    _assertSame("at end");
+    _move(- text.length() / 3);
+    _assertSame("back a third");
+    assertEquals("length", text.length(), _indexed._rmc.getLength());
+    assertEquals("length", text.length(), _indexed._rmb.getLength());
+  }
+
+  public void testRandomEdits() {
+    Random r = new Random(1234);
+    int length = 0;
+    for (int i = 0; i < 1000; i++) {
+      int op = r.nextInt(10);
+      int pos = _list.absOffset();
+      if (op < 5 || length == 0) {
+        StringBuilder sb = new StringBuilder();
+        int n = 1 + r.nextInt(80);
+        for (int j = 0; j < n; j++) sb.append(CHARS.charAt(r.nextInt(CHARS.length())));
+        _insert(sb.toString());
+        length += n;
+      }
+      else if (op < 8) {
+        _move(r.nextInt(length + 1) - pos);
+      }
+      else {
+        int count = r.nextInt(Math.min(100, length - pos) + 1);
+        _list.delete(count);
+        _indexed.delete(count);
+        length -= count;
+      }
+      _assertSame("step " + i);
+
+      if (i % 50 == 0) {
+        int start = r.nextInt(length + 1);
+        int len = r.nextInt(length - start + 1);
+        _move(start - _list.absOffset());
+        assertEquals("highlight " + i, _describe(_list.getHighlightStatus(start, len)),
+                     _describe(_indexed.getHighlightStatus(start, len)));
+        assertEquals("balanceForward " + i, _list.balanceForward(), _indexed.balanceForward());
+        assertEquals("balanceBackward " + i, _list.balanceBackward(), _indexed.balanceBackward());
+      }
+    }
+  }
+
+  /** Compares seek times for the list-based and indexed reduced models on a large generated document.
+    * @param args ignored
+    */
+  public static void main(String[] args) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < 20000; i++) sb.append("  int f" + i + "() { return a[" + i + "]; } // \"line\"\n");
+    String text = sb.toString();
+    for (boolean indexed : new boolean[] { false, true }) {
+      ReducedModelControl model = new ReducedModelControl(indexed);
+      for (int i = 0; i < text.length(); i++) model.insertChar(text.charAt(i));
+      Random r = new Random(42);
+      int pos = text.length();
+      long start = System.nanoTime();
+      for (int i = 0; i < 2000; i++) {
+        int target = r.nextInt(text.length());
+        model.move(target - pos);
+        pos = target;
+        model.getHighlightStatus(pos, Math.min(80, text.length() - pos));
+      }
+      long elapsed = System.nanoTime() - start;
+      System.out.println((indexed ? "indexed" : "list   ") + ": 2000 random seeks over " + text.length() +
+                         " chars in " + (elapsed / 1000000) + " ms");
+    }
+  }
+}
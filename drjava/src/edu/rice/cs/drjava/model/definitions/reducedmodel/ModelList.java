@@ -33,6 +33,11 @@ import java.util.Set;
 
 /** A doubly-linked list class with header and trailer nodes. Allows multiple iterators to make modifications to the 
   * same list without failing unlike the iterators for java.util.*List.
+  * 
+  * An indexed ModelList additionally threads its nodes (excluding _head and _tail) through a treap ordered by list 
+  * position.  Each tree node records the number of nodes and the total item width (see {@link #width}) in its subtree,
+  * so an iterator can be moved to an arbitrary width offset, and the width offset of an iterator can be computed, in 
+  * O(log n) time instead of walking the list.
   * @version $Id$
   */
 class ModelList<T> {
@@ -42,9 +47,22 @@ class ModelList<T> {
   private int _length;
   /** a set of objects that can trigger and listen for updates to the list */
   private Set<ModelIterator> _listeners;
+  
+  /** true if the nodes of this list are also kept in the offset index rooted at _root */
+  private final boolean _indexed;
+  /** root of the offset index; null if the list is empty or not indexed */
+  private Node<T> _root;
+  /** state of the pseudo-random generator for treap priorities (xorshift) */
+  private int _seed = 0x2545F491;
 
   /** Constructor.  Initializes the head and tail nodes, as well as the listener table and the length variable. */
-  ModelList() {
+  ModelList() { this(false); }
+  
+  /** Constructor.
+    * @param indexed true if this list should maintain an offset index over its items
+    */
+  ModelList(boolean indexed) {
+    _indexed = indexed;
     // This node is the only node that exists in an empty list.
     // If an Iterator points to this node, the iterator is considered to be in "initial position."
     _head = new Node<T>();
@@ -71,6 +89,7 @@ class ModelList<T> {
     assert point != _head;
     Node<T> newNode = point.insert(item);
     _length++;
+    if (_indexed) _indexInsertBefore(point, newNode);
     return newNode;
   }
 
@@ -81,6 +100,7 @@ class ModelList<T> {
     assert point != _head && point != _tail;
     point.remove();
     _length--;
+    if (_indexed) _indexRemove(point);
   } 
 
   private void addListener(ModelIterator that) { _listeners.add(that); }
@@ -93,6 +113,137 @@ class ModelList<T> {
   public boolean isEmpty() { return _head._next == _tail; }
 
   public int length() { return _length; }
+  
+  /** @return true if this list maintains an offset index. */
+  public boolean isIndexed() { return _indexed; }
+  
+  /** @return the total width of the items in this list.  Only meaningful for indexed lists. */
+  public int totalWidth() { return _widthOf(_root); }
+  
+  /** Returns the width of item used by the offset index.  Lists of unsized items have width 0 throughout.
+    * @param item an item of this list
+    * @return the width of item
+    */
+  int width(T item) { return 0; }
+  
+  /** Registers (or, if observer is null, unregisters) the index node that must be told when the width of item
+    * changes.  Does nothing for lists of unsized items.
+    * @param item an item of this list
+    * @param observer the index node holding item, or null
+    */
+  void observeWidth(T item, WidthObserver observer) { }
+  
+  /** Receives notice that the width of the item held by an indexed node has changed. */
+  interface WidthObserver {
+    void widthChanged();
+  }
+  
+  /* ---------- Offset index (treap) maintenance; only used when _indexed ---------- */
+  
+  private static int _countOf(Node<?> n) { return n == null ? 0 : n._count; }
+  
+  private static int _widthOf(Node<?> n) { return n == null ? 0 : n._width; }
+  
+  private static <T> Node<T> _rightmost(Node<T> n) {
+    while (n._right != null) n = n._right;
+    return n;
+  }
+  
+  private int _nextPriority() {
+    int x = _seed;
+    x ^= x << 13;
+    x ^= x >>> 17;
+    x ^= x << 5;
+    _seed = x;
+    return x;
+  }
+  
+  /** Recomputes the subtree summaries of n from its children. */
+  private static void _update(Node<?> n) {
+    n._count = 1 + _countOf(n._left) + _countOf(n._right);
+    n._width = n._ownWidth + _widthOf(n._left) + _widthOf(n._right);
+  }
+  
+  /** Recomputes the subtree summaries of n and all of its ancestors. */
+  private static void _updatePath(Node<?> n) {
+    for (; n != null; n = n._parent) _update(n);
+  }
+  
+  /** Replaces child (a child of parent, or the root if parent is null) by replacement in the tree structure. */
+  private void _replaceChild(Node<T> parent, Node<T> child, Node<T> replacement) {
+    if (parent == null) _root = replacement;
+    else if (parent._left == child) parent._left = replacement;
+    else parent._right = replacement;
+    if (replacement != null) replacement._parent = parent;
+  }
+  
+  /** Rotates x above its parent, preserving the in-order sequence. */
+  private void _rotateUp(Node<T> x) {
+    Node<T> p = x._parent;
+    Node<T> g = p._parent;
+    if (p._left == x) {
+      p._left = x._right;
+      if (x._right != null) x._right._parent = p;
+      x._right = p;
+    }
+    else {
+      p._right = x._left;
+      if (x._left != null) x._left._parent = p;
+      x._left = p;
+    }
+    p._parent = x;
+    _replaceChild(g, p, x);
+    _update(p);
+    _update(x);
+  }
+  
+  /** Adds node, which has just been linked in front of point, to the index. */
+  private void _indexInsertBefore(Node<T> point, Node<T> node) {
+    node._list = this;
+    node._priority = _nextPriority();
+    node._ownWidth = width(node._item);
+    node._count = 1;
+    node._width = node._ownWidth;
+    
+    Node<T> parent;
+    if (_root == null) parent = null;
+    else if (point == _tail) parent = _rightmost(_root);
+    else if (point._left == null) parent = point;
+    else parent = _rightmost(point._left);
+    
+    if (parent == null) _root = node;
+    else if (parent == point) parent._left = node;
+    else parent._right = node;
+    node._parent = parent;
+    _updatePath(parent);
+    
+    while (node._parent != null && node._priority < node._parent._priority) _rotateUp(node);
+    observeWidth(node._item, node);
+  }
+  
+  /** Removes node, which has just been unlinked from the list, from the index. */
+  private void _indexRemove(Node<T> node) {
+    while (node._left != null && node._right != null) {
+      _rotateUp(node._left._priority < node._right._priority ? node._left : node._right);
+    }
+    Node<T> child = (node._left != null) ? node._left : node._right;
+    Node<T> parent = node._parent;
+    _replaceChild(parent, node, child);
+    _updatePath(parent);
+    node._left = node._right = node._parent = null;
+    observeWidth(node._item, null);
+  }
+  
+  /** @return the total width of the items preceding point in the list. */
+  private int _widthBefore(Node<T> point) {
+    if (point == _head) return 0;
+    if (point == _tail) return _widthOf(_root);
+    int w = _widthOf(point._left);
+    for (Node<T> n = point; n._parent != null; n = n._parent) {
+      if (n._parent._right == n) w += _widthOf(n._parent._left) + n._parent._ownWidth;
+    }
+    return w;
+  }
 
   /** Create a new iterator for this list and register it as one of the 
    * listeners which are notified when the list is
@@ -102,10 +253,20 @@ class ModelList<T> {
   public ModelIterator getIterator() { return new ModelIterator(); }
 
   /** The Node class for ModelLists.  The _prev and _next pointers are mutable.  The _item field is null in _head and _tail. */
-  private static class Node<T> {
+  private static class Node<T> implements WidthObserver {
     Node<T> _prev;
     Node<T> _next;
     T _item;
+    
+    /* Offset index fields; only used when the enclosing list is indexed. */
+    ModelList<T> _list;
+    Node<T> _left;
+    Node<T> _right;
+    Node<T> _parent;
+    int _priority;
+    int _count;     // number of nodes in this subtree
+    int _width;     // total item width of this subtree
+    int _ownWidth;  // width of _item as last reported
 
     /** Constructor for _head and _tail nodes. */
     Node() { }
@@ -139,6 +300,12 @@ class ModelList<T> {
       _prev._next = _next;
       _next._prev = _prev;
     }
+    
+    /** Refreshes the recorded width of _item and the summaries of all enclosing subtrees. */
+    public void widthChanged() {
+      _ownWidth = _list.width(_item);
+      _updatePath(this);
+    }
   }
 
   /** The iterator class for ModelList.  Package private instead of private so that it can be extended.  The methods of
@@ -220,6 +387,68 @@ class ModelList<T> {
     }
     
     public int pos() { return _pos; }
+    
+    /** @return the total width of the items preceding the current node.  Requires an indexed list; O(log n). */
+    int widthBefore() {
+      assert _indexed;
+      return _widthBefore(_point);
+    }
+    
+    /** Moves this iterator to the item containing the width offset target using the offset index.  Requires an 
+      * indexed list and {@code 0 <= target <= totalWidth()}.  Ties are resolved the same way as walking the list: 
+      * moving right (leftBias false) stops at the first item whose end lies beyond target, or at the tail if target 
+      * is the total width; moving left (leftBias true) stops at the last item that starts at or before target.
+      * O(log n).
+      * @param target the width offset to seek to
+      * @param leftBias true if the seek replaces a leftward walk
+      * @return the offset of target within the new current item
+      */
+    int seekWidth(int target, boolean leftBias) {
+      assert _indexed && target >= 0 && target <= _widthOf(_root);
+      Node<T> n = _root;
+      Node<T> found = null;
+      int baseWidth = 0;   // width preceding the subtree rooted at n
+      int baseCount = 0;   // number of nodes preceding the subtree rooted at n
+      int foundStart = 0;
+      int foundPos = 0;
+      while (n != null) {
+        int leftWidth = _widthOf(n._left);
+        int start = baseWidth + leftWidth;
+        if (leftBias) {
+          if (start <= target) {
+            found = n;
+            foundStart = start;
+            foundPos = baseCount + _countOf(n._left) + 1;
+            baseWidth = start + n._ownWidth;
+            baseCount = foundPos;
+            n = n._right;
+          }
+          else n = n._left;
+        }
+        else {
+          if (start > target) n = n._left;
+          else if (start + n._ownWidth > target) {
+            found = n;
+            foundStart = start;
+            foundPos = baseCount + _countOf(n._left) + 1;
+            break;
+          }
+          else {
+            baseWidth = start + n._ownWidth;
+            baseCount += _countOf(n._left) + 1;
+            n = n._right;
+          }
+        }
+      }
+      if (found == null) {  // only possible when moving right onto the tail
+        _point = _tail;
+        _pos = _length + 1;
+        return 0;
+      }
+      _point = found;
+      _pos = foundPos;
+      return target - foundStart;
+    }
 
     /** Inserts an item before the current item.  If current is head, we need 
      * to move to the next node to perform the insert properly.  Otherwise, 
@@ -289,6 +518,9 @@ class ModelList<T> {
         rightPoint = iter._point;
       }
       
+      if (_indexed) {
+        for (Node<T> n = leftPoint._next; n != rightPoint; n = n._next) _indexRemove(n);
+      }
       rightPoint._prev = leftPoint;
       leftPoint._next = rightPoint;
       _length -= rightPos - leftPos - 1;  //determine new length
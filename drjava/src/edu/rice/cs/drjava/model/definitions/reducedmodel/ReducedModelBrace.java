@@ -40,8 +40,14 @@ public class ReducedModelBrace extends AbstractReducedModel {
   
   private volatile ReducedModelControl _parent;  // contains the walker which is moved by moveWalkerGetState
   
-  public ReducedModelBrace(ReducedModelControl parent) {
-    super();
+  public ReducedModelBrace(ReducedModelControl parent) { this(parent, false); }
+  
+  /** Constructor.
+    * @param parent the enclosing ReducedModelControl
+    * @param indexed true if the token list should maintain an offset index
+    */
+  public ReducedModelBrace(ReducedModelControl parent, boolean indexed) {
+    super(indexed);
     _parent = parent;
   }
   
@@ -41,8 +41,13 @@ public class ReducedModelComment extends AbstractReducedModel {
   volatile TokenList.Iterator _walker;
   
   /** Constructor.  Creates a new reduced model with the cursor at the start of a blank "page." */
-  public ReducedModelComment() {
-    super();
+  public ReducedModelComment() { this(false); }
+  
+  /** Constructor.  Creates a new reduced model with the cursor at the start of a blank "page."
+    * @param indexed true if the token list should maintain an offset index
+    */
+  public ReducedModelComment(boolean indexed) {
+    super(indexed);
     _walker = _cursor.copy();
   }
   
@@ -56,11 +56,22 @@ public class ReducedModelControl implements BraceReduction {
   volatile int _offset;
   
   /** Standard constructor. */
-  public ReducedModelControl() {
-    _rmb = new ReducedModelBrace(this);
-    _rmc = new ReducedModelComment();
+  public ReducedModelControl() { this(false); }
+  
+  /** Constructor that selects the representation of the token lists underlying the two sub-models.  When indexed is 
+    * true, the token lists are also threaded through an order-statistic tree recording subtree widths, so long cursor 
+    * moves (e.g., setCurrentLocation in a large document), walker moves during brace balancing, and absOffset() take
+    * O(log n) time instead of O(distance).  Both representations produce identical reduced models.
+    * @param indexed true to use indexed token lists
+    */
+  public ReducedModelControl(boolean indexed) {
+    _rmb = new ReducedModelBrace(this, indexed);
+    _rmc = new ReducedModelComment(indexed);
   }
   
+  /** @return true if this reduced model uses indexed token lists. */
+  public boolean isIndexed() { return _rmc._tokens.isIndexed(); }
+  
   /** @return the absolute offset of the cursor in the brace model, which is expensive.  Used for testing purposes only. 
     * This value should agree with commentCursorOffset(). 
     */
@@ -430,4 +441,20 @@ public class ReducedModelControl implements BraceReduction {
     
     return vec;
   }
+  
+  /** Captures a compact copy of this reduced model that can later be loaded into an empty model by {@link #restore}.
+    * @return the snapshot, or null if this model cannot be captured
+    */
+  public ReducedModelSnapshot snapshot() { return ReducedModelSnapshot.capture(this); }
+  
+  /** Loads the tokens of a snapshot into this model, which must be empty, as if the text described by the snapshot had
+    * been inserted and the cursor moved back to offset 0.  The walker is reset to the cursor.
+    * @param snapshot the snapshot to load
+    */
+  public void restore(ReducedModelSnapshot snapshot) {
+    snapshot.restoreTokens(_rmb, true);
+    snapshot.restoreTokens(_rmc, false);
+    move(- snapshot.getLength());
+    resetLocation();
+  }
 }
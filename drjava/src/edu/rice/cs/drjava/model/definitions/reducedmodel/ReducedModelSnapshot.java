@@ -0,0 +1,122 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.definitions.reducedmodel;
+
+/** An immutable, compact copy of the token lists of a {@link ReducedModelControl}.  A snapshot lets a document whose
+  * text is reloaded unchanged (e.g., when the document cache rebuilds an evicted document) restore its reduced model
+  * directly instead of re-lexing the text one character at a time.  Each token is packed into a single int: bit 0 is
+  * set for gaps, bits 1-3 hold the index of the token's state, and the remaining bits hold the gap size or the brace
+  * type index.
+  * @version $Id$
+  */
+public final class ReducedModelSnapshot implements ReducedModelStates {
+  
+  /** The states that a token may carry, indexed by their code in a packed token. */
+  private static final ReducedModelState[] STATES = { 
+    FREE, STUTTER, INSIDE_SINGLE_QUOTE, INSIDE_DOUBLE_QUOTE, INSIDE_LINE_COMMENT, INSIDE_BLOCK_COMMENT
+  };
+  
+  private static final int GAP_BIT = 1;
+  private static final int STATE_SHIFT = 1;
+  private static final int STATE_MASK = 0x7;
+  private static final int VALUE_SHIFT = 4;
+  
+  /** The largest gap that fits in a packed token. */
+  static final int MAX_GAP_SIZE = Integer.MAX_VALUE >>> VALUE_SHIFT;
+  
+  private final int[] _braceTokens;
+  private final int[] _commentTokens;
+  private final int _length;
+  
+  private ReducedModelSnapshot(int[] braceTokens, int[] commentTokens, int length) {
+    _braceTokens = braceTokens;
+    _commentTokens = commentTokens;
+    _length = length;
+  }
+  
+  /** Captures the token lists of the given reduced model.  Only runs in the event thread (or in tests).
+    * @param model the reduced model to copy
+    * @return the snapshot, or null if the model contains a gap too large to be packed
+    */
+  static ReducedModelSnapshot capture(ReducedModelControl model) {
+    final int[] braceTokens = _encode(model._rmb._tokens);
+    final int[] commentTokens = _encode(model._rmc._tokens);
+    if (braceTokens == null || commentTokens == null) return null;
+    return new ReducedModelSnapshot(braceTokens, commentTokens, model._rmc.getLength());
+  }
+  
+  /** @return the length of the text described by this snapshot */
+  public int getLength() { return _length; }
+  
+  /** @return an estimate of the number of bytes of heap occupied by this snapshot */
+  public int sizeInBytes() { return 4 * (_braceTokens.length + _commentTokens.length) + 48; }
+  
+  /** Appends the tokens of this snapshot to the (empty) token list of the given sub-model.  Leaves the cursor of the
+    * sub-model at the end of the list.
+    */
+  void restoreTokens(AbstractReducedModel model, boolean braces) {
+    final int[] tokens = braces ? _braceTokens : _commentTokens;
+    final TokenList.Iterator cursor = model._cursor;
+    assert model._tokens.isEmpty();
+    if (cursor.atStart()) cursor.next();
+    for (int code: tokens) {
+      final ReducedModelState state = STATES[(code >>> STATE_SHIFT) & STATE_MASK];
+      final int value = code >>> VALUE_SHIFT;
+      cursor.insert((code & GAP_BIT) != 0 ? new Gap(value, state) : Brace.MakeBrace(value, state));
+      cursor.next();
+    }
+    cursor.setBlockOffset(0);
+  }
+  
+  /** @return the packed tokens of the list, or null if some gap is too large to pack */
+  private static int[] _encode(TokenList tokens) {
+    final int[] codes = new int[tokens.length()];
+    final TokenList.Iterator it = tokens.getIterator();
+    try {
+      it.next();
+      for (int i = 0; ! it.atEnd(); i++, it.next()) {
+        final ReducedToken token = it.current();
+        final int state = _stateIndex(token.getState());
+        if (token.isGap()) {
+          if (token.getSize() > MAX_GAP_SIZE) return null;
+          codes[i] = (token.getSize() << VALUE_SHIFT) | (state << STATE_SHIFT) | GAP_BIT;
+        }
+        else codes[i] = (((Brace) token).getTypeIndex() << VALUE_SHIFT) | (state << STATE_SHIFT);
+      }
+      return codes;
+    }
+    finally { it.dispose(); }
+  }
+  
+  private static int _stateIndex(ReducedModelState state) {
+    for (int i = 0; i < STATES.length; i++) if (STATES[i] == state) return i;
+    throw new IllegalArgumentException("Unknown reduced model state " + state);
+  }
+}
@@ -0,0 +1,110 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.definitions.reducedmodel;
+
+import java.util.Random;
+
+/** Tests that a reduced model restored from a ReducedModelSnapshot behaves exactly like the model it was taken from.
+  * @version $Id$
+  */
+public final class ReducedModelSnapshotTest extends BraceReductionTestCase {
+  
+  private static final String CHARS = "{}()[]/*\"'\\\n abc";
+  
+  private static String _randomText(Random r, int length) {
+    StringBuilder sb = new StringBuilder();
+    for (int i = 0; i < length; i++) sb.append(CHARS.charAt(r.nextInt(CHARS.length())));
+    return sb.toString();
+  }
+  
+  private static ReducedModelControl _lex(String text, boolean indexed) {
+    ReducedModelControl model = new ReducedModelControl(indexed);
+    for (int i = 0; i < text.length(); i++) model.insertChar(text.charAt(i));
+    model.move(- text.length());
+    return model;
+  }
+  
+  private void _assertSame(String msg, ReducedModelControl expected, ReducedModelControl actual) {
+    assertEquals(msg + " model", expected.simpleString(), actual.simpleString());
+    assertEquals(msg + " offset", expected.absOffset(), actual.absOffset());
+    assertEquals(msg + " walker", expected.walkerOffset(), actual.walkerOffset());
+    assertEquals(msg + " state", expected.getStateAtCurrent(), actual.getStateAtCurrent());
+  }
+  
+  public void testEmptyModel() {
+    ReducedModelSnapshot snapshot = new ReducedModelControl().snapshot();
+    assertEquals("length", 0, snapshot.getLength());
+    ReducedModelControl restored = new ReducedModelControl();
+    restored.restore(snapshot);
+    _assertSame("empty", new ReducedModelControl(), restored);
+  }
+  
+  public void testRestoreThenEdit() {
+    Random r = new Random(4321);
+    for (boolean indexed : new boolean[] { false, true }) {
+      for (int trial = 0; trial < 20; trial++) {
+        String text = _randomText(r, 1 + r.nextInt(400));
+        ReducedModelControl original = _lex(text, indexed);
+        ReducedModelSnapshot snapshot = original.snapshot();
+        assertEquals("snapshot length", text.length(), snapshot.getLength());
+        
+        ReducedModelControl restored = new ReducedModelControl(indexed);
+        restored.restore(snapshot);
+        String msg = (indexed ? "indexed " : "list ") + trial;
+        _assertSame(msg + " restored", original, restored);
+        
+        // Both models must evolve identically under further edits
+        int length = text.length();
+        for (int i = 0; i < 30; i++) {
+          int target = r.nextInt(length + 1);
+          original.move(target - original.absOffset());
+          restored.move(target - restored.absOffset());
+          if (r.nextBoolean()) {
+            String insert = _randomText(r, 1 + r.nextInt(5));
+            for (int j = 0; j < insert.length(); j++) {
+              original.insertChar(insert.charAt(j));
+              restored.insertChar(insert.charAt(j));
+            }
+            length += insert.length();
+          }
+          else {
+            int count = r.nextInt(Math.min(10, length - target) + 1);
+            original.delete(count);
+            restored.delete(count);
+            length -= count;
+          }
+          _assertSame(msg + " edit " + i, original, restored);
+          assertEquals(msg + " balanceForward " + i, original.balanceForward(), restored.balanceForward());
+          assertEquals(msg + " balanceBackward " + i, original.balanceBackward(), restored.balanceBackward());
+        }
+      }
+    }
+  }
+}
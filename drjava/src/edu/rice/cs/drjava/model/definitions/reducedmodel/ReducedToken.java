@@ -34,10 +34,26 @@ package edu.rice.cs.drjava.model.definitions.reducedmodel;
 public abstract class ReducedToken implements ReducedModelStates {
   private volatile ReducedModelState _state;
   
+  /** The offset index node of the indexed TokenList containing this token, or null if there is none. */
+  private volatile ModelList.WidthObserver _widthObserver;
+  
   public ReducedToken(ReducedModelState state) {
     _state = state;
   }
   
+  /** Sets the index node to be notified when the size of this token changes.
+    * @param observer the index node, or null
+    */
+  void setWidthObserver(ModelList.WidthObserver observer) { _widthObserver = observer; }
+  
+  /** Notifies the offset index (if any) containing this token that getSize() has changed.  Every operation that 
+    * changes the size of a token must call this method.
+    */
+  protected void sizeChanged() {
+    ModelList.WidthObserver observer = _widthObserver;
+    if (observer != null) observer.widthChanged();
+  }
+  
   /** Get the size of the token.
     * @return the number of characters represented by the token
     */
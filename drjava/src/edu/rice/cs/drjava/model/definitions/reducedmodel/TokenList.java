@@ -33,6 +33,24 @@ package edu.rice.cs.drjava.model.definitions.reducedmodel;
   */
 public class TokenList extends ModelList<ReducedToken> implements /*imports*/ ReducedModelStates {
   
+  /** Minimum distance (in characters) for which an indexed list seeks through its offset index instead of walking 
+    * token by token.  Short moves, which dominate typing, are cheaper to walk.
+    */
+  static final int INDEXED_SEEK_THRESHOLD = 64;
+  
+  /** Creates a TokenList without an offset index. */
+  public TokenList() { this(false); }
+  
+  /** Creates a TokenList.
+    * @param indexed true if the list should maintain an offset index supporting O(log n) moves
+    */
+  public TokenList(boolean indexed) { super(indexed); }
+  
+  /** The width of a token in the offset index is its size in characters. */
+  int width(ReducedToken token) { return token.getSize(); }
+  
+  void observeWidth(ReducedToken token, WidthObserver observer) { token.setWidthObserver(observer); }
+  
   /** Gets a TokenList.Iterator for this list.  Overrides the weaker method in {@code ModelList<ReducedToken>.Iterator}. */
   public Iterator getIterator() { return new Iterator(); }
   
@@ -198,6 +216,12 @@ public class TokenList extends ModelList<ReducedToken> implements /*imports*/ Re
      * @return new offset
      */
     private int _moveRight(int count, int currentOffset) {
+      if (isIndexed() && count >= INDEXED_SEEK_THRESHOLD) {
+        int target = (atStart() ? 0 : widthBefore() + currentOffset) + count;
+        if (atEnd() || target > totalWidth()) throw new IllegalArgumentException("At end");
+        return seekWidth(target, false);
+      }
+      
       // Standardize initial position
       if (atStart()) {
         currentOffset = 0;
@@ -239,6 +263,11 @@ public class TokenList extends ModelList<ReducedToken> implements /*imports*/ Re
      * @return new offset
      */
     private int _moveLeft(int count, int currentOffset) {
+      if (isIndexed() && count >= INDEXED_SEEK_THRESHOLD) {
+        int target = (atStart() ? 0 : widthBefore() + currentOffset) - count;
+        if (target < 0) throw new IllegalArgumentException("At Start");
+        return seekWidth(target, true);
+      }
       
       // Standardize initial position, eliminating 0 offset
       if (atEnd()) {
@@ -44,9 +44,9 @@ import java.rmi.RemoteException;
 import java.util.List;
 import java.util.LinkedList;
 import java.util.ArrayList;
-import java.util.Arrays;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
 import edu.rice.cs.drjava.config.BooleanOption;
 import edu.rice.cs.drjava.model.DrJavaFileUtils;
@@ -64,9 +64,9 @@ import edu.rice.cs.drjava.ui.DrJavaErrorHandler;
 import edu.rice.cs.drjava.config.OptionConstants;
 
 import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.concurrent.JVMBuilder;
 import edu.rice.cs.plt.iter.IterUtil;
-import edu.rice.cs.plt.lambda.Box;
-import edu.rice.cs.plt.lambda.SimpleBox;
+import edu.rice.cs.plt.lambda.Runnable1;
 import edu.rice.cs.util.FileOps;
 import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.classloader.ClassFileError;
@@ -74,8 +74,6 @@ import edu.rice.cs.util.text.SwingDocument;
 import edu.rice.cs.util.swing.Utilities;
 import edu.rice.cs.util.Log;
 
-import org.objectweb.asm.*;
-
 import static edu.rice.cs.plt.debug.DebugUtil.debug;
 
 import edu.rice.cs.drjava.model.coverage.CoverageMetadata;
@@ -117,6 +115,12 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
   /** State flag to record if test classes in projects must end in "Test" */
   private boolean _forceTestSuffix = false;
   
+  /** Index of the class files in the build directories, reused across test runs to find test classes quickly. */
+  private final TestClassIndex _testClassIndex = new TestClassIndex();
+  
+  /** Runs test suites in parallel worker JVMs when JUNIT_PARALLEL_WORKERS is greater than 1. */
+  private final ShardedJUnitRunner _shardedRunner;
+  
   /** The document used to display JUnit test results.  Used only for testing. */
   private final SwingDocument _junitDoc = new SwingDocument();
   
@@ -130,6 +134,11 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
     _compilerModel = compilerModel;
     _model = model;
     _junitErrorModel = new JUnitErrorModel(new JUnitError[0], _model, false);
+    _shardedRunner = new ShardedJUnitRunner(this, new Runnable1<String>() {
+      public void run(String s) { _model.getInteractionsModel().replSystemOutPrint(s); }
+    }, new Runnable1<String>() {
+      public void run(String s) { _model.getInteractionsModel().replSystemErrPrint(s); }
+    });
     BooleanOption suffixOption = OptionConstants.FORCE_TEST_SUFFIX;
     _forceTestSuffix = edu.rice.cs.drjava.DrJava.getConfig().getSetting(suffixOption).booleanValue();
   }
@@ -196,7 +205,7 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
   
   /** Determines if className appears as an identifier in the open documents. */
   private boolean appearsInSourceText(String className, FindReplaceMachine frm) {
-    _log.log("***appearsInSourceText(" + className + ", " + frm + ")");
+    _log.log("***appearsInSourceText({}, {})", className, frm);
     OpenDefinitionsDocument doc = _model.getActiveDocument();
     frm.setDocument(doc);
     frm.setFirstDoc(doc);
@@ -205,7 +214,7 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
     frm.setIgnoreCommentsAndStrings(true);
     frm.setSearchAllDocuments(true);
     FindResult match = frm.findNext();
-    _log.log("Matching result = " + match);
+    _log.log("Matching result = {}", match);
     return (match.getFoundOffset() != -1);
   }
   
@@ -325,7 +334,7 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
     for (OpenDefinitionsDocument doc: lod) /* for all nonEmpty documents in lod */ {
       if (doc.isSourceFile())  { // excludes Untitled documents and open non-source files
         try {
-          _log.log("Processing " + doc);
+          _log.log("Processing {}", doc);
           File sourceRoot = doc.getSourceRoot(); // may throw an InvalidPackageException
           
           // doc has valid package name; add it to list of open java source doc files
@@ -345,7 +354,7 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
           
           if (! classDirsAndRoots.containsKey(classFileDir)) {
             classDirsAndRoots.put(classFileDir, sourceDir);
-            _log.log("Adding " + classFileDir + " with source root " + sourceRoot + " to list of class directories");
+            _log.log("Adding {} with source root {} to list of class directories", classFileDir, sourceRoot);
           }
         }
         catch (InvalidPackageException e) { /* Skip the file, since it doesn't have a valid package */ }
@@ -372,95 +381,64 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
     final FindReplaceMachine frm = new FindReplaceMachine(_model, _model.getDocumentIterator(), null);
     
     try {
-      for (File dir: classDirs) { // foreach class file directory
-        _log.log("Examining directory " + dir);
+      Map<File, TestClassIndex.Entry> entries = _testClassIndex.scan(classDirs);
+      _log.log("Test class index read " + _testClassIndex.getNumRead() + " class files and reused " + 
+               _testClassIndex.getNumReused());
+      
+      for (Map.Entry<File, TestClassIndex.Entry> me: entries.entrySet()) { /* for each class file in the build dirs */
+        final File entry = me.getKey();
+        final TestClassIndex.Entry info = me.getValue();
         
-        File[] listing = dir.listFiles();
+        _log.log("Examining file {}", entry);
         
-        _log.log("Directory contains the files: " + Arrays.asList(listing));
+        final String name = entry.getName();
+        final String noExtName = name.substring(0, name.length() - 6);  // remove ".class" from name
+        final int indexOfLastDot = noExtName.lastIndexOf('.');
+        final String simpleClassName = noExtName.substring(indexOfLastDot + 1);
+        _log.log("Simple class name is {}", simpleClassName);  
         
-        if (listing != null) { // listFiles may return null if there's an IO error
-          for (File entry : listing) { /* for each class file in the build directory */        
-            
-            _log.log("Examining file " + entry);
-            
-            /* ignore non-class files */
-            final String name = entry.getName();
-            if (! name.endsWith(".class")) continue;
-            
-            final String noExtName = name.substring(0, name.length() - 6);  // remove ".class" from name
-            final int indexOfLastDot = noExtName.lastIndexOf('.');
-            final String simpleClassName = noExtName.substring(indexOfLastDot + 1);
-            _log.log("Simple class name is " + simpleClassName);  
-            
-            /* Ignore class names that do not end in "Test" if FORCE_TEST_SUFFIX option is set */
-            if (_forceTestSuffix && ! simpleClassName.endsWith("Test")) continue;
-                       
-            /* ignore entries that do not correspond to files?  Can this happen? */
-            if (! entry.isFile()) continue;
-            
-            /* In flat file mode, ignore files that are not named in a source document. */
-            if (! isProject && ! appearsInSourceText(simpleClassName, frm)) continue;
-            _log.log("isProject = " + isProject + "; name = " + name);
-            
-            // Add this class and the corrresponding source file to classNames and files, respectively.
-            // Finding the source file is non-trivial because it may be a language-levels file
-            
-            try {
-              final Box<String> className = new SimpleBox<String>();
-              final Box<String> sourceName = new SimpleBox<String>();
-              new ClassReader(IOUtil.toByteArray(entry)).accept(new ClassVisitor(Opcodes.ASM4) {
-                public void visit(int version, int access, String name, String sig, String sup, String[] inters) {
-                  className.set(name.replace('/', '.'));
-                }
-                public void visitSource(String source, String debug) { sourceName.set(source); }
-                public void visitOuterClass(String owner, String name, String desc) { }
-                public AnnotationVisitor visitAnnotation(String desc, boolean visible) { return null; }
-                public void visitAttribute(Attribute attr) { }
-                public void visitInnerClass(String name, String out, String in, int access) { }
-                public FieldVisitor visitField(int a, String n, String d, String s, Object v) { return null; }
-                public MethodVisitor visitMethod(int a, String n, String d, String s, String[] e) { return null; }
-                public void visitEnd() { }
-              }, 0);
-              
-              File rootDir = classDirsAndRoots.get(dir);
-              
-              /** The canonical pathname for the file (including the file name) */
-              String javaSourceFileName = getCanonicalPath(rootDir) + File.separator + sourceName.value();
- 
-//              System.err.println("Full java source fileName = " + javaSourceFileName);
-              
-              /* The index in fileName of the dot preceding the extension ".java", ".dj", ".dj0*, ".dj1", or ".dj2" */
-              int indexOfExtDot = javaSourceFileName.lastIndexOf('.');
-//              System.err.println("indexOfExtDot = " + indexOfExtDot);
-              if (indexOfExtDot == -1) continue;  // RMI stub class files return source file names without extensions
-//              System.err.println("File found in openDocFiles = "  + openDocFiles.contains(sourceFileName));
-              
-              /* Determine if this java source file was generated from a language levels file. */
-              String strippedName = javaSourceFileName.substring(0, indexOfExtDot);
-//              System.err.println("Stripped name = " + strippedName);
-              
-              String sourceFileName;
-              
-              if (openDocFiles.contains(javaSourceFileName)) sourceFileName = javaSourceFileName;
-              else if (openDocFiles.contains(strippedName + OptionConstants.DJ_FILE_EXTENSION))
-                sourceFileName = strippedName + OptionConstants.DJ_FILE_EXTENSION;
-              else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ0_FILE_EXTENSION))
-                sourceFileName = strippedName + OptionConstants.OLD_DJ0_FILE_EXTENSION;
-              else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ1_FILE_EXTENSION))
-                sourceFileName = strippedName + OptionConstants.OLD_DJ1_FILE_EXTENSION;
-              else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ2_FILE_EXTENSION))
-                sourceFileName = strippedName + OptionConstants.OLD_DJ2_FILE_EXTENSION;
-              else continue; // no matching source file is open
-              
-              File sourceFile = new File(sourceFileName);
-              classNames.add(className.value());
-              files.add(sourceFile);
-              _log.log("Class " + className + " added to classNames.   File " + sourceFileName + " added to files.");
-            }
-            catch(IOException e) { /* ignore it; can't read class file */ }
-          }
-        }
+        /* Ignore class names that do not end in "Test" if FORCE_TEST_SUFFIX option is set */
+        if (_forceTestSuffix && ! simpleClassName.endsWith("Test")) continue;
+        
+        /* Ignore classes that the bytecode shows are not tests; they need not be loaded in the slave JVM. */
+        if (_testClassIndex.classify(info) == TestClassIndex.NOT_A_TEST) continue;
+        
+        /* In flat file mode, ignore files that are not named in a source document. */
+        if (! isProject && ! appearsInSourceText(simpleClassName, frm)) continue;
+        _log.log("isProject = {}; name = {}", isProject, name);
+        
+        // Add this class and the corrresponding source file to classNames and files, respectively.
+        // Finding the source file is non-trivial because it may be a language-levels file
+        
+        File rootDir = classDirsAndRoots.get(entry.getParentFile());
+        
+        /** The canonical pathname for the file (including the file name) */
+        String javaSourceFileName = getCanonicalPath(rootDir) + File.separator + info.getSourceName();
+        
+        /* The index in fileName of the dot preceding the extension ".java", ".dj", ".dj0*, ".dj1", or ".dj2" */
+        int indexOfExtDot = javaSourceFileName.lastIndexOf('.');
+        if (indexOfExtDot == -1) continue;  // RMI stub class files return source file names without extensions
+        
+        /* Determine if this java source file was generated from a language levels file. */
+        String strippedName = javaSourceFileName.substring(0, indexOfExtDot);
+        
+        String sourceFileName;
+        
+        if (openDocFiles.contains(javaSourceFileName)) sourceFileName = javaSourceFileName;
+        else if (openDocFiles.contains(strippedName + OptionConstants.DJ_FILE_EXTENSION))
+          sourceFileName = strippedName + OptionConstants.DJ_FILE_EXTENSION;
+        else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ0_FILE_EXTENSION))
+          sourceFileName = strippedName + OptionConstants.OLD_DJ0_FILE_EXTENSION;
+        else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ1_FILE_EXTENSION))
+          sourceFileName = strippedName + OptionConstants.OLD_DJ1_FILE_EXTENSION;
+        else if (openDocFiles.contains(strippedName + OptionConstants.OLD_DJ2_FILE_EXTENSION))
+          sourceFileName = strippedName + OptionConstants.OLD_DJ2_FILE_EXTENSION;
+        else continue; // no matching source file is open
+        
+        File sourceFile = new File(sourceFileName);
+        classNames.add(info.getClassName());
+        files.add(sourceFile);
+        _log.log("Class {} added to classNames.   File {} added to files.", info.getClassName(), sourceFileName);
       }
     }
 
@@ -469,10 +447,17 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
       throw new UnexpectedException(e); // triggers _junitInterrupted which runs hourglassOff
     }
     
+    /* Use parallel worker JVMs if configured, unless code coverage (which needs the single slave JVM) is on. */
+    final int numWorkers = edu.rice.cs.drjava.DrJava.getConfig().getSetting(OptionConstants.JUNIT_PARALLEL_WORKERS);
+    final boolean tryWorkers = numWorkers > 1 && classNames.size() > 1 && ! getCoverage();
+    
     /** Run the junit test suite that has already been set up on the slave JVM */
     _testInProgress = true;
     // System.err.println("Spawning test thread");
     new Thread(new Runnable() { // this thread is not joined, but the wait/notify scheme guarantees that it ends
+      /** Whether the suite was set up in parallel worker JVMs rather than the slave JVM. */
+      private boolean inWorkers = false;
+      
       public void run() { 
         // TODO: should we disable compile commands while testing?  Should we use protected flag instead of lock?
         // Utilities.show("Preparing to synchronize");
@@ -487,7 +472,14 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
           // synchronized over _compilerModel to ensure that compilation and junit testing are mutually exclusive.
           /** Set up junit test suite on slave JVM; get TestCase classes forming that suite */
           _log.log("Calling findTestClasses(" + classNames + ", " + files + " ... )");
-          List<String> tests = _jvm.findTestClasses(classNames, files, coverageMetadata).unwrap(null);
+          List<String> tests = null;
+          if (tryWorkers) {
+            JVMBuilder jvmBuilder = _jvm.getTestWorkerJVMBuilder().unwrap(null);
+            if (jvmBuilder != null) tests = _shardedRunner.findTestClasses(classNames, files, numWorkers, jvmBuilder);
+            _log.log("Test classes found by worker JVMs: " + tests);
+          }
+          inWorkers = (tests != null);
+          if (! inWorkers) tests = _jvm.findTestClasses(classNames, files, coverageMetadata).unwrap(null);
 
           if (tests == null || tests.isEmpty()) {
             nonTestCase(allTests, false);
@@ -498,7 +490,7 @@ public class DefaultJUnitModel implements JUnitModel, JUnitModelCallback {
         try {
           _notifyJUnitStarted(); 
           // The false return value could be changed to an exception.
-          boolean testsPresent = _jvm.runTestSuite();
+          boolean testsPresent = inWorkers ? _shardedRunner.runTestSuite() : _jvm.runTestSuite();
           if (!testsPresent) {
               throw new RemoteException("No unit test classes were passed to the slave JVM");
           }
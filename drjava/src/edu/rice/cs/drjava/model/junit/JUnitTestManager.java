@@ -218,6 +218,9 @@ public class JUnitTestManager {
     return _testClassNames;
   }
   
+  /** @return the number of test cases in the pending test suite, or 0 if no test suite is pending */
+  public int countTestCases() { return (_suite == null) ? 0 : _suite.countTestCases(); }
+  
   /** Runs the pending test suite set up by the preceding call to findTestClasses.  Runs in a single auxiliary thread,
     * so no need for explicit synchronization.
     * @return false if no test suite (even an empty one) has been set up
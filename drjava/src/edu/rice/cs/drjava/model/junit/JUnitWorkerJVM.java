@@ -0,0 +1,162 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+h *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.junit;
+
+import java.io.File;
+import java.io.PrintStream;
+import java.rmi.RemoteException;
+import java.util.List;
+
+import edu.rice.cs.drjava.model.coverage.CoverageMetadata;
+import edu.rice.cs.drjava.model.repl.newjvm.ClassPathManager;
+import edu.rice.cs.plt.reflect.ReflectUtil;
+import edu.rice.cs.plt.tuple.Pair;
+import edu.rice.cs.util.Log;
+import edu.rice.cs.util.OutputStreamRedirector;
+import edu.rice.cs.util.UnexpectedException;
+import edu.rice.cs.util.classloader.ClassFileError;
+import edu.rice.cs.util.newjvm.AbstractSlaveJVM;
+import edu.rice.cs.util.newjvm.MasterRemote;
+
+import static edu.rice.cs.plt.debug.DebugUtil.error;
+
+/** The main class of a JUnit worker JVM.  A worker runs one shard of a test suite on behalf of the
+  * ShardedJUnitRunner in the main JVM, using its own JUnitTestManager, and streams per-test events back to it.
+  * The class path of the worker JVM is the interactions class path, so no class path updates are needed.
+  * (Do not use DrJava's config framework here.)
+  * @version $Id$
+  */
+public class JUnitWorkerJVM extends AbstractSlaveJVM implements JUnitWorkerJVMRemoteI, JUnitModelCallback {
+  
+  public static final Log _log = new Log("GlobalModel.txt", false);
+  
+  /** Singleton instance of this class. */
+  public static final JUnitWorkerJVM ONLY = new JUnitWorkerJVM();
+  
+  private final ClassPathManager _classPathManager;
+  private final JUnitTestManager _junitTestManager;
+  
+  /** Remote reference to the worker's master in the main JVM.  Assigned ONLY once. */
+  private volatile JUnitWorkerMasterRemoteI _master;
+  
+  /** The faults reported by the most recent test suite. */
+  private volatile JUnitError[] _faults = new JUnitError[0];
+  
+  /** Private constructor; use the singleton ONLY instance. */
+  private JUnitWorkerJVM() {
+    super("Quit JUnit Worker Thread", "Poll DrJava Thread");
+    _classPathManager = new ClassPathManager(ReflectUtil.SYSTEM_CLASS_PATH);
+    _junitTestManager = new JUnitTestManager(this, _classPathManager);
+  }
+  
+  /** Connects to the master and redirects System.out and System.err to it. */
+  protected void handleStart(MasterRemote master) {
+    _master = (JUnitWorkerMasterRemoteI) master;
+    
+    System.setOut(new PrintStream(new OutputStreamRedirector() {
+      public void print(String s) {
+        try { _master.systemOutPrint(s); }
+        catch (RemoteException re) {
+          error.log(re);
+          throw new UnexpectedException("Main JVM can't be reached for output.\n" + re);
+        }
+      }
+    }));
+    
+    System.setErr(new PrintStream(new OutputStreamRedirector() {
+      public void print(String s) {
+        try { _master.systemErrPrint(s); }
+        catch (RemoteException re) {
+          error.log(re);
+          throw new UnexpectedException("Main JVM can't be reached for output.\n" + re);
+        }
+      }
+    }));
+  }
+  
+  // ---------------------------------- JUnitWorkerJVMRemoteI ----------------------------------
+  
+  public Pair<List<String>, Integer> findTestClasses(List<String> classNames, List<File> files) {
+    _log.log("Worker: findTestClasses(" + classNames + ", " + files + ")");
+    List<String> tests = _junitTestManager.findTestClasses(classNames, files, new CoverageMetadata(false, ""));
+    return Pair.make(tests, _junitTestManager.countTestCases());
+  }
+  
+  public JUnitError[] runTestSuite() {
+    _faults = new JUnitError[0];
+    _junitTestManager.runTestSuite();  // calls testSuiteEnded before returning
+    return _faults;
+  }
+  
+  // ---------------------------------- JUnitModelCallback ----------------------------------
+  
+  /** The master does not need to know; an empty shard is not an error. */
+  public void nonTestCase(boolean isTestAll, boolean didCompileFail) { }
+  
+  public void classFileError(ClassFileError e) {
+    try { _master.classFileError(e); }
+    catch (RemoteException re) { error.log(re); }
+  }
+  
+  /** The master announces the size of the whole suite, so the size of this shard is not forwarded. */
+  public void testSuiteStarted(int numTests) { }
+  
+  public void testStarted(String testName) {
+    try { _master.testStarted(testName); }
+    catch (RemoteException re) { error.log(re); }
+  }
+  
+  public void testEnded(String testName, boolean wasSuccessful, boolean causedError) {
+    try { _master.testEnded(testName, wasSuccessful, causedError); }
+    catch (RemoteException re) { error.log(re); }
+  }
+  
+  /** Records the faults so that runTestSuite can return them. */
+  public void testSuiteEnded(JUnitError[] errors) { _faults = errors; }
+  
+  public File getFileForClassName(String className) {
+    try { return _master.getFileForClassName(className); }
+    catch (RemoteException re) {
+      error.log(re);
+      return null;
+    }
+  }
+  
+  public Iterable<File> getClassPath() { return _classPathManager.getClassPath(); }
+  
+  public void junitJVMReady() { }
+}
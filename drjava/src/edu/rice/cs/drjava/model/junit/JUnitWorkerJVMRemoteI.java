@@ -0,0 +1,65 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+h *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.junit;
+
+import java.io.File;
+import java.rmi.RemoteException;
+import java.util.List;
+
+import edu.rice.cs.plt.tuple.Pair;
+import edu.rice.cs.util.newjvm.SlaveRemote;
+
+/** The methods that a JUnit worker JVM exposes to the ShardedJUnitRunner in the main JVM.
+  * @version $Id$
+  */
+public interface JUnitWorkerJVMRemoteI extends SlaveRemote {
+  
+  /** Loads the given classes and sets up a test suite containing those that are tests.
+    * @param classNames the (fully qualified) class names that are test class candidates
+    * @param files the source files corresponding to classNames
+    * @return the names of the test classes and the number of test cases in the suite
+    * @throws RemoteException if communication over RMI fails
+    */
+  public Pair<List<String>, Integer> findTestClasses(List<String> classNames, List<File> files) throws RemoteException;
+  
+  /** Runs the test suite set up by the preceding call to findTestClasses, reporting each test to the master as it
+    * starts and ends.
+    * @return the errors and failures of the suite
+    * @throws RemoteException if communication over RMI fails
+    */
+  public JUnitError[] runTestSuite() throws RemoteException;
+}
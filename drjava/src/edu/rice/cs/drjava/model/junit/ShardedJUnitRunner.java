@@ -0,0 +1,338 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+h *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.rmi.RemoteException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import edu.rice.cs.plt.concurrent.JVMBuilder;
+import edu.rice.cs.plt.lambda.Runnable1;
+import edu.rice.cs.plt.tuple.Pair;
+import edu.rice.cs.util.Log;
+import edu.rice.cs.util.classloader.ClassFileError;
+import edu.rice.cs.util.newjvm.AbstractMasterJVM;
+import edu.rice.cs.util.newjvm.SlaveRemote;
+
+import static edu.rice.cs.plt.debug.DebugUtil.error;
+
+/** Runs a test suite in several worker JVMs at once.  The test classes are split into shards of roughly equal
+  * expected running time, using the duration each class took the last time it ran, and each shard runs in its own
+  * JUnitWorkerJVM.  Per-test events are forwarded to a single JUnitModelCallback as they arrive, and the faults of all
+  * shards are reported together when the last shard ends, so to the callback the run looks like one suite.
+  * <p>
+  * Like the interactions JVM, a runner is used in two steps: findTestClasses starts the workers and sets up their
+  * suites, and runTestSuite runs them and quits the workers.  Code coverage is not supported.
+  * @version $Id$
+  */
+public class ShardedJUnitRunner {
+  
+  private static final Log _log = new Log("GlobalModel.txt", false);
+  
+  /** Receives the merged test events. */
+  private final JUnitModelCallback _callback;
+  
+  /** Receive text printed by the workers to System.out and System.err. */
+  private final Runnable1<String> _out;
+  private final Runnable1<String> _err;
+  
+  /** Running time in milliseconds of each test class the last time it ran.  Guarded by this. */
+  private final HashMap<String, Long> _durations = new HashMap<String, Long>();
+  
+  /** Start times (from System.nanoTime) of the running tests, keyed by test name.  Guarded by this. */
+  private final HashMap<String, Long> _startTimes = new HashMap<String, Long>();
+  
+  /** Running time in nanoseconds of each test class in the current run.  Guarded by this. */
+  private final HashMap<String, Long> _runTimes = new HashMap<String, Long>();
+  
+  /** Workers holding a pending test suite; empty if no suite is pending. */
+  private final ArrayList<Worker> _workers = new ArrayList<Worker>();
+  
+  /** The number of test cases in the pending suite. */
+  private int _numTests = 0;
+  
+  /** @param callback receives the merged test events
+    * @param out receives text printed to System.out by the tests
+    * @param err receives text printed to System.err by the tests
+    */
+  public ShardedJUnitRunner(JUnitModelCallback callback, Runnable1<String> out, Runnable1<String> err) {
+    _callback = callback;
+    _out = out;
+    _err = err;
+  }
+  
+  /** Starts up to numWorkers worker JVMs, splits the given classes among them, and sets up a test suite in each.
+    * Workers whose shard contains no tests are quit immediately.  If any worker fails to start, all are quit and
+    * null is returned, so the caller can fall back to running the tests in a single JVM.
+    * @param classNames the (fully qualified) class names that are test class candidates
+    * @param files the source files corresponding to classNames
+    * @param numWorkers the maximum number of worker JVMs
+    * @param jvmBuilder the builder used to start each worker JVM
+    * @return the names of the test classes, or null if the workers could not be started
+    */
+  public List<String> findTestClasses(List<String> classNames, List<File> files, int numWorkers, 
+                                      final JVMBuilder jvmBuilder) {
+    if (! _workers.isEmpty()) throw new IllegalStateException("Test suite is still pending!");
+    
+    ArrayList<Worker> workers = new ArrayList<Worker>();
+    for (List<Integer> shard: partition(classNames, getDurations(), numWorkers)) {
+      ArrayList<String> shardNames = new ArrayList<String>(shard.size());
+      ArrayList<File> shardFiles = new ArrayList<File>(shard.size());
+      for (int i: shard) {
+        shardNames.add(classNames.get(i));
+        shardFiles.add(files.get(i));
+      }
+      workers.add(new Worker(shardNames, shardFiles));
+    }
+    _log.log("Starting " + workers.size() + " JUnit workers");
+    
+    _runAll(workers, new Runnable1<Worker>() { public void run(Worker w) { w.startAndFind(jvmBuilder); } });
+    
+    for (Worker w: workers) {
+      if (w._failure != null) {
+        error.log("JUnit worker failed to start", w._failure);
+        _runAll(workers, new Runnable1<Worker>() { public void run(Worker w) { w.stop(); } });
+        return null;
+      }
+    }
+    
+    ArrayList<String> tests = new ArrayList<String>();
+    _numTests = 0;
+    for (Worker w: workers) {
+      tests.addAll(w._tests);
+      _numTests += w._numTests;
+      if (w._tests.isEmpty()) w.stop();
+      else _workers.add(w);
+    }
+    return tests;
+  }
+  
+  /** Runs the test suites set up by the preceding call to findTestClasses, then quits the workers.  Announces the
+    * size of the whole suite to the callback, forwards each test event as it happens, and reports the faults of all
+    * shards when the last one ends.  A worker that dies is reported as a single error.
+    * @return false if no test suite has been set up
+    */
+  public boolean runTestSuite() {
+    if (_workers.isEmpty()) return false;
+    ArrayList<Worker> workers = new ArrayList<Worker>(_workers);
+    _workers.clear();
+    
+    synchronized(this) {
+      _startTimes.clear();
+      _runTimes.clear();
+    }
+    _callback.testSuiteStarted(_numTests);
+    
+    _runAll(workers, new Runnable1<Worker>() { public void run(Worker w) { w.runSuite(); } });
+    
+    ArrayList<JUnitError> faults = new ArrayList<JUnitError>();
+    for (Worker w: workers) faults.addAll(Arrays.asList(w._faults));
+    _runAll(workers, new Runnable1<Worker>() { public void run(Worker w) { w.stop(); } });
+    
+    synchronized(this) {
+      for (Map.Entry<String, Long> e: _runTimes.entrySet()) _durations.put(e.getKey(), e.getValue() / 1000000L);
+    }
+    _callback.testSuiteEnded(faults.toArray(new JUnitError[faults.size()]));
+    return true;
+  }
+  
+  /** @return a copy of the recorded running time in milliseconds of each test class */
+  public synchronized Map<String, Long> getDurations() { return new HashMap<String, Long>(_durations); }
+  
+  /** Splits the classes into at most n shards of roughly equal expected running time.  Classes are assigned longest
+    * first, each to the shard with the least total time so far; a class without a recorded time is assumed to take
+    * the average of the recorded times.  Within a shard, classes keep their original order.
+    * @param classNames the class names to split
+    * @param durations the recorded running time of (some of) the classes
+    * @param n the maximum number of shards
+    * @return the indices into classNames of each non-empty shard
+    */
+  static List<List<Integer>> partition(List<String> classNames, Map<String, Long> durations, int n) {
+    long total = 0;
+    int known = 0;
+    for (String c: classNames) {
+      Long d = durations.get(c);
+      if (d != null) { total += d; known++; }
+    }
+    final long[] cost = new long[classNames.size()];
+    long defaultCost = (known == 0) ? 1 : Math.max(1, total / known);
+    for (int i = 0; i < cost.length; i++) {
+      Long d = durations.get(classNames.get(i));
+      cost[i] = (d == null) ? defaultCost : Math.max(1, d);
+    }
+    
+    Integer[] order = new Integer[cost.length];
+    for (int i = 0; i < order.length; i++) order[i] = i;
+    Arrays.sort(order, new Comparator<Integer>() {
+      public int compare(Integer a, Integer b) { return (cost[b] < cost[a]) ? -1 : (cost[b] == cost[a] ? a - b : 1); }
+    });
+    
+    int numShards = Math.max(1, Math.min(n, cost.length));
+    ArrayList<List<Integer>> shards = new ArrayList<List<Integer>>(numShards);
+    long[] load = new long[numShards];
+    for (int s = 0; s < numShards; s++) shards.add(new ArrayList<Integer>());
+    for (int i: order) {
+      int min = 0;
+      for (int s = 1; s < numShards; s++) if (load[s] < load[min]) min = s;
+      shards.get(min).add(i);
+      load[min] += cost[i];
+    }
+    
+    ArrayList<List<Integer>> result = new ArrayList<List<Integer>>(numShards);
+    for (List<Integer> shard: shards) {
+      if (shard.isEmpty()) continue;
+      Collections.sort(shard);
+      result.add(shard);
+    }
+    return result;
+  }
+  
+  /** Extracts the class name from a JUnit test name of the form "method(class)".
+    * @param testName the test name
+    * @return the class name, or the whole test name if it has a different form
+    */
+  static String testClassName(String testName) {
+    int open = testName.lastIndexOf('(');
+    int close = testName.lastIndexOf(')');
+    return (open >= 0 && close > open) ? testName.substring(open + 1, close) : testName;
+  }
+  
+  /** Runs the action on each worker in a thread of its own and waits for all of them to finish. */
+  private static void _runAll(List<Worker> workers, final Runnable1<Worker> action) {
+    ArrayList<Thread> threads = new ArrayList<Thread>(workers.size());
+    for (final Worker w: workers) {
+      Thread t = new Thread(new Runnable() { public void run() { action.run(w); } }, "JUnit Worker Control");
+      t.start();
+      threads.add(t);
+    }
+    for (Thread t: threads) {
+      try { t.join(); }
+      catch (InterruptedException e) { error.log(e); }
+    }
+  }
+  
+  private synchronized void _testStarted(String testName) {
+    _startTimes.put(testName, System.nanoTime());
+    _callback.testStarted(testName);
+  }
+  
+  private synchronized void _testEnded(String testName, boolean wasSuccessful, boolean causedError) {
+    Long start = _startTimes.remove(testName);
+    if (start != null) {
+      String className = testClassName(testName);
+      Long sum = _runTimes.get(className);
+      _runTimes.put(className, System.nanoTime() - start + (sum == null ? 0 : sum));
+    }
+    _callback.testEnded(testName, wasSuccessful, causedError);
+  }
+  
+  /** The master side of one worker JVM, running one shard. */
+  private class Worker extends AbstractMasterJVM implements JUnitWorkerMasterRemoteI {
+    private final List<String> _classNames;
+    private final List<File> _files;
+    
+    /** The worker JVM; null until it has connected. */
+    private volatile JUnitWorkerJVMRemoteI _remote = null;
+    /** Why the worker could not be set up; null if it was. */
+    private volatile Exception _failure = null;
+    
+    private volatile List<String> _tests = Collections.emptyList();
+    private volatile int _numTests = 0;
+    private volatile JUnitError[] _faults = new JUnitError[0];
+    
+    Worker(List<String> classNames, List<File> files) {
+      super(JUnitWorkerJVM.class.getName());
+      _classNames = classNames;
+      _files = files;
+    }
+    
+    /** Starts the worker JVM and sets up its test suite. */
+    void startAndFind(JVMBuilder jvmBuilder) {
+      invokeSlave(jvmBuilder);
+      if (_remote == null) {
+        if (_failure == null) _failure = new IOException("JUnit worker JVM did not start");
+        return;
+      }
+      try {
+        Pair<List<String>, Integer> found = _remote.findTestClasses(_classNames, _files);
+        _tests = found.first();
+        _numTests = found.second();
+      }
+      catch (RemoteException e) { _failure = e; }
+    }
+    
+    /** Runs the test suite set up by startAndFind. */
+    void runSuite() {
+      try { _faults = _remote.runTestSuite(); }
+      catch (RemoteException e) {
+        _faults = new JUnitError[] {
+          new JUnitError(null, -1, -1, "A JUnit worker JVM running " + _tests + " failed: " + e.getMessage(), false,
+                         "", "", e.toString(), e.getStackTrace())
+        };
+      }
+    }
+    
+    /** Quits the worker JVM, if it is running, and releases this master. */
+    void stop() {
+      if (_remote != null) {
+        try { _remote.quit(); }  // the exit listener returns this master to the FRESH state
+        catch (RemoteException e) { /* the worker has already quit */ }
+      }
+      dispose();
+    }
+    
+    protected void handleSlaveConnected(SlaveRemote newSlave) { _remote = (JUnitWorkerJVMRemoteI) newSlave; }
+    protected void handleSlaveQuit(int status) { _log.log("JUnit worker quit with status " + status); }
+    protected void handleSlaveWontStart(Exception e) { _failure = e; }
+    
+    public void testStarted(String testName) { _testStarted(testName); }
+    public void testEnded(String testName, boolean wasSuccessful, boolean causedError) {
+      _testEnded(testName, wasSuccessful, causedError);
+    }
+    public void classFileError(ClassFileError e) { _callback.classFileError(e); }
+    public File getFileForClassName(String className) { return _callback.getFileForClassName(className); }
+    public void systemOutPrint(String s) { _out.run(s); }
+    public void systemErrPrint(String s) { _err.run(s); }
+  }
+}
@@ -0,0 +1,143 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+h *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.concurrent.JVMBuilder;
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.iter.IterUtil;
+import edu.rice.cs.plt.lambda.Runnable1;
+import edu.rice.cs.plt.reflect.ReflectUtil;
+import edu.rice.cs.util.classloader.ClassFileError;
+
+/** Tests the splitting of test classes into shards and running them in worker JVMs.
+  * @version $Id$
+  */
+public final class ShardedJUnitRunnerTest extends DrJavaTestCase {
+  
+  /** Records the events it receives. */
+  private static class RecordingCallback implements JUnitModelCallback {
+    final List<String> events = Collections.synchronizedList(new ArrayList<String>());
+    volatile JUnitError[] errors = null;
+    public void nonTestCase(boolean isTestAll, boolean didCompileFail) { events.add("nonTestCase"); }
+    public void classFileError(ClassFileError e) { events.add("classFileError"); }
+    public void testSuiteStarted(int numTests) { events.add("suiteStarted " + numTests); }
+    public void testStarted(String testName) { events.add("started " + testName); }
+    public void testEnded(String testName, boolean wasSuccessful, boolean causedError) {
+      events.add("ended " + testName + " " + wasSuccessful);
+    }
+    public void testSuiteEnded(JUnitError[] errors) { this.errors = errors; }
+    public File getFileForClassName(String className) { return null; }
+    public Iterable<File> getClassPath() { return IterUtil.empty(); }
+    public void junitJVMReady() { }
+  }
+  
+  private static final Runnable1<String> IGNORE = new Runnable1<String>() { public void run(String s) { } };
+  
+  public void testPartition() {
+    List<String> names = Arrays.asList("A", "B", "C", "D", "E");
+    Map<String, Long> durations = new HashMap<String, Long>();
+    durations.put("A", 100L);
+    durations.put("B", 60L);
+    durations.put("C", 50L);
+    durations.put("D", 10L);
+    
+    // E is unknown and costs the average of 55; longest first: A(100)->0, B(60)->1, E(55)->1, C(50)->0, D(10)->1
+    assertEquals("two shards", Arrays.asList(Arrays.asList(0, 2), Arrays.asList(1, 3, 4)),
+                 ShardedJUnitRunner.partition(names, durations, 2));
+    assertEquals("one shard", Arrays.asList(Arrays.asList(0, 1, 2, 3, 4)),
+                 ShardedJUnitRunner.partition(names, durations, 1));
+    assertEquals("no more shards than classes", 5, ShardedJUnitRunner.partition(names, durations, 8).size());
+    assertEquals("no history", Arrays.asList(Arrays.asList(0, 2, 4), Arrays.asList(1, 3)),
+                 ShardedJUnitRunner.partition(names, Collections.<String, Long>emptyMap(), 2));
+  }
+  
+  public void testTestClassName() {
+    assertEquals("p.FooTest", ShardedJUnitRunner.testClassName("testBar(p.FooTest)"));
+    assertEquals("weird", ShardedJUnitRunner.testClassName("weird"));
+  }
+  
+  public void testRunInWorkers() throws IOException {
+    JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    if (javac == null) return;  // not running on a JDK
+    File dir = IOUtil.createAndMarkTempDirectory("DrJava-test-shards", "");
+    try {
+      String[] sources = {
+        "public class OneTest extends junit.framework.TestCase { public void testA() { } public void testB() { } }",
+        "public class TwoTest { @org.junit.Test public void c() { org.junit.Assert.fail(\"no\"); } }",
+        "public class Helper { }"
+      };
+      ArrayList<String> args = new ArrayList<String>(Arrays.asList("-d", dir.getPath(), "-cp", 
+                                                                   System.getProperty("java.class.path")));
+      ArrayList<String> classNames = new ArrayList<String>();
+      ArrayList<File> files = new ArrayList<File>();
+      for (String text: sources) {
+        String name = text.substring(13, text.indexOf(' ', 13));
+        File f = new File(dir, name + ".java");
+        IOUtil.writeStringToFile(f, text);
+        args.add(f.getPath());
+        classNames.add(name);
+        files.add(f);
+      }
+      assertEquals("compilation succeeded", 0, javac.run(null, null, null, args.toArray(new String[args.size()])));
+      
+      JVMBuilder jvmb = new JVMBuilder(IterUtil.compose(ReflectUtil.SYSTEM_CLASS_PATH, dir));
+      RecordingCallback callback = new RecordingCallback();
+      ShardedJUnitRunner runner = new ShardedJUnitRunner(callback, IGNORE, IGNORE);
+      List<String> tests = runner.findTestClasses(classNames, files, 3, jvmb);
+      assertNotNull("workers started", tests);
+      assertEquals("test classes", new HashSet<String>(Arrays.asList("OneTest", "TwoTest")), new HashSet<String>(tests));
+      assertTrue("ran", runner.runTestSuite());
+      
+      assertEquals("suite size announced first", "suiteStarted 3", callback.events.get(0));
+      assertEquals("start and end of each test", 7, callback.events.size());
+      assertTrue("A passed", callback.events.contains("ended testA(OneTest) true"));
+      assertTrue("c failed", callback.events.contains("ended c(TwoTest) false"));
+      assertEquals("one failure", 1, callback.errors.length);
+      assertEquals("durations recorded", new HashSet<String>(Arrays.asList("OneTest", "TwoTest")), 
+                   runner.getDurations().keySet());
+      assertFalse("nothing pending", runner.runTestSuite());
+    }
+    finally { IOUtil.deleteRecursively(dir); }
+  }
+}
@@ -0,0 +1,284 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+h *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.util.Log;
+
+import org.objectweb.asm.*;
+
+/** An index of the class files in build directories, used to discover JUnit test classes without loading them.  Each
+  * entry is keyed by the class file and is valid as long as the file's modification time and length are unchanged.
+  * It records the class name, the source file name, and the facts needed to decide from the bytecode alone whether the
+  * class is a JUnit 3 or JUnit 4 test.  Class files that are new or have changed since the last scan are read in
+  * parallel; all others are answered from the index, so repeated test runs over an unchanged build touch no class
+  * files at all.
+  * @version $Id$
+  */
+final class TestClassIndex {
+  
+  /** log for use in debugging */
+  private static final Log _log = new Log("TestClassIndex.txt", false);
+  
+  /** Shared pool used to read class files. */
+  private static final ForkJoinPool _pool = new ForkJoinPool();
+  
+  /** Descriptor of the JUnit 4 test annotation. */
+  private static final String TEST_ANNOTATION = "Lorg/junit/Test;";
+  
+  /** Internal names of library types that make a concrete subtype a JUnit 3 test. */
+  private static final Set<String> JUNIT3_TYPES = 
+    new HashSet<String>(Arrays.asList("junit/framework/Test", "junit/framework/TestCase", "junit/framework/TestSuite"));
+  
+  /** The result of classifying an entry whose supertypes could not all be resolved from bytecode. */
+  public static final int UNKNOWN = -1;
+  /** The result of classifying an entry that is not a test. */
+  public static final int NOT_A_TEST = 0;
+  /** The result of classifying an entry that is a test. */
+  public static final int TEST = 1;
+  
+  /** What the index knows about one class file. */
+  static final class Entry {
+    final long _lastModified;
+    final long _length;
+    /** Binary class name, e.g. "p.Outer$Inner". */
+    final String _className;
+    /** Internal name, e.g. "p/Outer$Inner". */
+    final String _internalName;
+    /** Simple name of the source file recorded in the class file, or null. */
+    final String _sourceName;
+    final String _superName;
+    final String[] _interfaces;
+    /** Whether the class is neither abstract nor an interface. */
+    final boolean _concrete;
+    /** Whether some method declared in the class carries the JUnit 4 {@code @Test} annotation. */
+    final boolean _annotated;
+    
+    Entry(long lastModified, long length, String internalName, String sourceName, String superName, 
+          String[] interfaces, boolean concrete, boolean annotated) {
+      _lastModified = lastModified;
+      _length = length;
+      _internalName = internalName;
+      _className = internalName.replace('/', '.');
+      _sourceName = sourceName;
+      _superName = superName;
+      _interfaces = (interfaces == null) ? new String[0] : interfaces;
+      _concrete = concrete;
+      _annotated = annotated;
+    }
+    
+    public String getClassName() { return _className; }
+    public String getSourceName() { return _sourceName; }
+    
+    public String toString() { return "Entry(" + _className + ", " + _sourceName + ")"; }
+  }
+  
+  /** Entries for all scanned class files, keyed by class file. */
+  private final HashMap<File, Entry> _entries = new HashMap<File, Entry>();
+  
+  /** Entries for all scanned class files, keyed by internal class name; used to resolve supertypes. */
+  private final HashMap<String, Entry> _byName = new HashMap<String, Entry>();
+  
+  /** Number of class files read by the most recent scan. */
+  private int _numRead = 0;
+  
+  /** Number of class files answered from the index by the most recent scan. */
+  private int _numReused = 0;
+  
+  /** Returns the entries for the class files directly inside the given directories, in directory listing order.
+    * Class files that are new or have changed are read in parallel; entries for deleted files are dropped.  Files
+    * that cannot be read are omitted.
+    * @param dirs the directories to scan
+    * @return a map from class file to entry
+    */
+  public synchronized Map<File, Entry> scan(Iterable<File> dirs) {
+    final ArrayList<File> classFiles = new ArrayList<File>();
+    final HashSet<File> scannedDirs = new HashSet<File>();
+    for (File dir: dirs) {
+      scannedDirs.add(dir);
+      File[] listing = dir.listFiles();
+      if (listing == null) continue;  // listFiles may return null if there's an IO error
+      for (File f: listing) {
+        if (f.getName().endsWith(".class") && f.isFile()) classFiles.add(f);
+      }
+    }
+    
+    // Forget entries whose class files are gone from the scanned directories
+    HashSet<File> present = new HashSet<File>(classFiles);
+    for (File f: new ArrayList<File>(_entries.keySet())) {
+      if (scannedDirs.contains(f.getParentFile()) && ! present.contains(f)) _remove(f);
+    }
+    
+    List<Callable<Entry>> tasks = new ArrayList<Callable<Entry>>();
+    final ArrayList<File> toRead = new ArrayList<File>();
+    for (final File f: classFiles) {
+      Entry e = _entries.get(f);
+      if (e != null && e._lastModified == f.lastModified() && e._length == f.length()) continue;
+      toRead.add(f);
+      tasks.add(new Callable<Entry>() { public Entry call() { return read(f); } });
+    }
+    
+    _numRead = toRead.size();
+    _numReused = classFiles.size() - _numRead;
+    if (! tasks.isEmpty()) {
+      List<Future<Entry>> results = _pool.invokeAll(tasks);
+      for (int i = 0; i < toRead.size(); i++) {
+        Entry e;
+        try { e = results.get(i).get(); }
+        catch (InterruptedException ie) { e = null; }
+        catch (ExecutionException ee) { e = null; }
+        _remove(toRead.get(i));
+        if (e != null) {
+          _entries.put(toRead.get(i), e);
+          _byName.put(e._internalName, e);
+        }
+      }
+    }
+    _log.log("Scanned " + classFiles.size() + " class files; read " + _numRead + ", reused " + _numReused);
+    
+    Map<File, Entry> result = new LinkedHashMap<File, Entry>();
+    for (File f: classFiles) {
+      Entry e = _entries.get(f);
+      if (e != null) result.put(f, e);
+    }
+    return result;
+  }
+  
+  /** Drops the entry for the given class file, if any. */
+  private void _remove(File f) {
+    Entry old = _entries.remove(f);
+    if (old != null && _byName.get(old._internalName) == old) _byName.remove(old._internalName);
+  }
+  
+  /** Decides from bytecode whether the class is a JUnit test, mirroring the check made by the test manager: either some
+    * declared method is annotated with {@code @Test}, or the class is concrete and a subtype of junit.framework.Test.
+    * Supertypes are resolved through the index; a supertype that is neither indexed, a JUnit type, nor a JDK type
+    * makes the answer {@link #UNKNOWN}.
+    * @param e the entry to classify
+    * @return TEST, NOT_A_TEST or UNKNOWN
+    */
+  public synchronized int classify(Entry e) {
+    if (e._annotated) return TEST;
+    if (! e._concrete) return NOT_A_TEST;
+    
+    boolean unknown = false;
+    HashSet<String> seen = new HashSet<String>();
+    ArrayList<String> work = new ArrayList<String>();
+    _addSupertypes(e, work);
+    while (! work.isEmpty()) {
+      String name = work.remove(work.size() - 1);
+      if (name == null || ! seen.add(name)) continue;
+      if (JUNIT3_TYPES.contains(name)) return TEST;
+      if (name.startsWith("java/") || name.startsWith("javax/")) continue;
+      Entry sup = _byName.get(name);
+      if (sup == null) unknown = true;
+      else _addSupertypes(sup, work);
+    }
+    return unknown ? UNKNOWN : NOT_A_TEST;
+  }
+  
+  private static void _addSupertypes(Entry e, List<String> work) {
+    work.add(e._superName);
+    work.addAll(Arrays.asList(e._interfaces));
+  }
+  
+  /** @return the number of class files read by the most recent scan */
+  public synchronized int getNumRead() { return _numRead; }
+  
+  /** @return the number of class files answered from the index by the most recent scan */
+  public synchronized int getNumReused() { return _numReused; }
+  
+  /** @return the number of class files in the index */
+  public synchronized int size() { return _entries.size(); }
+  
+  /** Removes all entries. */
+  public synchronized void clear() { 
+    _entries.clear(); 
+    _byName.clear();
+  }
+  
+  /** Reads the class file f.  May be called from any thread.
+    * @param f the class file
+    * @return the entry for f, or null if it cannot be read
+    */
+  static Entry read(File f) {
+    final long lastModified = f.lastModified();
+    final long length = f.length();
+    final String[] names = new String[3];  // internal name, source name, super name
+    final String[][] interfaces = new String[1][];
+    final boolean[] flags = new boolean[2];  // concrete, annotated
+    try {
+      new ClassReader(IOUtil.toByteArray(f)).accept(new ClassVisitor(Opcodes.ASM4) {
+        public void visit(int version, int access, String name, String sig, String sup, String[] inters) {
+          names[0] = name;
+          names[2] = sup;
+          interfaces[0] = inters;
+          flags[0] = (access & (Opcodes.ACC_ABSTRACT | Opcodes.ACC_INTERFACE)) == 0;
+        }
+        public void visitSource(String source, String debug) { names[1] = source; }
+        public MethodVisitor visitMethod(int a, String n, String d, String s, String[] e) {
+          if (flags[1]) return null;
+          return new MethodVisitor(Opcodes.ASM4) {
+            public AnnotationVisitor visitAnnotation(String desc, boolean visible) {
+              if (TEST_ANNOTATION.equals(desc)) flags[1] = true;
+              return null;
+            }
+          };
+        }
+      }, ClassReader.SKIP_CODE | ClassReader.SKIP_FRAMES);
+    }
+    catch (IOException e) { return null; }
+    catch (RuntimeException e) { return null; }  // malformed class file
+    if (names[0] == null) return null;
+    return new Entry(lastModified, length, names[0], names[1], names[2], interfaces[0], flags[0], flags[1]);
+  }
+}
@@ -0,0 +1,134 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+h *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.junit;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import javax.tools.JavaCompiler;
+import javax.tools.ToolProvider;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests the bytecode-based discovery of JUnit test classes, compiling small sources with the system compiler.
+  * @version $Id$
+  */
+public final class TestClassIndexTest extends DrJavaTestCase {
+  
+  private File _dir;
+  private TestClassIndex _index;
+  
+  public void setUp() throws Exception {
+    super.setUp();
+    _dir = IOUtil.createAndMarkTempDirectory("DrJava-test-index", "");
+    _index = new TestClassIndex();
+  }
+  
+  public void tearDown() throws Exception {
+    IOUtil.deleteRecursively(_dir);
+    super.tearDown();
+  }
+  
+  /** Writes and compiles the given sources, named by the first word of each entry after "class". */
+  private void _compile(String... sources) throws IOException {
+    JavaCompiler javac = ToolProvider.getSystemJavaCompiler();
+    ArrayList<String> args = new ArrayList<String>(Arrays.asList("-d", _dir.getPath(), "-cp", 
+                                                                 System.getProperty("java.class.path")));
+    for (String text: sources) {
+      String rest = text.substring(text.indexOf("class ") + 6);
+      File f = new File(_dir, rest.substring(0, rest.indexOf(' ')) + ".java");
+      IOUtil.writeStringToFile(f, text);
+      args.add(f.getPath());
+    }
+    assertEquals("compilation succeeded", 0, javac.run(null, null, null, args.toArray(new String[args.size()])));
+  }
+  
+  /** Returns the classification of every indexed class, keyed by class name. */
+  private Map<String, Integer> _classify() {
+    TreeMap<String, Integer> result = new TreeMap<String, Integer>();
+    for (TestClassIndex.Entry e: _index.scan(Arrays.asList(_dir)).values()) {
+      result.put(e.getClassName(), _index.classify(e));
+    }
+    return result;
+  }
+  
+  public void testClassification() throws IOException {
+    if (ToolProvider.getSystemJavaCompiler() == null) return;  // not running on a JDK
+    _compile("public class ThreeTest extends junit.framework.TestCase { public void testX() { } }",
+             "public class Sub extends ThreeTest { }",
+             "public abstract class Base extends junit.framework.TestCase { }",
+             "public class FourTest { @org.junit.Test public void x() { } }",
+             "public class Plain extends java.util.ArrayList<String> { }",
+             "public class Other extends edu.rice.cs.drjava.DrJavaTestCase { }");
+    
+    Map<String, Integer> expected = new TreeMap<String, Integer>();
+    expected.put("ThreeTest", TestClassIndex.TEST);
+    expected.put("Sub", TestClassIndex.TEST);
+    expected.put("Base", TestClassIndex.NOT_A_TEST);
+    expected.put("FourTest", TestClassIndex.TEST);
+    expected.put("Plain", TestClassIndex.NOT_A_TEST);
+    expected.put("Other", TestClassIndex.UNKNOWN);  // superclass is neither indexed nor a JUnit or JDK type
+    assertEquals("classification", expected, _classify());
+    
+    for (TestClassIndex.Entry e: _index.scan(Arrays.asList(_dir)).values()) {
+      assertEquals("source file", e.getClassName() + ".java", e.getSourceName());
+    }
+  }
+  
+  public void testUnchangedFilesAreReused() throws IOException {
+    if (ToolProvider.getSystemJavaCompiler() == null) return;  // not running on a JDK
+    _compile("public class A { }", "public class B { }");
+    
+    assertEquals("first scan", 2, _index.scan(Arrays.asList(_dir)).size());
+    assertEquals("read both", 2, _index.getNumRead());
+    assertEquals("second scan", 2, _index.scan(Arrays.asList(_dir)).size());
+    assertEquals("read none", 0, _index.getNumRead());
+    assertEquals("reused both", 2, _index.getNumReused());
+    
+    File b = new File(_dir, "B.class");
+    assertTrue("delete B.class", b.delete());
+    _compile("public class A extends junit.framework.TestCase { }");
+    File a = new File(_dir, "A.class");
+    assertTrue("set modification time", a.setLastModified(a.lastModified() + 2000));
+    Map<File, TestClassIndex.Entry> entries = _index.scan(Arrays.asList(_dir));
+    assertEquals("deleted file dropped", Collections.singleton(a), entries.keySet());
+    assertEquals("changed file reread", 1, _index.getNumRead());
+    assertEquals("A is now a test", TestClassIndex.TEST, _index.classify(entries.get(a)));
+    assertEquals("index size", 1, _index.size());
+  }
+}
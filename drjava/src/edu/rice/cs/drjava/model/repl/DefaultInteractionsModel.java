@@ -76,6 +76,14 @@ public class DefaultInteractionsModel extends RMIInteractionsModel {
     
     // Add option listeners  // WHEN ARE THESE EVER REMOVED?
     DrJava.getConfig().addOptionListener(OptionConstants.HISTORY_MAX_SIZE, _document.getHistoryOptionListener());
+    _document.setScrollbackLimit(DrJava.getConfig().getSetting(OptionConstants.SCROLLBACK_MAX_SIZE).intValue());
+    DrJava.getConfig().addOptionListener(OptionConstants.SCROLLBACK_MAX_SIZE, new OptionListener<Integer>() {
+      public void optionChanged(OptionEvent<Integer> oce) { _document.setScrollbackLimit(oce.value); }
+    });
+    _jvm.setStandbyEnabled(DrJava.getConfig().getSetting(OptionConstants.STANDBY_INTERPRETER_JVM).booleanValue());
+    DrJava.getConfig().addOptionListener(OptionConstants.STANDBY_INTERPRETER_JVM, new OptionListener<Boolean>() {
+      public void optionChanged(OptionEvent<Boolean> oce) { _jvm.setStandbyEnabled(oce.value.booleanValue()); }
+    });
     DrJava.getConfig().addOptionListener(OptionConstants.RUN_WITH_ASSERT,
                                          new OptionListener<Boolean>() {
       public void optionChanged(OptionEvent<Boolean> oce) {
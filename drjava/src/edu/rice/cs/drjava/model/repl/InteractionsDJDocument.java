@@ -43,6 +43,7 @@ import edu.rice.cs.util.swing.Utilities;
 import java.awt.*;
 import java.util.List;
 import java.util.LinkedList;
+import java.util.ListIterator;
 import javax.swing.text.AbstractDocument;
 import javax.swing.undo.*;
 
@@ -213,6 +214,23 @@ public class InteractionsDJDocument extends AbstractDJDocument implements Consol
 //    }
   }
   
+  /** Moves all styles in the styles list by delta, dropping those that end before the start of the document.  Only runs
+    * in event thread. */
+  public void shiftColoring(int delta) {
+    synchronized(_stylesList) {
+      if (_toClear) return;
+      ListIterator<Pair<Pair<Integer,Integer>,String>> it = _stylesList.listIterator();
+      while (it.hasNext()) {
+        Pair<Pair<Integer,Integer>,String> p = it.next();
+        int start = p.first().first() + delta;
+        int end = p.first().second() + delta;
+        if (end < 0) it.remove();
+        else it.set(new Pair<Pair<Integer,Integer>,String>(new Pair<Integer,Integer>(Math.max(start, 0), end), 
+                                                           p.second()));
+      }
+    }
+  }
+  
   /** Accessor method used to copy contents of _stylesList to an array.  Used in test cases. 
    * @return a copy of the contents of _styleList
    */
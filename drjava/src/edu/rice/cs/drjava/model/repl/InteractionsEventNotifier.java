@@ -30,7 +30,7 @@ package edu.rice.cs.drjava.model.repl;
 
 import java.io.File;
 
-import edu.rice.cs.drjava.model.EventNotifier;
+import edu.rice.cs.drjava.model.CopyOnWriteEventNotifier;
 
 /** Keeps track of all listeners to an InteractionsModel, and has the ability to notify them of some event. <p>
   * This class has a specific role of managing InteractionsListeners.  Other classes with similar names use similar 
@@ -40,33 +40,28 @@ import edu.rice.cs.drjava.model.EventNotifier;
   * Components which might otherwise manage their own list of listeners use EventNotifiers instead to simplify their 
   * internal implementation.  Notifiers should therefore be considered a private implementation detail of the
   * components, and should not be used directly outside of the "host" component. <p>
-  * All methods in this class must use the synchronization methods provided by ReaderWriterLock.  This ensures 
-  * that multiple notifications (reads) can occur simultaneously, but only one thread can be adding or removing 
-  * listeners (writing) at a time, and no reads can occur during a write. <p>
-  * <i>No</i> methods on this class should be synchronized using traditional Java synchronization! <p>
+  * Listeners are kept and notified by {@link CopyOnWriteEventNotifier}.
+  * <p>
   * @version $Id$
   */
 
-public class InteractionsEventNotifier extends EventNotifier<InteractionsListener> implements InteractionsListener {
+public class InteractionsEventNotifier extends CopyOnWriteEventNotifier<InteractionsListener>
+  implements InteractionsListener {
+  
+  public InteractionsEventNotifier() { super(InteractionsListener.class); }
   
   /** Called after an interaction is started by the GlobalModel. */
   public void interactionStarted() {
-    _lock.startRead();
-    try {
-      int size = _listeners.size();
-      for (int i = 0; i < size; i++)  _listeners.get(i).interactionStarted();
-    }
-    finally { _lock.endRead(); }
+    final long start = _startDispatch();
+    try { for (InteractionsListener l : _listeners) { l.interactionStarted(); } }
+    finally { _endDispatch("interactionStarted", start); }
   }
   
   /** Called when an interaction has finished running. */
   public void interactionEnded() {
-    _lock.startRead();
-    try {
-      int size = _listeners.size();
-      for (int i = 0; i < size; i++) _listeners.get(i).interactionEnded();
-    }
-    finally { _lock.endRead(); }
+    final long start = _startDispatch();
+    try { for (InteractionsListener l : _listeners) { l.interactionEnded(); } }
+    finally { _endDispatch("interactionEnded", start); }
   }
   
   /** Called when the interactions window generates a syntax error.
@@ -74,45 +69,32 @@ public class InteractionsEventNotifier extends EventNotifier<InteractionsListene
     * @param length the length of the error
     */
   public void interactionErrorOccurred(int offset, int length) {
-    _lock.startRead();
-    try {
-      int size = _listeners.size();
-      for (int i = 0; i < size; i++) _listeners.get(i).interactionErrorOccurred(offset, length);
-    }
-    finally { _lock.endRead(); }
+    final long start = _startDispatch();
+    try { for (InteractionsListener l : _listeners) { l.interactionErrorOccurred(offset, length); } }
+    finally { _endDispatch("interactionErrorOccurred", start); }
   }
   
   /** Called when the interactionsJVM has begun resetting. */
   public void interpreterResetting() {
-    _lock.startRead();
-    try {
-      int size = _listeners.size();
-//      Utilities.showDebug("InteractionsEventNotifier: interpreterResetting called on " + size + " listeners");
-      for (int i = 0; i < size; i++) _listeners.get(i).interpreterResetting();
-    }
-    finally { _lock.endRead(); }
+    final long start = _startDispatch();
+    try { for (InteractionsListener l : _listeners) { l.interpreterResetting(); } }
+    finally { _endDispatch("interpreterResetting", start); }
   }
   
   /** Called when the interactions window is reset. */
   public void interpreterReady(File wd) {
-    _lock.startRead();
-    try {
-      int size = _listeners.size();
-      for (int i = 0; i < size; i++) _listeners.get(i).interpreterReady(wd);
-    }
-    finally { _lock.endRead(); }
+    final long start = _startDispatch();
+    try { for (InteractionsListener l : _listeners) { l.interpreterReady(wd); } }
+    finally { _endDispatch("interpreterReady", start); }
   }
   
   /** Called if the interpreter reset failed.
     * @param t Throwable explaining why the reset failed. (Subclasses must maintain listeners.)
     */
   public void interpreterResetFailed(final Throwable t) {
-    _lock.startRead();
-    try {
-      int size = _listeners.size();
-      for (int i = 0; i < size; i++)  _listeners.get(i).interpreterResetFailed(t);
-    }
-    finally { _lock.endRead(); }
+    final long start = _startDispatch();
+    try { for (InteractionsListener l : _listeners) { l.interpreterResetFailed(t); } }
+    finally { _endDispatch("interpreterResetFailed", start); }
   }
   
   /** Called when the interactions JVM was closed by System.exit or by being aborted. Immediately after this the 
@@ -120,12 +102,9 @@ public class InteractionsEventNotifier extends EventNotifier<InteractionsListene
     * @param status the exit code
     */
   public void interpreterExited(int status) {
-    _lock.startRead();
-    try {
-      int size = _listeners.size();
-      for (int i = 0; i < size; i++) { _listeners.get(i).interpreterExited(status); }
-    }
-    finally { _lock.endRead(); }
+    final long start = _startDispatch();
+    try { for (InteractionsListener l : _listeners) { l.interpreterExited(status); } }
+    finally { _endDispatch("interpreterExited", start); }
   }
   
   /** Called when the active interpreter is changed.
@@ -133,22 +112,16 @@ public class InteractionsEventNotifier extends EventNotifier<InteractionsListene
     * interactionEnded event will be fired)
     */
   public void interpreterChanged(boolean inProgress) {
-    _lock.startRead();
-    try {
-      int size = _listeners.size();
-      for (int i = 0; i < size; i++)  _listeners.get(i).interpreterChanged(inProgress);
-    }
-    finally { _lock.endRead(); }
+    final long start = _startDispatch();
+    try { for (InteractionsListener l : _listeners) { l.interpreterChanged(inProgress); } }
+    finally { _endDispatch("interpreterChanged", start); }
   }
   
   /** Notifies the view that the current interaction is incomplete. */
   public void interactionIncomplete() {
-    _lock.startRead();
-    try {
-      int size = _listeners.size();
-      for (int i = 0; i < size; i++)  _listeners.get(i).interactionIncomplete();
-    }
-    finally { _lock.endRead(); }
+    final long start = _startDispatch();
+    try { for (InteractionsListener l : _listeners) { l.interactionIncomplete(); } }
+    finally { _endDispatch("interactionIncomplete", start); }
   }
   
 }
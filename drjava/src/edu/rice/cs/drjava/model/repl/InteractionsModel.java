@@ -32,6 +32,7 @@ import java.io.*;
 import java.net.ServerSocket;
 import java.util.ArrayList;
 import java.util.HashSet;
+import java.util.Map;
 
 import javax.swing.text.BadLocationException;
 
@@ -62,10 +63,17 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
   /** Banner prefix. */
   public static final String BANNER_PREFIX = "Welcome to DrJava.";
 
-  /** Number of milliseconds to wait after each println, to prevent the JVM from being flooded
-    * with print calls. */
+  /** Number of milliseconds between checks while a writer waits for output credit (see awaitOutputCredit). */
   public static final int WRITE_DELAY = 50;
   
+  /** Maximum number of characters of repl output waiting to be inserted into the document.  Writers that respect
+    * getOutputCredit and awaitOutputCredit never push the backlog past this limit. */
+  public static final int OUTPUT_CAPACITY = 1 << 17;
+  
+  /** Longest time, in milliseconds, that a single awaitOutputCredit call blocks.  A writer that still gets no credit
+    * calls it again, so a remote caller regains control periodically while the event thread is busy. */
+  public static final int MAX_CREDIT_WAIT = 2000;
+  
   public static Log _log = new Log("Interactions.txt", false);
   
 //  public static final String _newLine = "\n"; // was StringOps.EOL; but Swing uses '\n' for newLine
@@ -86,12 +94,21 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
   protected volatile File _workingDirectory;
   
   /** A lock object to prevent print calls to System.out or System.err from flooding the JVM, ensuring the UI remains
-    * responsive.  Only public for testing purposes. */
+    * responsive.  Guards the pending output fields below.  Only public for testing purposes. */
   public final Object _writerLock;
   
-  /** Number of milliseconds to wait after each println, to prevent the JVM from being flooded with print calls. */
+  /** Number of milliseconds between checks while a writer waits for output credit. */
   private final int _writeDelay;
   
+  /** Repl output (text, style) not yet inserted into the document, in order. */
+  private final ArrayList<Pair<String, String>> _pendingOutput = new ArrayList<Pair<String, String>>();
+  
+  /** Number of characters of repl output that have been printed but not yet inserted into the document. */
+  private int _pendingChars = 0;
+  
+  /** Whether a task to insert the pending output into the document is queued on the event thread. */
+  private boolean _outputDrainScheduled = false;
+  
   /** Port used by the debugger to connect to the Interactions JVM. Uniquely created in getDebugPort(). */
   private volatile int _debugPort;
   
@@ -131,7 +148,7 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
     * @param cDoc document to use in the InteractionsDocument
     * @param wd Working directory for the interpreter
     * @param historySize Number of lines to store in the history
-    * @param writeDelay Number of milliseconds to wait after each println
+    * @param writeDelay Number of milliseconds between checks while a writer waits for output credit
     */
   public InteractionsModel(ConsoleDocumentInterface cDoc, final File wd, int historySize, int writeDelay) {
     _document = new InteractionsDocument(cDoc, historySize);
@@ -297,6 +314,12 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
     */
   public abstract void addExtraClassPath(File f);
   
+  /** Replaces the classes compiled in memory, which the interpreter loads in preference to the class path, until the
+    * interpreter is reset.
+    * @param classes the class files, keyed by binary class name
+    */
+  public abstract void setInMemoryClasses(Map<String, byte[]> classes);
+  
   /** Handles a syntax error being returned from an interaction
     * @param offset the first character of the error in the InteractionsDocument
     * @param length the length of the error.
@@ -474,43 +497,84 @@ public abstract class InteractionsModel implements InteractionsModelCallback {
     _debugPortSet = true;
   }
     
-  private static final int DELAY_INTERVAL = 10;
-  private volatile int delayCount = DELAY_INTERVAL;
-  
-  /** Called when the repl prints to System.out.  Includes a delay to prevent flooding the interactions document.  This
-    * method can safely be called from outside the event thread.
+  /** Called when the repl prints to System.out.  The output is queued and inserted into the document together with
+    * any other pending output by a single event thread task.  This method can safely be called from outside the
+    * event thread.
     * @param s String to print
     */
-  public void replSystemOutPrint(final String s) {
-    Utilities.invokeLater(new Runnable() {
-      public void run() { _document.insertBeforeLastPrompt(s, ConsoleDocument.SYSTEM_OUT_STYLE); }
-    });
-    if (delayCount == 0) {
-      scrollToCaret();
-//      System.err.println(s + " printed; caretPostion = " + _pane.getCaretPosition());
-      _writerDelay();
-      delayCount = DELAY_INTERVAL;
-    }
-    else delayCount--;   
-  }
+  public void replSystemOutPrint(final String s) { _queueOutput(s, ConsoleDocument.SYSTEM_OUT_STYLE); }
   
-  /** Called when the repl prints to System.err.  Includes a delay to prevent flooding the interactions document.  This
-    * method can safely be called from outside the event thread.
+  /** Called when the repl prints to System.err.  The output is queued and inserted into the document together with
+    * any other pending output by a single event thread task.  This method can safely be called from outside the
+    * event thread.
     * @param s String to print 
     */
-  public void replSystemErrPrint(final String s) {
-      Utilities.invokeLater(new Runnable() {
-        public void run() { _document.insertBeforeLastPrompt(s, ConsoleDocument.SYSTEM_ERR_STYLE); } 
-      });
-      if (delayCount == 0) {
-        scrollToCaret();
-//      System.err.println(s + " printed; caretPostion = " + _pane.getCaretPosition());
-        _writerDelay();
-        delayCount = DELAY_INTERVAL;
+  public void replSystemErrPrint(final String s) { _queueOutput(s, ConsoleDocument.SYSTEM_ERR_STYLE); }
+  
+  /** @return the number of characters of output that can be printed before the backlog reaches OUTPUT_CAPACITY */
+  public int getOutputCredit() {
+    synchronized(_writerLock) { return Math.max(0, OUTPUT_CAPACITY - _pendingChars); }
+  }
+  
+  /** Waits until the backlog of printed output falls below half of OUTPUT_CAPACITY, or MAX_CREDIT_WAIT elapses. 
+    * Never called in the event thread.
+    * @return the number of characters of output that can now be printed; 0 if the event thread is still behind
+    */
+  public int awaitOutputCredit() {
+    long deadline = System.currentTimeMillis() + MAX_CREDIT_WAIT;
+    synchronized(_writerLock) {
+      while (_pendingChars > OUTPUT_CAPACITY / 2 && System.currentTimeMillis() < deadline) {
+        try { _writerLock.wait(_writeDelay); }
+        catch (InterruptedException e) { break; }
+      }
+      return Math.max(0, OUTPUT_CAPACITY - _pendingChars);
+    }
+  }
+  
+  /** Queues output, scheduling a task to insert it if none is pending.  The task is posted while holding the lock,
+    * so output is always inserted before any event thread task posted after this call returns. */
+  private void _queueOutput(String s, String style) {
+    synchronized(_writerLock) {
+      _pendingOutput.add(Pair.make(s, style));
+      _pendingChars += s.length();
+      if (! _outputDrainScheduled) {
+        _outputDrainScheduled = true;
+        Utilities.invokeLater(_outputDrain);
       }
-      else delayCount--;
+    }
   }
   
+  /** Inserts all pending output into the document, coalescing consecutive strings with the same style into a single
+    * insertion.  Runs in the event thread. */
+  private final Runnable _outputDrain = new Runnable() {
+    public void run() {
+      ArrayList<Pair<String, String>> batch;
+      synchronized(_writerLock) {
+        batch = new ArrayList<Pair<String, String>>(_pendingOutput);
+        _pendingOutput.clear();
+        _outputDrainScheduled = false;
+      }
+      int chars = 0;
+      StringBuilder run = new StringBuilder();
+      String runStyle = null;
+      for (Pair<String, String> p : batch) {
+        if (runStyle != null && ! runStyle.equals(p.second())) {
+          _document.insertBeforeLastPrompt(run.toString(), runStyle);
+          run.setLength(0);
+        }
+        runStyle = p.second();
+        run.append(p.first());
+        chars += p.first().length();
+      }
+      if (runStyle != null) { _document.insertBeforeLastPrompt(run.toString(), runStyle); }
+      synchronized(_writerLock) {
+        _pendingChars -= chars;
+        _writerLock.notifyAll();
+      }
+      scrollToCaret();
+    }
+  };
+  
   /** Returns a line of text entered by the user at the equivalent of System.in.  Only executes in the event thread. */
   public String getConsoleInput() { return _inputListener.getConsoleInput(); }
   
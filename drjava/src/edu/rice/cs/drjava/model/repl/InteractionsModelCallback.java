@@ -43,6 +43,11 @@ public interface InteractionsModelCallback {
    */
   public int getDebugPort() throws IOException;
   
+  /** Sets the port number to use for debugging the remote interpreter.
+    * @param port Port the remote interpreter listens on for the debugger
+    */
+  public void setDebugPort(int port);
+  
   /** Called when the repl prints to System.out.
     * @param s String to print
     */
@@ -54,6 +59,14 @@ public interface InteractionsModelCallback {
     */
   public void replSystemErrPrint(String s);
   
+  /** @return the number of characters of repl output that can be accepted without falling further behind */
+  public int getOutputCredit();
+  
+  /** Blocks until previously printed repl output has been (mostly) applied, or a time limit elapses.
+    * @return the number of characters of repl output that can now be accepted; 0 if the time limit elapsed first
+    */
+  public int awaitOutputCredit();
+  
   /** Called when input is request from System.in.
     * @return the input given to System.in
     */
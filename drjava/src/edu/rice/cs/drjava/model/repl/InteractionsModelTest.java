@@ -35,6 +35,7 @@ import edu.rice.cs.drjava.model.FileSaveSelector;
 
 import edu.rice.cs.util.FileOpenSelector;
 import edu.rice.cs.util.Log;
+import edu.rice.cs.util.UnexpectedException;
 import edu.rice.cs.util.swing.Utilities;
 import edu.rice.cs.util.text.ConsoleDocument;
 import edu.rice.cs.util.text.EditDocumentException;
@@ -44,6 +45,8 @@ import java.io.File;
 import java.io.IOException;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
 
 import java.rmi.RemoteException;
 
@@ -603,6 +606,52 @@ public final class InteractionsModelTest extends DrJavaTestCase {
     _log.log("testScriptLoading ended");
   }
   
+  /** Tests that output printed outside the event thread is inserted in order, and that the output credit is restored
+    * once the event thread has caught up.
+    * @throws Exception if something goes wrong
+    */
+  public void testBatchedOutput() throws Exception {
+    final InteractionsDocument doc = _model.getDocument();
+    Thread writer = new Thread() {
+      public void run() {
+        for (int i = 0; i < 500; i++) {
+          if (i % 100 == 99) _model.replSystemErrPrint("err" + i + "\n");
+          else _model.replSystemOutPrint("out" + i + "\n");
+        }
+      }
+    };
+    writer.start();
+    writer.join();
+    Utilities.clearEventQueue();
+    
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 500; i++) expected.append((i % 100 == 99) ? "err" : "out").append(i).append('\n');
+    assertTrue("output in order", doc.getDocText(0, doc.getLength()).contains(expected));
+    assertEquals("credit restored", InteractionsModel.OUTPUT_CAPACITY, _model.getOutputCredit());
+    assertEquals("no wait needed", InteractionsModel.OUTPUT_CAPACITY, _model.awaitOutputCredit());
+  }
+  
+  /** Tests that a writer gets no output credit while the event thread is behind, however long it waits.
+    * @throws Exception if something goes wrong
+    */
+  public void testNoCreditWhileEventThreadIsBehind() throws Exception {
+    final CountDownLatch release = new CountDownLatch(1);
+    Utilities.invokeLater(new Runnable() {
+      public void run() { 
+        try { release.await(); }
+        catch (InterruptedException e) { throw new UnexpectedException(e); }
+      }
+    });
+    try {
+      _model.replSystemOutPrint(new String(new char[InteractionsModel.OUTPUT_CAPACITY]).replace('\0', 'x'));
+      assertEquals("backlog at capacity", 0, _model.getOutputCredit());
+      assertEquals("no credit after waiting", 0, _model.awaitOutputCredit());
+    }
+    finally { release.countDown(); }
+    Utilities.clearEventQueue();
+    assertEquals("credit restored", InteractionsModel.OUTPUT_CAPACITY, _model.awaitOutputCredit());
+  }
+  
   /** Tests that setting and changing an input listener works correctly. Many actions should be moved to the
     * event thread. */
   public void testSetChangeInputListener() {
@@ -731,6 +780,7 @@ public final class InteractionsModelTest extends DrJavaTestCase {
     public void addProjectFilesClassPath(File path) { fail("cannot add to classpath in a test"); }
     public void addExternalFilesClassPath(File path) { fail("cannot add to classpath in a test"); }
     public void addExtraClassPath(File path) { fail("cannot add to classpath in a test"); }
+    public void setInMemoryClasses(Map<String, byte[]> classes) { fail("cannot add to classpath in a test"); }
     protected void _resetInterpreter(File wd, boolean force) { fail("cannot reset interpreter in a test"); }
     public List<File> getCompilerBootClassPath() {
       // TODO: figure out what to do here
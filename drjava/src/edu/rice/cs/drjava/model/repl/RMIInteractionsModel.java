@@ -35,6 +35,7 @@ import edu.rice.cs.plt.tuple.Pair;
 import edu.rice.cs.util.text.ConsoleDocumentInterface;
 
 import java.io.File;
+import java.util.Map;
 import java.awt.EventQueue;
 
 import static edu.rice.cs.plt.debug.DebugUtil.debug;
@@ -106,6 +107,11 @@ public abstract class RMIInteractionsModel extends InteractionsModel {
     */
   public void addExtraClassPath(File f) { _jvm.addExtraClassPath(f); }
   
+  /** Replaces the classes compiled in memory in the interpreter.
+    * @param classes the class files, keyed by binary class name
+    */
+  public void setInMemoryClasses(Map<String, byte[]> classes) { _jvm.setInMemoryClasses(classes); }
+  
   /** Resets the Java interpreter. */
   protected void _resetInterpreter(File wd, boolean force) {
     setToDefaultInterpreter();
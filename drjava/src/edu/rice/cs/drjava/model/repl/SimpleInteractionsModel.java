@@ -33,6 +33,7 @@ import java.io.StringWriter;
 import java.io.PrintWriter;
 import java.util.List;
 import java.util.ArrayList;
+import java.util.Map;
 
 import edu.rice.cs.drjava.model.repl.newjvm.ClassPathManager;
 import edu.rice.cs.util.StringOps;
@@ -139,6 +140,11 @@ public class SimpleInteractionsModel extends InteractionsModel {
     */
   public void addExtraClassPath(File path) { _classPathManager.addExtraCP(path); }
   
+  /** Replaces the classes compiled in memory.
+    * @param classes the class files, keyed by binary class name
+    */
+  public void setInMemoryClasses(Map<String, byte[]> classes) { _classPathManager.setInMemoryClasses(classes); }
+  
   /** @param enforce true if the interpreter should enforce access to all members. */
   public void setEnforceAllAccess(boolean enforce) { _interpreterOptions.setEnforceAllAccess(enforce); }
   
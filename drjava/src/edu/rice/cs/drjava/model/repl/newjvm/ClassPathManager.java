@@ -29,7 +29,10 @@
 package edu.rice.cs.drjava.model.repl.newjvm;
 
 import java.io.File;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.LinkedList;
+import java.util.Map;
 import java.lang.ClassLoader;
 
 import edu.rice.cs.plt.io.IOUtil;
@@ -58,6 +61,9 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
   
   private final Iterable<File> _fullPath;
   
+  /** Classes compiled in memory in the main JVM, keyed by binary name; they take precedence over the class path. */
+  private volatile Map<String, byte[]> _inMemoryClasses = Collections.emptyMap();
+  
   public ClassPathManager(Iterable<File> builtInCP) {
     _projectCP = new LinkedList<File>();
     _buildCP = new LinkedList<File>();
@@ -95,7 +101,11 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
   /** Adds the entry to the front of the project classpath (this is the classpath specified in project properties)
     * @param f the file to be added to the classpath
     */
-  public synchronized void addProjectCP(File f) { _projectCP.addFirst(f); updateProperty(); }
+  public synchronized void addProjectCP(File f) {
+    _projectCP.remove(f); // eliminate duplicates
+    _projectCP.addFirst(f);
+    updateProperty();
+  }
   
   public synchronized Iterable<File> getProjectCP() { return IterUtil.snapshot(_projectCP); }
   
@@ -153,12 +163,37 @@ public class ClassPathManager implements Lambda<ClassLoader, ClassLoader> {
     */
   public synchronized ClassLoader makeClassLoader(ClassLoader parent) {
     updateProperty();
-    return new PathClassLoader(parent, _fullPath);
+    return new InMemoryPathClassLoader(parent, _fullPath);
+  }
+  
+  /** Replaces the classes compiled in memory, which the class loaders made by this manager define in preference to 
+    * the class files on the class path.  A class that a loader has already defined is not replaced.
+    * @param classes the class files, keyed by binary class name
+    */
+  public void setInMemoryClasses(Map<String, byte[]> classes) {
+    _inMemoryClasses = Collections.unmodifiableMap(new HashMap<String, byte[]>(classes));
+    _log.log("ClassPathManager holds " + classes.size() + " classes compiled in memory");
   }
   
+  /** @return the classes compiled in memory, keyed by binary class name */
+  public Map<String, byte[]> getInMemoryClasses() { return _inMemoryClasses; }
+  
   /** Lambda value method.  In DrJava usage, parent is often null. */
   public ClassLoader value(ClassLoader parent) { return makeClassLoader(parent); }
   
   /** @return a dynamic view of the full class path. */
   public synchronized Iterable<File> getClassPath() { updateProperty(); return _fullPath; }
+  
+  /** A path class loader that first looks for a class among the classes compiled in memory. */
+  private class InMemoryPathClassLoader extends PathClassLoader {
+    InMemoryPathClassLoader(ClassLoader parent, Iterable<File> path) { super(parent, path); }
+    
+    @Override protected Class<?> findClass(String name) throws ClassNotFoundException {
+      byte[] bytes = _inMemoryClasses.get(name);
+      if (bytes == null) return super.findClass(name);
+      Class<?> result = defineClass(name, bytes, 0, bytes.length);
+      definePackageForClass(name);
+      return result;
+    }
+  }
 }
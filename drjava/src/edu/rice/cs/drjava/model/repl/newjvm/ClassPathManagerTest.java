@@ -0,0 +1,82 @@
+   /*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.repl.newjvm;
+
+import java.io.File;
+import java.io.InputStream;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Tests the classes compiled in memory that ClassPathManager serves to its class loaders.
+  * @version $Id$
+  */
+public final class ClassPathManagerTest extends DrJavaTestCase {
+  
+  /** A class whose class file is given to the manager as if compiled in memory. */
+  public static class Sample { }
+  
+  private static byte[] _classBytes(Class<?> c) throws Exception {
+    InputStream in = c.getResourceAsStream("/" + c.getName().replace('.', '/') + ".class");
+    try { return IOUtil.toByteArray(in); }
+    finally { in.close(); }
+  }
+  
+  public void testInMemoryClassesTakePrecedence() throws Exception {
+    ClassPathManager cpm = new ClassPathManager(Collections.<File>emptyList());
+    String name = Sample.class.getName();
+    
+    ClassLoader loader = cpm.makeClassLoader(null);
+    try {
+      loader.loadClass(name);
+      fail("class is not on the path of the loader");
+    }
+    catch (ClassNotFoundException e) { /* expected */ }
+    
+    Map<String, byte[]> classes = new HashMap<String, byte[]>();
+    classes.put(name, _classBytes(Sample.class));
+    cpm.setInMemoryClasses(classes);
+    assertEquals(1, cpm.getInMemoryClasses().size());
+    
+    Class<?> c = cpm.makeClassLoader(null).loadClass(name);
+    assertEquals(name, c.getName());
+    assertNotSame("defined from memory, not by the application loader", Sample.class, c);
+    
+    cpm.setInMemoryClasses(Collections.<String, byte[]>emptyMap());
+    try {
+      cpm.makeClassLoader(null).loadClass(name);
+      fail("in-memory classes were replaced");
+    }
+    catch (ClassNotFoundException e) { /* expected */ }
+  }
+}
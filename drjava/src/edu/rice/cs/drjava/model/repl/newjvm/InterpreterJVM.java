@@ -84,6 +84,9 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
   /** Singleton instance of this class. */
   public static final InterpreterJVM ONLY = new InterpreterJVM();
   
+  /** Longest time, in milliseconds, that returning an interaction result waits for buffered output to be accepted. */
+  private static final int RESULT_FLUSH_TIMEOUT = 1000;
+  
   // As RMI can lead to concurrent threads, all fields must be thread-safe.  Collections are wrapped
   // in synchronized versions.
   
@@ -107,6 +110,9 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
   /** Remote reference to the MainJVM class in DrJava's primary JVM.  Assigned ONLY once. */
   private volatile MainJVMRemoteI _mainJVM;
   
+  /** Buffer for System.out and System.err, shipped to _mainJVM in batches.  Assigned ONLY once. */
+  private volatile ReplOutputBuffer _output;
+  
   /** Private constructor; use the singleton ONLY instance. */
   private InterpreterJVM() {
     super("Reset Interactions Thread", "Poll DrJava Thread");
@@ -134,9 +140,20 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     //_dialog("handleStart");
     _mainJVM = (MainJVMRemoteI) mainJVM;
     
+    // System.out and System.err are coalesced into chunks, sent subject to the main JVM's output credit
+    final ReplOutputBuffer output = new ReplOutputBuffer(new ReplOutputBuffer.Sink() {
+      public int write(String s, boolean isErr) throws RemoteException { return _mainJVM.systemOutputBatch(s, isErr); }
+      public int awaitCredit() throws RemoteException { return _mainJVM.awaitOutputCredit(); }
+    });
+    _output = output;
+    Runtime.getRuntime().addShutdownHook(new Thread("REPL output shutdown flush") {
+      public void run() { _flushOutput(); }
+    });
+    
     // redirect stdin
     System.setIn(new InputStreamRedirector() {
       protected String _getInput() {
+        _flushOutput();  // show any prompt before asking for input
         try { return _mainJVM.getConsoleInput(); }
         catch(RemoteException re) {
           error.log(re);
@@ -147,24 +164,12 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     
     // redirect stdout
     System.setOut(new PrintStream(new OutputStreamRedirector() {
-      public void print(String s) {
-        try { _mainJVM.systemOutPrint(s); }
-        catch (RemoteException re) {
-          error.log(re);
-          throw new UnexpectedException("Main JVM can't be reached for output.\n" + re);
-        }
-      }
+      public void print(String s) { output.write(s, false); }
     }));
     
     // redirect stderr
     System.setErr(new PrintStream(new OutputStreamRedirector() {
-      public void print(String s) {
-        try { _mainJVM.systemErrPrint(s); }
-        catch (RemoteException re) {
-          error.log(re);
-          throw new UnexpectedException("Main JVM can't be reached for output.\n" + re);
-        }
-      }
+      public void print(String s) { output.write(s, true); }
     }));
     
     /* On Windows, any frame or dialog opened from Interactions pane will appear *behind* DrJava's frame, unless a 
@@ -230,7 +235,27 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
     return interpret(s, i);
   }
   
+  /** Sends all buffered System.out and System.err output to the main JVM. */
+  private void _flushOutput() { _flushOutput(Long.MAX_VALUE); }
+  
+  /** Sends buffered System.out and System.err output to the main JVM, waiting at most about timeout milliseconds
+    * for the main JVM to accept it.  Output that is left over is sent later by the buffer's background thread. */
+  private void _flushOutput(long timeout) {
+    ReplOutputBuffer output = _output;
+    if (output != null) {
+      try { output.flush(timeout); }
+      catch (UnexpectedException e) { error.log(e); }
+    }
+  }
+  
   private InterpretResult interpret(String input, Interpreter interpreter) {
+    // flush any output before the result is returned, so that it appears before the result; but do not hold the
+    // result back indefinitely if the main JVM's event thread is not draining output
+    try { return _interpret(input, interpreter); }
+    finally { _flushOutput(RESULT_FLUSH_TIMEOUT); }
+  }
+  
+  private InterpretResult _interpret(String input, Interpreter interpreter) {
     debug.logStart("Interpret " + input);
     
     boolean available = addBusyInterpreter(interpreter);
@@ -609,6 +634,7 @@ public class InterpreterJVM extends AbstractSlaveJVM implements InterpreterJVMRe
   public void addBuildDirectoryClassPath(File f) { _classPathManager.addBuildDirectoryCP(f); }
   public void addProjectFilesClassPath(File f) { _classPathManager.addProjectFilesCP(f); }
   public void addExternalFilesClassPath(File f) { _classPathManager.addExternalFilesCP(f); }
+  public void setInMemoryClasses(Map<String, byte[]> classes) { _classPathManager.setInMemoryClasses(classes); }
   public Iterable<File> getClassPath() {
     // need to make a serializable snapshot
     return IterUtil.snapshot(_classPathManager.getClassPath());
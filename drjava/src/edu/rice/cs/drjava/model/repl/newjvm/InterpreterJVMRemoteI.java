@@ -30,6 +30,7 @@ package edu.rice.cs.drjava.model.repl.newjvm;
 
 import java.rmi.RemoteException;
 import java.util.List;
+import java.util.Map;
 import java.io.File;
 
 import edu.rice.cs.plt.tuple.Pair;
@@ -153,4 +154,10 @@ public interface InterpreterJVMRemoteI extends SlaveRemote {
    */
   public void addExtraClassPath(File f) throws RemoteException;
   
+  /** Replaces the classes compiled in memory, which are loaded in preference to the class files on the class path.
+   * @param classes the class files, keyed by binary class name
+   * @throws RemoteException if communication over RMI fails
+   */
+  public void setInMemoryClasses(Map<String, byte[]> classes) throws RemoteException;
+  
 }
@@ -30,12 +30,15 @@ package edu.rice.cs.drjava.model.repl.newjvm;
 
 import java.rmi.*;
 import java.io.*;
+import java.net.ServerSocket;
 import java.net.SocketException;
 
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Map;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 
 import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.config.OptionConstants;
@@ -119,6 +122,36 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   /** Working directory for slave JVM */
   private volatile File _workingDir;
   
+  
+  /* Standby interpreter JVM */
+  
+  /** Whether to keep a started standby interpreter JVM ready for the next reset. */
+  private volatile boolean _standbyEnabled = false;
+  
+  /** The debug port the standby interpreter JVM listens on, or -1. */
+  private volatile int _standbyDebugPort = -1;
+  
+  /** Class path additions made to the current interpreter, replayed on the standby.  Also guards 
+    * _standbyInterpreter. */
+  private final List<Pair<ClassPathKind, File>> _classPathLog = new ArrayList<Pair<ClassPathKind, File>>();
+  
+  /** The connected standby interpreter, or {@code null}.  Guarded by _classPathLog. */
+  private InterpreterJVMRemoteI _standbyInterpreter = null;
+  
+  
+  /* Reset metrics */
+  
+  /** The time (from System.nanoTime()) at which the pending reset was requested, or 0. */
+  private volatile long _resetRequested = 0;
+  
+  /** Whether the pending startup uses the standby interpreter JVM. */
+  private volatile boolean _startingFromStandby = false;
+  
+  private final AtomicInteger _resetCount = new AtomicInteger(0);
+  private final AtomicInteger _standbyResetCount = new AtomicInteger(0);
+  private final AtomicLong _totalResetMillis = new AtomicLong(0);
+  private volatile long _lastResetMillis = 0;
+  
   /** Creates a new MainJVM to interface to another JVM;  the MainJVM has a 
    * link to the partially initialized global model.  The MainJVM but does 
    * not automatically start the Interpreter JVM.  Callers must set the
@@ -151,7 +184,10 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   /** Stop the interpreter if it's current running.  (Note that, until {@link #startInterpreterJVM} is called
     * again, all methods that delegate to the interpreter JVM will fail, returning "false" or "none".)
     */
-  public void stopInterpreterJVM() { _state.value().stop(); }
+  public void stopInterpreterJVM() {
+    _state.value().stop();
+    discardStandbyInterpreter();
+  }
   
   /** Get a "fresh" interpreter JVM.  Has the same effect as 
     * {@link #startInterpreterJVM} if no interpreter is running.  If a 
@@ -177,6 +213,20 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     _state.value().started(slaveCast);
   }
   
+  /** Callback for when a standby slave JVM has connected.  Gives it the class path of the current interpreter, and 
+    * the class path additions that follow.
+    */
+  protected void handleStandbyConnected(SlaveRemote standby) {
+    InterpreterJVMRemoteI slaveCast = (InterpreterJVMRemoteI) standby;
+    synchronized(_classPathLog) {
+      try {
+        for (Pair<ClassPathKind, File> p : _classPathLog) { p.first().add(slaveCast, p.second()); }
+        _standbyInterpreter = slaveCast;
+      }
+      catch (RemoteException e) { debug.log("Standby won't take class path", e); }
+    }
+  }
+  
   /** Callback for when the slave JVM has quit.
     * @param status The exit code returned by the slave JVM.
     */
@@ -221,6 +271,22 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     debug.logEnd();
   }
   
+  /** Forwards a batch of System.out or System.err output from InterpreterJVM to the local InteractionsModel.
+    * @param s String that was printed in the other JVM
+    * @param isErr whether s was printed to System.err
+    * @return the output credit of the InteractionsModel
+    */
+  public int systemOutputBatch(String s, boolean isErr) {
+    if (isErr) { systemErrPrint(s); }
+    else { systemOutPrint(s); }
+    return _interactionsModel.getOutputCredit();
+  }
+  
+  /** Waits for the local InteractionsModel to catch up with the output it has been sent.
+    * @return the output credit of the InteractionsModel
+    */
+  public int awaitOutputCredit() { return _interactionsModel.awaitOutputCredit(); }
+  
   /** Asks the main jvm for input from the console.
    * @return the console input
    */
@@ -321,6 +387,44 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
    */
   public void setAllowAssertions(boolean allow) { _allowAssertions = allow; }
   
+  /** Sets whether a started standby interpreter JVM is kept ready, so that a reset does not have to wait for a new
+    * process.  The standby is started after the next startup of the interpreter JVM.
+    * @param enabled true if a standby should be kept; false to quit any standby and not start new ones
+    */
+  public void setStandbyEnabled(boolean enabled) {
+    _standbyEnabled = enabled;
+    if (!enabled) { discardStandbyInterpreter(); }
+  }
+  
+  /** Quits the standby interpreter JVM, if any.  Must be called when the class path of the interpreter loses entries,
+    * because the standby has already been given the old class path.
+    */
+  public void discardStandbyInterpreter() {
+    synchronized(_classPathLog) { _standbyInterpreter = null; }
+    _standbyDebugPort = -1;
+    discardStandby();
+  }
+  
+  /** @return true iff a standby interpreter JVM has connected and is ready for the next reset */
+  public boolean hasStandbyInterpreter() {
+    synchronized(_classPathLog) { return _standbyInterpreter != null; }
+  }
+  
+  /** @return the number of interpreter resets that have completed */
+  public int getResetCount() { return _resetCount.get(); }
+  
+  /** @return the number of interpreter resets that used the standby interpreter JVM */
+  public int getStandbyResetCount() { return _standbyResetCount.get(); }
+  
+  /** @return the time in milliseconds from the request to the completion of the last reset, or 0 */
+  public long getLastResetMillis() { return _lastResetMillis; }
+  
+  /** @return the average time in milliseconds from the request to the completion of a reset, or 0 */
+  public long getAverageResetMillis() {
+    int count = _resetCount.get();
+    return (count == 0) ? 0 : _totalResetMillis.get() / count;
+  }
+  
   /** Sets the class path to use for starting the interpreter JVM. Must include the classes for the interpreter.
     * @param classPath Class path for the interpreter JVM
     */
@@ -382,7 +486,7 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   public boolean addProjectClassPath(File f) {
     InterpreterJVMRemoteI remote = _state.value().interpreter(false);
     if (remote == null) { return false; }
-    try { remote.addProjectClassPath(f); return true; }
+    try { remote.addProjectClassPath(f); _logClassPath(ClassPathKind.PROJECT, f); return true; }
     catch (RemoteException e) { _handleRemoteException(e); return false; }
   }
   
@@ -393,7 +497,7 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   public boolean addBuildDirectoryClassPath(File f) {
     InterpreterJVMRemoteI remote = _state.value().interpreter(false);
     if (remote == null) { return false; }
-    try { remote.addBuildDirectoryClassPath(f); return true; }
+    try { remote.addBuildDirectoryClassPath(f); _logClassPath(ClassPathKind.BUILD_DIRECTORY, f); return true; }
     catch (RemoteException e) { /* ignore exception; it happens in test cases. */ 
       _handleRemoteException(e); return false; }
   }
@@ -405,7 +509,7 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   public boolean addProjectFilesClassPath(File f) {
     InterpreterJVMRemoteI remote = _state.value().interpreter(false);
     if (remote == null) { return false; }
-    try { remote.addProjectFilesClassPath(f); return true; }
+    try { remote.addProjectFilesClassPath(f); _logClassPath(ClassPathKind.PROJECT_FILES, f); return true; }
     catch (RemoteException e) { _handleRemoteException(e); return false; }
   }
   
@@ -416,7 +520,7 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   public boolean addExternalFilesClassPath(File f) {
     InterpreterJVMRemoteI remote = _state.value().interpreter(false);
     if (remote == null) { return false; }
-    try { remote.addExternalFilesClassPath(f); return true; }
+    try { remote.addExternalFilesClassPath(f); _logClassPath(ClassPathKind.EXTERNAL_FILES, f); return true; }
     catch (RemoteException e) { _handleRemoteException(e); return false; }
   }
   
@@ -427,7 +531,20 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   public boolean addExtraClassPath(File f) {
     InterpreterJVMRemoteI remote = _state.value().interpreter(false);
     if (remote == null) { return false; }
-    try { remote.addExtraClassPath(f); return true; }
+    try { remote.addExtraClassPath(f); _logClassPath(ClassPathKind.EXTRA, f); return true; }
+    catch (RemoteException e) { _handleRemoteException(e); return false; }
+  }
+  
+  /** Replaces the classes compiled in memory in the current interpreter.  Unlike class path entries, they are not 
+    * given to the standby interpreter, so they are discarded by the next reset (which normally follows a compile that
+    * writes class files).  Blocks until the interpreter is connected.
+    * @param classes the class files, keyed by binary class name
+    * @return {@code true} if the change was successfully passed to the remote JVM.
+    */
+  public boolean setInMemoryClasses(Map<String, byte[]> classes) {
+    InterpreterJVMRemoteI remote = _state.value().interpreter(false);
+    if (remote == null) { return false; }
+    try { remote.setInMemoryClasses(classes); return true; }
     catch (RemoteException e) { _handleRemoteException(e); return false; }
   }
   
@@ -481,6 +598,29 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     catch (RemoteException e) { _handleRemoteException(e); return false; }
   }
   
+  /** Returns a builder for JVMs that run unit tests in parallel with the same class path, working directory, heap
+    * size, and assertion setting as the Interpreter JVM, but without a debugger port.  Blocks until the interpreter
+    * is connected.
+    * @return the builder, or "none" if the remote JVM is unavailable
+    */
+  public Option<JVMBuilder> getTestWorkerJVMBuilder() {
+    Iterable<File> classPath = getClassPath().unwrap(null);
+    if (classPath == null) { return Option.none(); }
+    File dir = _workingDir;
+    if (dir == FileOps.NULL_FILE) { dir = IOUtil.WORKING_DIRECTORY; }
+    
+    List<String> jvmArgs = new ArrayList<String>();
+    if (_allowAssertions) { jvmArgs.add("-ea"); }
+    String slaveMemory = DrJava.getConfig().getSetting(OptionConstants.SLAVE_JVM_XMX);
+    if (!"".equals(slaveMemory) && !OptionConstants.heapSizeChoices.get(0).equals(slaveMemory)) {
+      jvmArgs.add("-Xmx" + slaveMemory + "M");
+    }
+    for (File f: _interactionsModel.getCompilerBootClassPath()) {
+      jvmArgs.add("-Xbootclasspath/a:" + f.getAbsolutePath().replace(File.separatorChar, '/'));
+    }
+    return Option.some(new JVMBuilder(IterUtil.snapshot(classPath)).directory(dir).jvmArguments(jvmArgs));
+  }
+  
 //  /** Updates the security manager in slave JVM */
 //  public void enableSecurityManager() throws RemoteException {
 //    _interpreterJVM().enableSecurityManager();
@@ -594,6 +734,44 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   
   /** Call invokeSlave with the appropriate JVMBuilder. */
   private void _doStartup() {
+    JVMBuilder jvmb = _jvmBuilder();
+    int debugPort = _getDebugPort();
+    int standbyPort = _standbyDebugPort;
+    if (debugPort > -1 && standbyPort > -1 && standbyPort != debugPort && 
+        hasStandby(_withDebugPort(jvmb, standbyPort))) {
+      // the standby listens for the debugger on its own port, which becomes the port of the interactions JVM
+      _interactionsModel.setDebugPort(standbyPort);
+      debugPort = standbyPort;
+    }
+    jvmb = _withDebugPort(jvmb, debugPort);
+    _startingFromStandby = hasStandby(jvmb);
+    synchronized(_classPathLog) {
+      _classPathLog.clear();
+      _standbyInterpreter = null;
+    }
+    _standbyDebugPort = -1;
+    invokeSlave(jvmb);
+  }
+  
+  /** Starts a standby interpreter JVM in a background thread, if enabled. */
+  private void _startStandby() {
+    if (!_standbyEnabled) { return; }
+    Thread t = new Thread("Start standby interpreter JVM") {
+      public void run() {
+        JVMBuilder jvmb = _jvmBuilder();
+        int port = (_getDebugPort() > -1) ? _newDebugPort() : -1;
+        if (!_standbyEnabled) { return; }
+        _standbyDebugPort = port;
+        try { prepareStandby(_withDebugPort(jvmb, port)); }
+        catch (RuntimeException e) { debug.log("Standby won't start", e); }
+      }
+    };
+    t.setDaemon(true);
+    t.start();
+  }
+  
+  /** @return the JVMBuilder for a new interpreter JVM, without debugger arguments */
+  private JVMBuilder _jvmBuilder() {
     File dir = _workingDir;
     // TODO: Eliminate NULL_FILE.  It is a bad idea!  The correct behavior when it is used always depends on
     // context, so it can never be treated transparently.  In this case, the process won't start.
@@ -682,13 +860,6 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     // ------------------------------------------------------
     
     if (_allowAssertions) { jvmArgs.add("-ea"); }
-    int debugPort = _getDebugPort();
-    if (debugPort > -1) {
-      jvmArgs.add("-Xrunjdwp:transport=dt_socket,server=y,suspend=n,address=" + debugPort);
-      jvmArgs.add("-Xdebug");
-      jvmArgs.add("-Xnoagent");
-      jvmArgs.add("-Djava.compiler=NONE");
-    }
     String slaveMemory = DrJava.getConfig().getSetting(OptionConstants.SLAVE_JVM_XMX);
     if (!"".equals(slaveMemory) && !OptionConstants.heapSizeChoices.get(0).equals(slaveMemory)) {
       jvmArgs.add("-Xmx" + slaveMemory + "M");
@@ -758,9 +929,63 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     props.put("edu.rice.cs.cunit.concJUnit.check.lucky.enabled",
               new Boolean(all).toString());
     
-    jvmb = jvmb.properties(props);
-    
-    invokeSlave(jvmb);
+    return jvmb.properties(props);
+  }
+  
+  /** @return the given JVMBuilder with arguments that let the debugger attach on the given port
+    * @param jvmb the JVMBuilder
+    * @param debugPort the debug port, or -1 for no debugger arguments
+    */
+  private static JVMBuilder _withDebugPort(JVMBuilder jvmb, int debugPort) {
+    if (debugPort < 0) { return jvmb; }
+    List<String> jvmArgs = new ArrayList<String>();
+    jvmArgs.add("-Xrunjdwp:transport=dt_socket,server=y,suspend=n,address=" + debugPort);
+    jvmArgs.add("-Xdebug");
+    jvmArgs.add("-Xnoagent");
+    jvmArgs.add("-Djava.compiler=NONE");
+    for (String arg : jvmb.jvmArguments()) { jvmArgs.add(arg); }
+    return jvmb.jvmArguments(jvmArgs);
+  }
+  
+  /** @return an available port for the debugger to attach to a standby interpreter JVM, or -1 if none was found */
+  private static int _newDebugPort() {
+    try {
+      ServerSocket socket = new ServerSocket(0);
+      int port = socket.getLocalPort();
+      socket.close();
+      return port;
+    }
+    catch (IOException e) { return -1; }
+  }
+  
+  /** Records a class path addition to the current interpreter and forwards it to the standby, if there is one.
+    * @param kind the kind of class path entry
+    * @param f the added entry
+    */
+  private void _logClassPath(ClassPathKind kind, File f) {
+    synchronized(_classPathLog) {
+      _classPathLog.add(Pair.make(kind, f));
+      if (_standbyInterpreter != null) {
+        try { kind.add(_standbyInterpreter, f); }
+        catch (RemoteException e) {
+          debug.log("Standby won't take class path", e);
+          _standbyInterpreter = null;
+        }
+      }
+    }
+  }
+  
+  /** Records the completion of a requested reset in the reset metrics. */
+  private void _recordReset() {
+    long requested = _resetRequested;
+    if (requested == 0) { return; }
+    _resetRequested = 0;
+    long millis = (System.nanoTime() - requested) / 1000000;
+    _lastResetMillis = millis;
+    _totalResetMillis.addAndGet(millis);
+    _resetCount.incrementAndGet();
+    if (_startingFromStandby) { _standbyResetCount.incrementAndGet(); }
+    _log.log("Interpreter reset took " + millis + " ms" + (_startingFromStandby ? " (standby)" : ""));
   }
   
   /** @return the debug port to use, as specified by the model; returns -1 if no usable port could be found. */
@@ -792,6 +1017,24 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
    * Helper classes
    */
 
+  /** The kinds of class path entries the interpreter distinguishes. */
+  private enum ClassPathKind {
+    PROJECT { void add(InterpreterJVMRemoteI i, File f) throws RemoteException { i.addProjectClassPath(f); } },
+    BUILD_DIRECTORY {
+      void add(InterpreterJVMRemoteI i, File f) throws RemoteException { i.addBuildDirectoryClassPath(f); }
+    },
+    PROJECT_FILES {
+      void add(InterpreterJVMRemoteI i, File f) throws RemoteException { i.addProjectFilesClassPath(f); }
+    },
+    EXTERNAL_FILES {
+      void add(InterpreterJVMRemoteI i, File f) throws RemoteException { i.addExternalFilesClassPath(f); }
+    },
+    EXTRA { void add(InterpreterJVMRemoteI i, File f) throws RemoteException { i.addExtraClassPath(f); } };
+    
+    /** Adds f to the corresponding class path of the interpreter. */
+    abstract void add(InterpreterJVMRemoteI i, File f) throws RemoteException;
+  }
+  
   /** State-based implementation of the starting/stopping functionality. */
   private abstract class State {
 
@@ -894,6 +1137,8 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
         // (Is the user ever going to see a working dir message that doesn't match the actual setting?)
         _interactionsModel.interpreterReady(_workingDir);
         _junitModel.junitJVMReady();        
+        _recordReset();
+        _startStandby();
       }
       else { _state.value().started(i); }
     }
@@ -905,7 +1150,10 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
         else { _state.value().startFailed(e); }
       }
       else {
-        if (_state.compareAndSet(this, new FreshState())) { _interactionsModel.interpreterWontStart(e); }
+        if (_state.compareAndSet(this, new FreshState())) {
+          _resetRequested = 0;
+          _interactionsModel.interpreterWontStart(e);
+        }
         else { _state.value().startFailed(e); }
       }
     }
@@ -925,6 +1173,7 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
     
     public void restart(boolean force) {
       if (_state.compareAndSet(this, new RestartingState())) {  // Advance to RestartingState
+        _resetRequested = System.nanoTime();
         _interactionsModel.interpreterResetting();
         quitSlave();
       }
@@ -1090,8 +1339,11 @@ public class MainJVM extends AbstractMasterJVM implements MainJVMRemoteI {
   /** InteractionsModel which does not react to events. */
   public static class DummyInteractionsModel implements InteractionsModelCallback {
     public int getDebugPort() throws IOException { return -1; }
+    public void setDebugPort(int port) { }
     public void replSystemOutPrint(String s) { }
     public void replSystemErrPrint(String s) { }
+    public int getOutputCredit() { return Integer.MAX_VALUE; }
+    public int awaitOutputCredit() { return Integer.MAX_VALUE; }
     public String getConsoleInput() {
       throw new IllegalStateException("Cannot request input from dummy interactions model!");
     }
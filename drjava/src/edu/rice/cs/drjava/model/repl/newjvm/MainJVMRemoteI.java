@@ -52,6 +52,20 @@ public interface MainJVMRemoteI extends MasterRemote {
     */
   public void systemOutPrint(String s) throws RemoteException;
   
+  /** Forwards a batch of System.out or System.err output from InterpreterJVM to the MainJVM for output to the user.
+    * @param s String that was printed in the other JVM; never longer than the most recently granted output credit
+    * @param isErr whether s was printed to System.err
+    * @return the number of additional characters of output the MainJVM is willing to accept
+    * @throws RemoteException if remote communication fails
+    */
+  public int systemOutputBatch(String s, boolean isErr) throws RemoteException;
+  
+  /** Blocks until the MainJVM has caught up with the output it has been sent, or a time limit elapses.
+    * @return the number of characters of output the MainJVM is willing to accept; 0 if the time limit elapsed first
+    * @throws RemoteException if remote communication fails
+    */
+  public int awaitOutputCredit() throws RemoteException;
+  
   /** Asks the main jvm for input from the console.
    * @return the console input
     * @throws RemoteException if remote communication fails
@@ -32,6 +32,7 @@ import edu.rice.cs.drjava.DrJavaTestCase;
 
 import edu.rice.cs.plt.concurrent.CompletionMonitor;
 import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.plt.iter.IterUtil;
 import edu.rice.cs.util.Log;
 import edu.rice.cs.util.UnexpectedException;
 
@@ -39,6 +40,7 @@ import junit.extensions.TestSetup;
 import junit.framework.Test;
 import junit.framework.TestSuite;
 
+import java.io.File;
 import java.rmi.RemoteException;
 
 import static edu.rice.cs.plt.debug.DebugUtil.debug;
@@ -103,6 +105,7 @@ public final class NewJVMTest extends DrJavaTestCase  {
 
   public void testWorksAfterRestartConstant() throws Throwable {
     _log.log("$$$ NewJVMTest.testWorksAfterRestartConstant executing");
+    _jvm.setStandbyEnabled(false);  // restart from a cold JVM; testRestartWithStandby covers the standby
 
     // Check that a constant is returned
     _jvm.resetFlags();
@@ -121,6 +124,38 @@ public final class NewJVMTest extends DrJavaTestCase  {
   }
 
 
+  /** Ensure that a reset uses the standby interpreter JVM, which already has the class path. */
+  public void testRestartWithStandby() throws Throwable {
+    _log.log("$$$ NewJVMTest.testRestartWithStandby executing");
+    
+    File extra = IOUtil.createAndMarkTempDirectory("standby", "");
+    _jvm.setStandbyEnabled(true);
+    _jvm.restartInterpreterJVM(true);  // starts the standby once the new interpreter is running
+    assertTrue(_jvm.addExtraClassPath(extra));
+    
+    long deadline = System.currentTimeMillis() + 30000;
+    while (!_jvm.hasStandbyInterpreter() && System.currentTimeMillis() < deadline) { Thread.sleep(100); }
+    assertTrue("standby connected", _jvm.hasStandbyInterpreter());
+    int resets = _jvm.getResetCount();
+    int standbyResets = _jvm.getStandbyResetCount();
+    
+    _jvm.resetFlags();
+    assertTrue(_jvm.interpret("int x = 6;"));
+    _jvm.restartInterpreterJVM(true);
+    assertTrue("class path pushed ahead", IterUtil.contains(_jvm.getClassPath().unwrap(null), extra));
+    
+    // the standby is fresh
+    _jvm.resetFlags();
+    assertTrue(_jvm.interpret("x"));
+    assertNotNull("exception was thrown", _jvm.exceptionMsgBuf());
+    assertEquals("standby resets", standbyResets + 1, _jvm.getStandbyResetCount());
+    assertEquals("resets", resets + 1, _jvm.getResetCount());
+    
+    _jvm.setStandbyEnabled(false);
+    assertFalse("standby discarded", _jvm.hasStandbyInterpreter());
+    _log.log("$$$ NewJVMTest.testRestartWithStandby completed");
+  }
+
   public void testThrowRuntimeException() throws Throwable {
     _log.log("$$$ NewJVMTest.testThrowRuntimeException executing");
     
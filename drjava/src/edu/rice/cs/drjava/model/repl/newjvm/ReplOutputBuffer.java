@@ -0,0 +1,230 @@
+   /*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.repl.newjvm;
+
+import java.rmi.RemoteException;
+
+import edu.rice.cs.util.UnexpectedException;
+
+import static edu.rice.cs.plt.debug.DebugUtil.error;
+
+/** Coalesces the System.out and System.err output of the interpreter JVM so that it can be shipped to the main JVM in
+  * large chunks rather than one remote call per write.  Output is held in a fixed-size ring buffer and flushed when the
+  * buffer passes a size threshold, when the stream being written changes (preserving the interleaving of out and err),
+  * when {@link #flush} is called explicitly, and periodically by a daemon thread.
+  * <p>
+  * Flow control is credit based: the receiver reports, in response to each chunk, how many more characters it is
+  * willing to accept, and the buffer never sends more than that.  When it runs out of credit, flushing blocks in
+  * {@link Sink#awaitCredit} until the receiver has caught up.  The buffer is not locked while a flush talks to the
+  * sink, so writers keep appending and only block once the ring buffer is full or they switch to the other stream
+  * while its output is still buffered.  When there is a background thread, passing the threshold only wakes it up.</p>
+  * @version $Id$
+  */
+public class ReplOutputBuffer {
+  
+  /** Default capacity of the ring buffer, in characters. */
+  public static final int DEFAULT_CAPACITY = 1 << 16;
+  
+  /** Default number of buffered characters that triggers a flush. */
+  public static final int DEFAULT_FLUSH_THRESHOLD = 1 << 13;
+  
+  /** Default interval, in milliseconds, at which buffered output is flushed by the background thread. */
+  public static final int DEFAULT_FLUSH_INTERVAL = 20;
+  
+  /** The receiving end of the buffer. */
+  public static interface Sink {
+    /** Accepts a chunk of output.
+      * @param s  the output; never longer than the most recently granted credit
+      * @param isErr  whether the output was written to System.err
+      * @return the number of characters the sink is now willing to accept
+      * @throws RemoteException if remote communication fails
+      */
+    public int write(String s, boolean isErr) throws RemoteException;
+    
+    /** Blocks until the sink is willing to accept more output, or a time limit elapses.
+      * @return the number of characters the sink is now willing to accept; 0 if the time limit elapsed first
+      * @throws RemoteException if remote communication fails
+      */
+    public int awaitCredit() throws RemoteException;
+  }
+  
+  private final Sink _sink;
+  private final char[] _ring;
+  private final int _flushThreshold;
+  /** Whether a background thread flushes the buffer; if so, writers leave threshold flushes to it. */
+  private final boolean _hasFlusher;
+  
+  /** Held for the whole of a flush, so that chunks reach the sink in order.  Never acquired while holding this. */
+  private final Object _flushLock = new Object();
+  
+  /** Index of the first buffered character.  Guarded by this. */
+  private int _start;
+  /** Number of buffered characters.  Guarded by this. */
+  private int _size;
+  /** Whether the buffered characters were written to System.err.  Guarded by this. */
+  private boolean _isErr;
+  /** Number of characters the sink has agreed to accept.  Guarded by _flushLock. */
+  private int _credit;
+  
+  /** Creates a buffer with the default capacity and thresholds and starts its flushing thread.
+    * @param sink the receiver of the output
+    */
+  public ReplOutputBuffer(Sink sink) { this(sink, DEFAULT_CAPACITY, DEFAULT_FLUSH_THRESHOLD, DEFAULT_FLUSH_INTERVAL); }
+  
+  /** Creates a buffer.
+    * @param sink the receiver of the output
+    * @param capacity the size of the ring buffer, in characters
+    * @param flushThreshold the number of buffered characters that triggers a flush
+    * @param flushInterval the interval at which output is flushed in the background, in milliseconds; no
+    *        background thread is started if this is not positive
+    */
+  public ReplOutputBuffer(Sink sink, int capacity, int flushThreshold, final int flushInterval) {
+    _sink = sink;
+    _ring = new char[capacity];
+    _flushThreshold = Math.min(flushThreshold, capacity);
+    _hasFlusher = flushInterval > 0;
+    _start = 0;
+    _size = 0;
+    _isErr = false;
+    _credit = 0;
+    if (_hasFlusher) {
+      Thread flusher = new Thread("REPL output flusher") {
+        public void run() {
+          while (true) {
+            try { synchronized(ReplOutputBuffer.this) { ReplOutputBuffer.this.wait(flushInterval); } }
+            catch (InterruptedException e) { return; }
+            try { flush(); }
+            catch (RuntimeException e) { error.log(e); }
+          }
+        }
+      };
+      flusher.setDaemon(true);
+      flusher.start();
+    }
+  }
+  
+  /** Buffers output.  Flushes if the buffer fills up or the stream changes; passing the threshold flushes too, unless
+    * a background thread will do it.
+    * @param s the output
+    * @param isErr whether the output was written to System.err
+    */
+  public void write(String s, boolean isErr) {
+    int offset = 0;
+    int length = s.length();
+    while (true) {
+      synchronized(this) {
+        if (_size == 0 || isErr == _isErr) {
+          _isErr = isErr;
+          offset = _append(s, offset);
+          if (offset == length) {
+            if (_size < _flushThreshold) { return; }
+            if (_hasFlusher) { notifyAll(); return; }
+          }
+        }
+      }
+      flush();  // the buffer is full, the stream changed, or nobody else will flush
+      if (offset == length) { return; }
+    }
+  }
+  
+  /** Sends all buffered output to the sink, blocking for as long as the sink has no credit.
+    * @throws UnexpectedException if the sink cannot be reached
+    */
+  public void flush() { flush(Long.MAX_VALUE); }
+  
+  /** Sends buffered output to the sink, giving up once the sink has withheld credit for about timeout milliseconds.
+    * Since the sink's own wait is bounded, this returns at most one {@link Sink#awaitCredit} call after the timeout.
+    * @param timeout the time to keep waiting for credit, in milliseconds
+    * @return true if all output was sent; false if some is still buffered
+    * @throws UnexpectedException if the sink cannot be reached
+    */
+  public boolean flush(long timeout) {
+    long now = System.currentTimeMillis();
+    long deadline = (timeout > Long.MAX_VALUE - now) ? Long.MAX_VALUE : now + timeout;
+    synchronized(_flushLock) {
+      try {
+        while (true) {
+          String chunk = null;
+          boolean isErr;
+          synchronized(this) {
+            if (_size == 0) { return true; }
+            if (_credit > 0) { chunk = _take(Math.min(_size, _credit)); }
+            isErr = _isErr;
+          }
+          if (chunk != null) { _credit = _sink.write(chunk, isErr); }
+          else if (System.currentTimeMillis() >= deadline) { return false; }
+          else { _credit = _sink.awaitCredit(); }
+        }
+      }
+      catch (RemoteException re) {
+        synchronized(this) {
+          _start = 0;
+          _size = 0;
+        }
+        throw new UnexpectedException(re);
+      }
+    }
+  }
+  
+  /** @return the number of buffered characters */
+  public synchronized int size() { return _size; }
+  
+  /** Copies as much of s, starting at offset, into the buffer as fits.  Must hold this.
+    * @return the offset of the first character that did not fit
+    */
+  private int _append(String s, int offset) {
+    int length = s.length();
+    while (offset < length && _size < _ring.length) {
+      int end = (_start + _size) % _ring.length;
+      int n = Math.min(length - offset, Math.min(_ring.length - _size, _ring.length - end));
+      s.getChars(offset, offset + n, _ring, end);
+      _size += n;
+      offset += n;
+    }
+    return offset;
+  }
+  
+  /** Removes and returns the first n buffered characters.  Must hold this. */
+  private String _take(int n) {
+    String result;
+    int firstPart = Math.min(n, _ring.length - _start);
+    if (firstPart == n) { result = new String(_ring, _start, n); }
+    else {
+      StringBuilder sb = new StringBuilder(n);
+      sb.append(_ring, _start, firstPart);
+      sb.append(_ring, 0, n - firstPart);
+      result = sb.toString();
+    }
+    _start = (_start + n) % _ring.length;
+    _size -= n;
+    if (_size == 0) { _start = 0; }
+    return result;
+  }
+}
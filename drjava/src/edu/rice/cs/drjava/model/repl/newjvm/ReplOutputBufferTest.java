@@ -0,0 +1,208 @@
+   /*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.repl.newjvm;
+
+import java.io.PrintStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+import edu.rice.cs.drjava.model.repl.InteractionsDJDocument;
+import edu.rice.cs.drjava.model.repl.InteractionsModel;
+import edu.rice.cs.drjava.model.repl.InteractionsModelTest.TestInteractionsModel;
+import edu.rice.cs.util.OutputStreamRedirector;
+import edu.rice.cs.util.swing.Utilities;
+
+/** Tests the coalescing and flow control of ReplOutputBuffer.  The main method is a throughput benchmark.
+  * @version $Id$
+  */
+public final class ReplOutputBufferTest extends DrJavaTestCase {
+  
+  /** Records the chunks it receives, granting a fixed credit per call. */
+  private static class RecordingSink implements ReplOutputBuffer.Sink {
+    final List<String> chunks = new ArrayList<String>();
+    final List<Boolean> errs = new ArrayList<Boolean>();
+    final int credit;
+    int awaits = 0;
+    int granted = 0;
+    RecordingSink(int c) { credit = c; }
+    public synchronized int write(String s, boolean isErr) {
+      assertTrue("chunk exceeds credit", s.length() <= granted);
+      chunks.add(s);
+      errs.add(isErr);
+      granted = 0;
+      return granted;
+    }
+    public synchronized int awaitCredit() { awaits++; granted = credit; return granted; }
+    synchronized String text() {
+      StringBuilder sb = new StringBuilder();
+      for (String s : chunks) sb.append(s);
+      return sb.toString();
+    }
+  }
+  
+  public void testCoalescing() {
+    RecordingSink sink = new RecordingSink(1000);
+    ReplOutputBuffer buf = new ReplOutputBuffer(sink, 64, 32, 0);
+    buf.write("ab", false);
+    buf.write("cd", false);
+    assertEquals("nothing sent below the threshold", 0, sink.chunks.size());
+    assertEquals(4, buf.size());
+    buf.flush();
+    assertEquals("one chunk", 1, sink.chunks.size());
+    assertEquals("abcd", sink.chunks.get(0));
+    assertEquals(0, buf.size());
+    
+    buf.write("0123456789012345678901234567890123456789", false);
+    assertEquals("flushed at threshold", "abcd0123456789012345678901234567890123456789", sink.text());
+  }
+  
+  public void testStreamSwitchPreservesOrder() {
+    RecordingSink sink = new RecordingSink(1000);
+    ReplOutputBuffer buf = new ReplOutputBuffer(sink, 64, 32, 0);
+    buf.write("out1 ", false);
+    buf.write("err1 ", true);
+    buf.write("err2 ", true);
+    buf.write("out2", false);
+    buf.flush();
+    assertEquals(3, sink.chunks.size());
+    assertEquals("out1 ", sink.chunks.get(0));
+    assertEquals("err1 err2 ", sink.chunks.get(1));
+    assertEquals("out2", sink.chunks.get(2));
+    assertEquals(Boolean.FALSE, sink.errs.get(0));
+    assertEquals(Boolean.TRUE, sink.errs.get(1));
+    assertEquals(Boolean.FALSE, sink.errs.get(2));
+  }
+  
+  public void testCreditAndWrapAround() {
+    RecordingSink sink = new RecordingSink(7);
+    ReplOutputBuffer buf = new ReplOutputBuffer(sink, 16, 10, 0);
+    StringBuilder expected = new StringBuilder();
+    for (int i = 0; i < 200; i++) {
+      String s = "line" + i + "\n";
+      expected.append(s);
+      buf.write(s, false);
+    }
+    buf.flush();
+    assertEquals(expected.toString(), sink.text());
+    for (String chunk : sink.chunks) assertTrue("chunk within credit", chunk.length() <= 7);
+    assertEquals("credit requested before each chunk", sink.chunks.size(), sink.awaits);
+  }
+  
+  public void testWaitsWhileSinkGrantsNoCredit() {
+    RecordingSink sink = new RecordingSink(1000) {
+      public int awaitCredit() { 
+        awaits++;
+        granted = (awaits <= 3) ? 0 : credit;  // the receiver is behind for the first three waits
+        return granted;
+      }
+    };
+    ReplOutputBuffer buf = new ReplOutputBuffer(sink, 64, 32, 0);
+    buf.write("abc", false);
+    buf.flush();
+    assertEquals("kept waiting", 4, sink.awaits);
+    assertEquals("no empty chunks", Arrays.asList("abc"), sink.chunks);
+  }
+  
+  public void testBoundedFlushGivesUp() {
+    RecordingSink sink = new RecordingSink(1000) {
+      public int awaitCredit() { awaits++; return 0; }  // the receiver never catches up
+    };
+    ReplOutputBuffer buf = new ReplOutputBuffer(sink, 64, 32, 0);
+    buf.write("abc", false);
+    assertFalse("output still buffered", buf.flush(20));
+    assertTrue("waited for credit", sink.awaits > 0);
+    assertEquals(3, buf.size());
+  }
+  
+  public void testWritersAppendWhileFlushWaits() throws InterruptedException {
+    final CountDownLatch waiting = new CountDownLatch(1);
+    final CountDownLatch release = new CountDownLatch(1);
+    final RecordingSink sink = new RecordingSink(1000) {
+      public int awaitCredit() {
+        waiting.countDown();
+        try { release.await(); }
+        catch (InterruptedException e) { return 0; }
+        return super.awaitCredit();
+      }
+    };
+    final ReplOutputBuffer buf = new ReplOutputBuffer(sink, 64, 32, 0);
+    buf.write("abc", false);
+    Thread flusher = new Thread() { public void run() { buf.flush(); } };
+    flusher.start();
+    waiting.await();
+    buf.write("def", false);  // must not block behind the flush that is waiting for credit
+    assertEquals(6, buf.size());
+    release.countDown();
+    flusher.join();
+    buf.flush();
+    assertEquals("abcdef", sink.text());
+  }
+  
+  public void testBackgroundFlush() throws InterruptedException {
+    RecordingSink sink = new RecordingSink(1000);
+    ReplOutputBuffer buf = new ReplOutputBuffer(sink, 64, 32, 5);
+    buf.write("x", false);
+    for (int i = 0; i < 200 && sink.text().length() == 0; i++) Thread.sleep(5);
+    assertEquals("x", sink.text());
+    assertEquals(0, buf.size());
+  }
+  
+  /** Prints 1M lines to an interactions model, first with a remote-style call per write, then through a buffer.
+    * @param args ignored
+    * @throws Exception if something goes wrong
+    */
+  public static void main(String[] args) throws Exception {
+    final int lines = 1000000;
+    for (final boolean buffered : new boolean[] { false, true }) {
+      final InteractionsModel model = new TestInteractionsModel(new InteractionsDJDocument());
+      final ReplOutputBuffer buf = new ReplOutputBuffer(new ReplOutputBuffer.Sink() {
+        public int write(String s, boolean isErr) { model.replSystemOutPrint(s); return model.getOutputCredit(); }
+        public int awaitCredit() { return model.awaitOutputCredit(); }
+      });
+      PrintStream out = new PrintStream(new OutputStreamRedirector() {
+        public void print(String s) {
+          if (buffered) buf.write(s, false);
+          else model.replSystemOutPrint(s);
+        }
+      });
+      long start = System.nanoTime();
+      for (int i = 0; i < lines; i++) out.println("line " + i);
+      buf.flush();
+      Utilities.clearEventQueue();
+      long elapsed = System.nanoTime() - start;
+      System.out.println((buffered ? "buffered  " : "per write ") + ": " + lines + " lines in " + 
+                         (elapsed / 1000000) + " ms, document length " + model.getDocument().getLength());
+    }
+    System.exit(0);
+  }
+}
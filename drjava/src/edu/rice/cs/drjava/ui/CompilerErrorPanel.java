@@ -202,6 +202,7 @@ public class CompilerErrorPanel extends ErrorPanel {
       ErrorDocument doc = new ErrorDocument(getErrorDocumentTitle());
       String message;
       if (_compileHasOccurred) {
+        final int skipped = getModel().getCompilerModel().getNumSkippedFiles();
         if (_excludedFiles.length == 0) message = "Compilation completed.";
         else {
           final StringBuilder msgBuffer = 
@@ -211,6 +212,10 @@ public class CompilerErrorPanel extends ErrorPanel {
           }
           message = msgBuffer.toString();
         }
+        if (skipped > 0) {
+          message = message + (message.endsWith("\n") ? "" : "  ") + skipped + " up-to-date file" + 
+            (skipped == 1 ? " was" : "s were") + " not recompiled.";
+        }
       }
       else if (!getModel().getCompilerModel().getActiveCompiler().isAvailable())
         message = "No compiler available.";
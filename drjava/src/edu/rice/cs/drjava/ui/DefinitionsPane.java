@@ -35,6 +35,7 @@ import javax.swing.text.*;
 
 import java.awt.*;
 import java.awt.event.*;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.LinkedList;
 
@@ -45,6 +46,7 @@ import edu.rice.cs.util.swing.HighlightManager;
 import edu.rice.cs.util.swing.RightClickMouseAdapter;
 import edu.rice.cs.util.text.SwingDocument;
 import edu.rice.cs.drjava.model.*;
+import edu.rice.cs.drjava.model.compiler.CompilerErrorModel;
 import edu.rice.cs.drjava.model.definitions.CompoundUndoManager;
 import edu.rice.cs.drjava.model.definitions.DefinitionsEditorKit;
 import edu.rice.cs.drjava.model.definitions.NoSuchDocumentException;
@@ -112,6 +114,18 @@ public class DefinitionsPane extends AbstractDJPane implements Finalizable<Defin
   /** Our current compiler error matching highlight. */
   private volatile HighlightManager.HighlightInfo _errorHighlightTag = null;
 
+  /** The underlines of the errors found while typing, keyed by error.  Only accessed in the event thread. */
+  private final IdentityHashMap<DJError, HighlightManager.HighlightInfo> _squiggles = 
+    new IdentityHashMap<DJError, HighlightManager.HighlightInfo>();
+  
+  /** Highlight painter for errors found while typing. */
+  static final ReverseHighlighter.WavyUnderlineHighlightPainter ERROR_SQUIGGLE_PAINTER =
+    new ReverseHighlighter.WavyUnderlineHighlightPainter(Color.RED, 2);
+  
+  /** Highlight painter for warnings found while typing. */
+  static final ReverseHighlighter.WavyUnderlineHighlightPainter WARNING_SQUIGGLE_PAINTER =
+    new ReverseHighlighter.WavyUnderlineHighlightPainter(Color.ORANGE, 2);
+
   /** Highlight painter for bookmarks. */
   static volatile ReverseHighlighter.DefaultUnderlineHighlightPainter BOOKMARK_PAINTER =
     new ReverseHighlighter.DefaultUnderlineHighlightPainter(DrJava.getConfig().getSetting(BOOKMARK_COLOR), 3);
@@ -978,6 +992,52 @@ public class DefinitionsPane extends AbstractDJPane implements Finalizable<Defin
     }
   }
 
+  /** Underlines the errors that the given model reports for this pane's document and removes the underlines of errors
+    * no longer reported.  Errors that are already underlined keep their underlines, so only the difference to the
+    * previous model is repainted.  Only runs in the event thread.
+    * @param model the error model, or null to remove all underlines
+    */
+  public void updateErrorSquiggles(CompilerErrorModel model) {
+    assert EventQueue.isDispatchThread();
+    final IdentityHashMap<DJError, HighlightManager.HighlightInfo> kept = 
+      new IdentityHashMap<DJError, HighlightManager.HighlightInfo>();
+    if (model != null) {
+      for (DJError e: model.getErrorsWithPositions(_doc)) {
+        HighlightManager.HighlightInfo h = _squiggles.remove(e);
+        if (h == null) h = _addSquiggle(e, model.getPosition(e).getOffset());
+        if (h != null) kept.put(e, h);
+      }
+    }
+    // equal highlights are shared by errors at the same location
+    for (HighlightManager.HighlightInfo h: _squiggles.values()) { if (! kept.containsValue(h)) h.remove(); }
+    _squiggles.clear();
+    _squiggles.putAll(kept);
+  }
+  
+  /** Underlines the identifier starting at offset, or a single character if there is none.
+    * @param e the error to underline
+    * @param offset the offset of the error in the document
+    * @return the added highlight, or null if the document is empty
+    */
+  private HighlightManager.HighlightInfo _addSquiggle(DJError e, int offset) {
+    final int length = _doc.getLength();
+    if (length == 0) return null;
+    int start = Math.max(0, Math.min(offset, length - 1));
+    int end = start;
+    try {
+      final String text = _doc.getText(start, Math.min(length - start, 80));
+      while (end - start < text.length() && Character.isJavaIdentifierPart(text.charAt(end - start))) end++;
+      if (end == start) {
+        // not on an identifier: underline this character, or the previous one at the end of a line
+        if (text.charAt(0) == '\n' && start > 0) start--;
+        end = start + 1;
+      }
+    }
+    catch (BadLocationException ble) { return null; }
+    return _highlightManager.addHighlight(start, end, 
+                                          e.isWarning() ? WARNING_SQUIGGLE_PAINTER : ERROR_SQUIGGLE_PAINTER);
+  }
+
   public boolean hasWarnedAboutModified() { return _hasWarnedAboutModified; }
 
   public void hasWarnedAboutModified( boolean hasWarned) {
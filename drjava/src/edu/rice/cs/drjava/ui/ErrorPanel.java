@@ -46,6 +46,7 @@ import edu.rice.cs.drjava.model.print.DrJavaBook;
 import edu.rice.cs.util.swing.RightClickMouseAdapter;
 
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.Vector;
 
 import javax.swing.*;
@@ -293,6 +294,9 @@ public abstract class ErrorPanel extends TabbedPanel implements OptionConstants
     /** Table mapping Positions in the error list to CompilerErrors. */
     protected final HashMap<Position, DJError> _errorTable = new HashMap<Position, DJError>();
     
+    /** Table mapping CompilerErrors (by identity) to their indices in _errorListPositions. */
+    private final IdentityHashMap<DJError, Integer> _errorIndices = new IdentityHashMap<DJError, Integer>();
+    
     // when we create a highlight we get back a tag we can use to remove it
     private volatile HighlightManager.HighlightInfo _listHighlightTag = null;
     
@@ -468,12 +472,16 @@ public abstract class ErrorPanel extends TabbedPanel implements OptionConstants
       
       if (modelPos == -1) return null;
       
-      // Find the first error whose position preceeds this model position
-      int errorNum = -1;
-      for (int i = 0; i < _errorListPositions.length; i++) {
-        if (_errorListPositions[i].getOffset() <= modelPos)  errorNum = i;
-        else break; // we've gone past the correct error; the last value was right
+      // Find the last error whose position preceeds this model position; the positions are in ascending order
+      final Position[] positions = _errorListPositions;
+      int lo = 0;
+      int hi = positions.length;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (positions[mid] != null && positions[mid].getOffset() <= modelPos) lo = mid + 1;
+        else hi = mid;
       }
+      int errorNum = lo - 1;
       
       if (errorNum >= 0) return _errorTable.get(_errorListPositions[errorNum]);
       return null;
@@ -486,10 +494,8 @@ public abstract class ErrorPanel extends TabbedPanel implements OptionConstants
       
       if (error == null) throw new IllegalArgumentException("Couldn't find index for null error");
       
-      for (int i = 0; i < _errorListPositions.length; i++) {
-        DJError e= _errorTable.get(_errorListPositions[i]);
-        if (error.equals(e))  return i;
-      }
+      Integer i = _errorIndices.get(error);
+      if (i != null) return i.intValue();
       
       throw new IllegalArgumentException("Couldn't find index for error " + error);
     }
@@ -504,6 +510,7 @@ public abstract class ErrorPanel extends TabbedPanel implements OptionConstants
       try {
         _errorListPositions = new Position[_numErrors];
         _errorTable.clear();
+        _errorIndices.clear();
         
         if (_numErrors == 0) _updateNoErrors(done);
         else _updateWithErrors();
@@ -631,6 +638,7 @@ public abstract class ErrorPanel extends TabbedPanel implements OptionConstants
           Position pos = doc.createPosition(startPos);
           _errorListPositions[errorPositionInListOfErrors] = pos;
           _errorTable.put(pos, err);
+          _errorIndices.put(err, errorPositionInListOfErrors);
           errorPositionInListOfErrors++;
         }
       }
@@ -647,6 +655,7 @@ public abstract class ErrorPanel extends TabbedPanel implements OptionConstants
           Position pos = doc.createPosition(startPos);
           _errorListPositions[errorPositionInListOfErrors] = pos;
           _errorTable.put(pos, err);
+          _errorIndices.put(err, errorPositionInListOfErrors);
           errorPositionInListOfErrors++;
         }
       }      
@@ -43,6 +43,7 @@ import edu.rice.cs.drjava.DrJava;
 import edu.rice.cs.drjava.config.*;
 import edu.rice.cs.drjava.model.SingleDisplayModel;
 import edu.rice.cs.drjava.model.OpenDefinitionsDocument;
+import edu.rice.cs.drjava.model.FindAllEngine;
 import edu.rice.cs.drjava.model.FindReplaceMachine;
 import edu.rice.cs.drjava.model.FindResult;
 import edu.rice.cs.drjava.model.ClipboardHistoryModel;
@@ -572,19 +573,18 @@ class FindReplacePanel extends TabbedPanel implements ClipboardOwner {
                                     _ignoreTestCases.isSelected(), new WeakReference<OpenDefinitionsDocument>(startDoc), this);
 
     findAll(searchStr, searchAll, searchSelectionOnly, _machine.getMatchCase(),  _machine.getMatchWholeWord(), 
-            _machine.getIgnoreCommentsAndStrings(), _ignoreTestCases.isSelected(), startDoc, rm, region, panel);
-
-    _log.log("Refreshing active document after 'find all'");
-
-    EventQueue.invokeLater(new Runnable() {  // execute these actions after all pending Runnables in the EventQueue
+            _machine.getIgnoreCommentsAndStrings(), _ignoreTestCases.isSelected(), startDoc, rm, region, panel,
+            new Runnable() {  // runs after all results have been added to panel
       public void run() {
+        _log.log("Refreshing active document after 'find all'");
         _model.refreshActiveDocument();  // Rationale: a giant findAll left the definitions pane is a strange state
         if (panel.isEmpty()) { requestFocusInWindow(); }// selects _findField as focus }
         else {
           panel.requestFocusInWindow();
           panel.getRegTree().scrollRowToVisible(0);
         }
-      }});
+      }
+    });
   }
   
   /** Performs "find all" with the specified options. 
@@ -600,9 +600,35 @@ class FindReplacePanel extends TabbedPanel implements ClipboardOwner {
     * @param region a MovingDocumentRegion
     * @param panel panel in which to display search results
     */
-  public void findAll(final String searchStr, final boolean searchAll, final boolean searchSelectionOnly, final boolean matchCase,
-                      final boolean wholeWord, final boolean noComments, final boolean noTestCases, final OpenDefinitionsDocument startDoc, 
-                      final RegionManager<MovingDocumentRegion> rm, final MovingDocumentRegion region, final FindResultsPanel panel) {
+  public void findAll(final String searchStr, final boolean searchAll, final boolean searchSelectionOnly,
+                      final boolean matchCase, final boolean wholeWord, final boolean noComments,
+                      final boolean noTestCases, final OpenDefinitionsDocument startDoc,
+                      final RegionManager<MovingDocumentRegion> rm, final MovingDocumentRegion region,
+                      final FindResultsPanel panel) {
+    findAll(searchStr, searchAll, searchSelectionOnly, matchCase, wholeWord, noComments, noTestCases, startDoc, rm,
+            region, panel, null);
+  }
+  
+  /** Performs "find all" with the specified options.  The documents are searched in the background by a FindAllEngine;
+    * the matches are added to rm as they are found, and panel is shown as soon as the first match is added.
+    * @param searchStr string to search for
+    * @param searchAll true if we should search all documents
+    * @param searchSelectionOnly true if we should search only the current selection
+    * @param matchCase true if search should be case-sensitive
+    * @param wholeWord true if we want to match the whole word
+    * @param noComments true if we want to ignore comments
+    * @param noTestCases true if we want to ignore test cases
+    * @param startDoc first document to search within
+    * @param rm a RegionManager
+    * @param region a MovingDocumentRegion
+    * @param panel panel in which to display search results
+    * @param onDone command run in the event thread after the search has finished, or null
+    */
+  public void findAll(final String searchStr, final boolean searchAll, final boolean searchSelectionOnly,
+                      final boolean matchCase, final boolean wholeWord, final boolean noComments,
+                      final boolean noTestCases, final OpenDefinitionsDocument startDoc,
+                      final RegionManager<MovingDocumentRegion> rm, final MovingDocumentRegion region,
+                      final FindResultsPanel panel, final Runnable onDone) {
     
     _machine.setSearchBackwards(false);
 
@@ -611,90 +637,89 @@ class FindReplacePanel extends TabbedPanel implements ClipboardOwner {
     
     final OpenDefinitionsDocument oldDoc = _machine.getDocument();
     final OpenDefinitionsDocument oldFirstDoc = _machine.getFirstDoc();
-//    final String oldFindWord = _machine.getFindWord();
     final boolean oldSearchAll = _machine.getSearchAllDocuments();
     final boolean oldSearchSelectionOnly = _machine.getSearchSelectionOnly();
-    final boolean oldMatchCase = _machine.getMatchCase();
-    final boolean oldWholeWord = _machine.getMatchWholeWord();
-    final boolean oldNoComments = _machine.getIgnoreCommentsAndStrings();
     final boolean oldNoTestCases = _machine.getIgnoreTestCases();
-    final int oldPosition = _machine.getCurrentOffset();
     
-//    _updateMachine();  // in this method call, _defPane returned null in actual usage
     _machine.setDocument(startDoc);
     if (_machine.getFirstDoc() == null) _machine.setFirstDoc(startDoc);
     _machine.setSearchAllDocuments(searchAll);
     _machine.setSearchSelectionOnly(searchSelectionOnly);
-    _machine.setMatchCase(matchCase);
-    if (wholeWord) { _machine.setMatchWholeWord(); }
-    else { _machine.setFindAnyOccurrence(); }
-    _machine.setIgnoreCommentsAndStrings(noComments);
-    _machine.setPosition(startDoc.getCurrentLocation());
     _machine.setIgnoreTestCases(noTestCases);
 
     _machine.setFindWord(searchStr);
     final String replaceStr = _replaceField.getText();
     _machine.setReplaceWord(replaceStr);
-    final List<FindResult> results = new ArrayList<FindResult>();
     
     _frame.setStatusMessage("Finding All");
     repaint();
-        
-    _frame.hourglassOn();
-    int count = 0;
-    try {
-      /* Accumulate all occurrences of searchStr in results. */
-      count = _machine.processAll(new Runnable1<FindResult>() { public void run(FindResult fr) { results.add(fr); }}, region);
-    }
-    finally { 
-      _frame.hourglassOff(); 
-      _model.refreshActiveDocument();
-    } 
+    
+    /* Take snapshots of the documents to search; the matching itself runs in the background. */
+    final List<FindAllEngine.Snapshot> snapshots = _machine.snapshotDocuments(region);
+    
     /* Restore state of FindReplaceMachine except for _findWord and _replaceWord. */
     _log.log("Restoring FindReplaceMachine");
     _machine.setDocument(oldDoc);
     _machine.setFirstDoc(oldFirstDoc);
-//    _machine.setFindWord(oldFindWord);
     _machine.setSearchAllDocuments(oldSearchAll);
     _machine.setSearchSelectionOnly(oldSearchSelectionOnly);
-    _machine.setMatchCase(oldMatchCase);
-    if (oldWholeWord) { _machine.setMatchWholeWord(); }
-    else { _machine.setFindAnyOccurrence(); }
-    _machine.setIgnoreCommentsAndStrings(oldNoComments);
     _machine.setIgnoreTestCases(oldNoTestCases);
-    _machine.setPosition(oldPosition);
     
-//    System.out.println("Adding found regions to corresponding documents");
-    for (FindResult fr: results) {
-      
-      final OpenDefinitionsDocument doc = fr.getDocument();
+    final FindAllEngine engine = new FindAllEngine(searchStr, matchCase, wholeWord, noComments);
+    engine.findAll(snapshots, new FindAllEngine.Listener() {
+      private boolean _shown = false;
+      /** Number of matches found by searching edited documents again, minus the number of their stale matches. */
+      private int _countChange = 0;
       
-      final int end = fr.getFoundOffset();
-      final int start = end - searchLen;
-      final int lineStart = doc._getLineStartPos(start);
-      final int lineEnd = doc._getLineEndPos(end);
-      
-      rm.addRegion(new MovingDocumentRegion(doc, start, end, lineStart, lineEnd));                       
-    }
+      public void resultsFound(FindAllEngine.Snapshot snapshot, List<FindResult> results) {
+        final OpenDefinitionsDocument doc = snapshot.getDocument();
+        // The document may have been edited or closed since the snapshot was taken
+        if (_model.getOpenDefinitionsDocuments().contains(doc)) {
+          if (snapshot.isEdited()) {  // the offsets are stale; search the current text of the document instead
+            final String text = doc.getText();
+            if (searchSelectionOnly && ! searchAll) 
+              snapshot = new FindAllEngine.Snapshot(doc, text, region.getStartOffset(), region.getEndOffset());
+            else snapshot = new FindAllEngine.Snapshot(doc, text, 0, text.length());
+            final List<FindResult> current = engine.search(snapshot);
+            _countChange += current.size() - results.size();
+            results = current;
+          }
+          for (FindResult fr: results) {
+            final int end = fr.getFoundOffset();
+            final int start = end - searchLen;
+            rm.addRegion(new MovingDocumentRegion(doc, start, end, snapshot.getLineStartPos(start), 
+                                                  snapshot.getLineEndPos(end)));
+          }
+        }
+        
+        // show panel in tabbed pane as soon as it is not empty
+        if (! _shown && ! panel.isEmpty()) {
+          _shown = true;
+          _frame.showFindResultsPanel(panel);
+        }
+      }
       
-    // show panel in tabbed pane unless it is empty
-    if (count > 0) _frame.showFindResultsPanel(panel);
-    else panel.freeResources();
-    
-//    _model.refreshActiveDocument();  // force tabbed pane to show count for find command
-    
-    if (searchSelectionOnly) 
-      EventQueue.invokeLater(new Runnable() { public void run() { 
-      if (_defPane != null) {
-        _defPane.requestFocusInWindow();
-        _defPane.setSelectionStart(region.getStartOffset());
-        _defPane.setSelectionEnd(region.getEndOffset());
+      public void searchFinished(int count) {
+        count += _countChange;
+        // update display (perhaps adding "*") in navigatgorPane
+        _model.getDocumentNavigator().repaint();
+        if (! _shown) panel.freeResources();
+        
+        if (searchSelectionOnly) 
+          EventQueue.invokeLater(new Runnable() { public void run() { 
+          if (_defPane != null) {
+            _defPane.requestFocusInWindow();
+            _defPane.setSelectionStart(region.getStartOffset());
+            _defPane.setSelectionEnd(region.getEndOffset());
+          }
+        } }); 
+        _log.log("Completing findAll call");
+        Toolkit.getDefaultToolkit().beep();
+        _log.log("Updating status message to report number of matching occurrences");
+        _frame.setStatusMessage("Found " + count + " occurrence" + ((count == 1) ? "" : "s") + ".");
+        if (onDone != null) onDone.run();
       }
-    } }); 
-    _log.log("Completing findAll call");
-    Toolkit.getDefaultToolkit().beep();
-    _log.log("Updating status message to report number of matching occurrences");
-    _frame.setStatusMessage("Found " + count + " occurrence" + ((count == 1) ? "" : "s") + ".");
+    });
   }
   
   /** Performs the "replace all" command. */
@@ -806,10 +806,10 @@ public class JarOptionsDialog extends SwingFrame {
               else
                 mw.setManifestContents(_customManifestText);
               
-              mainJar = new JarBuilder(jarOut, mw.getManifest());
+              mainJar = new JarBuilder(jarOut, mw.getManifest(), true);
             }
             else {
-              mainJar = new JarBuilder(jarOut);
+              mainJar = new JarBuilder(jarOut, ManifestWriter.DEFAULT, true);
             }
             
             //If the project has a set build directory, start there.
@@ -865,12 +865,12 @@ public class JarOptionsDialog extends SwingFrame {
               Manifest m = mw.getManifest();
               
               if (m != null)
-                jb = new JarBuilder(jarOut, m);
+                jb = new JarBuilder(jarOut, m, true);
               else
                 throw new IOException("Manifest is malformed");
             }
             else {
-              jb = new JarBuilder(jarOut);
+              jb = new JarBuilder(jarOut, ManifestWriter.DEFAULT, true);
             }
             //If the project has a set build directory, start there.
             //Otherwise, start at project root
@@ -883,7 +883,7 @@ public class JarOptionsDialog extends SwingFrame {
             jb.close();
           }
           else {
-            JarBuilder jb = new JarBuilder(jarOut);
+            JarBuilder jb = new JarBuilder(jarOut, ManifestWriter.DEFAULT, true);
             jarSources(_model, jb);
             jb.close();
           }
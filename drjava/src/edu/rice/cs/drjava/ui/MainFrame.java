@@ -72,6 +72,7 @@ import edu.rice.cs.drjava.RemoteControlServer;
 import edu.rice.cs.drjava.platform.*;
 import edu.rice.cs.drjava.config.*;
 import edu.rice.cs.drjava.model.*;
+import edu.rice.cs.drjava.model.compiler.CompilerErrorModel;
 import edu.rice.cs.drjava.model.compiler.CompilerListener;
 import edu.rice.cs.drjava.model.compiler.CompilerModel;
 import edu.rice.cs.drjava.model.definitions.ClassNameNotFoundException;
@@ -1855,6 +1856,37 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
     return s;
   }
 
+  /** Generate Java API class list, using the class name index unless the page has changed since it was indexed.
+    * @param suffix the suffix to append to the API path
+    * @return the Java API class list
+    */
+  private Set<JavaAPIListEntry> _indexedJavaAPISet(String suffix) {
+    return _indexedJavaAPISet(MainFrame.class.getResource("/edu/rice/cs/drjava/docs/javaapi" + suffix));
+  }
+  
+  /** Generate Java API class list, using the class name index unless the page has changed since it was indexed.
+    * @param url the URL from which to generate the class list
+    * @return the Java API class list
+    */
+  private Set<JavaAPIListEntry> _indexedJavaAPISet(URL url) {
+    if (url == null) return new HashSet<JavaAPIListEntry>();
+    List<ClassNameIndex.Entry> indexed = _classNameIndex.getPage(url);
+    if (indexed != null) {
+      Set<JavaAPIListEntry> s = new HashSet<JavaAPIListEntry>();
+      for (ClassNameIndex.Entry e: indexed) {
+        String simpleClassName = e.name.substring(e.name.lastIndexOf('.') + 1);
+        try { s.add(new JavaAPIListEntry(simpleClassName, e.name, new URL(e.link))); }
+        catch(MalformedURLException mue) { /* ignore, we'll just not put this class in the list */ }
+      }
+      return s;
+    }
+    Set<JavaAPIListEntry> s = _generateJavaAPISet(url);
+    List<ClassNameIndex.Entry> entries = new ArrayList<ClassNameIndex.Entry>(s.size());
+    for (JavaAPIListEntry e: s) { entries.add(new ClassNameIndex.Entry(e.getFullString(), e.getURL().toString())); }
+    _classNameIndex.putPage(url, entries);
+    return s;
+  }
+
   /** @return the set of all classes, scanned after the last compile. */
   public Set<GoToFileListEntry> getCompleteClassSet() { return _completeClassSet; }
 
@@ -1918,25 +1950,26 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
 //        stripPrefix = ""; // nothing needs to be stripped, links in 1.8 Javadoc are relative
         suffix = "/allclasses-1.8.html";
       }
-      if (! suffix.equals("")) _javaAPISet.addAll(_generateJavaAPISet(suffix));
+      if (! suffix.equals("")) _javaAPISet.addAll(_indexedJavaAPISet(suffix));
       else {
         // no valid Javadoc URL
       }
       
       // add JUnit
-      Set<JavaAPIListEntry> junitAPIList = _generateJavaAPISet("/allclasses-concjunit4.7.html");
+      Set<JavaAPIListEntry> junitAPIList = _indexedJavaAPISet("/allclasses-concjunit4.7.html");
       _javaAPISet.addAll(junitAPIList);
       
       // add additional Javadoc libraries
       for(String url: DrJava.getConfig().getSetting(JAVADOC_ADDITIONAL_LINKS)) {
         try {
-          Set<JavaAPIListEntry> additionalList = _generateJavaAPISet(new URL(url+"/allclasses-frame.html"));
+          Set<JavaAPIListEntry> additionalList = _indexedJavaAPISet(new URL(url+"/allclasses-frame.html"));
           _javaAPISet.addAll(additionalList);
         }
         catch(MalformedURLException mue) { /* ignore, we'll just not put this class in the list */ }
       }
       
       if (_javaAPISet.size() == 0) { clearJavaAPISet(); }
+      _classNameIndex.save();
       
       // finished
       if (!EventQueue.isDispatchThread()) {
@@ -3656,6 +3689,7 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
       config.addOptionListener(TOOLBAR_TEXT_ENABLED, new ToolBarOptionListener());
       config.addOptionListener(TOOLBAR_ENABLED, new ToolBarOptionListener());
       config.addOptionListener(LINEENUM_ENABLED, new LineEnumOptionListener());
+      config.addOptionListener(BACKGROUND_COMPILATION, new BackgroundCompilationOptionListener());
       config.addOptionListener(DEFINITIONS_LINE_NUMBER_COLOR, new LineEnumColorOptionListener());
       config.addOptionListener(DEFINITIONS_LINE_NUMBER_BACKGROUND_COLOR, new LineEnumColorOptionListener());
       config.addOptionListener(QUIT_PROMPT, new QuitPromptOptionListener());
@@ -4889,6 +4923,9 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
       
       if (_mainListener.someFilesNotFound()) _model.setProjectChanged(true);
       clearCompleteClassSet(); // reset auto-completion list
+      if (DrJava.getConfig().getSetting(DIALOG_COMPLETE_SCAN_CLASS_FILES).booleanValue()) {
+        _scanClassFiles();  // refill it from the class name index, without waiting for a compile
+      }
       addToBrowserHistory();
     }
     catch(MalformedProjectFileException e) {
@@ -5789,7 +5826,12 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
 //  /** List with entries for the auto-import dialog. */
 //  HashSet<JavaAPIListEntry> _autoImportClassSet = new HashSet<JavaAPIListEntry>();
   
-  /** Scan the build directory for class files and update the auto-completion list. */
+  /** Persistent index of the class names in the Java API lists, build directories, and class path jars. */
+  private final ClassNameIndex _classNameIndex = 
+    new ClassNameIndex(new File(DrJava.getPropertiesFile().getPath() + ".classes"));
+  
+  /** Scan the build directory and the extra class path for class files and update the auto-completion list.  Only
+    * directories and jar files that changed since they were last scanned are read again. */
   private void _scanClassFiles() {
     
     String trace = Arrays.toString(Thread.currentThread().getStackTrace());
@@ -5798,56 +5840,53 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
       public void run() {
         File buildDir = _model.getBuildDirectory();
         HashSet<GoToFileListEntry> hs = new HashSet<GoToFileListEntry>();
-        HashSet<JavaAPIListEntry> hs2 = new HashSet<JavaAPIListEntry>();
-        if (buildDir != null) {
-          List<File> classFiles = _model.getClassFiles();
-          DummyOpenDefDoc dummyDoc = new DummyOpenDefDoc();
-          for(File f: classFiles) {
-            String s = f.toString();
-            if (s.lastIndexOf(File.separatorChar) >= 0) {
-              s = s.substring(s.lastIndexOf(File.separatorChar)+1);
-            }
-            s = s.substring(0, s.lastIndexOf(".class"));
-            s = s.replace('$', '.');
-            int pos = 0;
-            boolean ok = true;
-            while ((pos=s.indexOf('.', pos)) >= 0) {
-              if (s.length() <= pos + 1 || Character.isDigit(s.charAt(pos + 1))) {
-                ok = false;
-                break;
-              }
-              ++pos;
-            }
-            if (ok) {
-              if (s.lastIndexOf('.') >= 0) {
-                s = s.substring(s.lastIndexOf('.') + 1);
-              }
-              GoToFileListEntry entry = new GoToFileListEntry(dummyDoc, s);
-              hs.add(entry);
-              try {
-                String rel = FileOps.stringMakeRelativeTo(f, buildDir);
-                String full = rel.replace(File.separatorChar, '.');
-                full = full.substring(0, full.lastIndexOf(".class"));
-                if (full.indexOf('$') < 0) {
-                  // No '$' in the name means not an inner class. we do not support inner classes, because that would
-                  // mean having to determine public static scope
-                  hs2.add(new JavaAPIListEntry(s, full, null));
-                }
-              }
-              catch(IOException ioe) { /* ignore, just don't add this one */ }
-              catch(SecurityException se) { /* ignore, just don't add this one */ }
-            }
-          }
+        DummyOpenDefDoc dummyDoc = new DummyOpenDefDoc();
+        if (buildDir != null && _model.isProjectActive()) {
+          _addCompleteClassEntries(_classNameIndex.classesInDirectory(buildDir), dummyDoc, hs);
+        }
+        List<File> classPath = new ArrayList<File>(DrJava.getConfig().getSetting(EXTRA_CLASSPATH));
+        for (File f: _model.getExtraClassPath()) { classPath.add(f); }
+        for (File f: classPath) {
+          if (f.isDirectory()) { _addCompleteClassEntries(_classNameIndex.classesInDirectory(f), dummyDoc, hs); }
+          else if (f.isFile()) { _addCompleteClassEntries(_classNameIndex.classesInJar(f), dummyDoc, hs); }
         }
+        _classNameIndex.save();
         clearCompleteClassSet();
         _completeClassSet.addAll(hs);
-//        _autoImportClassSet = new HashSet<JavaAPIListEntry>(hs2);
       }
     });
     t.setPriority(Thread.MIN_PRIORITY);
     t.start();
   }
   
+  /** Add auto-completion entries for the simple names of the given classes, skipping anonymous classes.
+    * @param classNames fully qualified class names, with '$' separating inner classes
+    * @param dummyDoc document for the entries
+    * @param acc set of entries to add to
+    */
+  private static void _addCompleteClassEntries(List<String> classNames, DummyOpenDefDoc dummyDoc, 
+                                               Set<GoToFileListEntry> acc) {
+    for (String className: classNames) {
+      String s = className.substring(className.lastIndexOf('.') + 1);
+      s = s.replace('$', '.');
+      int pos = 0;
+      boolean ok = true;
+      while ((pos=s.indexOf('.', pos)) >= 0) {
+        if (s.length() <= pos + 1 || Character.isDigit(s.charAt(pos + 1))) {
+          ok = false;
+          break;
+        }
+        ++pos;
+      }
+      if (ok) {
+        if (s.lastIndexOf('.') >= 0) {
+          s = s.substring(s.lastIndexOf('.') + 1);
+        }
+        acc.add(new GoToFileListEntry(dummyDoc, s));
+      }
+    }
+  }
+  
   private void _runProject() {
     if (_model.isProjectActive()) {
       try {
@@ -7705,6 +7744,40 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
     public int lastCol() { return _col; }
   }
   
+  /** Number of characters of spilled scrollback restored each time a console pane is scrolled to the top. */
+  private static final int SCROLLBACK_PAGE_SIZE = 1 << 16;
+  
+  /** Restores output trimmed by the scrollback limit (see OptionConstants.SCROLLBACK_MAX_SIZE) when the given pane is
+    * scrolled to the top, keeping the previously visible text in view.  The restored text is protected from trimming
+    * until the pane is scrolled back to the bottom.
+    * @param scroll the scroll pane containing pane
+    * @param pane the text pane displaying doc
+    * @param doc the console document
+    */
+  private static void _installScrollbackPaging(final JScrollPane scroll, final JTextComponent pane, 
+                                               final ConsoleDocument doc) {
+    scroll.getVerticalScrollBar().addAdjustmentListener(new AdjustmentListener() {
+      public void adjustmentValueChanged(AdjustmentEvent e) {
+        JScrollBar bar = scroll.getVerticalScrollBar();
+        // once the pane is scrolled back to the bottom, restored text is out of view and may be trimmed again
+        if (e.getValue() + bar.getVisibleAmount() >= bar.getMaximum() && doc.hasPagedInText()) doc.releasePagedInText();
+        if (e.getValue() != bar.getMinimum() || ! doc.hasSpilledText()) return;
+        // do not modify the document while the scroll bar is being adjusted
+        EventQueue.invokeLater(new Runnable() {
+          public void run() {
+            if (! doc.hasSpilledText()) return;
+            int restored = doc.pageInSpilledText(SCROLLBACK_PAGE_SIZE);
+            try {
+              Rectangle r = pane.modelToView(restored);
+              if (r != null) scroll.getViewport().setViewPosition(new Point(0, r.y));
+            }
+            catch (BadLocationException ble) { /* leave the view at the top */ }
+          }
+        });
+      }
+    });
+  }
+  
   /* Only called from MainFrame constructor. */
   private void _setUpTabs() {
     
@@ -7718,6 +7791,7 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
       new BorderlessScrollPane(_interactionsPane, ScrollPaneConstants.VERTICAL_SCROLLBAR_ALWAYS,
                                ScrollPaneConstants.HORIZONTAL_SCROLLBAR_AS_NEEDED);
     _interactionsContainer.add(interactionsScroll, BorderLayout.CENTER);
+    _installScrollbackPaging(interactionsScroll, _interactionsPane, _model.getInteractionsModel().getDocument());
     
     if (_showDebugger) {
       // hook highlighting listener to breakpoint manager
@@ -7810,6 +7884,7 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
     
     _consoleScroll.addKeyListener(_historyListener);
     _consoleScroll.addFocusListener(_focusListenerForRecentDocs);
+    _installScrollbackPaging(_consoleScroll, _consolePane, _model.getConsoleDocument());
     
     
     _tabs.addLast(_compilerErrorPanel);
@@ -8704,6 +8779,17 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
 //    }
 //  }
   
+  /** Underlines the current compiler errors in all definitions panes if errors are checked while typing; otherwise
+    * removes the underlines.  Only runs in the event thread.
+    */
+  private void _updateErrorSquiggles() {
+    final CompilerErrorModel errors = DrJava.getConfig().getSetting(BACKGROUND_COMPILATION).booleanValue() ?
+      _model.getCompilerModel().getCompilerErrorModel() : null;
+    for (JScrollPane scroll: _defScrollPanes.values()) {
+      ((DefinitionsPane) scroll.getViewport().getView()).updateErrorSquiggles(errors);
+    }
+  }
+  
   /** Update the row header (line number enumeration) for the definitions scroll pane. */
   private void _updateDefScrollRowHeader() {
     boolean ruleEnabled = DrJava.getConfig().getSetting(LINEENUM_ENABLED).booleanValue();
@@ -9465,6 +9551,7 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
       _guiAvailabilityNotifier.available(GUIAvailabilityListener.ComponentType.COMPILER);
       
       _compilerErrorPanel.reset(excludedFiles.toArray(new File[0]));
+      _updateErrorSquiggles();
       if (isDebuggerReady()) {
 //              _model.getActiveDocument().checkIfClassFileInSync();
         
@@ -9478,6 +9565,13 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
       _model.refreshActiveDocument();
     }
     
+    /** Called when errors were found while typing; refreshes the error panel without bringing it to the front. */
+    public void compileErrorsUpdated(List<? extends File> files) {
+      assert EventQueue.isDispatchThread();
+      _compilerErrorPanel.reset();
+      _updateErrorSquiggles();
+    }
+    
     /** Called if a compilation is aborted. */
     public void compileAborted(Exception e) {
       /* Should probably display a simple popup */
@@ -10353,6 +10447,13 @@ public class MainFrame extends SwingFrame implements ClipboardOwner, DropTargetL
     public void optionChanged(OptionEvent<Boolean> oce) { _updateDefScrollRowHeader(); }
   }
   
+  /** The OptionListener for BACKGROUND_COMPILATION. */
+  private class BackgroundCompilationOptionListener implements OptionListener<Boolean> {
+    public void optionChanged(OptionEvent<Boolean> oce) {
+      Utilities.invokeLater(new Runnable() { public void run() { _updateErrorSquiggles(); } });
+    }
+  }
+  
   /** The OptionListener for DEFINITIONS_LINE_NUMBER_COLOR and DEFINITIONS_LINE_NUMBER_BACKGROUND_COLOR. */
   private class LineEnumColorOptionListener implements OptionListener<Color> {
     public void optionChanged(OptionEvent<Color> oce) { _updateLineNums(); }
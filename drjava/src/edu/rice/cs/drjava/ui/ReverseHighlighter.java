@@ -488,7 +488,15 @@ public class ReverseHighlighter extends DefaultHighlighter {
     
     // --- HighlightPainter methods ---------------------------------------
     
-    private void drawUnderline(Graphics g, int x, int y, int width, int height, int thick) {
+    /** Draws the underline at the bottom of the given rectangle.
+      * @param g the graphics context
+      * @param x the left edge of the rectangle
+      * @param y the top edge of the rectangle
+      * @param width the width of the rectangle
+      * @param height the height of the rectangle
+      * @param thick the thickness of the underline in pixels
+      */
+    protected void drawUnderline(Graphics g, int x, int y, int width, int height, int thick) {
       g.fillRect(x, y+height-thick, width, thick);
     }
     
@@ -570,6 +578,27 @@ public class ReverseHighlighter extends DefaultHighlighter {
     private int thickness;
   }
   
+  /** Underlines text with a zigzag line, as used for errors found while typing. */
+  public static class WavyUnderlineHighlightPainter extends DefaultUnderlineHighlightPainter {
+    
+    /** Constructs a new highlight painter.
+      * @param c the color for the highlight
+      * @param t the height of the zigzag in pixels
+      */
+    public WavyUnderlineHighlightPainter(Color c, int t) { super(c, t); }
+    
+    protected void drawUnderline(Graphics g, int x, int y, int width, int height, int thick) {
+      if (thick <= 0) return;
+      final int bottom = y + height - 1;
+      final int top = bottom - thick;
+      boolean down = true;
+      for (int i = x; i < x + width; i += thick) {
+        g.drawLine(i, down ? top : bottom, i + thick, down ? bottom : top);
+        down = ! down;
+      }
+    }
+  }
+  
   class HighlightInfo implements Highlighter.Highlight {
     
     Position p0;
@@ -491,6 +491,11 @@ public class ConfigDescriptions {
         "<html>A running instance of DrJava can be remote controlled and<br>"+
         "told to open files. This specifies the port used for remote control.<br>" + 
         "(Changes will not be applied until DrJava is restarted.)</html>");
+    add(OptionConstants.INDEXED_REDUCED_MODEL, 
+        "Use Indexed Reduced Model",
+        "<html>Whether documents keep their brace and comment model in a balanced tree<br>"+
+        "so that cursor movement, brace matching, and highlighting stay fast in very large files.<br>" + 
+        "(Changes only apply to documents opened afterwards.)</html>");
     add(OptionConstants.FOLLOW_FILE_DELAY, 
         "Follow File Delay",
         "<html>The delay in milliseconds that has to elapse before DrJava will check<br>"+
@@ -518,6 +523,9 @@ public class ConfigDescriptions {
         "The maximum heap the Interactions JVM can use. Select blank for default");
     add(OptionConstants.SLAVE_JVM_ARGS, "JVM Args for Interactions JVM",
         "The command-line arguments to pass to the Interactions JVM.");    
+    add(OptionConstants.STANDBY_INTERPRETER_JVM, "Keep Standby Interactions JVM",
+        "<html>Whether to keep a second, fully started Interactions JVM ready, so that resetting<br>" +
+        "the Interactions Pane does not have to wait for a new JVM. Disable this to save memory.</html>");
     
     /** Adds all of the components for the Compiler Options Panel of the preferences window
       */
@@ -544,6 +552,14 @@ public class ConfigDescriptions {
     add(OptionConstants.SHOW_FALLTHROUGH_WARNINGS, "Show Fall-Through Warnings",
         "<html>Warn about <code>switch</code> block cases that fall through to the next case.</html>");
     
+    
+    add(OptionConstants.INCREMENTAL_COMPILATION, "Incremental Compilation",
+        "<html>Only recompile the files that changed since the last compilation and the files that<br>"+
+        "depend on them.  All files are recompiled if the API of a changed file changes.</html>");
+    add(OptionConstants.BACKGROUND_COMPILATION, "Check for Errors While Typing",
+        "<html>Compile edited documents in memory shortly after typing stops and underline the errors<br>"+
+        "in the editor.  With incremental compilation, open files depending on them are checked as well.</html>");
+    
     /*
      * The drop down box containing the compiler names
      */
@@ -573,6 +589,11 @@ public class ConfigDescriptions {
     add(OptionConstants.HISTORY_MAX_SIZE, "Size of Interactions History",
         "The number of interactions to remember in the history.");
     
+    add(OptionConstants.SCROLLBACK_MAX_SIZE, "Interactions and Console Scrollback (characters)",
+        "<html>The maximum number of characters kept in the Interactions and Console panes.<br>"+
+        "Older output is moved to a temporary file and brought back when you scroll to the top.<br>"+
+        "0 means no limit.</html>");
+    
     add(OptionConstants.DYNAMICJAVA_ACCESS_CONTROL,
         "Enforce access control", 
         "What kind of access control should DrJava enforce in the Interactions Pane?");
@@ -613,6 +634,12 @@ public class ConfigDescriptions {
     add(OptionConstants.FORCE_TEST_SUFFIX,
         "Require test classes in projects to end in \"Test\"",
         "Whether to force test classes in projects to end in \"Test\".");
+    add(OptionConstants.JUNIT_PARALLEL_WORKERS, "Parallel JUnit Worker JVMs",
+        "<html>The number of separate JVMs used to run unit tests in parallel.<br>"+
+        "Test classes are divided among the JVMs by how long they took<br>"+
+        "the last time they ran. 0 or 1 runs all tests in the Interactions<br>"+
+        "JVM. Tests are always run in the Interactions JVM when code<br>"+
+        "coverage is enabled.</html>");
 
     add(OptionConstants.LANGUAGE_LEVEL,
         "Language Level",
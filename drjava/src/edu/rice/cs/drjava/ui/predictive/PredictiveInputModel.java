@@ -28,12 +28,15 @@
  * END_COPYRIGHT_BLOCK*/
 package edu.rice.cs.drjava.ui.predictive;
 
+import java.util.Arrays;
 import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Collections;
+import java.util.StringTokenizer;
 import java.util.regex.Pattern;
-import java.util.regex.Matcher;
 import java.util.regex.PatternSyntaxException;
 
 /** Model class for predictive string input. */
@@ -104,9 +107,30 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
     public String force(X item, String mask);
   }
   
+  /** Strategy whose matches the model can find with its index of item keys instead of calling isMatch on every item.
+    * The key of an item is its string, in lower case if the model ignores case.  A strategy must match exactly the
+    * items whose keys satisfy the description given by these methods, and isPerfectMatch must hold exactly for the 
+    * items whose key equals the (case-adjusted) matched mask. */
+  public static interface IndexedMatchingStrategy<X extends Comparable<? super X>> extends MatchingStrategy<X> {
+    
+    /** Returns the part of the mask that item keys are matched against.
+     *  @param pim predictive input model
+     *  @return the matched part of the mask
+     */
+    public String getMatchedMask(PredictiveInputModel<X> pim);
+    
+    /** Returns true if a key matches when it starts with the matched mask, false if a key matches when it contains
+     *  each of the whitespace-separated fragments of the matched mask.
+     *  @return true for prefix matching, false for fragment matching
+     */
+    public boolean isPrefixMatch();
+  }
+  
   /** Matching based on string prefix. */
-  public static class PrefixStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class PrefixStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "Prefix"; }
+    public String getMatchedMask(PredictiveInputModel<X> pim) { return pim._mask; }
+    public boolean isPrefixMatch() { return true; }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       String a = (pim._ignoreCase) ? (item.toString().toLowerCase()) : (item.toString());
       String b = (pim._ignoreCase) ? (pim._mask.toLowerCase()) : (pim._mask);
@@ -178,8 +202,10 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   };
   
   /** Matching based on string fragments. */
-  public static class FragmentStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class FragmentStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "Fragments"; }
+    public String getMatchedMask(PredictiveInputModel<X> pim) { return pim._mask; }
+    public boolean isPrefixMatch() { return false; }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       String a = (pim._ignoreCase) ? (item.toString().toLowerCase()) : (item.toString());
       String b = (pim._ignoreCase) ? (pim._mask.toLowerCase()) : (pim._mask);
@@ -221,18 +247,10 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   /** Matching based on string regular expressions. */
   public static class RegExStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
     public String toString() { return "RegEx"; }
+    private final PatternCache _patterns = new PatternCache();
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
-      String a = item.toString();
-
-      try {
-        Pattern p = Pattern.compile(pim._mask,
-                                    (pim._ignoreCase)?(Pattern.CASE_INSENSITIVE):(0));
-        Matcher m = p.matcher(a);
-        return m.matches();
-      }
-      catch (PatternSyntaxException e) {
-        return false;
-      }
+      Pattern p = _patterns.compile(pim._mask, pim._ignoreCase);
+      return (p != null) && p.matcher(item.toString()).matches();
     }
     public boolean isPerfectMatch(X item, PredictiveInputModel<X> pim) {
       String a = (pim._ignoreCase)?(item.toString().toLowerCase()):(item.toString());
@@ -263,8 +281,10 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   };
   
   /** Matching based on string prefix, supporting line numbers separated by :. */
-  public static class PrefixLineNumStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class PrefixLineNumStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "Prefix"; }
+    public String getMatchedMask(PredictiveInputModel<X> pim) { return _withoutLineNum(pim._mask); }
+    public boolean isPrefixMatch() { return true; }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       int posB = pim._mask.lastIndexOf(':');
       if (posB < 0) { posB = pim._mask.length(); }
@@ -387,8 +407,10 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   };
   
   /** Matching based on string fragments, supporting line numbers. */
-  public static class FragmentLineNumStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
+  public static class FragmentLineNumStrategy<X extends Comparable<? super X>> implements IndexedMatchingStrategy<X> {
     public String toString() { return "Fragments"; }
+    public String getMatchedMask(PredictiveInputModel<X> pim) { return _withoutLineNum(pim._mask); }
+    public boolean isPrefixMatch() { return false; }
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       int posB = pim._mask.lastIndexOf(':');
       if (posB < 0) { posB = pim._mask.length(); }
@@ -462,22 +484,14 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   /** Matching based on string regular expressions, supporting line numbers. */
   public static class RegExLineNumStrategy<X extends Comparable<? super X>> implements MatchingStrategy<X> {
     public String toString() { return "RegEx"; }
+    private final PatternCache _patterns = new PatternCache();
     public boolean isMatch(X item, PredictiveInputModel<X> pim) {
       int posB = pim._mask.lastIndexOf(':');
       if (posB < 0) { posB = pim._mask.length(); }
       String mask = pim._mask.substring(0,posB);
       
-      String a = item.toString();
-
-      try {
-        Pattern p = Pattern.compile(mask,
-                                    (pim._ignoreCase)?(Pattern.CASE_INSENSITIVE):(0));
-        Matcher m = p.matcher(a);
-        return m.matches();
-      }
-      catch (PatternSyntaxException e) {
-        return false;
-      }
+      Pattern p = _patterns.compile(mask, pim._ignoreCase);
+      return (p != null) && p.matcher(item.toString()).matches();
     }
     public boolean isPerfectMatch(X item, PredictiveInputModel<X> pim) {
       int posB = pim._mask.lastIndexOf(':');
@@ -534,8 +548,183 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
     }
   };
   
+  /** Returns the mask without a trailing line number, as used by the line number strategies.
+    * @param mask mask that may end in :line
+    * @return mask up to the last :
+    */
+  private static String _withoutLineNum(String mask) {
+    int pos = mask.lastIndexOf(':');
+    return (pos < 0) ? mask : mask.substring(0, pos);
+  }
+  
+  /** The most recently compiled regular expression of a strategy.  The mask usually stays the same while all items
+    * are tested against it. */
+  private static class PatternCache {
+    private String _mask = null;
+    private boolean _ignoreCase;
+    private Pattern _pattern;
+    
+    /** Returns the compiled pattern, or null if mask is not a valid regular expression.
+      * @param mask regular expression
+      * @param ignoreCase true if case should be ignored
+      * @return compiled pattern, or null
+      */
+    public synchronized Pattern compile(String mask, boolean ignoreCase) {
+      if (! mask.equals(_mask) || ignoreCase != _ignoreCase) {
+        try { _pattern = Pattern.compile(mask, (ignoreCase) ? (Pattern.CASE_INSENSITIVE) : (0)); }
+        catch (PatternSyntaxException e) { _pattern = null; }
+        _mask = mask;
+        _ignoreCase = ignoreCase;
+      }
+      return _pattern;
+    }
+  }
+  
+  /** Index over the keys of a list of items, used to find the matches of an IndexedMatchingStrategy. */
+  private static class ItemIndex {
+    /** Keys of the items, in item order. */
+    private final String[] _keys;
+    /** Item positions, sorted by key. */
+    private final int[] _byKey;
+    /** Maps each trigram (three chars packed in a long) to the ascending positions of the items containing it.
+      * Built on the first fragment query. */
+    private HashMap<Long, int[]> _trigrams = null;
+    
+    public ItemIndex(List<?> items, boolean ignoreCase) {
+      final String[] keys = new String[items.size()];
+      for (int i = 0; i < keys.length; ++i) {
+        String s = items.get(i).toString();
+        keys[i] = (ignoreCase) ? (s.toLowerCase()) : (s);
+      }
+      Integer[] byKey = new Integer[keys.length];
+      for (int i = 0; i < byKey.length; ++i) { byKey[i] = i; }
+      Arrays.sort(byKey, new Comparator<Integer>() {
+        public int compare(Integer a, Integer b) { return keys[a].compareTo(keys[b]); }
+      });
+      _keys = keys;
+      _byKey = new int[keys.length];
+      for (int i = 0; i < byKey.length; ++i) { _byKey[i] = byKey[i]; }
+    }
+    
+    public String getKey(int i) { return _keys[i]; }
+    
+    /** Returns the first position in _byKey whose key is not less than s. */
+    private int _lowerBound(String s) {
+      int lo = 0;
+      int hi = _byKey.length;
+      while (lo < hi) {
+        int mid = (lo + hi) >>> 1;
+        if (_keys[_byKey[mid]].compareTo(s) < 0) { lo = mid + 1; }
+        else { hi = mid; }
+      }
+      return lo;
+    }
+    
+    /** Returns the ascending positions of the items whose keys start with prefix, chosen from candidates (or from all
+      * items if candidates is null). */
+    public int[] prefixMatches(int[] candidates, String prefix) {
+      if (candidates != null) {
+        int[] result = new int[candidates.length];
+        int n = 0;
+        for (int i: candidates) { if (_keys[i].startsWith(prefix)) { result[n++] = i; } }
+        return Arrays.copyOf(result, n);
+      }
+      int start = _lowerBound(prefix);
+      int end = start;
+      while (end < _byKey.length && _keys[_byKey[end]].startsWith(prefix)) { ++end; }
+      int[] result = Arrays.copyOfRange(_byKey, start, end);
+      Arrays.sort(result);
+      return result;
+    }
+    
+    /** Returns the position of the first item whose key equals s, or -1 if there is none. */
+    public int firstEqual(String s) {
+      int first = -1;
+      for (int k = _lowerBound(s); k < _byKey.length && _keys[_byKey[k]].equals(s); ++k) {
+        if (first < 0 || _byKey[k] < first) { first = _byKey[k]; }
+      }
+      return first;
+    }
+    
+    /** Returns the ascending positions of the items whose keys contain all of the fragments, chosen from candidates 
+      * (or from all items if candidates is null).  The trigram index narrows the candidates before the keys are 
+      * checked. */
+    public int[] fragmentMatches(int[] candidates, String[] fragments) {
+      if (candidates == null) {
+        for (String f: fragments) {
+          for (int p = 0; p + 3 <= f.length(); ++p) {
+            int[] postings = _trigrams().get(_trigram(f, p));
+            if (postings == null) { return new int[0]; }
+            candidates = (candidates == null) ? postings : _intersect(candidates, postings);
+          }
+        }
+      }
+      int size = (candidates == null) ? _keys.length : candidates.length;
+      int[] result = new int[size];
+      int n = 0;
+      for (int k = 0; k < size; ++k) {
+        int i = (candidates == null) ? k : candidates[k];
+        boolean match = true;
+        for (String f: fragments) {
+          if (_keys[i].indexOf(f) < 0) { match = false; break; }
+        }
+        if (match) { result[n++] = i; }
+      }
+      return Arrays.copyOf(result, n);
+    }
+    
+    private static Long _trigram(String s, int p) {
+      return ((long) s.charAt(p) << 32) | ((long) s.charAt(p + 1) << 16) | s.charAt(p + 2);
+    }
+    
+    private HashMap<Long, int[]> _trigrams() {
+      if (_trigrams == null) {
+        HashMap<Long, int[]> lists = new HashMap<Long, int[]>();  // [0] is the size, followed by the positions
+        for (int i = 0; i < _keys.length; ++i) {
+          String key = _keys[i];
+          for (int p = 0; p + 3 <= key.length(); ++p) {
+            Long t = _trigram(key, p);
+            int[] list = lists.get(t);
+            if (list == null) { list = new int[4]; lists.put(t, list); }
+            else if (list[list[0]] == i) { continue; }  // trigram occurs more than once in this key
+            else if (list[0] + 1 == list.length) { list = Arrays.copyOf(list, list.length * 2); lists.put(t, list); }
+            list[++list[0]] = i;
+          }
+        }
+        _trigrams = new HashMap<Long, int[]>(lists.size() * 2);
+        for (java.util.Map.Entry<Long, int[]> e: lists.entrySet()) {
+          int[] list = e.getValue();
+          _trigrams.put(e.getKey(), Arrays.copyOfRange(list, 1, list[0] + 1));
+        }
+      }
+      return _trigrams;
+    }
+    
+    /** Intersects two ascending arrays of positions. */
+    private static int[] _intersect(int[] a, int[] b) {
+      int[] result = new int[Math.min(a.length, b.length)];
+      int n = 0;
+      for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+        if (a[i] < b[j]) { ++i; }
+        else if (a[i] > b[j]) { ++j; }
+        else { result[n++] = a[i]; ++i; ++j; }
+      }
+      return Arrays.copyOf(result, n);
+    }
+  }
+  
   /** Array of items. */
   private volatile ArrayList<T> _items = new ArrayList<T>();
+  
+  /** Index over the keys of _items; null until an IndexedMatchingStrategy needs it. */
+  private volatile ItemIndex _itemIndex = null;
+  
+  /** Ascending positions in _items of the matching items if they were found with the index, otherwise null. */
+  private volatile int[] _matchingIndices = null;
+  
+  /** Case-adjusted matched mask and strategy for which _matchingIndices were found; used to narrow the next search. */
+  private volatile String _matchedMask = null;
+  private volatile MatchingStrategy<T> _matchedStrategy = null;
 
   /** Index of currently selected full string. */
   private volatile int _index = 0;
@@ -605,6 +794,8 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
   public void setItems(Collection<T> items) {
     _items = new ArrayList<T>(items);
     Collections.sort(_items);
+    _itemIndex = null;
+    _matchingIndices = null;
     updateMatchingStrings(_items);
   }
 
@@ -616,6 +807,8 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
     _items = new ArrayList<T>(items.length);
     for(T s: items) _items.add(s);
     Collections.sort(_items);
+    _itemIndex = null;
+    _matchingIndices = null;
     updateMatchingStrings(_items);
   }
 
@@ -651,10 +844,42 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
     return -1;
   }
   
+  /** Returns the index of the first item in _items that is equivalent to the given item.  If the matches were found 
+    * with the index, the item is looked up in the index: every item equivalent under an IndexedMatchingStrategy has
+    * a key that starts with the key of the given item up to its last ':' (the line number of the line number
+    * strategies), so only those items are tested.
+    * @param item item for which the index should be retrieved
+    * @return index of item in _items, or -1 if not found
+    */
+  private int indexOfItem(T item) {
+    final ItemIndex index = _itemIndex;
+    if (_matchingIndices == null || index == null) return indexOf(_items, item);
+    String key = (_ignoreCase) ? (item.toString().toLowerCase()) : (item.toString());
+    int colon = key.lastIndexOf(':');
+    if (colon >= 0) { key = key.substring(0, colon); }
+    for (int i: index.prefixMatches(null, key)) {
+      if (_strategy.equivalent(item, _items.get(i), this)) return i;
+    }
+    return -1;
+  }
+  
   /** Update the list of matching strings and current index.
     * @param items list of items to base the matching on
     */
   private void updateMatchingStrings(ArrayList<T> items) {
+    if (_strategy instanceof IndexedMatchingStrategy) {
+      IndexedMatchingStrategy<T> strategy = (IndexedMatchingStrategy<T>) _strategy;
+      int perfect = updateIndexedMatches(strategy);
+      if (perfect >= 0) { _index = perfect; }
+      else if (! strategy.isPrefixMatch() && _matchingIndices.length > 0 && 
+               Arrays.binarySearch(_matchingIndices, _index) < 0) {
+        _index = bestFragmentMatch();  // the current item no longer matches
+      }
+      if (_items.size() > 0) { setCurrentItem(_items.get(_index)); }
+      else _index = 0;
+      return;
+    }
+    _matchingIndices = null;
     items = new ArrayList<T>(items); // create a new copy, otherwise we might be clearing the list in the next line
     _matchingItems.clear();
     for(T s: items) {
@@ -671,6 +896,64 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
     }
     else _index = 0;
   }
+  
+  /** Update the list of matching strings using the index.  If the matched mask extends the one of the previous 
+    * search, only the previous matches are searched.
+    * @param strategy current strategy
+    * @return index of the first perfect match, or -1 if there is none
+    */
+  private int updateIndexedMatches(IndexedMatchingStrategy<T> strategy) {
+    ItemIndex index = _itemIndex;
+    if (index == null) { _itemIndex = index = new ItemIndex(_items, _ignoreCase); }
+    String mask = strategy.getMatchedMask(this);
+    if (_ignoreCase) { mask = mask.toLowerCase(); }
+    
+    int[] candidates = null;
+    if (_matchingIndices != null && _matchedStrategy == strategy && mask.startsWith(_matchedMask)) {
+      candidates = _matchingIndices;  // every match of the extended mask matched the previous one
+    }
+    int[] matches;
+    if (strategy.isPrefixMatch()) { matches = index.prefixMatches(candidates, mask); }
+    else { matches = index.fragmentMatches(candidates, _fragments(mask)); }
+    
+    _matchingIndices = matches;
+    _matchedMask = mask;
+    _matchedStrategy = strategy;
+    _matchingItems.clear();
+    _matchingItems.ensureCapacity(matches.length);
+    for (int i: matches) { _matchingItems.add(_items.get(i)); }
+    return index.firstEqual(mask);
+  }
+  
+  /** Splits a mask into fragments at whitespace, like FragmentStrategy. */
+  private static String[] _fragments(String mask) {
+    StringTokenizer tok = new StringTokenizer(mask);
+    String[] result = new String[tok.countTokens()];
+    for (int i = 0; i < result.length; ++i) { result[i] = tok.nextToken(); }
+    return result;
+  }
+  
+  /** Find the best fragment match to become the current item when the mask changes: matches where the first fragment
+    * starts a word of the item come first, then earlier occurrences of the first fragment, then shorter items.  Ties
+    * are broken as setCurrentItem would: the first match after the current item, otherwise the closest one before it.
+    * @return index of the best match in _items, or -1 if there are no matches
+    */
+  private int bestFragmentMatch() {
+    int best = -1;
+    long bestRank = Long.MAX_VALUE;
+    String[] fragments = _fragments(_matchedMask);
+    for (int i: _matchingIndices) {
+      String key = _itemIndex.getKey(i);
+      int pos = (fragments.length > 0) ? key.indexOf(fragments[0]) : 0;
+      boolean wordStart = (pos == 0) || ! Character.isLetterOrDigit(key.charAt(pos - 1));
+      long rank = ((wordStart ? 0L : 1L) << 62) | ((long) Math.min(pos, 0xFFFF) << 32) | Math.min(key.length(), 0xFFFF);
+      if (rank < bestRank || (rank == bestRank && best < _index)) {  // _matchingIndices is ascending
+        best = i;
+        bestRank = rank;
+      }
+    }
+    return best;
+  }
 
   /** Get currently selected item.
     * @return currently selected item
@@ -690,11 +973,18 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
       return;
     }
     boolean found = false;
-    int index = indexOf(_items, item);
+    int index = indexOfItem(item);
     if (index < 0) {
       // not in list of items, pick first item
       pickClosestMatch(item);
     }
+    else if (_matchingIndices != null) {
+      // matches found with the index are exactly the items at these positions, so no equivalence test is needed
+      int pos = Arrays.binarySearch(_matchingIndices, index);
+      if (pos >= 0) { _index = index; }
+      else if (-pos - 1 < _matchingIndices.length) { _index = _matchingIndices[-pos - 1]; }
+      else { pickClosestMatch(item); }
+    }
     else {
       for (int i=index; i < _items.size(); ++i) {
         if (0 <= indexOf(_matchingItems, _items.get(i))) {
@@ -722,10 +1012,10 @@ public class PredictiveInputModel<T extends Comparable<? super T>> {
         }
         follows = i;
       }
-      _index = indexOf(_items, follows);
+      _index = indexOfItem(follows);
     }
     else {
-      _index = indexOf(_items, _strategy.getLongestMatch(item, _items, this));
+      _index = indexOfItem(_strategy.getLongestMatch(item, _items, this));
     }
   }
 
@@ -30,7 +30,9 @@ package edu.rice.cs.drjava.ui.predictive;
 
 import edu.rice.cs.drjava.DrJavaTestCase;
 
+import java.util.ArrayList;
 import java.util.List;
+import java.util.Random;
 import java.util.Set;
 
 /** * Unit tests for PredictiveInputModel class.
@@ -625,6 +627,29 @@ public class PredictiveInputModelTest extends DrJavaTestCase {
     assertEquals(2, pim.getMatchingItems().size());
   }
   
+  public void testFragmentTiesKeepFollowingItem() {
+    PredictiveInputModel<String> pim = new PredictiveInputModel<String>(false,
+                                                                        new PredictiveInputModel.FragmentStrategy<String>(),
+                                                                        "A.x",
+                                                                        "B.x",
+                                                                        "C.y",
+                                                                        "D.x",
+                                                                        "E.x");
+    pim.setCurrentItem("C.y");
+    pim.setMask("x");
+    assertEquals("D.x", pim.getCurrentItem());
+    
+    pim.setMask("");
+    pim.setCurrentItem("E.x");
+    pim.setMask("y");
+    assertEquals("C.y", pim.getCurrentItem());
+    
+    pim.setItems("A.x", "B.x", "E.y");
+    pim.setCurrentItem("E.y");
+    pim.setMask("x");
+    assertEquals("B.x", pim.getCurrentItem());
+  }
+
   public void testFragmentNarrowingWithExtend() {
     PredictiveInputModel<String> pim = new PredictiveInputModel<String>(false,
                                                                         new PredictiveInputModel.FragmentStrategy<String>(),
@@ -1097,4 +1122,124 @@ public class PredictiveInputModelTest extends DrJavaTestCase {
     System.err.println("JavaAPIList = " + l);
     assertTrue(l.size() > 0);
   }
+  
+  /** Strategy that hides the IndexedMatchingStrategy interface of its delegate, so the model tests every item. */
+  private static class ScanningStrategy<X extends Comparable<? super X>> 
+    implements PredictiveInputModel.MatchingStrategy<X> {
+    private final PredictiveInputModel.MatchingStrategy<X> _s;
+    public ScanningStrategy(PredictiveInputModel.MatchingStrategy<X> s) { _s = s; }
+    public boolean isMatch(X item, PredictiveInputModel<X> pim) { return _s.isMatch(item, pim); }
+    public boolean isPerfectMatch(X item, PredictiveInputModel<X> pim) { return _s.isPerfectMatch(item, pim); }
+    public boolean equivalent(X item1, X item2, PredictiveInputModel<X> pim) { return _s.equivalent(item1, item2, pim); }
+    public int compare(X item1, X item2, PredictiveInputModel<X> pim) { return _s.compare(item1, item2, pim); }
+    public X getLongestMatch(X item, List<X> items, PredictiveInputModel<X> pim) {
+      return _s.getLongestMatch(item, items, pim);
+    }
+    public String getSharedMaskExtension(List<X> items, PredictiveInputModel<X> pim) {
+      return _s.getSharedMaskExtension(items, pim);
+    }
+    public String getExtendedSharedMask(List<X> items, PredictiveInputModel<X> pim) {
+      return _s.getExtendedSharedMask(items, pim);
+    }
+    public String force(X item, String mask) { return _s.force(item, mask); }
+  }
+  
+  private static final String[] WORDS = { "File", "Ops", "Test", "Array", "List", "Map", "Hash", "Tree", "Node", "a", 
+    "Model", "Frame", "util", "io", "x" };
+  
+  /** Creates count random class-like file names. */
+  private static List<String> _randomNames(Random r, int count) {
+    List<String> result = new ArrayList<String>(count);
+    for (int i = 0; i < count; ++i) {
+      StringBuilder sb = new StringBuilder();
+      int words = 1 + r.nextInt(4);
+      for (int w = 0; w < words; ++w) { sb.append(WORDS[r.nextInt(WORDS.length)]); }
+      sb.append(r.nextBoolean() ? ".java" : ".dj");
+      result.add(sb.toString());
+    }
+    return result;
+  }
+  
+  /** The indexed strategies must find the same matches as testing every item, while the mask grows and shrinks. */
+  public void testIndexedMatchesAgreeWithScan() {
+    Random r = new Random(17);
+    List<String> items = _randomNames(r, 500);
+    List<PredictiveInputModel.MatchingStrategy<String>> strategies = 
+      new ArrayList<PredictiveInputModel.MatchingStrategy<String>>();
+    strategies.add(new PredictiveInputModel.PrefixStrategy<String>());
+    strategies.add(new PredictiveInputModel.FragmentStrategy<String>());
+    strategies.add(new PredictiveInputModel.PrefixLineNumStrategy<String>());
+    strategies.add(new PredictiveInputModel.FragmentLineNumStrategy<String>());
+    String typed = "FileOps Test:12 lis T.java a";
+    for (boolean ignoreCase: new boolean[] { false, true }) {
+      for (PredictiveInputModel.MatchingStrategy<String> s: strategies) {
+        PredictiveInputModel<String> indexed = new PredictiveInputModel<String>(ignoreCase, s, items);
+        PredictiveInputModel<String> scanning = 
+          new PredictiveInputModel<String>(ignoreCase, new ScanningStrategy<String>(s), items);
+        boolean prefix = ((PredictiveInputModel.IndexedMatchingStrategy<String>) s).isPrefixMatch();
+        for (int i = 0; i <= typed.length(); ++i) {
+          String mask = typed.substring(0, i);
+          if (i % 3 == 0) {
+            indexed.setMask(mask);
+            scanning.setMask(mask);
+          }
+          else {
+            indexed.extendMask(mask.substring(indexed.getMask().length()));
+            scanning.extendMask(mask.substring(scanning.getMask().length()));
+          }
+          String msg = s + " ignoreCase=" + ignoreCase + " mask='" + mask + "'";
+          assertEquals(msg, scanning.getMatchingItems(), indexed.getMatchingItems());
+          if (prefix) { assertEquals(msg, scanning.getCurrentItem(), indexed.getCurrentItem()); }
+          else if (indexed.getMatchingItems().size() > 0) {
+            assertTrue(msg, indexed.getMatchingItems().contains(indexed.getCurrentItem()));
+          }
+        }
+        indexed.setMask("Hash");  // widen again
+        scanning.setMask("Hash");
+        assertEquals(s + " widened", scanning.getMatchingItems(), indexed.getMatchingItems());
+      }
+    }
+  }
+  
+  /** When the current item stops matching, fragment matching picks the match where the fragment starts a word. */
+  public void testFragmentRanking() {
+    PredictiveInputModel<String> pim = new PredictiveInputModel<String>(true,
+                                                                        new PredictiveInputModel.FragmentStrategy<String>(),
+                                                                        "AbstractList.java",
+                                                                        "ArrayList.java",
+                                                                        "List.java",
+                                                                        "Zebra.java");
+    pim.setMask("zeb");
+    assertEquals("Zebra.java", pim.getCurrentItem());
+    pim.setMask("list");
+    assertEquals(3, pim.getMatchingItems().size());
+    assertEquals("List.java", pim.getCurrentItem());
+    
+    pim.setCurrentItem("ArrayList.java");  // explicit selection is kept
+    pim.extendMask(".j");
+    assertEquals("ArrayList.java", pim.getCurrentItem());
+  }
+  
+  /** Benchmark: types a mask one character at a time over 100,000 items, with and without the index. */
+  public static void main(String[] args) {
+    List<String> items = _randomNames(new Random(42), 100000);
+    String typed = "ListNodeTest";
+    PredictiveInputModel.MatchingStrategy<String> prefix = new PredictiveInputModel.PrefixStrategy<String>();
+    PredictiveInputModel.MatchingStrategy<String> fragment = new PredictiveInputModel.FragmentStrategy<String>();
+    for (PredictiveInputModel.MatchingStrategy<String> s: java.util.Arrays.asList(prefix, fragment)) {
+      for (boolean indexed: new boolean[] { false, true }) {
+        PredictiveInputModel<String> pim = 
+          new PredictiveInputModel<String>(true, indexed ? s : new ScanningStrategy<String>(s), items);
+        long start = System.nanoTime();
+        for (int round = 0; round < 5; ++round) {
+          pim.setMask("");
+          for (int i = 0; i < typed.length(); ++i) { pim.setMask(typed.substring(0, i + 1)); }
+          pim.setMask("Tree Map");
+        }
+        long elapsed = System.nanoTime() - start;
+        System.out.println(s + (indexed ? " indexed " : " scanning") + ": " + (5 * (typed.length() + 2)) + 
+                           " masks over " + items.size() + " items in " + (elapsed / 1000000) + " ms");
+      }
+    }
+  }
 }
@@ -34,14 +34,36 @@ import java.util.Date;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.TimeZone;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
 
 /** Logging class to record errors or unexpected behavior to a file.  The file is created in the current directory,
   * and is only used if the log is enabled.  All logs can be enabled at once with the ENABLE_ALL field.
+  * <p>
+  * By default, each message is written and flushed by the thread that logs it.  An asynchronous log instead puts
+  * messages on a lock-free queue that a background thread writes in batches, so that logging barely changes the
+  * timing of the code being diagnosed.  If more than {@link #ASYNC_CAPACITY} messages are waiting, further messages
+  * are dropped and counted.  Logs are asynchronous if the system property {@value #ASYNC_PROPERTY} is true, or after
+  * {@link #setAsynchronous} has been called.
+  * <p>
+  * The {@code log(String format, Object... )} methods only build the message if the log is enabled, replacing each
+  * "{}" in the format with the next argument; a disabled log then allocates nothing.
   * @version $Id$
   */
 public class Log {
   public static final boolean ENABLE_ALL = false;
   
+  /** System property that makes all new logs asynchronous. */
+  public static final String ASYNC_PROPERTY = "drjava.log.async";
+  
+  /** The maximum number of messages waiting to be written by an asynchronous log. */
+  public static final int ASYNC_CAPACITY = 65536;
+  
+  /** How long the writer thread of an asynchronous log waits for more messages before writing, in milliseconds. */
+  private static final long ASYNC_INTERVAL = 100;
+  
   /** Whether this particular log is enabled in development mode. */
   protected volatile boolean _isEnabled;
   
@@ -56,6 +78,29 @@ public class Log {
   
   public final SimpleDateFormat DATE_FORMAT = new SimpleDateFormat("d MMM yyyy H:mm:ss z");
   
+  /** The second (since the epoch) of the last formatted timestamp, and the timestamp itself.  Guarded 
+    * by this. */
+  private long _stampSecond = Long.MIN_VALUE;
+  private String _stamp;
+  
+  /** Whether messages are written by the writer thread. */
+  private volatile boolean _isAsynchronous;
+  
+  /** Messages waiting to be written by the writer thread. */
+  private final ConcurrentLinkedQueue<Message> _queue = new ConcurrentLinkedQueue<Message>();
+  /** The number of messages in _queue. */
+  private final AtomicInteger _queued = new AtomicInteger();
+  /** The number of messages that were put on _queue, and the number of them that have been written. */
+  private final AtomicLong _enqueuedCount = new AtomicLong();
+  private volatile long _writtenCount = 0;
+  /** The number of messages that were dropped because the queue was full, and how many of them have been reported. */
+  private final AtomicLong _droppedCount = new AtomicLong();
+  private long _reportedDroppedCount = 0;
+  /** The thread writing the messages of an asynchronous log, or null if it has not been started or has stopped. */
+  private volatile Thread _writerThread;
+  /** Whether close() has been called; stops the writer thread and makes later messages synchronous. */
+  private volatile boolean _isClosed = false;
+  
   /** Creates a new Log with the given name.  If enabled is true, a file is created in the current directory with the
     * given name.
     * @param name  File name for the log
@@ -67,19 +112,22 @@ public class Log {
     _file = f;
     _name = f.getName();
     _isEnabled = isEnabled;
+    _isAsynchronous = Boolean.getBoolean(ASYNC_PROPERTY);
     DATE_FORMAT.setTimeZone(TimeZone.getTimeZone("GMT"));
     DATE_FORMAT.setLenient(false);
     _init();
   }
   
   /** Creates the log file, if enabled. */
-  protected void _init() {
+  protected synchronized void _init() {
     if (_writer == null) {
       if (_isEnabled || ENABLE_ALL) {
         try {
           FileWriter w = new FileWriter(_file.getAbsolutePath(), true);
-          _writer = new PrintWriter(w);
-          log("Log '" + _name + "' opened: " + DATE_FORMAT.format(new Date()) + " with name " + _file.getAbsolutePath());
+          _writer = new PrintWriter(new BufferedWriter(w));
+          long now = System.currentTimeMillis();
+          _println(now, "Log '" + _name + "' opened: " + _timestamp(now) + " with name " + _file.getAbsolutePath());
+          _writer.flush();
         }
         catch (IOException ioe) {
           throw new RuntimeException("Could not create log: " + ioe);
@@ -96,19 +144,79 @@ public class Log {
   /** @return  whether this log is currently enabled. */
   public boolean isEnabled() { return (_isEnabled || ENABLE_ALL); }
   
+  /** Sets whether messages are written by a background thread.  Messages already queued are still written when the
+    * log is made synchronous again.
+    * @param isAsynchronous  Whether to queue messages for the writer thread
+    */
+  public void setAsynchronous(boolean isAsynchronous) {
+    _isAsynchronous = isAsynchronous;
+    if (! isAsynchronous) flush();
+  }
+  
+  /** @return whether messages are written by a background thread */
+  public boolean isAsynchronous() { return _isAsynchronous; }
+  
+  /** @return the number of messages an asynchronous log has dropped because too many messages were waiting */
+  public long getDroppedCount() { return _droppedCount.get(); }
+  
   /** Prints a message to the log, if enabled.
     * @param message Message to print.
     */
-  public synchronized void log(String message) {
+  public void log(String message) {
     if (isEnabled()) {
-      if (_writer == null) {
-        _init();
+      if (_isAsynchronous && ! _isClosed) _enqueue(message);
+      else {
+        synchronized(this) {
+          if (_writer == null) {
+            _init();
+          }
+          _println(System.currentTimeMillis(), message);
+          _writer.flush();
+        }
       }
-      _writer.println(DATE_FORMAT.format(new Date()) + ": " + message);
-      _writer.flush();
     }
   }
   
+  /** Prints a message to the log, if enabled.  The message is only built if the log is enabled.
+    * @param format the message, in which "{}" is replaced by the argument
+    * @param arg the argument
+    */
+  public void log(String format, Object arg) {
+    if (isEnabled()) log(_format(format, arg, null, null, 1));
+  }
+  
+  /** Prints a message to the log, if enabled.  The message is only built if the log is enabled.
+    * @param format the message, in which the occurrences of "{}" are replaced by the arguments
+    * @param arg1 the first argument
+    * @param arg2 the second argument
+    */
+  public void log(String format, Object arg1, Object arg2) {
+    if (isEnabled()) log(_format(format, arg1, arg2, null, 2));
+  }
+  
+  /** Prints a message to the log, if enabled.  The message is only built if the log is enabled.
+    * @param format the message, in which the occurrences of "{}" are replaced by the arguments
+    * @param arg1 the first argument
+    * @param arg2 the second argument
+    * @param arg3 the third argument
+    */
+  public void log(String format, Object arg1, Object arg2, Object arg3) {
+    if (isEnabled()) log(_format(format, arg1, arg2, arg3, 3));
+  }
+  
+  /** Replaces the first count occurrences of "{}" in format with the arguments. */
+  private static String _format(String format, Object arg1, Object arg2, Object arg3, int count) {
+    StringBuilder sb = new StringBuilder(format.length() + 32);
+    int start = 0;
+    for (int i = 0; i < count; ++i) {
+      int pos = format.indexOf("{}", start);
+      if (pos < 0) break;
+      sb.append(format, start, pos).append(i == 0 ? arg1 : (i == 1 ? arg2 : arg3));
+      start = pos + 2;
+    }
+    return sb.append(format, start, format.length()).toString();
+  }
+  
   /** Converts a stack trace (StackTraceElement[]) to string form 
    * @param trace trace to be converted
    * @return string representation of trace
@@ -123,7 +231,7 @@ public class Log {
     * @param s  Message to print
     * @param trace  Stack track to log
     */
-  public synchronized void log(String s, StackTraceElement[] trace) {
+  public void log(String s, StackTraceElement[] trace) {
     if (isEnabled()) log(s + traceToString(trace));
   }
   
@@ -131,7 +239,7 @@ public class Log {
     * @param s Message to print
     * @param t Throwable to log
     */
-  public synchronized void log(String s, Throwable t) {
+  public void log(String s, Throwable t) {
     if (isEnabled()) {
       StringWriter sw = new StringWriter();
       PrintWriter pw = new PrintWriter(sw);
@@ -140,10 +248,112 @@ public class Log {
     }
   }
   
-  /** Closes a log file. */
+  /** Waits until the messages queued by an asynchronous log so far have been written to the file. */
+  public void flush() {
+    long target = _enqueuedCount.get();
+    Thread writer = _writerThread;
+    while (writer != null && writer.isAlive() && _writtenCount < target) {
+      LockSupport.unpark(writer);
+      LockSupport.parkNanos(1000000L);
+    }
+  }
+  
+  /** Closes a log file.  The writer thread of an asynchronous log writes the queued messages and stops; messages 
+    * logged after closing are written synchronously, reopening the file.
+    */
   public void close() {
-    _writer.close();
-    _writer = null;
+    _isClosed = true;
+    final Thread writer;
+    synchronized(this) {  // _startWriter cannot start a writer thread after this
+      writer = _writerThread;
+      _writerThread = null;
+    }
+    if (writer != null) {
+      LockSupport.unpark(writer);
+      boolean interrupted = false;
+      while (writer.isAlive()) {
+        try { writer.join(); }
+        catch(InterruptedException e) { interrupted = true; }
+      }
+      if (interrupted) Thread.currentThread().interrupt();
+    }
+    synchronized(this) {
+      _writeQueued();  // messages queued while the writer thread was stopping
+      if (_writer != null) {
+        _writer.close();
+        _writer = null;
+      }
+    }
+  }
+  
+  /** Queues a message for the writer thread, or drops it if too many messages are waiting. */
+  private void _enqueue(String message) {
+    if (_queued.incrementAndGet() > ASYNC_CAPACITY) {
+      _queued.decrementAndGet();
+      _droppedCount.incrementAndGet();
+      return;
+    }
+    _queue.offer(new Message(System.currentTimeMillis(), message));
+    _enqueuedCount.incrementAndGet();
+    if (_writerThread == null) _startWriter();
+  }
+  
+  /** Starts the writer thread unless another thread has started it or the log has been closed. */
+  private synchronized void _startWriter() {
+    if (_writerThread != null || _isClosed) return;
+    Thread writer = new Thread("Log writer: " + _name) {
+      public void run() {
+        while (! _isClosed) {
+          _writeQueued();
+          LockSupport.parkNanos(this, ASYNC_INTERVAL * 1000000L);
+        }
+        _writeQueued();
+      }
+    };
+    writer.setDaemon(true);
+    writer.start();
+    _writerThread = writer;
+  }
+  
+  /** Writes all queued messages as one batch.  Runs on the writer thread. */
+  private void _writeQueued() {
+    if (_queue.isEmpty()) return;
+    synchronized(this) {
+      if (_writer == null) _init();
+      if (_writer == null) {  // disabled since the messages were queued
+        while (_queue.poll() != null) { _queued.decrementAndGet(); ++_writtenCount; }
+        return;
+      }
+      Message m;
+      while ((m = _queue.poll()) != null) {
+        _queued.decrementAndGet();
+        _println(m.time, m.text);
+        ++_writtenCount;
+      }
+      long dropped = _droppedCount.get();
+      if (dropped != _reportedDroppedCount) {
+        _println(System.currentTimeMillis(), (dropped - _reportedDroppedCount) + " messages dropped");
+        _reportedDroppedCount = dropped;
+      }
+      _writer.flush();
+    }
+  }
+  
+  /** Writes a line with a timestamp.  Must hold the lock of this log. */
+  private void _println(long time, String message) {
+    _writer.print(_timestamp(time));
+    _writer.print(": ");
+    _writer.println(message);
+  }
+  
+  /** Formats a time, reusing the last result if the time is in the same second.  Must hold the lock of this log. */
+  private String _timestamp(long time) {
+    long second = time / 1000;
+    if (second != _stampSecond) {
+      _stamp = DATE_FORMAT.format(new Date(time));
+      _stampSecond = second;
+    }
+    return _stamp;
   }
   
   /** Parses a date printed by Date.toString(); returns null if there is a 
@@ -159,4 +369,11 @@ public class Log {
     }
     catch(ParseException pe) { return null; }
   }
+  
+  /** A message of an asynchronous log and the time at which it was logged. */
+  private static final class Message {
+    final long time;
+    final String text;
+    Message(long t, String s) { time = t; text = s; }
+  }
 }
@@ -259,5 +259,83 @@ public class LogTest extends MultiThreadedTestCase {
     fin.close();
 //    System.err.println("LogTest.testConucrrentWrites complete");
   }
+  
+  /** Tests that an asynchronous log writes the messages of several threads intact and in the order of each thread,
+    * that deferred messages are formatted, and that closing the log stops its writer thread.
+    * @throws IOException if an IO operation fails
+    * @throws InterruptedException if execution is interrupted unexpectedly
+    */
+  public void testAsynchronousWrites() throws IOException, InterruptedException {
+    File file4 = IOUtil.createAndMarkTempFile("logtest004",".txt");
+    final Log log4 = new Log(file4, true);
+    log4.setAsynchronous(true);
+    assertTrue("asynchronous", log4.isAsynchronous());
+    
+    final int perThread = 1000;
+    Thread[] threads = new Thread[4];
+    for (int t = 0; t < threads.length; t++) {
+      final int id = t;
+      threads[t] = new Thread() {
+        public void run() { for (int i = 0; i < perThread; i++) log4.log("thread {} message {}", id, i); }
+      };
+    }
+    for (Thread t : threads) t.start();
+    for (Thread t : threads) t.join();
+    log4.log("{} + {} = {}", 1, 2, 3);
+    log4.close();
+    assertEquals("nothing dropped", 0, log4.getDroppedCount());
+    for (Thread t : Thread.getAllStackTraces().keySet()) {
+      assertFalse("writer thread stopped", t.getName().equals("Log writer: " + file4.getName()));
+    }
+    
+    BufferedReader fin = new BufferedReader(new FileReader(file4));
+    assertNotNull("log opened", log4.parse(fin.readLine()));
+    int[] next = new int[threads.length];
+    for (int i = 0; i < threads.length * perThread; i++) {
+      String s = fin.readLine();
+      assertNotNull("timestamp", log4.parse(s));
+      String[] words = getStringAfterDate(s).split(" ");
+      int id = Integer.parseInt(words[1]);
+      assertEquals("message order of thread " + id, next[id]++, Integer.parseInt(words[3]));
+    }
+    assertEquals("deferred message", "1 + 2 = 3", getStringAfterDate(fin.readLine()));
+    assertEquals("End of log expected", null, fin.readLine());
+    fin.close();
+  }
+  
+  /** Tests that an asynchronous log drops and counts messages when its writer cannot keep up.
+    * @throws IOException if an IO operation fails
+    */
+  public void testAsynchronousDrops() throws IOException {
+    File file5 = IOUtil.createAndMarkTempFile("logtest005",".txt");
+    Log log5 = new Log(file5, true);
+    log5.setAsynchronous(true);
+    log5.log("first");
+    log5.flush();
+    synchronized(log5) {  // keeps the writer thread from writing
+      for (int i = 0; i < Log.ASYNC_CAPACITY + 10; i++) log5.log("message");
+    }
+    assertEquals("dropped messages", 10, log5.getDroppedCount());
+    log5.close();
+    
+    BufferedReader fin = new BufferedReader(new FileReader(file5));
+    String last = null;
+    int lines = 0;
+    for (String s = fin.readLine(); s != null; s = fin.readLine()) { last = s; lines++; }
+    fin.close();
+    assertEquals("open message, first, queued messages, drop report", Log.ASYNC_CAPACITY + 3, lines);
+    assertEquals("drop report", "10 messages dropped", getStringAfterDate(last));
+  }
+  
+  /** Tests that a disabled log does not format deferred messages. */
+  public void testDisabledDeferred() {
+    Log log6 = new Log("logtest006.txt", false);
+    Object arg = new Object() {
+      public String toString() { throw new AssertionError("message of a disabled log was built"); }
+    };
+    log6.log("{}", arg);
+    log6.log("{} {}", arg, arg);
+    log6.log("{} {} {}", arg, arg, arg);
+  }
 }
 
@@ -76,6 +76,17 @@ public class ReaderWriterLock {
    */
   private final LinkedList<Thread> _runningThreads;
   
+  /** The number of reads and writes that have been started, the number of them that had to wait on the waitQueue, and
+    * the total time in nanoseconds spent between the call to startRead or startWrite and the moment the read or write
+    * began.  The wait time includes acquiring the monitor of this lock.  All fields are guarded by this lock's monitor.
+    */
+  private long _numReads = 0;
+  private long _numQueuedReads = 0;
+  private long _readWaitTime = 0;
+  private long _numWrites = 0;
+  private long _numQueuedWrites = 0;
+  private long _writeWaitTime = 0;
+  
   /** Creates a new ReaderWriterLock. */
   public ReaderWriterLock() {
     _waitQueue = new LinkedList<ReaderWriterThread>();
@@ -87,28 +98,34 @@ public class ReaderWriterLock {
     * writers have finished.
     * @throws IllegalStateException if the thread is already a reader or writer
     */
-  public synchronized void startRead() {
-    // If we're already reading, we can perform another read without waiting
-    if (!_alreadyReading()) {
+  public void startRead() {
+    final long start = System.nanoTime();
+    synchronized(this) {
+      // If we're already reading, we can perform another read without waiting
+      if (!_alreadyReading()) {
       
-      // Make sure this thread isn't already writing.
-      _ensureNotAlreadyRunning();
+        // Make sure this thread isn't already writing.
+        _ensureNotAlreadyRunning();
       
-      // Check if any writers are active or waiting
-      if (_numWaitingWriters > 0 || _numActiveWriters > 0) {
-        // If so, we wait until it's our turn (on the waitQueue)
-        _numWaitingReaders++;
-        Reader r = new Reader();
-        r.startWaiting();
+        // Check if any writers are active or waiting
+        if (_numWaitingWriters > 0 || _numActiveWriters > 0) {
+          // If so, we wait until it's our turn (on the waitQueue)
+          _numWaitingReaders++;
+          _numQueuedReads++;
+          Reader r = new Reader();
+          r.startWaiting();
         
-        // Ok, we're no longer on the waitQueue
-        _numWaitingReaders--;
+          // Ok, we're no longer on the waitQueue
+          _numWaitingReaders--;
+        }
       }
-    }
     
-    // Ok, start the read
-    _numActiveReaders++;
-    _runningThreads.add(Thread.currentThread());
+      // Ok, start the read
+      _numActiveReaders++;
+      _runningThreads.add(Thread.currentThread());
+      _numReads++;
+      _readWaitTime += System.nanoTime() - start;
+    }
   }
   
   /** Must be called by each reader thread after it is finished reading.  The calling method must <i>not</i> be 
@@ -143,35 +160,41 @@ public class ReaderWriterLock {
     * readers from starting to read until this writer gets a chance to write.
     * @throws IllegalStateException if the thread is already a reader or writer
     */
-  public synchronized void startWrite() {
-    // Make sure this thread isn't already reading or writing.
-    _ensureNotAlreadyRunning();
+  public void startWrite() {
+    final long start = System.nanoTime();
+    synchronized(this) {
+      // Make sure this thread isn't already reading or writing.
+      _ensureNotAlreadyRunning();
     
-    // Can only write if no other readers *or* writers
-    // Note: normally, there will be no waiting readers/writers if there
-    //  are no active reader/writers.  However, a new thread could call
-    //  startWrite at just the wrong time, allowing it to sneak in after
-    //  the last reader/writer finished, while others are waiting.  Thus,
-    //  we also check to see if anyone is waiting.
-    if ((_numActiveReaders > 0 || _numActiveWriters > 0) ||
-        (_numWaitingReaders > 0 || _numWaitingWriters > 0)) {
-      // Must wait
-      _numWaitingWriters++;
+      // Can only write if no other readers *or* writers
+      // Note: normally, there will be no waiting readers/writers if there
+      //  are no active reader/writers.  However, a new thread could call
+      //  startWrite at just the wrong time, allowing it to sneak in after
+      //  the last reader/writer finished, while others are waiting.  Thus,
+      //  we also check to see if anyone is waiting.
+      if ((_numActiveReaders > 0 || _numActiveWriters > 0) ||
+          (_numWaitingReaders > 0 || _numWaitingWriters > 0)) {
+        // Must wait
+        _numWaitingWriters++;
       
-      // If _okToWrite is true, it means there are no active writers (and thus
-      //  there are active readers).  We set it to false so that we wait until
-      //  the last reader finishes, setting it back to true in endRead().
-      //_okToWrite = false;
+        // If _okToWrite is true, it means there are no active writers (and thus
+        //  there are active readers).  We set it to false so that we wait until
+        //  the last reader finishes, setting it back to true in endRead().
+        //_okToWrite = false;
       
-      Writer w = new Writer();
-      w.startWaiting();
+        _numQueuedWrites++;
+        Writer w = new Writer();
+        w.startWaiting();
       
-      _numWaitingWriters--;
-    }
+        _numWaitingWriters--;
+      }
     
-    // We're writing now, so it's not ok for others to write
-    _numActiveWriters++;
-    _runningThreads.add(Thread.currentThread());
+      // We're writing now, so it's not ok for others to write
+      _numActiveWriters++;
+      _runningThreads.add(Thread.currentThread());
+      _numWrites++;
+      _writeWaitTime += System.nanoTime() - start;
+    }
   }
   
   /** Must be called by each writer thread after it is finished writing.  The calling method must <i>not</i> be 
@@ -199,6 +222,30 @@ public class ReaderWriterLock {
     _wakeFrontGroupOfWaitQueue();
   }
   
+  /** @return the number of reads started on this lock (nested reads by the same thread included) */
+  public synchronized long getReadCount() { return _numReads; }
+  
+  /** @return the number of reads that had to wait for a writer on the waitQueue */
+  public synchronized long getQueuedReadCount() { return _numQueuedReads; }
+  
+  /** @return the total time in nanoseconds that readers spent waiting in startRead */
+  public synchronized long getReadWaitTime() { return _readWaitTime; }
+  
+  /** @return the number of writes started on this lock */
+  public synchronized long getWriteCount() { return _numWrites; }
+  
+  /** @return the number of writes that had to wait for readers or another writer on the waitQueue */
+  public synchronized long getQueuedWriteCount() { return _numQueuedWrites; }
+  
+  /** @return the total time in nanoseconds that writers spent waiting in startWrite */
+  public synchronized long getWriteWaitTime() { return _writeWaitTime; }
+  
+  /** Resets the read and write counts and wait times to zero. */
+  public synchronized void resetStatistics() {
+    _numReads = _numQueuedReads = _readWaitTime = 0;
+    _numWrites = _numQueuedWrites = _writeWaitTime = 0;
+  }
+  
   /** @return whether the current thread is already a reader. */
   private boolean _alreadyReading() {
     // If the current thread is active, and there are active readers, then
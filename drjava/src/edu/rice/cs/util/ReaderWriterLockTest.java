@@ -129,6 +129,39 @@ public class ReaderWriterLockTest extends DrJavaTestCase {
     w3.join();
   }
 
+  /** Ensures that reads and writes are counted and that a read blocked by a writer is reported as queued.
+   * @throws InterruptedException if execution is interrupted unexpectedly
+   */
+  public void testStatistics() throws InterruptedException {
+    _lock.startRead();
+    _lock.endRead();
+    assertEquals("one read", 1, _lock.getReadCount());
+    assertEquals("uncontended read", 0, _lock.getQueuedReadCount());
+    
+    _lock.startWrite();
+    Thread r = new Thread() {
+      public void run() {
+        _lock.startRead();
+        _lock.endRead();
+      }
+    };
+    r.start();
+    while (_lock.getQueuedReadCount() == 0) { Thread.sleep(10); }
+    Thread.sleep(50);
+    _lock.endWrite();
+    r.join();
+    
+    assertEquals("two reads", 2, _lock.getReadCount());
+    assertEquals("one queued read", 1, _lock.getQueuedReadCount());
+    assertTrue("queued read waited for the writer", _lock.getReadWaitTime() >= 50000000L);
+    assertEquals("one write", 1, _lock.getWriteCount());
+    assertEquals("uncontended write", 0, _lock.getQueuedWriteCount());
+    
+    _lock.resetStatistics();
+    assertEquals("reset reads", 0, _lock.getReadCount());
+    assertEquals("reset wait time", 0, _lock.getReadWaitTime());
+  }
+
   /** Ensure that a single thread can perform multiple reads.
    * @throws InterruptedException if execution is interrupted unexpectedly
    */
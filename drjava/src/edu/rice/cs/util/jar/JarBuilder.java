@@ -29,12 +29,14 @@
 package edu.rice.cs.util.jar;
 
 import java.io.*;
-import java.util.jar.JarEntry;
-import java.util.jar.JarOutputStream;
 import java.util.jar.Manifest;
 
+/** Builds a jar file from files and directories.  The entries are deflated in parallel by a {@link JarWriter}; when
+  * the builder is incremental, entries that are unchanged since the jar was last built are copied from it without 
+  * being recompressed.  The jar is only replaced when the builder is closed.
+  */
 public class JarBuilder {
-  private JarOutputStream _output;
+  private JarWriter _output;
   
   /** Creates a jar file without a manifest
    *
@@ -42,7 +44,7 @@ public class JarBuilder {
    * @throws IOException thrown if the file cannot be opened for writing
    */
   public JarBuilder(File file) throws IOException {
-    _output = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(file)), ManifestWriter.DEFAULT);
+    this(file, ManifestWriter.DEFAULT, false);
   }
   
   /** Creates an empty jar file with the given manifest
@@ -52,7 +54,7 @@ public class JarBuilder {
    * @throws IOException thrown if either file cannot be opened for reading
    */
   public JarBuilder(File jar, File manifest) throws IOException {
-    _output = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jar)), new Manifest(new FileInputStream(manifest)));
+    this(jar, _readManifest(manifest), false);
   }
   
   /** Creates an empty jar file with the given manifest
@@ -63,13 +65,34 @@ public class JarBuilder {
    */
   public JarBuilder(File jar, Manifest manifest) {
     try {
-      _output = new JarOutputStream(new BufferedOutputStream(new FileOutputStream(jar)), manifest);
+      _output = new JarWriter(jar, manifest, false);
     }
     catch (IOException e) {
       e.printStackTrace();
     }
   }
   
+  /** Creates an empty jar file with the given manifest
+   *
+   * @param jar         the file to write the jar to
+   * @param manifest    the manifest for the jar
+   * @param incremental true if unchanged entries should be copied from the existing jar instead of being recompressed
+   * @throws IOException thrown if the file cannot be opened for writing
+   * @see ManifestWriter
+   */
+  public JarBuilder(File jar, Manifest manifest, boolean incremental) throws IOException {
+    _output = new JarWriter(jar, manifest, incremental);
+  }
+  
+  private static Manifest _readManifest(File manifest) throws IOException {
+    InputStream in = new FileInputStream(manifest);
+    try { return new Manifest(in); }
+    finally { in.close(); }
+  }
+  
+  /** @return the number of entries that were copied from the previous jar without being recompressed */
+  public int getReusedCount() { return _output.getReusedCount(); }
+  
   /** Takes a parent name and a field name and returns the concatenation of them correctly
    *
    * @param parent The parent directory
@@ -85,7 +108,7 @@ public class JarBuilder {
     return parent + sep + name;
   }
   
-  /** Adds the file to the given path and name
+  /** Adds the file to the given path and name.  The jar being written is never added to itself.
    *
    * @param file     the file to be added
    * @param parent   the directory to the path in which the file is to be added
@@ -93,21 +116,8 @@ public class JarBuilder {
    * @throws IOException if an IO operation fails
    */
   public void addFile(File file, String parent, String fileName) throws IOException {
-    byte data[] = new byte[2048];
-    
-    FileInputStream fi = new FileInputStream(file.getAbsolutePath());
-    BufferedInputStream origin = new BufferedInputStream(fi, 2048);
-    
-    JarEntry entry = new JarEntry(makeName(parent, fileName));
-    _output.putNextEntry(entry);
-    
-    int count = origin.read(data, 0, 2048);
-    while (count != -1) {
-      _output.write(data, 0, count);
-      count = origin.read(data, 0, 2048);
-    }
-    
-    origin.close();
+    if (_output.isOutputFile(file)) return;
+    _output.addFile(file, makeName(parent, fileName));
   }
   
   /** Add the directory into the directory specified by parent
@@ -115,7 +125,7 @@ public class JarBuilder {
     * @param parent the path inside the jar that the directory should be added to
     */
   public void addDirectoryRecursive(File dir, String parent) {
-    addDirectoryRecursiveHelper(dir, parent, new byte[2048], new FileFilter() {
+    addDirectoryRecursiveHelper(dir, parent, new FileFilter() {
       public boolean accept(File pathname) { return true; }
     });
   }
@@ -126,38 +136,27 @@ public class JarBuilder {
     * @param filter the filter used to filter the files
     */
   public void addDirectoryRecursive(File dir, String parent, FileFilter filter) {
-    addDirectoryRecursiveHelper(dir, parent, new byte[2048], filter);
+    addDirectoryRecursiveHelper(dir, parent, filter);
   }
   
   /** Add the contents of a directory that match a filter to the archive
    * @param dir the directory to add
    * @param parent the directory to add into
-   * @param buffer a buffer that is 2048 bytes
    * @param filter the FileFilter to filter the files by
    * @return true on success, false on failure
    */
-  private boolean addDirectoryRecursiveHelper(File dir, String parent, byte[] buffer, FileFilter filter) {
+  private boolean addDirectoryRecursiveHelper(File dir, String parent, FileFilter filter) {
     try {
       File[] files = dir.listFiles(filter);
-      BufferedInputStream origin = null;
       
       if ( files == null ) // listFiles may return null if there's an IO error
         return true;
       for (int i = 0; i < files.length; i++) {
         if ( files[i].isFile() ) {
-          origin = new BufferedInputStream(new FileInputStream(files[i]), 2048);
-          
-          JarEntry entry = new JarEntry(makeName(parent, files[i].getName()));
-          _output.putNextEntry(entry);
-          
-          int count;
-          while((count = origin.read(buffer, 0, 2048)) != -1) {
-            _output.write(buffer, 0, count);
-          }
-          origin.close();
+          addFile(files[i], parent, files[i].getName());
         }
         else if ( files[i].isDirectory() ) {
-          addDirectoryRecursiveHelper(files[i], makeName(parent, files[i].getName()),buffer,filter);
+          addDirectoryRecursiveHelper(files[i], makeName(parent, files[i].getName()), filter);
         }
       }
     } catch(Exception e) {
@@ -173,9 +172,8 @@ public class JarBuilder {
    * @return Returns true on success, false on failure
    */
   public boolean makeDirectory(String parent, String dirName) {
-    JarEntry entry = new JarEntry(makeName(parent, dirName));
     try {
-      _output.putNextEntry(entry);
+      _output.addEmpty(makeName(parent, dirName));
     }
     catch (IOException e) {
       return false;
@@ -183,11 +181,10 @@ public class JarBuilder {
     return true;
   }
   
-  /** Close writing on the jar file
+  /** Close writing on the jar file, replacing the target file with the new jar
    * @throws IOException if an IO operation fails
    */
   public void close() throws IOException {
-    _output.flush();
     _output.close();
   }
 }
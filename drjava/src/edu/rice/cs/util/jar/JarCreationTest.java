@@ -215,6 +215,99 @@ public class JarCreationTest extends DrJavaTestCase {
     }
   }
 
+  /** Tests that rebuilding a jar incrementally copies unchanged entries and recompresses changed ones, and that
+    * the result can be read by both JarFile and JarInputStream.
+    * @throws IOException if an IO operation fails
+    */
+  public void testIncrementalJar() throws IOException {
+    File dir = edu.rice.cs.plt.io.IOUtil.createAndMarkTempDirectory("jartest", "");
+    File sub = new File(dir, "sub");
+    sub.mkdir();
+    StringBuilder text = new StringBuilder();
+    for (int i = 0; i < 2000; i++) { text.append("line ").append(i).append('\n'); }
+    File[] files = new File[] { new File(dir, "A.class"), new File(dir, "B.txt"), new File(sub, "C.class"),
+                                new File(sub, "empty") };
+    String[] contents = new String[] { text.toString(), "short", text.toString() + "C", "" };
+    for (int i = 0; i < files.length; i++) { edu.rice.cs.plt.io.IOUtil.writeStringToFile(files[i], contents[i]); }
+    // one file large enough to be deflated while it is written
+    byte[] big = new byte[JarWriter.STREAMING_THRESHOLD + 1000];
+    for (int i = 0; i < big.length; i++) { big[i] = (byte) (i % 251); }
+    File bigFile = new File(dir, "big.bin");
+    FileOutputStream bigOut = new FileOutputStream(bigFile);
+    bigOut.write(big);
+    bigOut.close();
+    
+    File f = new File(dir, "out.jar");
+    JarBuilder jb = new JarBuilder(f, ManifestWriter.DEFAULT, true);
+    jb.addDirectoryRecursive(dir, "");  // must not add out.jar or its temporary file to itself
+    jb.close();
+    assertEquals("nothing to reuse in a new jar", 0, jb.getReusedCount());
+    _checkContents(f, new String[] { "A.class", "B.txt", "sub/C.class", "sub/empty" }, contents, bigFile);
+    
+    jb = new JarBuilder(f, ManifestWriter.DEFAULT, true);
+    jb.addDirectoryRecursive(dir, "");
+    jb.close();
+    assertEquals("all files reused", 5, jb.getReusedCount());
+    _checkContents(f, new String[] { "A.class", "B.txt", "sub/C.class", "sub/empty" }, contents, bigFile);
+    
+    // same content with a new modification time is recognized by its CRC; changed content is recompressed
+    assertTrue(files[0].setLastModified(files[0].lastModified() - 10000));
+    contents[2] = text.toString() + "D";
+    edu.rice.cs.plt.io.IOUtil.writeStringToFile(files[2], contents[2]);
+    assertTrue(files[2].setLastModified(files[2].lastModified() - 20000));
+    jb = new JarBuilder(f, ManifestWriter.DEFAULT, true);
+    jb.addDirectoryRecursive(dir, "");
+    jb.close();
+    assertEquals("changed file recompressed", 4, jb.getReusedCount());
+    _checkContents(f, new String[] { "A.class", "B.txt", "sub/C.class", "sub/empty" }, contents, bigFile);
+    
+    jb = new JarBuilder(f, ManifestWriter.DEFAULT, false);
+    jb.addDirectoryRecursive(dir, "");
+    jb.close();
+    assertEquals("nothing reused in a full build", 0, jb.getReusedCount());
+    _checkContents(f, new String[] { "A.class", "B.txt", "sub/C.class", "sub/empty" }, contents, bigFile);
+  }
+  
+  /** Tests that a jar whose name is shorter than the minimum prefix of a temporary file can be written.
+    * @throws IOException if an IO operation fails
+    */
+  public void testShortJarName() throws IOException {
+    File dir = edu.rice.cs.plt.io.IOUtil.createAndMarkTempDirectory("jartest", "");
+    try {
+      File f = new File(dir, "j");
+      JarWriter w = new JarWriter(f, ManifestWriter.DEFAULT, false);
+      w.addBytes("a.txt", "contents".getBytes("ISO-8859-1"));
+      w.close();
+      Set<String> names = new TreeSet<String>(Arrays.asList("a.txt"));
+      testArchive(f, names);
+      assertEquals("only the jar is left", 1, dir.listFiles().length);
+    }
+    finally { edu.rice.cs.plt.io.IOUtil.deleteRecursively(dir); }
+  }
+  
+  /** Checks the names and contents of the entries of a jar written by testIncrementalJar. */
+  private void _checkContents(File jar, String[] names, String[] contents, File bigFile) throws IOException {
+    java.util.jar.JarFile jf = new java.util.jar.JarFile(jar);
+    try {
+      assertNotNull("manifest", jf.getManifest());
+      for (int i = 0; i < names.length; i++) {
+        JarEntry e = jf.getJarEntry(names[i]);
+        assertNotNull(names[i] + " in jar", e);
+        String actual = new String(edu.rice.cs.plt.io.IOUtil.toByteArray(jf.getInputStream(e)), "ISO-8859-1");
+        assertEquals("contents of " + names[i], contents[i], actual);
+      }
+      JarEntry e = jf.getJarEntry("big.bin");
+      assertTrue("contents of big.bin", Arrays.equals(edu.rice.cs.plt.io.IOUtil.toByteArray(bigFile),
+                                                      edu.rice.cs.plt.io.IOUtil.toByteArray(jf.getInputStream(e))));
+      assertEquals("number of entries", names.length + 2, jf.size());
+    }
+    finally { jf.close(); }
+    
+    Set<String> all = new TreeSet<String>(Arrays.asList(names));
+    all.add("big.bin");
+    testArchive(jar, all);
+  }
+
   /** Check that all files in an a Set are in the jar file
    * @param jar the jar file to check
    * @param fileNames the set of the names of files
@@ -0,0 +1,629 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+package edu.rice.cs.util.jar;
+
+import java.io.*;
+import java.util.Calendar;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.*;
+import java.util.jar.JarFile;
+import java.util.jar.Manifest;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.ZipException;
+
+import edu.rice.cs.plt.io.IOUtil;
+
+/** Writes a jar file whose entries are deflated in parallel and written in the order in which they were added.
+  * Reading and deflating a file is done by a pool with a thread per processor; the calling thread writes every entry
+  * that has been finished, in order, each time an entry is added, so that the data held by pending entries stays
+  * near {@link #MAX_PENDING_BYTES}.  Files larger than {@link #STREAMING_THRESHOLD} are deflated while they are being
+  * written instead.
+  * <p>
+  * In incremental mode, the jar that is being replaced is used as a manifest of the previous build: an entry whose
+  * file has the same size and modification time as recorded in the previous jar, or the same size and CRC, is copied
+  * from the previous jar without being recompressed.  The exact modification time of each file is recorded in an extra
+  * field of the central directory, so that the next build can skip reading unchanged files altogether.
+  * <p>
+  * The jar is written to a temporary file next to the target, which replaces the target when the writer is closed.
+  * ZIP64 is not supported; jars with more than 65535 entries or larger than 4 GB cannot be written.
+  * @version $Id$
+  */
+public class JarWriter {
+  /** Files larger than this number of bytes are deflated by the writing thread while they are written. */
+  public static final int STREAMING_THRESHOLD = 8 << 20;
+  
+  /** The approximate number of bytes that entries waiting to be written may hold before the calling thread waits. */
+  static final long MAX_PENDING_BYTES = 64 << 20;
+  
+  /** The number of seconds an idle worker thread is kept alive; a writer that is never closed thus leaks no threads. */
+  private static final int WORKER_KEEP_ALIVE = 1;
+  
+  private static final int LOCAL_HEADER = 0x04034b50;
+  private static final int CENTRAL_HEADER = 0x02014b50;
+  private static final int END_HEADER = 0x06054b50;
+  private static final int DATA_DESCRIPTOR = 0x08074b50;
+  
+  /** ID of the extra field holding the exact modification time, in milliseconds, of the file an entry was made from. */
+  static final int MTIME_EXTRA = 0x4a44;
+  
+  /** General purpose flags: the size and CRC follow the data; the name is encoded in UTF-8. */
+  private static final int FLAG_DATA_DESCRIPTOR = 0x0008;
+  private static final int FLAG_UTF8 = 0x0800;
+  
+  private static final int STORED = 0;
+  private static final int DEFLATED = 8;
+  
+  /** Deflaters used by the worker threads, reset after each entry. */
+  private static final ThreadLocal<Deflater> DEFLATER = new ThreadLocal<Deflater>() {
+    protected Deflater initialValue() { return new Deflater(Deflater.DEFAULT_COMPRESSION, true); }
+  };
+  
+  private final File _target;
+  private final File _tempFile;
+  private final OutputStream _out;
+  /** The number of bytes written to _out. */
+  private long _position = 0;
+  /** The jar being replaced in incremental mode, or null. */
+  private final PreviousJar _previous;
+  private final ThreadPoolExecutor _pool;
+  /** Entries that have been added but not yet written, in the order in which they were added. */
+  private final LinkedList<PendingEntry> _pending = new LinkedList<PendingEntry>();
+  /** The sum of the costs of the pending entries. */
+  private long _pendingBytes = 0;
+  /** Entries that have been written, for the central directory. */
+  private final List<Entry> _written = new LinkedList<Entry>();
+  private final Set<String> _names = new HashSet<String>();
+  private final byte[] _buffer = new byte[65536];
+  private int _reusedCount = 0;
+  private boolean _closed = false;
+  
+  /** Creates a writer for the given jar.  If the manifest is not null, it is written as the first entry.
+    * @param jar the file to write the jar to
+    * @param manifest the manifest for the jar, or null
+    * @param incremental true if unchanged entries should be copied from the jar that is being replaced
+    * @throws IOException if the temporary file cannot be created
+    */
+  public JarWriter(File jar, Manifest manifest, boolean incremental) throws IOException {
+    _target = jar.getAbsoluteFile();
+    File dir = _target.getParentFile();
+    String prefix = _target.getName() + ".";
+    while (prefix.length() < 3) prefix += "_";  // createTempFile requires a prefix of at least three characters
+    _tempFile = File.createTempFile(prefix, ".tmp", dir);
+    _tempFile.deleteOnExit();
+    _out = new BufferedOutputStream(new FileOutputStream(_tempFile), 65536);
+    PreviousJar previous = null;
+    if (incremental && _target.isFile() && _target.length() > 0) {
+      try { previous = new PreviousJar(_target); }
+      catch (IOException e) { previous = null; }  // not a readable jar; build from scratch
+    }
+    _previous = previous;
+    
+    int threads = Runtime.getRuntime().availableProcessors();
+    _pool = new ThreadPoolExecutor(threads, threads, WORKER_KEEP_ALIVE, TimeUnit.SECONDS,
+                                   new LinkedBlockingQueue<Runnable>(), new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "JarWriter deflater");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    _pool.allowCoreThreadTimeOut(true);
+    
+    if (manifest != null) {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      manifest.write(bytes);
+      addBytes(JarFile.MANIFEST_NAME, bytes.toByteArray());
+    }
+  }
+  
+  /** @return true if the file is the jar being written or its temporary file, which must not be added to the jar */
+  public boolean isOutputFile(File f) {
+    File abs = f.getAbsoluteFile();
+    return abs.equals(_target) || abs.equals(_tempFile);
+  }
+  
+  /** @return the number of entries that were copied from the previous jar without being recompressed */
+  public int getReusedCount() { return _reusedCount; }
+  
+  /** Adds a file to the jar.
+    * @param file the file to add
+    * @param name the name of the entry in the jar
+    * @throws FileNotFoundException if the file does not exist
+    * @throws ZipException if an entry with the same name has already been added
+    * @throws IOException if a previously added entry could not be written
+    */
+  public void addFile(final File file, final String name) throws IOException {
+    if (! file.isFile()) throw new FileNotFoundException(file.getPath());
+    _checkName(name);
+    long size = Math.min(file.length(), STREAMING_THRESHOLD);
+    _submit(new Callable<Entry>() {
+      public Entry call() throws IOException { return _prepareFile(file, name); }
+    }, size);
+  }
+  
+  /** Adds an entry with the given contents to the jar.
+    * @param name the name of the entry in the jar
+    * @param data the contents of the entry; must not be modified afterwards
+    * @throws ZipException if an entry with the same name has already been added
+    * @throws IOException if a previously added entry could not be written
+    */
+  public void addBytes(final String name, final byte[] data) throws IOException {
+    _checkName(name);
+    _submit(new Callable<Entry>() {
+      public Entry call() { return _prepareBytes(new Entry(name, System.currentTimeMillis(), -1), data); }
+    }, data.length);
+  }
+  
+  /** Adds an empty entry, such as a directory entry, to the jar.
+    * @param name the name of the entry in the jar
+    * @throws ZipException if an entry with the same name has already been added
+    * @throws IOException if a previously added entry could not be written
+    */
+  public void addEmpty(String name) throws IOException {
+    _checkName(name);
+    final Entry e = new Entry(name, System.currentTimeMillis(), -1);
+    e.method = STORED;
+    e.data = new byte[0];
+    PendingEntry done = new PendingEntry(new Callable<Entry>() { public Entry call() { return e; } }, 0);
+    done.run();
+    _pending.add(done);
+    _writeFinished(false);
+  }
+  
+  /** Writes the remaining entries and the central directory, and replaces the target with the new jar.
+    * @throws IOException if an entry could not be read or written, or the target could not be replaced
+    */
+  public void close() throws IOException {
+    if (_closed) return;
+    _closed = true;
+    boolean success = false;
+    try {
+      _writeFinished(true);
+      _writeCentralDirectory();
+      _out.close();
+      success = true;
+    }
+    finally {
+      _pool.shutdownNow();
+      if (_previous != null) _previous.close();
+      if (! success) {
+        try { _out.close(); } catch (IOException e) { /* already failing */ }
+        _tempFile.delete();
+      }
+    }
+    if (! _tempFile.renameTo(_target)) {
+      // renameTo does not replace an existing file on all platforms
+      _target.delete();
+      if (! _tempFile.renameTo(_target)) {
+        _tempFile.delete();
+        throw new IOException("Could not replace " + _target);
+      }
+    }
+  }
+  
+  private void _checkName(String name) throws ZipException {
+    if (_closed) throw new IllegalStateException("JarWriter is closed");
+    if (! _names.add(name)) throw new ZipException("duplicate entry: " + name);
+  }
+  
+  /** Queues a task that prepares an entry.
+    * @param size the number of bytes the task reads into memory
+    */
+  private void _submit(Callable<Entry> task, long size) throws IOException {
+    PendingEntry p = new PendingEntry(task, PendingEntry.cost(size));
+    _pending.add(p);
+    _pendingBytes += p.cost;
+    _pool.execute(p);
+    _writeFinished(false);
+  }
+  
+  /** Writes the pending entries in order.
+    * @param all true to wait for all entries; false to write only those that are finished, waiting only while
+    *            the pending entries hold more than MAX_PENDING_BYTES
+    */
+  private void _writeFinished(boolean all) throws IOException {
+    while (! _pending.isEmpty() && (all || _pendingBytes > MAX_PENDING_BYTES || _pending.getFirst().isDone())) {
+      PendingEntry next = _pending.removeFirst();
+      _pendingBytes -= next.cost;
+      try { _writeEntry(next.get()); }
+      catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("interrupted while writing " + _target);
+      }
+      catch (ExecutionException e) {
+        Throwable cause = e.getCause();
+        if (cause instanceof IOException) throw (IOException) cause;
+        if (cause instanceof RuntimeException) throw (RuntimeException) cause;
+        if (cause instanceof Error) throw (Error) cause;
+        throw new IOException(cause.toString());
+      }
+    }
+  }
+  
+  /** Determines how the file is to be written.  Runs on a worker thread. */
+  private Entry _prepareFile(File file, String name) throws IOException {
+    long size = file.length();
+    long mtime = file.lastModified();
+    Entry e = new Entry(name, mtime, mtime);
+    PreviousEntry old = (_previous == null) ? null : _previous.get(name);
+    if (old != null && old.usize == size) {
+      if (old.mtime == mtime) {
+        e.reuse(old);
+        return e;
+      }
+      if (size <= STREAMING_THRESHOLD) {
+        byte[] data = IOUtil.toByteArray(file);
+        if (data.length == size && _crc(data) == old.crc) {
+          e.reuse(old);
+          return e;
+        }
+        return _prepareBytes(e, data);
+      }
+    }
+    if (size > STREAMING_THRESHOLD) {
+      e.file = file;
+      return e;
+    }
+    return _prepareBytes(e, IOUtil.toByteArray(file));
+  }
+  
+  /** Computes the CRC of the data and deflates it, storing it uncompressed if deflating does not make it smaller. */
+  private static Entry _prepareBytes(Entry e, byte[] data) {
+    e.crc = _crc(data);
+    e.usize = data.length;
+    Deflater d = DEFLATER.get();
+    d.reset();
+    d.setInput(data);
+    d.finish();
+    byte[] out = new byte[Math.max(64, data.length + data.length / 16 + 64)];
+    int len = 0;
+    while (! d.finished()) {
+      if (len == out.length) {
+        byte[] bigger = new byte[out.length * 2];
+        System.arraycopy(out, 0, bigger, 0, len);
+        out = bigger;
+      }
+      len += d.deflate(out, len, out.length - len);
+    }
+    if (len < data.length) {
+      e.method = DEFLATED;
+      e.data = out;
+      e.csize = len;
+    }
+    else {
+      e.method = STORED;
+      e.data = data;
+      e.csize = data.length;
+    }
+    return e;
+  }
+  
+  private static long _crc(byte[] data) {
+    CRC32 crc = new CRC32();
+    crc.update(data, 0, data.length);
+    return crc.getValue();
+  }
+  
+  /** Writes the local header and data of an entry.  Runs on the calling thread. */
+  private void _writeEntry(Entry e) throws IOException {
+    e.offset = _position;
+    if (e.file != null) {
+      _writeStreamed(e);
+    }
+    else if (e.previous != null) {
+      _writeLocalHeader(e);
+      _previous.copy(e.previous, this);
+      ++_reusedCount;
+    }
+    else {
+      _writeLocalHeader(e);
+      _write(e.data, 0, (int) e.csize);
+      e.data = null;
+    }
+    _written.add(e);
+  }
+  
+  /** Deflates a large file while writing it, followed by a data descriptor with its size and CRC. */
+  private void _writeStreamed(Entry e) throws IOException {
+    e.method = DEFLATED;
+    e.flags |= FLAG_DATA_DESCRIPTOR;
+    _writeLocalHeader(e);
+    CRC32 crc = new CRC32();
+    Deflater d = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    byte[] out = new byte[65536];
+    long usize = 0;
+    long start = _position;
+    InputStream in = new FileInputStream(e.file);
+    try {
+      int count;
+      while ((count = in.read(_buffer)) != -1) {
+        crc.update(_buffer, 0, count);
+        usize += count;
+        d.setInput(_buffer, 0, count);
+        while (! d.needsInput()) {
+          int len = d.deflate(out);
+          _write(out, 0, len);
+        }
+      }
+      d.finish();
+      while (! d.finished()) {
+        int len = d.deflate(out);
+        _write(out, 0, len);
+      }
+    }
+    finally {
+      in.close();
+      d.end();
+    }
+    e.crc = crc.getValue();
+    e.usize = usize;
+    e.csize = _position - start;
+    e.file = null;
+    _writeInt(DATA_DESCRIPTOR);
+    _writeInt(e.crc);
+    _writeInt(e.csize);
+    _writeInt(e.usize);
+  }
+  
+  private void _writeLocalHeader(Entry e) throws IOException {
+    byte[] name = e.name.getBytes("UTF-8");
+    boolean descriptor = (e.flags & FLAG_DATA_DESCRIPTOR) != 0;
+    _writeInt(LOCAL_HEADER);
+    _writeShort(e.method == DEFLATED ? 20 : 10);
+    _writeShort(e.flags);
+    _writeShort(e.method);
+    _writeInt(e.dosTime);
+    _writeInt(descriptor ? 0 : e.crc);
+    _writeInt(descriptor ? 0 : e.csize);
+    _writeInt(descriptor ? 0 : e.usize);
+    _writeShort(name.length);
+    _writeShort(0);
+    _write(name, 0, name.length);
+  }
+  
+  private void _writeCentralDirectory() throws IOException {
+    if (_written.size() > 0xffff) throw new IOException("too many entries for a jar without ZIP64: " + _target);
+    long start = _position;
+    for (Entry e : _written) {
+      byte[] name = e.name.getBytes("UTF-8");
+      _writeInt(CENTRAL_HEADER);
+      _writeShort(20);
+      _writeShort(e.method == DEFLATED ? 20 : 10);
+      _writeShort(e.flags);
+      _writeShort(e.method);
+      _writeInt(e.dosTime);
+      _writeInt(e.crc);
+      _writeInt(e.csize);
+      _writeInt(e.usize);
+      _writeShort(name.length);
+      _writeShort(e.mtime >= 0 ? 12 : 0);
+      _writeShort(0);  // comment length
+      _writeShort(0);  // disk number
+      _writeShort(0);  // internal attributes
+      _writeInt(0);    // external attributes
+      _writeInt(e.offset);
+      _write(name, 0, name.length);
+      if (e.mtime >= 0) {
+        _writeShort(MTIME_EXTRA);
+        _writeShort(8);
+        _writeInt(e.mtime & 0xffffffffL);
+        _writeInt(e.mtime >>> 32);
+      }
+    }
+    long size = _position - start;
+    _writeInt(END_HEADER);
+    _writeShort(0);
+    _writeShort(0);
+    _writeShort(_written.size());
+    _writeShort(_written.size());
+    _writeInt(size);
+    _writeInt(start);
+    _writeShort(0);
+  }
+  
+  void _write(byte[] b, int off, int len) throws IOException {
+    _out.write(b, off, len);
+    _position += len;
+  }
+  
+  private void _writeShort(int v) throws IOException {
+    _out.write(v & 0xff);
+    _out.write((v >>> 8) & 0xff);
+    _position += 2;
+  }
+  
+  private void _writeInt(long v) throws IOException {
+    if (v > 0xffffffffL || v < 0) throw new IOException("jar too large without ZIP64: " + _target);
+    _out.write((int) (v & 0xff));
+    _out.write((int) ((v >>> 8) & 0xff));
+    _out.write((int) ((v >>> 16) & 0xff));
+    _out.write((int) ((v >>> 24) & 0xff));
+    _position += 4;
+  }
+  
+  /** Converts a time in milliseconds to the MS-DOS date and time used by ZIP files, date in the upper 16 bits. */
+  static long _dosTime(long millis) {
+    Calendar c = Calendar.getInstance();
+    c.setTimeInMillis(millis);
+    long year = c.get(Calendar.YEAR);
+    if (year < 1980) return (1 << 21) | (1 << 16);  // 1980-01-01 00:00
+    return ((year - 1980) << 25) | ((c.get(Calendar.MONTH) + 1) << 21) | (c.get(Calendar.DAY_OF_MONTH) << 16) |
+      (c.get(Calendar.HOUR_OF_DAY) << 11) | (c.get(Calendar.MINUTE) << 5) | (c.get(Calendar.SECOND) >> 1);
+  }
+  
+  /** A queued entry together with an estimate of the memory it holds until it is written. */
+  private static final class PendingEntry extends FutureTask<Entry> {
+    final long cost;
+    
+    PendingEntry(Callable<Entry> task, long cost) {
+      super(task);
+      this.cost = cost;
+    }
+    
+    /** @return the memory needed to prepare size bytes: the input plus a deflate buffer of about the same size */
+    static long cost(long size) { return 2 * size + size / 16 + 128; }
+  }
+  
+  /** An entry of the jar being written. */
+  private static final class Entry {
+    final String name;
+    /** The exact modification time of the file, or -1 if the entry was not made from a file. */
+    final long mtime;
+    final long dosTime;
+    int flags = FLAG_UTF8;
+    int method;
+    long crc;
+    long csize;
+    long usize;
+    long offset;
+    /** The compressed (or stored) data, if it has been prepared. */
+    byte[] data;
+    /** The entry of the previous jar whose data is to be copied. */
+    PreviousEntry previous;
+    /** The file to deflate while writing. */
+    File file;
+    
+    Entry(String name, long time, long mtime) {
+      this.name = name;
+      this.mtime = mtime;
+      this.dosTime = _dosTime(time);
+    }
+    
+    void reuse(PreviousEntry old) {
+      previous = old;
+      method = old.method;
+      crc = old.crc;
+      csize = old.csize;
+      usize = old.usize;
+    }
+  }
+  
+  /** An entry of the jar being replaced, as described by its central directory. */
+  private static final class PreviousEntry {
+    int method;
+    long crc;
+    long csize;
+    long usize;
+    long offset;
+    /** The exact modification time recorded in the MTIME_EXTRA field, or -1. */
+    long mtime = -1;
+  }
+  
+  /** The central directory of the jar being replaced, and access to its raw entry data. */
+  private static final class PreviousJar {
+    private final RandomAccessFile _file;
+    private final Map<String, PreviousEntry> _entries = new HashMap<String, PreviousEntry>();
+    
+    PreviousJar(File jar) throws IOException {
+      _file = new RandomAccessFile(jar, "r");
+      try { _readCentralDirectory(); }
+      catch (IOException e) {
+        _file.close();
+        throw e;
+      }
+    }
+    
+    /** Called by worker threads; the map is not modified after construction. */
+    PreviousEntry get(String name) { return _entries.get(name); }
+    
+    private void _readCentralDirectory() throws IOException {
+      long length = _file.length();
+      int tailLength = (int) Math.min(length, 0xffff + 22);
+      byte[] tail = new byte[tailLength];
+      _file.seek(length - tailLength);
+      _file.readFully(tail);
+      int end = -1;
+      for (int i = tailLength - 22; i >= 0; --i) {
+        if (_int(tail, i) == END_HEADER) { end = i; break; }
+      }
+      if (end < 0) throw new ZipException("no central directory");
+      int count = _short(tail, end + 10);
+      long size = _int(tail, end + 12);
+      long start = _int(tail, end + 16);
+      if (start + size > length) throw new ZipException("invalid central directory");
+      byte[] cd = new byte[(int) size];
+      _file.seek(start);
+      _file.readFully(cd);
+      int pos = 0;
+      for (int i = 0; i < count; ++i) {
+        if (pos + 46 > cd.length || _int(cd, pos) != CENTRAL_HEADER) throw new ZipException("invalid central directory");
+        int flags = _short(cd, pos + 8);
+        int nameLength = _short(cd, pos + 28);
+        int extraLength = _short(cd, pos + 30);
+        int commentLength = _short(cd, pos + 32);
+        PreviousEntry e = new PreviousEntry();
+        e.method = _short(cd, pos + 10);
+        e.crc = _int(cd, pos + 16);
+        e.csize = _int(cd, pos + 20);
+        e.usize = _int(cd, pos + 24);
+        e.offset = _int(cd, pos + 42);
+        String name = new String(cd, pos + 46, nameLength, "UTF-8");
+        int extra = pos + 46 + nameLength;
+        int extraEnd = extra + extraLength;
+        while (extra + 4 <= extraEnd) {
+          int id = _short(cd, extra);
+          int len = _short(cd, extra + 2);
+          if (id == MTIME_EXTRA && len == 8) e.mtime = _int(cd, extra + 4) | (_int(cd, extra + 8) << 32);
+          extra += 4 + len;
+        }
+        // only plain stored or deflated entries can be copied
+        if ((flags & 0x0001) == 0 && (e.method == STORED || e.method == DEFLATED)) _entries.put(name, e);
+        pos = extraEnd + commentLength;
+      }
+    }
+    
+    /** Copies the raw data of an entry to the writer.  Called by the writing thread only. */
+    void copy(PreviousEntry e, JarWriter w) throws IOException {
+      byte[] header = new byte[30];
+      _file.seek(e.offset);
+      _file.readFully(header);
+      if (_int(header, 0) != LOCAL_HEADER) throw new ZipException("invalid local header in previous jar");
+      _file.seek(e.offset + 30 + _short(header, 26) + _short(header, 28));
+      long remaining = e.csize;
+      while (remaining > 0) {
+        int count = (int) Math.min(remaining, w._buffer.length);
+        _file.readFully(w._buffer, 0, count);
+        w._write(w._buffer, 0, count);
+        remaining -= count;
+      }
+    }
+    
+    void close() throws IOException { _file.close(); }
+    
+    private static int _short(byte[] b, int i) { return (b[i] & 0xff) | ((b[i + 1] & 0xff) << 8); }
+    
+    private static long _int(byte[] b, int i) { return (_short(b, i) | ((long) _short(b, i + 2) << 16)); }
+  }
+}
@@ -40,6 +40,8 @@ import edu.rice.cs.plt.collect.CollectUtil;
 import edu.rice.cs.plt.concurrent.ConcurrentUtil;
 import edu.rice.cs.plt.concurrent.JVMBuilder;
 import edu.rice.cs.plt.concurrent.StateMonitor;
+import edu.rice.cs.plt.iter.IterUtil;
+import edu.rice.cs.plt.object.ObjectUtil;
 import edu.rice.cs.plt.lambda.LazyThunk;
 import edu.rice.cs.plt.lambda.Runnable1;
 import edu.rice.cs.plt.lambda.Thunk;
@@ -86,12 +88,30 @@ public abstract class AbstractMasterJVM implements MasterRemote {
     }
   }
   
+  /** A slave process started by this master, either as the active slave or as a standby. */
+  private static final class SlaveProcess {
+    /** The (untweaked) builder the process was started with. */
+    final JVMBuilder builder;
+    /** The remote stub, set once {@link SlaveRemote#start} has succeeded.  Guarded by _standbyLock. */
+    SlaveRemote remote = null;
+    /** Whether the process has been promoted to the active slave.  Guarded by _standbyLock. */
+    boolean active = false;
+    /** Whether the process has quit or failed to start.  Guarded by _standbyLock. */
+    boolean dead = false;
+    SlaveProcess(JVMBuilder b, boolean isActive) { builder = b; active = isActive; }
+  }
+  
   private final StateMonitor<State> _monitor;
   private final SlaveFactory _slaveFactory;
   private final LazyThunk<MasterRemote> _masterStub;
   /** The slave JVM remote stub (non-null when the state is RUNNING). */
   private volatile SlaveRemote _slave;
   
+  /** Guards the standby slave and the promotion of a standby to the active slave. */
+  private final Object _standbyLock = new Object();
+  /** A started (or starting) slave that has not yet been handed to the client, or {@code null}. */
+  private SlaveProcess _standby = null;
+  
   /** Set up the master JVM object.  Does not start a slave JVM.
    * @param slaveClassName The fully-qualified class name of the class to start up in the second JVM.  Must be a
    *                       subclass of {@link AbstractSlaveJVM}.
@@ -129,6 +149,13 @@ public abstract class AbstractMasterJVM implements MasterRemote {
     */
   protected abstract void handleSlaveWontStart(Exception e);
   
+  /** Callback for when a standby slave JVM has connected.  The standby is not yet the active slave; it becomes
+    * active (with a call to {@link #handleSlaveConnected}) if a later {@link #invokeSlave} can use it.  Does 
+    * nothing by default.
+    * @param standby link to the standby slave JVM
+    */
+  protected void handleStandbyConnected(SlaveRemote standby) { }
+  
   /** Creates and starts the slave JVM.  If the the slave is currently running, waits until it completes.
     * Also waits until the new process has started up and calls one of {@link #handleSlaveConnected}
     * or {@link #handleSlaveWontStart} before returning.
@@ -138,30 +165,20 @@ public abstract class AbstractMasterJVM implements MasterRemote {
   protected final void invokeSlave(JVMBuilder jvmBuilder) {
     transition(State.FRESH, State.STARTING);
 
-    // update jvmBuilder with any special properties
-    Map<String, String> props = ConcurrentUtil.getPropertiesAsMap("plt.", "drjava.", "edu.rice.cs.");
-    if (!props.containsKey("plt.log.working.dir") && // Set plt.log.working.dir, in case the working dir changes
-        (props.containsKey("plt.debug.log") || props.containsKey("plt.error.log") || 
-            props.containsKey("plt.log.factory"))) {
-      props.put("plt.log.working.dir", System.getProperty("user.dir", ""));
+    SlaveProcess standby = _takeStandby(jvmBuilder);
+    if (standby != null) {
+      debug.log("Using standby JVM");
+      handleSlaveConnected(standby.remote);
+      _slave = standby.remote;
+      _monitor.set(State.RUNNING);
+      return;
     }
-    // include props, but shadow them with any definitions in jvmBuilder
-    final JVMBuilder tweakedJVMBuilder = jvmBuilder.properties(CollectUtil.union(props, jvmBuilder.properties()));
-
+    
+    SlaveProcess process = new SlaveProcess(jvmBuilder, true);
     SlaveRemote newSlave = null;
     try {
       debug.logStart("invoking remote JVM process");
-      newSlave =
-        (SlaveRemote) ConcurrentUtil.exportInProcess(_slaveFactory, tweakedJVMBuilder, new Runnable1<Process>() {
-          public void run(Process p) {
-            debug.log("Remote JVM quit");
-            _monitor.set(State.FRESH);
-            //debug.log("Entered state " + State.FRESH);
-            debug.logStart("handleSlaveQuit");
-            handleSlaveQuit(p.exitValue());
-            debug.logEnd("handleSlaveQuit");
-          }
-        });
+      newSlave = _export(process);
       debug.logEnd("invoking remote JVM process");
     }
     catch (Exception e) {
@@ -190,6 +207,169 @@ public abstract class AbstractMasterJVM implements MasterRemote {
     }
   }
   
+  /** Starts a standby slave JVM that a later {@link #invokeSlave} with an equivalent JVMBuilder will use instead of
+    * starting a new process.  Any existing standby started with a different builder is quit.  Blocks until the
+    * standby has started and {@link #handleStandbyConnected} has been called, so clients will usually call this
+    * method in a background thread.  Failures are logged, not reported; the next {@code invokeSlave} then simply
+    * starts a new process.
+    * @param jvmBuilder  JVMBuilder to use in starting the standby process.
+    */
+  protected final void prepareStandby(JVMBuilder jvmBuilder) {
+    if (isDisposed()) { return; }
+    SlaveProcess process = new SlaveProcess(jvmBuilder, false);
+    SlaveProcess old;
+    synchronized(_standbyLock) {
+      old = _standby;
+      if (old != null && _sameProcess(old.builder, jvmBuilder)) { return; }
+      _standby = process;
+    }
+    if (old != null) { _discard(old); }
+    
+    SlaveRemote newSlave = null;
+    try {
+      debug.logStart("invoking standby JVM process");
+      newSlave = _export(process);
+      newSlave.start(_masterStub.value());
+      debug.logEnd("invoking standby JVM process");
+    }
+    catch (Exception e) {
+      debug.log(e);
+      debug.logEnd("invoking standby JVM process (failed)");
+      if (newSlave != null) { attemptQuit(newSlave); }
+      synchronized(_standbyLock) {
+        process.dead = true;
+        if (_standby == process) { _standby = null; }
+        _standbyLock.notifyAll();
+      }
+      return;
+    }
+    
+    handleStandbyConnected(newSlave);
+    boolean current;
+    synchronized(_standbyLock) {
+      process.remote = newSlave;
+      current = (_standby == process);
+      _standbyLock.notifyAll();
+    }
+    if (!current) { attemptQuit(newSlave); }  // discarded while starting
+  }
+  
+  /** Quits the standby slave JVM, if there is one. */
+  protected final void discardStandby() {
+    SlaveProcess old;
+    synchronized(_standbyLock) {
+      old = _standby;
+      _standby = null;
+    }
+    if (old != null) { _discard(old); }
+  }
+  
+  /** @return {@code true} iff there is a standby slave JVM (possibly still starting) that {@link #invokeSlave} would
+    *         use for the given builder
+    * @param jvmBuilder  JVMBuilder that would be passed to {@code invokeSlave}
+    */
+  protected final boolean hasStandby(JVMBuilder jvmBuilder) {
+    synchronized(_standbyLock) {
+      return _standby != null && !_standby.dead && _sameProcess(_standby.builder, jvmBuilder);
+    }
+  }
+  
+  /** Removes the standby from the standby slot and marks it active if it was started with an equivalent builder.
+    * If the standby is still starting, waits for it to finish.  A standby with a different builder is quit.
+    * @param jvmBuilder  JVMBuilder that the new active slave should have been started with
+    * @return the promoted standby, or {@code null} if no usable standby exists
+    */
+  private SlaveProcess _takeStandby(JVMBuilder jvmBuilder) {
+    SlaveProcess standby;
+    synchronized(_standbyLock) {
+      standby = _standby;
+      if (standby == null) { return null; }
+      if (_sameProcess(standby.builder, jvmBuilder)) {
+        try { while (standby.remote == null && !standby.dead && _standby == standby) { _standbyLock.wait(); } }
+        catch (InterruptedException e) { throw new UnexpectedException(e); }
+        if (standby.remote != null && !standby.dead && _standby == standby) {
+          _standby = null;
+          standby.active = true;
+          return standby;
+        }
+        return null;
+      }
+      _standby = null;
+    }
+    _discard(standby);
+    return null;
+  }
+  
+  /** Quits a process that has been removed from the standby slot.  If it is still starting, {@link #prepareStandby}
+    * will quit it once it has connected.
+    * @param process the process to quit
+    */
+  private void _discard(SlaveProcess process) {
+    SlaveRemote remote;
+    synchronized(_standbyLock) {
+      remote = process.dead ? null : process.remote;
+      _standbyLock.notifyAll();
+    }
+    if (remote != null) {
+      debug.log("Discarding standby JVM");
+      attemptQuit(remote);
+    }
+  }
+  
+  /** Starts the process and exports the slave, with a quit handler that distinguishes the active slave from a
+    * standby.
+    * @param process the process description; its builder is tweaked with any special properties before use
+    * @return the (not yet started) slave
+    * @throws Exception if the process could not be started or the slave could not be exported
+    */
+  private SlaveRemote _export(final SlaveProcess process) throws Exception {
+    // update jvmBuilder with any special properties
+    Map<String, String> props = ConcurrentUtil.getPropertiesAsMap("plt.", "drjava.", "edu.rice.cs.");
+    if (!props.containsKey("plt.log.working.dir") && // Set plt.log.working.dir, in case the working dir changes
+        (props.containsKey("plt.debug.log") || props.containsKey("plt.error.log") || 
+            props.containsKey("plt.log.factory"))) {
+      props.put("plt.log.working.dir", System.getProperty("user.dir", ""));
+    }
+    // include props, but shadow them with any definitions in jvmBuilder
+    JVMBuilder jvmBuilder = process.builder;
+    final JVMBuilder tweakedJVMBuilder = jvmBuilder.properties(CollectUtil.union(props, jvmBuilder.properties()));
+
+    return (SlaveRemote) ConcurrentUtil.exportInProcess(_slaveFactory, tweakedJVMBuilder, new Runnable1<Process>() {
+      public void run(Process p) {
+        boolean active;
+        synchronized(_standbyLock) {
+          process.dead = true;
+          active = process.active;
+          if (_standby == process) { _standby = null; }
+          _standbyLock.notifyAll();
+        }
+        if (!active) {
+          debug.log("Standby JVM quit");
+          return;
+        }
+        debug.log("Remote JVM quit");
+        _monitor.set(State.FRESH);
+        //debug.log("Entered state " + State.FRESH);
+        debug.logStart("handleSlaveQuit");
+        handleSlaveQuit(p.exitValue());
+        debug.logEnd("handleSlaveQuit");
+      }
+    });
+  }
+  
+  /** @return {@code true} iff the two builders start identical processes
+    * @param b1 the first builder
+    * @param b2 the second builder
+    */
+  private static boolean _sameProcess(JVMBuilder b1, JVMBuilder b2) {
+    return b1.javaCommand().equals(b2.javaCommand()) &&
+      IterUtil.isEqual(b1.jvmArguments(), b2.jvmArguments()) &&
+      IterUtil.isEqual(b1.classPath(), b2.classPath()) &&
+      ObjectUtil.equal(b1.directory(), b2.directory()) &&
+      b1.properties().equals(b2.properties()) &&
+      ObjectUtil.equal(b1.environment(), b2.environment());
+  }
+  
   /** Quits slave JVM.  If a slave is not currently started and running, blocks until that state is reached.
     * @throws IllegalStateException  If this object has been disposed.
     */
@@ -214,6 +394,7 @@ public abstract class AbstractMasterJVM implements MasterRemote {
    * quit; blocks until that occurs.  After an object has been disposed, it is no longer useful.
    */
   protected void dispose() {
+    discardStandby();
     transition(State.FRESH, State.DISPOSED);
     if (_masterStub.isResolved()) { 
       try { UnicastRemoteObject.unexportObject(this, true); }
@@ -82,6 +82,16 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
   /** The book object used for printing that represents several pages */
   protected volatile DrJavaBook _book;
   
+  /** Maximum number of characters kept in the document, or 0 for no limit.  See setScrollbackLimit. */
+  private volatile int _scrollbackLimit;
+  
+  /** Text trimmed from the top of the document; null until the document is first trimmed. */
+  private volatile ScrollbackSpill _spill;
+  
+  /** Number of characters paged in by pageInSpilledText that are still held at the top of the document.  While it is
+    * positive, the restored text is presumed to be in view and trimming is suspended (see _trimScrollback). */
+  private volatile int _pagedInChars;
+  
   /** Creates a new ConsoleDocument with the given embedded ConsoleDocumentInterface (a SwingDocument in native DrJava).
     * @param doc the embedded ConsoleDocumentInterface object
     */
@@ -91,6 +101,9 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
     _beep = new Runnable() { public void run() { } };
     _prompt = DEFAULT_CONSOLE_PROMPT;
     _promptPos = DEFAULT_CONSOLE_PROMPT.length();
+    _scrollbackLimit = 0;
+    _spill = null;
+    _pagedInChars = 0;
     _document.setHasPrompt(false);
     _document.setEditCondition(new ConsoleEditCondition()); // Prevent any edits before the prompt!
   }
@@ -145,8 +158,81 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
       forceRemoveText(0, _document.getLength());
       forceInsertText(0, banner, DEFAULT_STYLE);
       _promptPos = banner.length();
+      if (_spill != null) _spill.clear();
+      _pagedInChars = 0;
+    }
+    catch (EditDocumentException e) { throw new UnexpectedException(e); }
+  }
+  
+  /** @return the maximum number of characters kept in the document, or 0 if there is no limit */
+  public int getScrollbackLimit() { return _scrollbackLimit; }
+  
+  /** Limits the size of the document.  Once output makes the document longer than the limit, the oldest quarter of the
+    * limit (rounded to a line boundary) is moved in one step to a {@link ScrollbackSpill} on disk, from which it can be
+    * paged back in with {@link #pageInSpilledText}.  Text at or after the prompt is never trimmed.
+    * @param chars the maximum number of characters, or 0 for no limit
+    */
+  public void setScrollbackLimit(int chars) { _scrollbackLimit = Math.max(0, chars); }
+  
+  /** @return true iff text trimmed from the top of the document can be paged back in */
+  public boolean hasSpilledText() { return _spill != null && _spill.size() > 0; }
+  
+  /** Moves the most recently trimmed text back to the top of the document.  The document is not trimmed again until
+    * releasePagedInText is called, unless it grows to twice the scrollback limit.  Only runs in the event thread.
+    * @param maxChars the maximum number of characters to restore; the text restored starts at a line boundary if one
+    *        is found within that many characters
+    * @return the number of characters inserted at the start of the document
+    */
+  public int pageInSpilledText(int maxChars) {
+    if (! hasSpilledText()) return 0;
+    String text = _spill.pop(maxChars);
+    if (_spill.size() > 0) {
+      // push back the partial first line, so the restored text starts at a line boundary
+      int firstLine = text.indexOf('\n') + 1;
+      if (firstLine > 0 && firstLine < text.length()) {
+        _spill.push(text.substring(0, firstLine));
+        text = text.substring(firstLine);
+      }
+    }
+    try {
+      if (_document instanceof SwingDocument) ((SwingDocument) _document).shiftColoring(text.length());
+      _promptPos += text.length();
+      forceInsertText(0, text, DEFAULT_STYLE);
+      _pagedInChars += text.length();
     }
     catch (EditDocumentException e) { throw new UnexpectedException(e); }
+    return text.length();
+  }
+  
+  /** @return true iff text paged in by pageInSpilledText is protected from trimming */
+  public boolean hasPagedInText() { return _pagedInChars > 0; }
+  
+  /** Allows text paged in by pageInSpilledText to be trimmed again.  Called once that text is no longer in view. */
+  public void releasePagedInText() { _pagedInChars = 0; }
+  
+  /** Trims the top of the document if it is longer than the scrollback limit. */
+  private void _trimScrollback() {
+    int limit = _scrollbackLimit;
+    int len = _document.getLength();
+    if (limit <= 0 || len <= limit) return;
+    if (_pagedInChars > 0) {
+      // Restored text is in view; trim only to keep the document from growing without bound
+      if (len <= 2 * limit + _pagedInChars) return;
+      _pagedInChars = 0;
+    }
+    int end = Math.min(len - (limit - limit / 4), _getPositionBeforePrompt());
+    if (end <= 0) return;
+    String text = _document.getDocText(0, end);
+    int lineEnd = text.lastIndexOf('\n') + 1;
+    if (lineEnd > end / 2) {  // otherwise cut mid-line, so that trimming always frees a quarter of the limit
+      end = lineEnd;
+      text = text.substring(0, end);
+    }
+    if (_spill == null) _spill = new ScrollbackSpill();
+    _spill.push(text);
+    forceRemoveText(0, end);
+    _promptPos -= end;
+    if (_document instanceof SwingDocument) ((SwingDocument) _document).shiftColoring(- end);
   }
   
   /** Prints a prompt for a new input. */
@@ -208,6 +294,7 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
 //      System.err.println("_promptPos before update = " + _promptPos);
       _promptPos = _promptPos + text.length();
       forceInsertText(pos, text, style);
+      _trimScrollback();
     }
     catch (EditDocumentException ble) { throw new UnexpectedException(ble); }
   }
@@ -236,6 +323,7 @@ public class ConsoleDocument implements ConsoleDocumentInterface {
     int offs = _document.getLength();
     _addToStyleLists(offs, str, style);
     _document.insertText(offs, str, style);
+    _trimScrollback();
   }
   
   /** Inserts a string into the document at the given offset and  style, regardless of the edit condition.
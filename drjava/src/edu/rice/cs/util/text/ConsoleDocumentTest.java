@@ -117,4 +117,71 @@ public class ConsoleDocumentTest extends DrJavaTestCase {
     _doc.setPromptPos(_doc.getLength());
     assertEquals("promptPos is character position at end of document", _doc.getLength(), _doc.getPromptPos());
   }
+  
+  /** Tests that output beyond the scrollback limit is trimmed in bulk at line boundaries, that the prompt and current
+    * input survive, and that trimmed output can be paged back in.
+    */
+  public void testScrollbackLimit() {
+    Utilities.invokeAndWait(new Runnable() { 
+      public void run() {
+        _doc.setPrompt("> ");
+        _doc.setScrollbackLimit(1000);
+        _doc.insertPrompt();
+        _doc.insertText(_doc.getLength(), "typed", null);
+        StringBuilder all = new StringBuilder();
+        for (int i = 0; i < 2000; i++) {
+          String line = "line " + i + "\n";
+          all.append(line);
+          _doc.insertBeforeLastPrompt(line, ConsoleDocument.SYSTEM_OUT_STYLE);
+          assertTrue("document bounded", _doc.getLength() <= 1000 + line.length());
+        }
+        String text = _doc.getText();
+        assertTrue("prompt and input kept", text.endsWith("line 1999\n> typed"));
+        assertEquals("prompt position", text.length() - "typed".length(), _doc.getPromptPos());
+        assertEquals("current input", "typed", _doc.getCurrentInput());
+        assertTrue("trimmed at a line boundary", text.startsWith("line "));
+        assertTrue("spilled", _doc.hasSpilledText());
+        
+        int restored = _doc.pageInSpilledText(300);
+        assertTrue("restored some text", restored > 0 && restored <= 300);
+        assertTrue("restored at a line boundary", _doc.getText().startsWith("line "));
+        while (_doc.hasSpilledText()) _doc.pageInSpilledText(300);
+        assertEquals("all output restored", all.toString() + "> typed", _doc.getText());
+        assertEquals("current input after paging", "typed", _doc.getCurrentInput());
+        
+        _doc.reset("");
+        assertFalse("spill cleared on reset", _doc.hasSpilledText());
+      }
+    });
+  }
+  
+  /** Tests that text paged back in is not trimmed by the next output until it is released. */
+  public void testPagedInTextSurvivesOutput() {
+    Utilities.invokeAndWait(new Runnable() { 
+      public void run() {
+        _doc.setPrompt("> ");
+        _doc.setScrollbackLimit(1000);
+        _doc.insertPrompt();
+        for (int i = 0; i < 500; i++) _doc.insertBeforeLastPrompt("line " + i + "\n", ConsoleDocument.SYSTEM_OUT_STYLE);
+        assertTrue("spilled", _doc.hasSpilledText());
+        
+        int restored = _doc.pageInSpilledText(300);
+        assertTrue("restored some text", restored > 0);
+        String top = _doc.getText().substring(0, restored);
+        assertTrue("protected", _doc.hasPagedInText());
+        for (int i = 500; i < 600; i++) {
+          _doc.insertBeforeLastPrompt("line " + i + "\n", ConsoleDocument.SYSTEM_OUT_STYLE);
+        }
+        assertTrue("restored text kept while in view", _doc.getText().startsWith(top));
+        
+        _doc.releasePagedInText();
+        _doc.insertBeforeLastPrompt("line 600\n", ConsoleDocument.SYSTEM_OUT_STYLE);
+        assertFalse("restored text trimmed once released", _doc.getText().startsWith(top));
+        assertTrue("document bounded again", _doc.getLength() <= 1000);
+        
+        _doc.reset("");
+        assertFalse("nothing protected after reset", _doc.hasPagedInText());
+      }
+    });
+  }
 }
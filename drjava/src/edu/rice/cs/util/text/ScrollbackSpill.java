@@ -0,0 +1,173 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.util.text;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+
+import edu.rice.cs.plt.io.IOUtil;
+import edu.rice.cs.util.UnexpectedException;
+
+/** Disk storage for text trimmed from the top of a {@link ConsoleDocument}.  The text is kept in a fixed-size ring in a
+  * temporary file, so the memory used is constant however much is spilled.  Text is pushed and popped at the newest
+  * end, so the most recently trimmed text is the first to be paged back into the document; when the ring is full, the
+  * oldest text is discarded.  Characters are stored as UTF-16 code units, so any position can be addressed directly.
+  * Not thread safe; the owning document is only modified in the event thread.
+  * @version $Id$
+  */
+public class ScrollbackSpill {
+  
+  /** Default capacity, in characters. */
+  public static final int DEFAULT_CAPACITY = 1 << 24;
+  
+  private final long _capacity;
+  
+  /** Backing file, created when text is first pushed. */
+  private File _file;
+  private RandomAccessFile _data;
+  
+  /** Position (in characters, modulo the capacity) of the oldest stored character. */
+  private long _head;
+  /** Number of characters stored. */
+  private long _size;
+  /** Number of characters that have been discarded because the ring was full. */
+  private long _dropped;
+  
+  /** Creates a spill with the default capacity. */
+  public ScrollbackSpill() { this(DEFAULT_CAPACITY); }
+  
+  /** Creates a spill.
+    * @param capacity the maximum number of characters to keep
+    */
+  public ScrollbackSpill(int capacity) {
+    if (capacity <= 0) throw new IllegalArgumentException("capacity must be positive");
+    _capacity = capacity;
+    _head = 0;
+    _size = 0;
+    _dropped = 0;
+  }
+  
+  /** @return the number of characters stored */
+  public long size() { return _size; }
+  
+  /** @return the number of characters discarded because the ring was full */
+  public long dropped() { return _dropped; }
+  
+  /** Stores text at the newest end, discarding the oldest text if necessary.
+    * @param s the text to store
+    */
+  public void push(String s) {
+    int len = s.length();
+    int offset = 0;
+    if (len > _capacity) {
+      offset = (int) (len - _capacity);
+      _dropped += offset;
+    }
+    long overflow = _size + (len - offset) - _capacity;
+    if (overflow > 0) {
+      _head = (_head + overflow) % _capacity;
+      _size -= overflow;
+      _dropped += overflow;
+    }
+    try {
+      _open();
+      long pos = (_head + _size) % _capacity;
+      while (offset < len) {
+        int n = (int) Math.min(len - offset, _capacity - pos);
+        _write(pos, s, offset, n);
+        _size += n;
+        offset += n;
+        pos = 0;
+      }
+    }
+    catch (IOException e) { throw new UnexpectedException(e); }
+  }
+  
+  /** Removes and returns up to {@code maxChars} characters from the newest end.
+    * @param maxChars the maximum number of characters to return
+    * @return the newest stored text, in document order; empty if nothing is stored
+    */
+  public String pop(int maxChars) {
+    int n = (int) Math.min(maxChars, _size);
+    if (n <= 0) return "";
+    long start = (_head + _size - n) % _capacity;
+    char[] result = new char[n];
+    try {
+      int firstPart = (int) Math.min(n, _capacity - start);
+      _read(start, result, 0, firstPart);
+      if (firstPart < n) _read(0, result, firstPart, n - firstPart);
+    }
+    catch (IOException e) { throw new UnexpectedException(e); }
+    _size -= n;
+    return new String(result);
+  }
+  
+  /** Discards all stored text and deletes the backing file. */
+  public void clear() {
+    _head = 0;
+    _size = 0;
+    _dropped = 0;
+    if (_data != null) {
+      try { _data.close(); }
+      catch (IOException e) { /* ignore; the file is deleted on exit */ }
+      _file.delete();
+      _data = null;
+      _file = null;
+    }
+  }
+  
+  private void _open() throws IOException {
+    if (_data == null) {
+      _file = IOUtil.createAndMarkTempFile("drjava-scrollback", ".tmp");
+      _data = new RandomAccessFile(_file, "rw");
+    }
+  }
+  
+  private void _write(long pos, String s, int offset, int n) throws IOException {
+    byte[] bytes = new byte[2 * n];
+    for (int i = 0; i < n; i++) {
+      char c = s.charAt(offset + i);
+      bytes[2 * i] = (byte) (c >>> 8);
+      bytes[2 * i + 1] = (byte) c;
+    }
+    _data.seek(2 * pos);
+    _data.write(bytes);
+  }
+  
+  private void _read(long pos, char[] dest, int offset, int n) throws IOException {
+    byte[] bytes = new byte[2 * n];
+    _data.seek(2 * pos);
+    _data.readFully(bytes);
+    for (int i = 0; i < n; i++) {
+      dest[offset + i] = (char) (((bytes[2 * i] & 0xff) << 8) | (bytes[2 * i + 1] & 0xff));
+    }
+  }
+}
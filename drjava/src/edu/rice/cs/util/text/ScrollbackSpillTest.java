@@ -0,0 +1,66 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.util.text;
+
+import edu.rice.cs.drjava.DrJavaTestCase;
+
+/** Tests ScrollbackSpill.
+  * @version $Id$
+  */
+public class ScrollbackSpillTest extends DrJavaTestCase {
+  
+  public void testPushPop() {
+    ScrollbackSpill spill = new ScrollbackSpill(100);
+    assertEquals("", spill.pop(10));
+    spill.push("abc");
+    spill.push("defé中");
+    assertEquals(8, spill.size());
+    assertEquals("newest first", "fé中", spill.pop(3));
+    assertEquals("abcde", spill.pop(100));
+    assertEquals(0, spill.size());
+    spill.clear();
+  }
+  
+  public void testRingDropsOldest() {
+    ScrollbackSpill spill = new ScrollbackSpill(10);
+    spill.push("0123456");
+    spill.push("789ab");
+    assertEquals(10, spill.size());
+    assertEquals(2, spill.dropped());
+    assertEquals("ab", spill.pop(2));
+    spill.push("cdefghij");   // wraps around the end of the file
+    assertEquals(10, spill.size());
+    assertEquals("6789cdefghij".substring(2), spill.pop(10));
+    spill.push("0123456789abcdef");  // longer than the capacity
+    assertEquals("6789abcdef", spill.pop(20));
+    spill.clear();
+    assertEquals(0, spill.dropped());
+  }
+}
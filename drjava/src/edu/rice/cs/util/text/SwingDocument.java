@@ -89,6 +89,13 @@ public class SwingDocument extends DefaultStyledDocument implements EditDocument
    */
   public void addColoring(int start, int end, String style) { }
   
+  /** Moves the coloring styles by the given offset, dropping any that move entirely before the start of the document.
+    * Called when text is removed from or inserted at the start of the document.  Not supported in SwingDocument.  Only
+    * runs in event thread.
+    * @param delta the number of characters by which to move the styles
+    */
+  public void shiftColoring(int delta) { }
+  
   /** Gets the object which can determine whether an insert or remove edit should be applied, based on the inputs.
     * @return an Object to determine legality of inputs
     */
@@ -37,4 +37,14 @@ public class Options {
   public boolean prohibitBoxing() { return false; }
   /** Disallow unchecked casting conversion. */
   public boolean prohibitUncheckedCasts() { return true; }
+  /**
+   * Invoke reflection-backed methods and constructors through {@link edu.rice.cs.dynamicjava.symbol.DirectFunction}
+   * and access primitive arrays without {@link java.lang.reflect.Array} (false restores the fully generic path).
+   */
+  public boolean directInvocation() { return true; }
+  /**
+   * Compile loops to bytecode when they only use constructs supported by
+   * {@link edu.rice.cs.dynamicjava.interpreter.StatementCompiler} (false always uses the tree-walking evaluator).
+   */
+  public boolean compileLoops() { return true; }
 }
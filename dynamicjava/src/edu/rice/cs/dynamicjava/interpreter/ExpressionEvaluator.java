@@ -1,5 +1,6 @@
 package edu.rice.cs.dynamicjava.interpreter;
 
+import java.util.List;
 import java.lang.reflect.Array;
 import edu.rice.cs.plt.lambda.Lambda;
 import edu.rice.cs.plt.lambda.Lambda2;
@@ -12,6 +13,9 @@ import koala.dynamicjava.tree.visitor.*;
 
 import edu.rice.cs.dynamicjava.Options;
 import edu.rice.cs.dynamicjava.symbol.LocalVariable;
+import edu.rice.cs.dynamicjava.symbol.DJMethod;
+import edu.rice.cs.dynamicjava.symbol.DJConstructor;
+import edu.rice.cs.dynamicjava.symbol.DirectFunction;
 
 import static koala.dynamicjava.interpreter.NodeProperties.*;
 
@@ -85,14 +89,32 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
   }
   
   private Object handleMethodCall(MethodCall node, Object receiver) {
+    DJMethod m = getMethod(node);
+    if (m instanceof DirectFunction && _options.directInvocation()) {
+      Object[] args = argumentArray(node.getArguments());
+      try { return ((DirectFunction) m).evaluateDirect(receiver, args, _bindings, _options); }
+      catch (EvaluatorException e) { throw new WrappedException(e); }
+    }
+    
     Iterable<Object> args;
     if (node.getArguments() == null) { args = IterUtil.empty(); }
     else { args = IterUtil.mapSnapshot(node.getArguments(), this); }
 
-    try { return getMethod(node).evaluate(receiver, args, _bindings, _options); }
+    try { return m.evaluate(receiver, args, _bindings, _options); }
     catch (EvaluatorException e) { throw new WrappedException(e); }
   }
   
+  /** Evaluate the given arguments (which may be null) directly into an array, in order. */
+  private Object[] argumentArray(List<Expression> args) {
+    if (args == null || args.isEmpty()) { return NO_ARGS; }
+    Object[] result = new Object[args.size()];
+    int i = 0;
+    for (Expression arg : args) { result[i++] = value(arg); }
+    return result;
+  }
+  
+  private static final Object[] NO_ARGS = new Object[0];
+  
     
   @Override public Object visit(SimpleAllocation node) {
     return handleConstructor(node, null, node.getArguments());
@@ -113,7 +135,7 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
   /**
    * @param args  May be null, meaning there are no arguments
    */
-  private Object handleConstructor(Expression node, Expression outer, Iterable<Expression> args) {
+  private Object handleConstructor(Expression node, Expression outer, List<Expression> args) {
     Object outerVal;
     if (outer == null) {
       if (hasEnclosingThis(node)) { outerVal = _bindings.getThis(getEnclosingThis(node)); }
@@ -121,11 +143,18 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
     }
     else { outerVal = value(outer); }
     
+    DJConstructor k = getConstructor(node);
+    if (k instanceof DirectFunction && _options.directInvocation()) {
+      Object[] argVals = argumentArray(args);
+      try { return ((DirectFunction) k).evaluateDirect(outerVal, argVals, _bindings, _options); }
+      catch (EvaluatorException e) { throw new WrappedException(e); }
+    }
+    
     Iterable<Object> argVals;
     if (args == null) { argVals = IterUtil.empty(); }
     else { argVals = IterUtil.mapSnapshot(args, this); }
 
-    try { return getConstructor(node).evaluate(outerVal, argVals, _bindings, _options); }
+    try { return k.evaluate(outerVal, argVals, _bindings, _options); }
     catch (EvaluatorException e) { throw new WrappedException(e); }
   }
   
@@ -440,28 +469,32 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
     @Override public Box<Object> visit(ArrayAccess node) {
       final Object array = ExpressionEvaluator.this.value(node.getExpression());
       final Integer index = (Integer) ExpressionEvaluator.this.value(node.getCellNumber());
+      final boolean direct = _options.directInvocation();
       return new Box<Object>() {
         public Object value() {
-          try { return Array.get(array, index); }
+          try { return direct ? arrayGet(array, index) : Array.get(array, index); }
           catch (NullPointerException e) {
-            throw new WrappedException(new EvaluatorException(e, "java.lang.reflect.Array.get"));
+            throw new WrappedException(new EvaluatorException(e, ARRAY_GET_EXTRA_STACK));
           }
           catch (ArrayIndexOutOfBoundsException e) {
-            throw new WrappedException(new EvaluatorException(e, "java.lang.reflect.Array.get"));
+            throw new WrappedException(new EvaluatorException(e, ARRAY_GET_EXTRA_STACK));
           }
         }
         public void set(Object val) {
-          try { Array.set(array, index, val); }
+          try {
+            if (direct) { arraySet(array, index, val); }
+            else { Array.set(array, index, val); }
+          }
           catch (NullPointerException e) {
-            throw new WrappedException(new EvaluatorException(e, "java.lang.reflect.Array.set"));
+            throw new WrappedException(new EvaluatorException(e, ARRAY_SET_EXTRA_STACK));
           }
           catch (IllegalArgumentException e) {
             Exception newE = new ArrayStoreException();
             newE.setStackTrace(e.getStackTrace());
-            throw new WrappedException(new EvaluatorException(newE, "java.lang.reflect.Array.set"));
+            throw new WrappedException(new EvaluatorException(newE, ARRAY_SET_EXTRA_STACK));
           }
           catch (ArrayIndexOutOfBoundsException e) {
-            throw new WrappedException(new EvaluatorException(e, "java.lang.reflect.Array.set"));
+            throw new WrappedException(new EvaluatorException(e, ARRAY_SET_EXTRA_STACK));
           }
         }
       };
@@ -470,6 +503,58 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
   }
   
   
+  private static final String[][] ARRAY_GET_EXTRA_STACK =
+    new String[][]{ { "java.lang.reflect.Array.get" },
+                    { "edu.rice.cs.dynamicjava.interpreter.ExpressionEvaluator.arrayGet",
+                      "java.lang.reflect.Array.get" } };
+  
+  private static final String[][] ARRAY_SET_EXTRA_STACK =
+    new String[][]{ { "java.lang.reflect.Array.set" },
+                    { "edu.rice.cs.dynamicjava.interpreter.ExpressionEvaluator.arraySet",
+                      "java.lang.reflect.Array.set" } };
+  
+  /**
+   * Equivalent to {@link Array#get}, but reads the common array types with a direct (JIT-friendly)
+   * array access.  A null array is passed on to Array.get to produce the usual NullPointerException.  A failed
+   * access is repeated with Array.get, so that the exception (and its message) is the reflective one.
+   */
+  static Object arrayGet(Object array, int index) {
+    try {
+      if (array instanceof Object[]) { return ((Object[]) array)[index]; }
+      else if (array instanceof int[]) { return ((int[]) array)[index]; }
+      else if (array instanceof double[]) { return ((double[]) array)[index]; }
+      else if (array instanceof long[]) { return ((long[]) array)[index]; }
+      else if (array instanceof char[]) { return ((char[]) array)[index]; }
+      else if (array instanceof boolean[]) { return ((boolean[]) array)[index]; }
+      else if (array instanceof byte[]) { return ((byte[]) array)[index]; }
+      else if (array instanceof float[]) { return ((float[]) array)[index]; }
+      else { return Array.get(array, index); }
+    }
+    catch (ArrayIndexOutOfBoundsException e) { return Array.get(array, index); }
+  }
+  
+  /**
+   * Equivalent to {@link Array#set}, but writes the common array types with a direct array access.  Values
+   * that aren't already of the element's boxed type (and so would need a widening conversion) are handed
+   * to Array.set, which performs the conversion or throws an IllegalArgumentException.  A failed access
+   * stores nothing and is repeated with Array.set, so that the exception (and its message) is the reflective one.
+   */
+  static void arraySet(Object array, int index, Object val) {
+    try {
+      if (array instanceof Object[]) { ((Object[]) array)[index] = val; }
+      else if (array instanceof int[] && val instanceof Integer) { ((int[]) array)[index] = (Integer) val; }
+      else if (array instanceof double[] && val instanceof Double) { ((double[]) array)[index] = (Double) val; }
+      else if (array instanceof long[] && val instanceof Long) { ((long[]) array)[index] = (Long) val; }
+      else if (array instanceof char[] && val instanceof Character) { ((char[]) array)[index] = (Character) val; }
+      else if (array instanceof boolean[] && val instanceof Boolean) { ((boolean[]) array)[index] = (Boolean) val; }
+      else if (array instanceof byte[] && val instanceof Byte) { ((byte[]) array)[index] = (Byte) val; }
+      else if (array instanceof float[] && val instanceof Float) { ((float[]) array)[index] = (Float) val; }
+      else { Array.set(array, index, val); }
+    }
+    catch (ArrayIndexOutOfBoundsException e) { Array.set(array, index, val); }
+    catch (ArrayStoreException e) { Array.set(array, index, val); }
+  }
+  
   /** Convert a primitive to the appropriate type */
   public static Object convert(Object obj, Class<?> target) {
     if (target.equals(boolean.class)) {
@@ -574,7 +659,11 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
    */
   private static abstract class MatchingPrimitiveBinaryOperation implements Lambda2<Object, Object, Object> {
     public Object value(Object left, Object right) {
-      if (left instanceof Boolean) { 
+      // int is by far the most common case (loop counters, indices), so it is tested first
+      if (left instanceof Integer) { 
+        return value((int)(Integer) left, (int)(Integer) right);
+      }
+      else if (left instanceof Boolean) { 
         return value((boolean)(Boolean) left, (boolean)(Boolean) right);
       }
       else if (left instanceof Character) { 
@@ -586,9 +675,6 @@ public class ExpressionEvaluator extends AbstractVisitor<Object> implements Lamb
       else if (left instanceof Short) { 
         return value((short)(Short) left, (short)(Short) right);
       }
-      else if (left instanceof Integer) { 
-        return value((int)(Integer) left, (int)(Integer) right);
-      }
       else if (left instanceof Long) { 
         return value((long)(Long) left, (long)(Long) right);
       }
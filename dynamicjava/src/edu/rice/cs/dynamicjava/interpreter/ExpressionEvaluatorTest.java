@@ -0,0 +1,104 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import junit.framework.TestCase;
+
+import edu.rice.cs.plt.tuple.Option;
+import edu.rice.cs.dynamicjava.Options;
+
+/**
+ * Checks that the direct invocation path of {@link ExpressionEvaluator} (see {@link Options#directInvocation})
+ * agrees with the generic reflective path.  The main method is a micro-benchmark comparing the two.
+ */
+public class ExpressionEvaluatorTest extends TestCase {
+  
+  private static final Options REFLECTIVE = new Options() {
+    @Override public boolean directInvocation() { return false; }
+  };
+  
+  private static Object eval(Options opt, String... code) throws InterpreterException {
+    Interpreter i = new Interpreter(opt);
+    Option<Object> result = Option.none();
+    for (String s : code) { result = i.interpret(s); }
+    return result.unwrap(null);
+  }
+  
+  /** Evaluate the code with both paths, asserting they agree, and return the result. */
+  private static Object evalBoth(String... code) throws InterpreterException {
+    Object direct = eval(Options.DEFAULT, code);
+    assertEquals(eval(REFLECTIVE, code), direct);
+    return direct;
+  }
+  
+  /** Evaluate the code with both paths, asserting both throw the given exception with the same message. */
+  private static void assertThrowsBoth(Class<? extends Throwable> expected, String... code) {
+    String[] messages = new String[2];
+    int i = 0;
+    for (Options opt : new Options[]{ Options.DEFAULT, REFLECTIVE }) {
+      try { eval(opt, code); fail("expected " + expected.getName()); }
+      catch (EvaluatorException e) {
+        assertEquals(expected, e.getCause().getClass());
+        messages[i++] = e.getCause().getMessage();
+        for (StackTraceElement elt : e.getCause().getStackTrace()) {
+          assertFalse("interpreter frame " + elt, elt.getClassName().startsWith("edu.rice.cs.dynamicjava"));
+        }
+      }
+      catch (InterpreterException e) { fail(e.toString()); }
+    }
+    assertEquals("message", messages[1], messages[0]);
+  }
+  
+  public void testMethodsAndConstructors() throws InterpreterException {
+    assertEquals("abc", evalBoth("\"ABC\".toLowerCase()"));
+    assertEquals(7, evalBoth("Math.max(3, 7)"));
+    assertEquals("[1, 2]", evalBoth("java.util.List<Integer> l = new java.util.ArrayList<Integer>();",
+                                    "l.add(1); l.add(2);", "l.toString()"));
+    assertEquals("xy", evalBoth("new StringBuilder(\"x\").append('y').toString()"));
+    assertEquals(0, evalBoth("new java.util.HashMap<String, String>().size()"));
+    assertEquals(3, evalBoth("class C { int x; C(int x) { this.x = x; } class D { int get() { return x; } } }",
+                             "C c = new C(3);", "c.new D().get()"));
+    assertThrowsBoth(NullPointerException.class, "String s = null;", "s.length()");
+    assertThrowsBoth(NumberFormatException.class, "Integer.parseInt(\"x\")");
+  }
+  
+  public void testArrays() throws InterpreterException {
+    assertEquals(6, evalBoth("int[] a = {1, 2, 3};", "a[0] + a[1] + a[2]"));
+    assertEquals(4.5, evalBoth("double[] a = new double[2];", "a[1] = 4.5;", "a[1]"));
+    assertEquals(9L, evalBoth("long[] a = new long[1];", "a[0] = 4;", "a[0] += 5;", "a[0]"));
+    assertEquals('b', evalBoth("char[] a = {'a'};", "a[0]++;", "a[0]"));
+    assertEquals(true, evalBoth("boolean[] a = new boolean[1];", "a[0] = !a[0];", "a[0]"));
+    assertEquals("s", evalBoth("String[] a = new String[1];", "a[0] = \"s\";", "a[0]"));
+    assertThrowsBoth(ArrayIndexOutOfBoundsException.class, "int[] a = new int[2];", "a[2]");
+    assertThrowsBoth(ArrayIndexOutOfBoundsException.class, "int[] a = new int[2];", "a[-1] = 1;");
+    assertThrowsBoth(NullPointerException.class, "int[] a = null;", "a[0]");
+    assertThrowsBoth(ArrayStoreException.class, "Object[] a = new String[1];", "a[0] = 1;");
+    assertThrowsBoth(ArrayIndexOutOfBoundsException.class, "String[] a = new String[2];", "a[2] = \"s\";");
+  }
+  
+  public void testArithmetic() throws InterpreterException {
+    assertEquals(4950, evalBoth("int s = 0;", "for (int i = 0; i < 100; i++) { s += i; }", "s"));
+    assertEquals(7L, evalBoth("3L + 4L"));
+    assertEquals(0.5, evalBoth("1.0 / 2"));
+    assertEquals("ab", evalBoth("\"a\" + 'b'"));
+  }
+  
+  /** Time the same loop-heavy snippet with the direct and the reflective evaluators. */
+  public static void main(String... args) throws InterpreterException {
+    String[] code = {
+      "class P { int v; P(int v) { this.v = v; } int get() { return v; } }",
+      "int[] a = new int[1000]; double[] d = new double[1000]; long sum = 0;",
+      "for (int r = 0; r < 200; r++) { for (int i = 0; i < a.length; i++) { a[i] = Math.abs(i - r); " +
+      "d[i] = a[i] * 0.5; P p = new P(a[i]); sum += p.get() + (long) d[i]; } }",
+      "sum"
+    };
+    for (int round = 0; round < 3; round++) {
+      for (Options opt : new Options[]{ REFLECTIVE, Options.DEFAULT }) {
+        long start = System.nanoTime();
+        Object result = eval(opt, code);
+        long elapsed = System.nanoTime() - start;
+        System.out.println((opt == REFLECTIVE ? "reflective" : "direct    ") + ": " + (elapsed / 1000000) +
+                           " ms (result " + result + ")");
+      }
+    }
+  }
+  
+}
@@ -0,0 +1,961 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.*;
+import edu.rice.cs.plt.lambda.WrappedException;
+import edu.rice.cs.plt.tuple.Option;
+import edu.rice.cs.plt.tuple.Pair;
+
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.Label;
+import org.objectweb.asm.MethodVisitor;
+
+import edu.rice.cs.dynamicjava.Options;
+import edu.rice.cs.dynamicjava.symbol.*;
+import edu.rice.cs.dynamicjava.symbol.type.*;
+import koala.dynamicjava.tree.*;
+import koala.dynamicjava.tree.visitor.*;
+
+import static org.objectweb.asm.Opcodes.*;
+import static koala.dynamicjava.interpreter.NodeProperties.*;
+import static edu.rice.cs.plt.debug.DebugUtil.debug;
+
+/**
+ * Compiles type-checked loops to bytecode, so that CPU-heavy code runs on the JVM rather than in the
+ * tree-walking {@link StatementEvaluator}.  Only a subset of the language is supported: local variables,
+ * primitive arithmetic, comparisons and conversions, array access, reads of public fields and calls to public
+ * methods of public classes, and the structured statements combining them ({@code if}, {@code while},
+ * {@code do}, {@code for}, blocks, and unlabeled {@code break} and {@code continue}).  Loops that use anything
+ * else -- allocations, string concatenation, {@code try}, {@code return}, labels, {@code this}, and so on --
+ * are left to the tree walker.
+ * <p>
+ * The local variables a loop refers to are copied out of the {@link RuntimeBindings} into JVM locals on entry,
+ * and those it assigns are copied back on exit (normal or abrupt), so the rest of the interpreter sees the same
+ * bindings it would have seen had the loop been interpreted.  The result of compilation (successful or not) is
+ * cached per loop node, so a loop in an interpreted method body is only compiled once.
+ * </p>
+ */
+public class StatementCompiler {
+
+  /** Name of each generated class; every class is defined by its own loader. */
+  private static final String CLASS_NAME = "CompiledLoop";
+  private static final String BODY_NAME = org.objectweb.asm.Type.getInternalName(Body.class);
+  private static final String[] BODY_EXTRA_STACK = new String[]{ CLASS_NAME + ".run" };
+
+  /** A compiled loop.  {@code vars} holds the values of the loop's free variables, and is updated in place. */
+  public static interface Body {
+    public void run(Object[] vars);
+  }
+
+  private static final Map<Node, Option<CompiledLoop>> _cache = new WeakHashMap<Node, Option<CompiledLoop>>();
+
+  /** Holds a compiled loop and the variables to bind when running it. */
+  private static class CompiledLoop {
+    private final Body _body;
+    private final LocalVariable[] _vars;
+    private final boolean[] _assigned;
+    public CompiledLoop(Body body, LocalVariable[] vars, boolean[] assigned) {
+      _body = body;
+      _vars = vars;
+      _assigned = assigned;
+    }
+  }
+
+  /**
+   * Execute the given loop ({@link WhileStatement}, {@link DoStatement}, or {@link ForStatement}) as compiled
+   * code, if it can be compiled.  Exceptions are wrapped as they are by the StatementEvaluator.
+   * @return  {@code true} if the loop was executed; {@code false} if it must be interpreted instead
+   */
+  public static boolean evaluate(Statement loop, RuntimeBindings bindings, Options opt) {
+    CompiledLoop c = lookup(loop, opt);
+    if (c == null) { return false; }
+    Object[] vals = new Object[c._vars.length];
+    for (int i = 0; i < vals.length; i++) { vals[i] = bindings.get(c._vars[i]); }
+    try { c._body.run(vals); }
+    catch (Throwable t) { throw new WrappedException(new EvaluatorException(t, BODY_EXTRA_STACK)); }
+    finally {
+      // the generated code copies assigned variables back to vals before completing, normally or not
+      for (int i = 0; i < vals.length; i++) {
+        if (c._assigned[i]) { bindings.set(c._vars[i], vals[i]); }
+      }
+    }
+    return true;
+  }
+
+  private static CompiledLoop lookup(Statement loop, Options opt) {
+    synchronized (_cache) {
+      Option<CompiledLoop> cached = _cache.get(loop);
+      if (cached == null) {
+        cached = Option.none();
+        try { cached = Option.some(new StatementCompiler(opt).compile(loop)); }
+        catch (UnsupportedException e) { debug.logValue("Loop is not compilable", e.getMessage()); }
+        catch (RuntimeException e) { debug.log("Unexpected error compiling loop", e); }
+        catch (LinkageError e) { debug.log("Unexpected error loading compiled loop", e); }
+        _cache.put(loop, cached);
+      }
+      return cached.unwrap(null);
+    }
+  }
+
+  /** Signals a construct that can't be compiled; the loop is then interpreted. */
+  private static class UnsupportedException extends RuntimeException {
+    public UnsupportedException(String message) { super(message); }
+    @Override public Throwable fillInStackTrace() { return this; }
+  }
+
+
+  private final TypeSystem _ts;
+  private final Map<String, Class<?>> _classes;
+  private final Map<LocalVariable, Integer> _slots;
+  private final Map<LocalVariable, Class<?>> _kinds;
+  private final List<LocalVariable> _free;
+  private final Set<LocalVariable> _assigned;
+  /** Break and continue targets of the enclosing loops, innermost first. */
+  private final LinkedList<Pair<Label, Label>> _targets;
+  private MethodVisitor _mv;
+  private int _nextSlot;
+
+  private StatementCompiler(Options opt) {
+    _ts = opt.typeSystem();
+    _classes = new HashMap<String, Class<?>>();
+    _slots = new HashMap<LocalVariable, Integer>();
+    _kinds = new HashMap<LocalVariable, Class<?>>();
+    _free = new ArrayList<LocalVariable>();
+    _assigned = new HashSet<LocalVariable>();
+    _targets = new LinkedList<Pair<Label, Label>>();
+    _nextSlot = 2; // 0 is this, 1 is the vars array
+  }
+
+  /**
+   * Produce a class implementing {@link Body} of the following form, where {@code x} is a free variable:
+   * <pre>
+   * public void run(Object[] vars) {
+   *   goto entry;
+   *   start: try {
+   *     (loop)
+   *     goto exit;
+   *   }
+   *   catch (Throwable t) { vars[0] = Integer.valueOf(x); throw t; }
+   *   entry: int x = ((Integer) vars[0]).intValue(); goto start;
+   *   exit: vars[0] = Integer.valueOf(x); return;
+   * }
+   * </pre>
+   * The entry block is emitted last because the free variables aren't known until the loop has been compiled.
+   */
+  private CompiledLoop compile(Statement loop) {
+    ClassWriter cw = new ClassWriter(ClassWriter.COMPUTE_MAXS);
+    cw.visit(V1_5, ACC_PUBLIC | ACC_FINAL | ACC_SUPER, CLASS_NAME, null, "java/lang/Object", new String[]{ BODY_NAME });
+    MethodVisitor init = cw.visitMethod(ACC_PUBLIC, "<init>", "()V", null, null);
+    init.visitCode();
+    init.visitVarInsn(ALOAD, 0);
+    init.visitMethodInsn(INVOKESPECIAL, "java/lang/Object", "<init>", "()V");
+    init.visitInsn(RETURN);
+    init.visitMaxs(0, 0);
+    init.visitEnd();
+
+    _mv = cw.visitMethod(ACC_PUBLIC, "run", "([Ljava/lang/Object;)V", null, null);
+    _mv.visitCode();
+    Label entry = new Label();
+    Label start = new Label();
+    Label end = new Label();
+    Label exit = new Label();
+    Label handler = new Label();
+    _mv.visitTryCatchBlock(start, end, handler, null);
+    _mv.visitJumpInsn(GOTO, entry);
+    _mv.visitLabel(start);
+    loop.acceptVisitor(new StatementVisitor());
+    _mv.visitJumpInsn(GOTO, exit);
+    _mv.visitLabel(end);
+
+    _mv.visitLabel(handler);
+    storeFreeVariables();
+    _mv.visitInsn(ATHROW);
+
+    _mv.visitLabel(entry);
+    for (int i = 0; i < _free.size(); i++) {
+      LocalVariable v = _free.get(i);
+      Class<?> k = _kinds.get(v);
+      _mv.visitVarInsn(ALOAD, 1);
+      pushInt(i);
+      _mv.visitInsn(AALOAD);
+      if (k.isPrimitive()) { unbox(k); }
+      _mv.visitVarInsn(asmType(k).getOpcode(ISTORE), _slots.get(v));
+    }
+    _mv.visitJumpInsn(GOTO, start);
+
+    _mv.visitLabel(exit);
+    storeFreeVariables();
+    _mv.visitInsn(RETURN);
+    _mv.visitMaxs(0, 0);
+    _mv.visitEnd();
+    cw.visitEnd();
+
+    LocalVariable[] vars = _free.toArray(new LocalVariable[_free.size()]);
+    boolean[] assigned = new boolean[vars.length];
+    for (int i = 0; i < vars.length; i++) { assigned[i] = _assigned.contains(vars[i]); }
+    Class<?> c = new LoopClassLoader(_classes).define(cw.toByteArray());
+    try { return new CompiledLoop((Body) c.newInstance(), vars, assigned); }
+    catch (InstantiationException e) { throw new RuntimeException(e); }
+    catch (IllegalAccessException e) { throw new RuntimeException(e); }
+  }
+
+  /** Copy the free variables that may have been assigned back into the vars array. */
+  private void storeFreeVariables() {
+    for (int i = 0; i < _free.size(); i++) {
+      LocalVariable v = _free.get(i);
+      if (_assigned.contains(v)) {
+        Class<?> k = _kinds.get(v);
+        _mv.visitVarInsn(ALOAD, 1);
+        pushInt(i);
+        _mv.visitVarInsn(asmType(k).getOpcode(ILOAD), _slots.get(v));
+        if (k.isPrimitive()) { box(k); }
+        _mv.visitInsn(AASTORE);
+      }
+    }
+  }
+
+  
+  /* * * * * * * * * *
+   * STATEMENTS
+   * * * * * * * * * */
+  
+  private class StatementVisitor extends AbstractVisitor<Void> {
+    
+    @Override public Void defaultCase(Node node) {
+      throw new UnsupportedException(node.getClass().getSimpleName());
+    }
+    
+    @Override public Void visit(EmptyStatement node) { return null; }
+    
+    @Override public Void visit(ExpressionStatement node) {
+      if (hasStatementTranslation(node)) { getStatementTranslation(node).acceptVisitor(this); }
+      else { pop(value(node.getExpression())); }
+      return null;
+    }
+    
+    @Override public Void visit(BlockStatement node) {
+      for (Node n : node.getStatements()) { n.acceptVisitor(this); }
+      return null;
+    }
+    
+    @Override public Void visit(VariableDeclaration node) {
+      LocalVariable v = getVariable(node);
+      int slot = declare(v);
+      Class<?> k = _kinds.get(v);
+      if (node.getInitializer() == null) {
+        pushConstant(k.isPrimitive() ? SymbolUtil.initialValue(k) : null, k);
+      }
+      else { expect(k, value(node.getInitializer())); }
+      _mv.visitVarInsn(asmType(k).getOpcode(ISTORE), slot);
+      return null;
+    }
+    
+    @Override public Void visit(IfThenStatement node) {
+      Label skip = new Label();
+      condition(node.getCondition(), skip);
+      node.getThenStatement().acceptVisitor(this);
+      _mv.visitLabel(skip);
+      return null;
+    }
+    
+    @Override public Void visit(IfThenElseStatement node) {
+      Label otherwise = new Label();
+      Label done = new Label();
+      condition(node.getCondition(), otherwise);
+      node.getThenStatement().acceptVisitor(this);
+      _mv.visitJumpInsn(GOTO, done);
+      _mv.visitLabel(otherwise);
+      node.getElseStatement().acceptVisitor(this);
+      _mv.visitLabel(done);
+      return null;
+    }
+    
+    @Override public Void visit(WhileStatement node) {
+      Label test = new Label();
+      Label done = new Label();
+      _mv.visitLabel(test);
+      condition(node.getCondition(), done);
+      loopBody(node.getBody(), done, test);
+      _mv.visitJumpInsn(GOTO, test);
+      _mv.visitLabel(done);
+      return null;
+    }
+    
+    @Override public Void visit(DoStatement node) {
+      Label body = new Label();
+      Label test = new Label();
+      Label done = new Label();
+      _mv.visitLabel(body);
+      loopBody(node.getBody(), done, test);
+      _mv.visitLabel(test);
+      if (value(node.getCondition()) != boolean.class) { throw new UnsupportedException("condition type"); }
+      _mv.visitJumpInsn(IFNE, body);
+      _mv.visitLabel(done);
+      return null;
+    }
+    
+    @Override public Void visit(ForStatement node) {
+      Label test = new Label();
+      Label update = new Label();
+      Label done = new Label();
+      if (node.getInitialization() != null) {
+        for (Node n : node.getInitialization()) { n.acceptVisitor(this); }
+      }
+      _mv.visitLabel(test);
+      if (node.getCondition() != null) { condition(node.getCondition(), done); }
+      loopBody(node.getBody(), done, update);
+      _mv.visitLabel(update);
+      if (node.getUpdate() != null) {
+        for (Node n : node.getUpdate()) { n.acceptVisitor(this); }
+      }
+      _mv.visitJumpInsn(GOTO, test);
+      _mv.visitLabel(done);
+      return null;
+    }
+    
+    @Override public Void visit(BreakStatement node) {
+      if (node.getLabel() != null || _targets.isEmpty()) { throw new UnsupportedException("labeled break"); }
+      _mv.visitJumpInsn(GOTO, _targets.getFirst().first());
+      return null;
+    }
+    
+    @Override public Void visit(ContinueStatement node) {
+      if (node.getLabel() != null || _targets.isEmpty()) { throw new UnsupportedException("labeled continue"); }
+      _mv.visitJumpInsn(GOTO, _targets.getFirst().second());
+      return null;
+    }
+    
+    private void loopBody(Node body, Label breakTarget, Label continueTarget) {
+      _targets.addFirst(Pair.make(breakTarget, continueTarget));
+      body.acceptVisitor(this);
+      _targets.removeFirst();
+    }
+    
+  }
+  
+  /** Evaluate a boolean expression, jumping to {@code ifFalse} if it is false. */
+  private void condition(Expression exp, Label ifFalse) {
+    if (value(exp) != boolean.class) { throw new UnsupportedException("condition type"); }
+    _mv.visitJumpInsn(IFEQ, ifFalse);
+  }
+  
+  
+  /* * * * * * * * * *
+   * EXPRESSIONS
+   * * * * * * * * * */
+  
+  /**
+   * Push the value of the given expression, following the conventions of {@link ExpressionEvaluator#value}.
+   * @return  The JVM type of the result: a primitive class, {@code void.class}, or {@code Object.class} for
+   *          any reference (references are checked with a cast before they are used in a typed context).
+   */
+  private Class<?> value(Node exp) {
+    Class<?> result;
+    if (hasValue(exp)) {
+      result = kindOf(getType(exp));
+      pushConstant(getValue(exp), result);
+    }
+    else if (hasTranslation(exp)) { result = value(getTranslation(exp)); }
+    else { result = exp.acceptVisitor(new ExpressionVisitor()); }
+    if (hasConvertedType(exp)) {
+      Class<?> target = getConvertedType(exp).value();
+      convert(result, target);
+      result = target;
+    }
+    if (hasCheckedType(exp)) {
+      if (result.isPrimitive()) { throw new UnsupportedException("checked primitive"); }
+      _mv.visitTypeInsn(CHECKCAST, classReference(getCheckedType(exp).value()));
+    }
+    return result;
+  }
+  
+  private class ExpressionVisitor extends AbstractVisitor<Class<?>> {
+    
+    @Override public Class<?> defaultCase(Node node) {
+      throw new UnsupportedException(node.getClass().getSimpleName());
+    }
+    
+    @Override public Class<?> visit(Literal node) {
+      Class<?> result = kindOf(getType(node));
+      pushConstant(node.getValue(), result);
+      return result;
+    }
+    
+    @Override public Class<?> visit(VariableAccess node) {
+      LocalVariable v = getVariable(node);
+      int slot = slot(v);
+      Class<?> result = _kinds.get(v);
+      _mv.visitVarInsn(asmType(result).getOpcode(ILOAD), slot);
+      return result;
+    }
+    
+    @Override public Class<?> visit(ArrayAccess node) {
+      Class<?> result = arrayAndIndex(node);
+      _mv.visitInsn(asmType(result).getOpcode(IALOAD));
+      return result;
+    }
+    
+    @Override public Class<?> visit(ObjectFieldAccess node) {
+      DJField f = getField(node);
+      if (f == ArrayLengthField.INSTANCE) {
+        reference(node.getExpression(), arrayClass(node.getExpression()));
+        _mv.visitInsn(ARRAYLENGTH);
+        return int.class;
+      }
+      else {
+        Field jf = accessibleField(f, false);
+        reference(node.getExpression(), jf.getDeclaringClass());
+        _mv.visitFieldInsn(GETFIELD, classReference(jf.getDeclaringClass()), jf.getName(),
+                           descriptor(jf.getType()));
+        return kindOf(jf.getType());
+      }
+    }
+    
+    @Override public Class<?> visit(StaticFieldAccess node) {
+      Field jf = accessibleField(getField(node), true);
+      _mv.visitFieldInsn(GETSTATIC, classReference(jf.getDeclaringClass()), jf.getName(),
+                         descriptor(jf.getType()));
+      return kindOf(jf.getType());
+    }
+    
+    @Override public Class<?> visit(StaticMethodCall node) { return invoke(node, null); }
+    
+    @Override public Class<?> visit(SimpleMethodCall node) {
+      if (!getMethod(node).isStatic()) { throw new UnsupportedException("implicit this"); }
+      return invoke(node, null);
+    }
+    
+    @Override public Class<?> visit(ObjectMethodCall node) {
+      if (getMethod(node).isStatic()) { throw new UnsupportedException("static method with receiver"); }
+      return invoke(node, node.getExpression());
+    }
+    
+    @Override public Class<?> visit(NotExpression node) {
+      expect(boolean.class, value(node.getExpression()));
+      _mv.visitInsn(ICONST_1);
+      _mv.visitInsn(IXOR);
+      return boolean.class;
+    }
+    
+    @Override public Class<?> visit(ComplementExpression node) {
+      Class<?> k = value(node.getExpression());
+      if (k == int.class) { _mv.visitInsn(ICONST_M1); _mv.visitInsn(IXOR); }
+      else if (k == long.class) { _mv.visitLdcInsn(-1L); _mv.visitInsn(LXOR); }
+      else { throw new UnsupportedException("complement type"); }
+      return k;
+    }
+    
+    @Override public Class<?> visit(PlusExpression node) { return numeric(value(node.getExpression())); }
+    
+    @Override public Class<?> visit(MinusExpression node) {
+      Class<?> k = numeric(value(node.getExpression()));
+      _mv.visitInsn(asmType(k).getOpcode(INEG));
+      return k;
+    }
+    
+    @Override public Class<?> visit(AddExpression node) { return arithmetic(node, IADD); }
+    @Override public Class<?> visit(SubtractExpression node) { return arithmetic(node, ISUB); }
+    @Override public Class<?> visit(MultiplyExpression node) { return arithmetic(node, IMUL); }
+    @Override public Class<?> visit(DivideExpression node) { return arithmetic(node, IDIV); }
+    @Override public Class<?> visit(RemainderExpression node) { return arithmetic(node, IREM); }
+    @Override public Class<?> visit(BitAndExpression node) { return bitwise(node, IAND); }
+    @Override public Class<?> visit(BitOrExpression node) { return bitwise(node, IOR); }
+    @Override public Class<?> visit(ExclusiveOrExpression node) { return bitwise(node, IXOR); }
+    @Override public Class<?> visit(ShiftLeftExpression node) { return shift(node, ISHL); }
+    @Override public Class<?> visit(ShiftRightExpression node) { return shift(node, ISHR); }
+    @Override public Class<?> visit(UnsignedShiftRightExpression node) { return shift(node, IUSHR); }
+    
+    @Override public Class<?> visit(LessExpression node) { return comparison(node, IFLT, false); }
+    @Override public Class<?> visit(LessOrEqualExpression node) { return comparison(node, IFLE, false); }
+    @Override public Class<?> visit(GreaterExpression node) { return comparison(node, IFGT, false); }
+    @Override public Class<?> visit(GreaterOrEqualExpression node) { return comparison(node, IFGE, false); }
+    @Override public Class<?> visit(EqualExpression node) { return comparison(node, IFEQ, true); }
+    @Override public Class<?> visit(NotEqualExpression node) { return comparison(node, IFNE, true); }
+    
+    @Override public Class<?> visit(AndExpression node) {
+      Label no = new Label();
+      Label done = new Label();
+      condition(node.getLeftExpression(), no);
+      condition(node.getRightExpression(), no);
+      _mv.visitInsn(ICONST_1);
+      _mv.visitJumpInsn(GOTO, done);
+      _mv.visitLabel(no);
+      _mv.visitInsn(ICONST_0);
+      _mv.visitLabel(done);
+      return boolean.class;
+    }
+    
+    @Override public Class<?> visit(OrExpression node) {
+      Label yes = new Label();
+      Label done = new Label();
+      expect(boolean.class, value(node.getLeftExpression()));
+      _mv.visitJumpInsn(IFNE, yes);
+      expect(boolean.class, value(node.getRightExpression()));
+      _mv.visitJumpInsn(IFNE, yes);
+      _mv.visitInsn(ICONST_0);
+      _mv.visitJumpInsn(GOTO, done);
+      _mv.visitLabel(yes);
+      _mv.visitInsn(ICONST_1);
+      _mv.visitLabel(done);
+      return boolean.class;
+    }
+    
+    @Override public Class<?> visit(ConditionalExpression node) {
+      Label otherwise = new Label();
+      Label done = new Label();
+      condition(node.getConditionExpression(), otherwise);
+      Class<?> k = value(node.getIfTrueExpression());
+      _mv.visitJumpInsn(GOTO, done);
+      _mv.visitLabel(otherwise);
+      expect(k, value(node.getIfFalseExpression()));
+      _mv.visitLabel(done);
+      return k;
+    }
+    
+    @Override public Class<?> visit(InstanceOfExpression node) {
+      expect(Object.class, value(node.getExpression()));
+      _mv.visitTypeInsn(INSTANCEOF, classReference(getErasedType(node.getReferenceType()).value()));
+      return boolean.class;
+    }
+    
+    /** Cast checks and conversions are attached to the CastExpression, and handled by {@link #value}. */
+    @Override public Class<?> visit(CastExpression node) { return value(node.getExpression()); }
+    
+    @Override public Class<?> visit(SimpleAssignExpression node) {
+      LValue left = lvalue(node.getLeftExpression());
+      left.prepare();
+      expect(left.kind, value(node.getRightExpression()));
+      left.dupUnder();
+      left.store();
+      return left.kind;
+    }
+    
+    @Override public Class<?> visit(AddAssignExpression node) { return opAssign(node, IADD); }
+    @Override public Class<?> visit(SubtractAssignExpression node) { return opAssign(node, ISUB); }
+    @Override public Class<?> visit(MultiplyAssignExpression node) { return opAssign(node, IMUL); }
+    @Override public Class<?> visit(DivideAssignExpression node) { return opAssign(node, IDIV); }
+    @Override public Class<?> visit(RemainderAssignExpression node) { return opAssign(node, IREM); }
+    @Override public Class<?> visit(BitAndAssignExpression node) { return opAssign(node, IAND); }
+    @Override public Class<?> visit(BitOrAssignExpression node) { return opAssign(node, IOR); }
+    @Override public Class<?> visit(ExclusiveOrAssignExpression node) { return opAssign(node, IXOR); }
+    @Override public Class<?> visit(ShiftLeftAssignExpression node) { return opAssign(node, ISHL); }
+    @Override public Class<?> visit(ShiftRightAssignExpression node) { return opAssign(node, ISHR); }
+    @Override public Class<?> visit(UnsignedShiftRightAssignExpression node) { return opAssign(node, IUSHR); }
+    
+    @Override public Class<?> visit(PreIncrement node) { return increment(node, IADD, true); }
+    @Override public Class<?> visit(PreDecrement node) { return increment(node, ISUB, true); }
+    @Override public Class<?> visit(PostIncrement node) { return increment(node, IADD, false); }
+    @Override public Class<?> visit(PostDecrement node) { return increment(node, ISUB, false); }
+    
+  }
+  
+  /** Push the array and index of an array access, returning the element kind. */
+  private Class<?> arrayAndIndex(ArrayAccess node) {
+    Class<?> arrayC = arrayClass(node.getExpression());
+    reference(node.getExpression(), arrayC);
+    expect(int.class, value(node.getCellNumber()));
+    return kindOf(arrayC.getComponentType());
+  }
+  
+  private Class<?> arrayClass(Expression exp) {
+    Class<?> result = _ts.erasedClass(getType(exp)).value();
+    if (!result.isArray()) { throw new UnsupportedException("array type"); }
+    return result;
+  }
+  
+  /** Push a reference value, cast to the given class. */
+  private void reference(Expression exp, Class<?> c) {
+    expect(Object.class, value(exp));
+    if (!c.equals(Object.class)) { _mv.visitTypeInsn(CHECKCAST, classReference(c)); }
+  }
+  
+  private Class<?> arithmetic(BinaryExpression node, int opcode) {
+    Class<?> k = numeric(value(node.getLeftExpression()));
+    expect(k, value(node.getRightExpression()));
+    _mv.visitInsn(asmType(k).getOpcode(opcode));
+    return k;
+  }
+  
+  private Class<?> bitwise(BinaryExpression node, int opcode) {
+    Class<?> k = value(node.getLeftExpression());
+    if (k != boolean.class && k != int.class && k != long.class) { throw new UnsupportedException("bitwise type"); }
+    expect(k, value(node.getRightExpression()));
+    _mv.visitInsn(asmType(k).getOpcode(opcode));
+    return k;
+  }
+  
+  private Class<?> shift(BinaryExpression node, int opcode) {
+    Class<?> k = value(node.getLeftExpression());
+    shiftOperation(k, value(node.getRightExpression()), opcode);
+    return k;
+  }
+  
+  /** With the operands on the stack, emit the given shift operation (right operands are unary-promoted). */
+  private void shiftOperation(Class<?> left, Class<?> right, int opcode) {
+    if (left != int.class && left != long.class) { throw new UnsupportedException("shift type"); }
+    if (right == long.class) { _mv.visitInsn(L2I); }
+    else if (right != int.class) { throw new UnsupportedException("shift type"); }
+    _mv.visitInsn(asmType(left).getOpcode(opcode));
+  }
+  
+  /**
+   * Compare two operands, producing a boolean.
+   * @param ifOp  The IFxx opcode corresponding to the comparison
+   * @param equality  Whether references and booleans may be compared
+   */
+  private Class<?> comparison(BinaryExpression node, int ifOp, boolean equality) {
+    Class<?> k = value(node.getLeftExpression());
+    expect(k, value(node.getRightExpression()));
+    Label yes = new Label();
+    Label done = new Label();
+    if (k == int.class || k == char.class || k == short.class || k == byte.class ||
+        (equality && k == boolean.class)) {
+      _mv.visitJumpInsn(ifOp - IFEQ + IF_ICMPEQ, yes);
+    }
+    else if (k == long.class) { _mv.visitInsn(LCMP); _mv.visitJumpInsn(ifOp, yes); }
+    else if (k == float.class) {
+      // choose the comparison so that a NaN operand makes the result false (or true for !=)
+      _mv.visitInsn((ifOp == IFLT || ifOp == IFLE) ? FCMPG : FCMPL);
+      _mv.visitJumpInsn(ifOp, yes);
+    }
+    else if (k == double.class) {
+      _mv.visitInsn((ifOp == IFLT || ifOp == IFLE) ? DCMPG : DCMPL);
+      _mv.visitJumpInsn(ifOp, yes);
+    }
+    else if (equality && k == Object.class) { _mv.visitJumpInsn(ifOp == IFEQ ? IF_ACMPEQ : IF_ACMPNE, yes); }
+    else { throw new UnsupportedException("comparison type"); }
+    _mv.visitInsn(ICONST_0);
+    _mv.visitJumpInsn(GOTO, done);
+    _mv.visitLabel(yes);
+    _mv.visitInsn(ICONST_1);
+    _mv.visitLabel(done);
+    return boolean.class;
+  }
+  
+  /**
+   * Compile an operator-assignment whose left side needs no conversions: the variable's type is also the type
+   * of the operation.  (Other cases, like {@code shortVar += 1}, are left to the interpreter.)
+   */
+  private Class<?> opAssign(AssignExpression node, int opcode) {
+    checkUnconverted(node.getLeftExpression(), getLeftExpression(node));
+    LValue left = lvalue(node.getLeftExpression());
+    left.prepare();
+    left.load();
+    Class<?> right = value(node.getRightExpression());
+    if (opcode == ISHL || opcode == ISHR || opcode == IUSHR) { shiftOperation(left.kind, right, opcode); }
+    else {
+      expect(left.kind, right);
+      if (opcode == IAND || opcode == IOR || opcode == IXOR) {
+        if (left.kind != boolean.class && left.kind != int.class && left.kind != long.class) {
+          throw new UnsupportedException("bitwise type");
+        }
+      }
+      else { numeric(left.kind); }
+      _mv.visitInsn(asmType(left.kind).getOpcode(opcode));
+    }
+    left.dupUnder();
+    left.store();
+    return left.kind;
+  }
+  
+  /** Compile an increment or decrement.  As in the interpreter, the variable's type is preserved. */
+  private Class<?> increment(UnaryExpression node, int opcode, boolean prefix) {
+    checkUnconverted(node.getExpression(), getLeftExpression(node));
+    LValue target = lvalue(node.getExpression());
+    Class<?> k = target.kind;
+    if (k == boolean.class || k == Object.class) { throw new UnsupportedException("increment type"); }
+    target.prepare();
+    target.load();
+    if (!prefix) { target.dupUnder(); }
+    if (k == long.class) { _mv.visitInsn(LCONST_1); }
+    else if (k == float.class) { _mv.visitInsn(FCONST_1); }
+    else if (k == double.class) { _mv.visitInsn(DCONST_1); }
+    else { _mv.visitInsn(ICONST_1); }
+    _mv.visitInsn(asmType(k).getOpcode(opcode));
+    if (k == byte.class) { _mv.visitInsn(I2B); }
+    else if (k == short.class) { _mv.visitInsn(I2S); }
+    else if (k == char.class) { _mv.visitInsn(I2C); }
+    if (prefix) { target.dupUnder(); }
+    target.store();
+    return k;
+  }
+  
+  /** Require that the checker read the left side of an assignment operator as is, without any conversion. */
+  private void checkUnconverted(Expression left, Expression leftProperty) {
+    if (left != leftProperty || hasConvertedType(left) || hasCheckedType(left)) {
+      throw new UnsupportedException("converted assignment");
+    }
+  }
+  
+  /** Call a public method of a public class. */
+  private Class<?> invoke(MethodCall node, Expression receiver) {
+    Method m = SymbolUtil.javaMethod(getMethod(node));
+    if (m == null || !Modifier.isPublic(m.getModifiers())) { throw new UnsupportedException("method"); }
+    Class<?> owner = m.getDeclaringClass();
+    if (receiver != null) {
+      // invoke through the receiver's static type if possible: the method may be inherited from a non-public class
+      Class<?> receiverC = _ts.erasedClass(getType(receiver)).value();
+      if (!owner.equals(Object.class) && owner.isAssignableFrom(receiverC) && !receiverC.isArray() &&
+          Modifier.isPublic(receiverC.getModifiers())) {
+        owner = receiverC;
+      }
+      reference(receiver, owner);
+    }
+    Class<?>[] params = m.getParameterTypes();
+    List<Expression> args = node.getArguments();
+    int argCount = (args == null) ? 0 : args.size();
+    if (argCount != params.length) { throw new UnsupportedException("arguments"); }
+    for (int i = 0; i < argCount; i++) {
+      if (params[i].isPrimitive()) { expect(params[i], value(args.get(i))); }
+      else { reference(args.get(i), params[i]); }
+    }
+    for (Class<?> c : params) { register(c); }
+    register(m.getReturnType());
+    int opcode;
+    if (receiver == null) { opcode = INVOKESTATIC; }
+    else if (owner.isInterface()) { opcode = INVOKEINTERFACE; }
+    else { opcode = INVOKEVIRTUAL; }
+    _mv.visitMethodInsn(opcode, classReference(owner), m.getName(), org.objectweb.asm.Type.getMethodDescriptor(m));
+    return kindOf(m.getReturnType());
+  }
+  
+  private Field accessibleField(DJField f, boolean isStatic) {
+    Field result = SymbolUtil.javaField(f);
+    if (result == null || !Modifier.isPublic(result.getModifiers()) ||
+        Modifier.isStatic(result.getModifiers()) != isStatic) {
+      throw new UnsupportedException("field");
+    }
+    register(result.getType());
+    return result;
+  }
+  
+  
+  /* * * * * * * * * *
+   * LOCATIONS
+   * * * * * * * * * */
+  
+  /** An assignable location.  Operations other than {@link #prepare} assume its operands are on the stack. */
+  private abstract class LValue {
+    public final Class<?> kind;
+    protected LValue(Class<?> k) { kind = k; }
+    /** Push the location's operands, if any. */
+    public abstract void prepare();
+    /** Push the location's value, keeping the operands. */
+    public abstract void load();
+    /** Copy the value on top of the stack below the operands. */
+    public abstract void dupUnder();
+    /** Store the value on top of the stack, consuming it and the operands. */
+    public abstract void store();
+  }
+  
+  private LValue lvalue(Expression exp) {
+    if (hasTranslation(exp)) { return lvalue(getTranslation(exp)); }
+    else if (exp instanceof VariableAccess) {
+      final LocalVariable v = getVariable(exp);
+      final int slot = slot(v);
+      _assigned.add(v);
+      return new LValue(_kinds.get(v)) {
+        public void prepare() {}
+        public void load() { _mv.visitVarInsn(asmType(kind).getOpcode(ILOAD), slot); }
+        public void dupUnder() { _mv.visitInsn(isWide(kind) ? DUP2 : DUP); }
+        public void store() { _mv.visitVarInsn(asmType(kind).getOpcode(ISTORE), slot); }
+      };
+    }
+    else if (exp instanceof ArrayAccess) {
+      final ArrayAccess access = (ArrayAccess) exp;
+      return new LValue(kindOf(arrayClass(access.getExpression()).getComponentType())) {
+        public void prepare() { arrayAndIndex(access); }
+        public void load() {
+          _mv.visitInsn(DUP2);
+          _mv.visitInsn(asmType(kind).getOpcode(IALOAD));
+        }
+        public void dupUnder() { _mv.visitInsn(isWide(kind) ? DUP2_X2 : DUP_X2); }
+        public void store() { _mv.visitInsn(asmType(kind).getOpcode(IASTORE)); }
+      };
+    }
+    else { throw new UnsupportedException("assignment to " + exp.getClass().getSimpleName()); }
+  }
+  
+  /** Get the slot of a variable, treating any variable that hasn't been declared in the loop as free. */
+  private int slot(LocalVariable v) {
+    Integer result = _slots.get(v);
+    if (result == null) {
+      result = declare(v);
+      _free.add(v);
+    }
+    return result;
+  }
+  
+  private int declare(LocalVariable v) {
+    Class<?> k = kindOf(v.type());
+    int result = _nextSlot;
+    _nextSlot += isWide(k) ? 2 : 1;
+    _slots.put(v, result);
+    _kinds.put(v, k);
+    return result;
+  }
+  
+  
+  /* * * * * * * * * *
+   * TYPES AND CONSTANTS
+   * * * * * * * * * */
+  
+  /** Map a type to the kind of JVM value representing it. */
+  private static Class<?> kindOf(Type t) {
+    if (t instanceof BooleanType) { return boolean.class; }
+    else if (t instanceof CharType) { return char.class; }
+    else if (t instanceof ByteType) { return byte.class; }
+    else if (t instanceof ShortType) { return short.class; }
+    else if (t instanceof IntType) { return int.class; }
+    else if (t instanceof LongType) { return long.class; }
+    else if (t instanceof FloatType) { return float.class; }
+    else if (t instanceof DoubleType) { return double.class; }
+    else if (t instanceof VoidType) { return void.class; }
+    else { return Object.class; }
+  }
+  
+  /** Map a class to the kind of JVM value representing it. */
+  private static Class<?> kindOf(Class<?> c) { return c.isPrimitive() ? c : Object.class; }
+  
+  private static boolean isWide(Class<?> k) { return k == long.class || k == double.class; }
+  
+  private static org.objectweb.asm.Type asmType(Class<?> k) { return org.objectweb.asm.Type.getType(k); }
+  
+  private static String descriptor(Class<?> c) { return org.objectweb.asm.Type.getDescriptor(c); }
+  
+  /** Require a value of the given kind (any reference if {@code expected} is Object). */
+  private static void expect(Class<?> expected, Class<?> actual) {
+    if (expected != actual) { throw new UnsupportedException("expected " + expected + ", found " + actual); }
+  }
+  
+  /** Require a kind on which binary numeric operations are defined. */
+  private static Class<?> numeric(Class<?> k) {
+    if (k != int.class && k != long.class && k != float.class && k != double.class) {
+      throw new UnsupportedException("numeric type");
+    }
+    return k;
+  }
+  
+  /** Get the internal name of an accessible class, making it available to the generated class. */
+  private String classReference(Class<?> c) {
+    Class<?> base = c;
+    while (base.isArray()) { base = base.getComponentType(); }
+    if (!base.isPrimitive() && !Modifier.isPublic(base.getModifiers())) {
+      throw new UnsupportedException("inaccessible " + base.getName());
+    }
+    register(c);
+    return org.objectweb.asm.Type.getInternalName(c);
+  }
+  
+  /** Make the class (which may appear in a descriptor) resolve to the given object in the generated class. */
+  private void register(Class<?> c) {
+    while (c.isArray()) { c = c.getComponentType(); }
+    if (!c.isPrimitive()) { _classes.put(c.getName(), c); }
+  }
+  
+  private void pop(Class<?> k) {
+    if (isWide(k)) { _mv.visitInsn(POP2); }
+    else if (k != void.class) { _mv.visitInsn(POP); }
+  }
+  
+  private void pushInt(int i) {
+    if (i >= -1 && i <= 5) { _mv.visitInsn(ICONST_0 + i); }
+    else if (i >= Byte.MIN_VALUE && i <= Byte.MAX_VALUE) { _mv.visitIntInsn(BIPUSH, i); }
+    else if (i >= Short.MIN_VALUE && i <= Short.MAX_VALUE) { _mv.visitIntInsn(SIPUSH, i); }
+    else { _mv.visitLdcInsn(i); }
+  }
+  
+  /** Push a constant of the given kind; reference constants other than strings and null are unsupported. */
+  private void pushConstant(Object val, Class<?> k) {
+    if (k == Object.class) {
+      if (val == null) { _mv.visitInsn(ACONST_NULL); }
+      else if (val instanceof String) { _mv.visitLdcInsn(val); }
+      else { throw new UnsupportedException("constant " + val.getClass().getName()); }
+    }
+    else if (k == void.class) { throw new UnsupportedException("void constant"); }
+    else {
+      Object v = ExpressionEvaluator.convert(val, k);
+      if (v instanceof Boolean) { pushInt(((Boolean) v) ? 1 : 0); }
+      else if (v instanceof Character) { pushInt((Character) v); }
+      else if (v instanceof Long) { _mv.visitLdcInsn(v); }
+      else if (v instanceof Float) { _mv.visitLdcInsn(v); }
+      else if (v instanceof Double) { _mv.visitLdcInsn(v); }
+      else { pushInt(((Number) v).intValue()); }
+    }
+  }
+  
+  /** Convert the primitive on top of the stack from one kind to another (as in ExpressionEvaluator.convert). */
+  private void convert(Class<?> from, Class<?> to) {
+    if (from == to) { return; }
+    if (!from.isPrimitive() || !to.isPrimitive() || from == boolean.class || to == boolean.class ||
+        from == void.class || to == void.class) {
+      throw new UnsupportedException("conversion from " + from + " to " + to);
+    }
+    Class<?> f = stackKind(from);
+    Class<?> t = stackKind(to);
+    if (f != t) {
+      int opcode;
+      if (f == int.class) { opcode = (t == long.class) ? I2L : (t == float.class) ? I2F : I2D; }
+      else if (f == long.class) { opcode = (t == int.class) ? L2I : (t == float.class) ? L2F : L2D; }
+      else if (f == float.class) { opcode = (t == int.class) ? F2I : (t == long.class) ? F2L : F2D; }
+      else { opcode = (t == int.class) ? D2I : (t == long.class) ? D2L : D2F; }
+      _mv.visitInsn(opcode);
+    }
+    if (to == byte.class && from != byte.class) { _mv.visitInsn(I2B); }
+    else if (to == short.class && from != byte.class && from != short.class) { _mv.visitInsn(I2S); }
+    else if (to == char.class) { _mv.visitInsn(I2C); }
+  }
+  
+  /** The kind used for a primitive on the operand stack. */
+  private static Class<?> stackKind(Class<?> k) {
+    return (k == byte.class || k == short.class || k == char.class) ? int.class : k;
+  }
+  
+  private void box(Class<?> k) {
+    Class<?> boxed = boxedClass(k);
+    _mv.visitMethodInsn(INVOKESTATIC, org.objectweb.asm.Type.getInternalName(boxed), "valueOf",
+                        "(" + descriptor(k) + ")" + descriptor(boxed));
+  }
+  
+  private void unbox(Class<?> k) {
+    String boxed = org.objectweb.asm.Type.getInternalName(boxedClass(k));
+    _mv.visitTypeInsn(CHECKCAST, boxed);
+    _mv.visitMethodInsn(INVOKEVIRTUAL, boxed, k.getName() + "Value", "()" + descriptor(k));
+  }
+  
+  private static Class<?> boxedClass(Class<?> k) {
+    if (k == boolean.class) { return Boolean.class; }
+    else if (k == char.class) { return Character.class; }
+    else if (k == byte.class) { return Byte.class; }
+    else if (k == short.class) { return Short.class; }
+    else if (k == int.class) { return Integer.class; }
+    else if (k == long.class) { return Long.class; }
+    else if (k == float.class) { return Float.class; }
+    else { return Double.class; }
+  }
+  
+  
+  /**
+   * Defines a single generated class.  Classes the generated code refers to resolve to the objects seen during
+   * compilation, so code from any class loader (including the interpreter's TreeClassLoaders) can be used.
+   */
+  private static class LoopClassLoader extends ClassLoader {
+    private final Map<String, Class<?>> _classes;
+    
+    public LoopClassLoader(Map<String, Class<?>> classes) {
+      super(StatementCompiler.class.getClassLoader());
+      _classes = classes;
+    }
+    
+    @Override protected Class<?> loadClass(String name, boolean resolve) throws ClassNotFoundException {
+      Class<?> result = _classes.get(name);
+      if (result == null) { result = super.loadClass(name, resolve); }
+      return result;
+    }
+    
+    public Class<?> define(byte[] bytes) { return defineClass(CLASS_NAME, bytes, 0, bytes.length); }
+  }
+  
+}
@@ -0,0 +1,111 @@
+package edu.rice.cs.dynamicjava.interpreter;
+
+import junit.framework.TestCase;
+
+import edu.rice.cs.plt.tuple.Option;
+import edu.rice.cs.dynamicjava.Options;
+
+/**
+ * Checks that loops compiled by {@link StatementCompiler} behave like interpreted loops.  The main method is a
+ * micro-benchmark comparing the two.
+ */
+public class StatementCompilerTest extends TestCase {
+
+  private static final Options INTERPRETED = new Options() {
+    @Override public boolean compileLoops() { return false; }
+  };
+
+  /** Evaluates to true in a loop body iff the loop has been compiled. */
+  private static final String IS_COMPILED =
+    "java.util.Arrays.toString(Thread.currentThread().getStackTrace()).contains(\"CompiledLoop.run\")";
+
+  private static Object eval(Options opt, String... code) throws InterpreterException {
+    Interpreter i = new Interpreter(opt);
+    Option<Object> result = Option.none();
+    for (String s : code) { result = i.interpret(s); }
+    return result.unwrap(null);
+  }
+
+  /** Evaluate the code compiled and interpreted, asserting the results agree, and return the result. */
+  private static Object evalBoth(String... code) throws InterpreterException {
+    Object compiled = eval(Options.DEFAULT, code);
+    assertEquals(eval(INTERPRETED, code), compiled);
+    return compiled;
+  }
+
+  private static boolean isCompiled(String loopHeader) throws InterpreterException {
+    return (Boolean) eval(Options.DEFAULT, "boolean compiled = false;",
+                          loopHeader + " { compiled = " + IS_COMPILED + "; break; }", "compiled");
+  }
+
+  public void testCompiledLoops() throws InterpreterException {
+    assertTrue(isCompiled("while (true)"));
+    assertTrue(isCompiled("for (int i = 0; i < 10; i++)"));
+    assertEquals(4950, evalBoth("int s = 0;", "for (int i = 0; i < 100; i++) { s += i; }", "s"));
+    assertEquals(5050L, evalBoth("long s = 0; int i = 0;", "while (i < 100) s += ++i;", "s"));
+    assertEquals(30.0, evalBoth("double d = 0;", "for (int i = 1; i <= 100; i++) d += Math.sqrt(i) / 22.0;",
+                                "Math.floor(d)"));
+    assertEquals(55, evalBoth("int[] a = new int[10]; int s = 0;",
+                              "for (int i = 0; i < a.length; i++) { a[i] = i; a[i]++; }",
+                              "for (int i = 0; i < a.length; i++) s += a[i];", "s"));
+    assertEquals(25, evalBoth("int s = 0; int i = 0;",
+                              "do { i++; if (i % 2 == 0) continue; if (i > 9) break; s += i; } while (i < 20);",
+                              "s"));
+    assertEquals('e', evalBoth("char c = 'a'; byte b = 0;", "while (b < 4) { c++; b++; }", "c"));
+    assertEquals("0,1,2,", evalBoth("StringBuilder sb = new StringBuilder();",
+                                    "for (int i = 0; i < 3; i++) sb.append(i).append(',');", "sb.toString()"));
+    assertEquals(true, evalBoth("boolean found = false; int i = 0;",
+                                "while (!found && i < 10) { found = (i * i == 49) || i > 8; i++; }", "found"));
+    assertEquals(-4.0f, evalBoth("float f = 1; long n = 4;", "for (int i = 0; i < n; i++) f -= i > 1 ? 2 : 0.5f;",
+                                 "f"));
+  }
+
+  public void testExceptions() throws InterpreterException {
+    String[] code = { "int i = 0; int[] a = {1, 2, 0}; int q = 0;",
+                      "while (true) { q = 12 / a[i]; i++; }" };
+    for (Options opt : new Options[]{ Options.DEFAULT, INTERPRETED }) {
+      Interpreter interp = new Interpreter(opt);
+      interp.interpret(code[0]);
+      try { interp.interpret(code[1]); fail("expected exception"); }
+      catch (EvaluatorException e) {
+        assertEquals(ArithmeticException.class, e.getCause().getClass());
+        for (StackTraceElement elt : e.getCause().getStackTrace()) {
+          assertFalse("interpreter frame " + elt, elt.getClassName().startsWith("edu.rice.cs.dynamicjava"));
+          assertFalse("compiled frame " + elt, elt.getClassName().equals("CompiledLoop"));
+        }
+      }
+      assertEquals(2, interp.interpret("i").unwrap(null));
+      assertEquals(6, interp.interpret("q").unwrap(null));
+    }
+  }
+
+  public void testUnsupportedLoops() throws InterpreterException {
+    assertFalse(isCompiled("for (Object o = new Object(); o != null; )"));
+    assertFalse(isCompiled("for (String s = \"a\"; s.length() < 5; s += \"a\")"));
+    assertEquals(3, evalBoth("java.util.List<Integer> l = new java.util.ArrayList<Integer>();",
+                             "for (int i = 0; i < 3; i++) l.add(i);", "l.size()"));
+    assertEquals(10, evalBoth("int s = 0;", "outer: for (int i = 0; i < 4; i++) { " +
+                             "for (int j = 0; j < 4; j++) { if (j > i) continue outer; s += j; } }", "s"));
+    assertEquals(9, evalBoth("short s = 0;", "for (int i = 0; i < 9; i++) s += 1;", "(int) s"));
+  }
+
+  /** Time the same numeric loop compiled and interpreted. */
+  public static void main(String... args) throws InterpreterException {
+    String[] code = {
+      "double[] d = new double[1000]; long sum = 0;",
+      "for (int r = 0; r < 1000; r++) { for (int i = 0; i < d.length; i++) { d[i] = Math.abs(i - r) * 0.5; " +
+      "sum += (long) d[i] % 7; } }",
+      "sum"
+    };
+    for (int round = 0; round < 3; round++) {
+      for (Options opt : new Options[]{ INTERPRETED, Options.DEFAULT }) {
+        long start = System.nanoTime();
+        Object result = eval(opt, code);
+        long elapsed = System.nanoTime() - start;
+        System.out.println((opt == INTERPRETED ? "interpreted" : "compiled   ") + ": " + (elapsed / 1000000) +
+                           " ms (result " + result + ")");
+      }
+    }
+  }
+
+}
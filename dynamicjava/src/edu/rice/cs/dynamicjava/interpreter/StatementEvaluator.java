@@ -112,6 +112,7 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
   }
 
   @Override public Result visit(WhileStatement node) {
+    if (_opt.compileLoops() && StatementCompiler.evaluate(node, _bindings, _opt)) { return new Result(_bindings); }
     ExpressionEvaluator eval = new ExpressionEvaluator(_bindings, _opt);
     try {
       while ((Boolean) eval.value(node.getCondition())) {
@@ -185,6 +186,7 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
   }
   
   @Override public Result visit(ForStatement node) {
+    if (_opt.compileLoops() && StatementCompiler.evaluate(node, _bindings, _opt)) { return new Result(_bindings); }
     RuntimeBindings newB = _bindings;
     if (node.getInitialization() != null) {
       newB = evaluateSequence(node.getInitialization()).bindings();
@@ -209,6 +211,7 @@ public class StatementEvaluator extends AbstractVisitor<StatementEvaluator.Resul
   }
 
   @Override public Result visit(DoStatement node) {
+    if (_opt.compileLoops() && StatementCompiler.evaluate(node, _bindings, _opt)) { return new Result(_bindings); }
     ExpressionEvaluator eval = new ExpressionEvaluator(_bindings, _opt);
     try {
       do {
@@ -0,0 +1,18 @@
+package edu.rice.cs.dynamicjava.symbol;
+
+import edu.rice.cs.dynamicjava.Options;
+import edu.rice.cs.dynamicjava.interpreter.RuntimeBindings;
+import edu.rice.cs.dynamicjava.interpreter.EvaluatorException;
+
+/**
+ * A method or constructor that can be invoked with its arguments already collected in an array.  The
+ * evaluator uses this to skip the intermediate Iterable (and its copy into an array) on every call;
+ * implementations are expected to cache any per-member setup (such as relaxing accessibility) after the
+ * first invocation.  Semantics match the Iterable-based {@code evaluate} method of {@link DJMethod} and
+ * {@link DJConstructor}; {@code receiver} is the outer instance in the constructor case.
+ */
+public interface DirectFunction extends Function {
+  /** Invoke with the given arguments.  The array may be retained or modified by the callee. */
+  public Object evaluateDirect(Object receiver, Object[] args, RuntimeBindings bindings, Options options)
+    throws EvaluatorException;
+}
@@ -159,7 +159,8 @@ public class JavaClass implements DJClass {
 
   protected class JavaField implements DJField {
     protected final Field _f;
-    public JavaField(Field f) { _f = f; }
+    private volatile boolean _accessible;
+    public JavaField(Field f) { _f = f; _accessible = false; }
     public String declaredName() { return _f.getName(); }
     public DJClass declaringClass() { return JavaClass.this; }
     public Type type() { return classAsType(_f.getType()); }
@@ -187,8 +188,7 @@ public class JavaClass implements DJClass {
           if (!isStatic() && receiver == null) {
             throw new WrappedException(new EvaluatorException(new NullPointerException()));
           }
-          try { _f.setAccessible(true); }
-          catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+          if (!_accessible) { _accessible = makeAccessible(_f); }
           try { return _f.get(receiver); }
           catch (IllegalAccessException e) {
             // should have been caught by static analysis
@@ -208,8 +208,7 @@ public class JavaClass implements DJClass {
           if (!isStatic() && receiver == null) {
             throw new WrappedException(new EvaluatorException(new NullPointerException()));
           }
-          try { _f.setAccessible(true); }
-          catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+          if (!_accessible) { _accessible = makeAccessible(_f); }
           try { _f.set(receiver, o); }
           catch (IllegalAccessException e) {
             // should have been caught by static analysis
@@ -249,13 +248,15 @@ public class JavaClass implements DJClass {
   
   
   /** Non-static in order to determine the outer type. */
-  protected class JavaConstructor implements DJConstructor {
+  protected class JavaConstructor implements DJConstructor, DirectFunction {
     protected final Constructor<?> _k;
     protected final Type _outerType;
     private final Thunk<Iterable<LocalVariable>> _params;
+    private volatile boolean _accessible;
     
     public JavaConstructor(Constructor<?> k) {
       _k = k;
+      _accessible = false;
       DJClass outer = SymbolUtil.dynamicOuterClass(JavaClass.this);
       _outerType = (outer == null) ? null : SymbolUtil.thisType(outer);
       _params = makeParamThunk(); /* allows overriding */
@@ -283,17 +284,22 @@ public class JavaClass implements DJClass {
     
     public Object evaluate(Object outer, Iterable<Object> args, RuntimeBindings bindings, Options options) 
       throws EvaluatorException {
+      return evaluateDirect(outer, IterUtil.toArray(args, Object.class), bindings, options);
+    }
+    
+    public Object evaluateDirect(Object outer, Object[] args, RuntimeBindings bindings, Options options)
+      throws EvaluatorException {
+      Object[] argsArray = args;
       if (_outerType != null) {
         if (outer == null) {
           throw new WrappedException(new EvaluatorException(new NullPointerException()));
         }
-        args = IterUtil.compose(outer, args);
+        argsArray = new Object[args.length + 1];
+        argsArray[0] = outer;
+        System.arraycopy(args, 0, argsArray, 1, args.length);
       }
       
-      try { _k.setAccessible(true); }
-      catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
-      
-      Object[] argsArray = IterUtil.toArray(args, Object.class);
+      if (!_accessible) { _accessible = makeAccessible(_k); }
       try {
         return _k.newInstance(argsArray);
       }
@@ -328,10 +334,11 @@ public class JavaClass implements DJClass {
                   "sun.reflect.NativeConstructorAccessorImpl.newInstance0" };
   
   
-  protected class JavaMethod implements DJMethod {
+  protected class JavaMethod implements DJMethod, DirectFunction {
     protected final Method _m;
     private final Thunk<Iterable<LocalVariable>> _params;
-    public JavaMethod(Method m) { _m = m; _params = makeParamThunk(); /* allows overriding */ }
+    private volatile boolean _accessible;
+    public JavaMethod(Method m) { _m = m; _accessible = false; _params = makeParamThunk(); /* allows overriding */ }
     protected Thunk<Iterable<LocalVariable>> makeParamThunk() { return paramFactory(_m.getParameterTypes()); }
     public String declaredName() { return _m.getName(); }
     public DJClass declaringClass() { return JavaClass.this; }
@@ -350,16 +357,18 @@ public class JavaClass implements DJClass {
     public DJMethod declaredSignature() { return this; }
     public Object evaluate(Object receiver, Iterable<Object> args, RuntimeBindings bindings, 
                            Options options) throws EvaluatorException {
+      return evaluateDirect(receiver, IterUtil.toArray(args, Object.class), bindings, options);
+    }
+    
+    public Object evaluateDirect(Object receiver, Object[] args, RuntimeBindings bindings, Options options)
+      throws EvaluatorException {
       if (!isStatic() && receiver == null) {
         throw new WrappedException(new EvaluatorException(new NullPointerException()));
       }
       
-      try { _m.setAccessible(true); }
-      catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
-      
-      Object[] argsArray = IterUtil.toArray(args, Object.class);
+      if (!_accessible) { _accessible = makeAccessible(_m); }
       try {
-        return _m.invoke(receiver, argsArray);
+        return _m.invoke(receiver, args);
       }
       catch (InvocationTargetException e) {
         throw new EvaluatorException(e.getCause(), METHOD_EXTRA_STACK);
@@ -387,6 +396,17 @@ public class JavaClass implements DJClass {
                    "sun.reflect.NativeMethodAccessorImpl.invoke",
                    "sun.reflect.NativeMethodAccessorImpl.invoke0" };
   
+  /**
+   * Relax the accessibility of the given member, returning true if no further attempts are needed.  Members
+   * cache the result, so setAccessible is called once per member rather than on every access.  A failure is
+   * also final: the security manager won't change its mind, and the reflective call will report any problem.
+   */
+  private static boolean makeAccessible(AccessibleObject member) {
+    try { member.setAccessible(true); }
+    catch (SecurityException e) { debug.log(e); /* ignore -- we can't relax accessibility */ }
+    return true;
+  }
+  
   private static Thunk<Iterable<LocalVariable>> paramFactory(final Class<?>[] cs) {
     // Caches LocalVariables so we don't create duplicates
     return LazyThunk.make(new Thunk<Iterable<LocalVariable>>() {
@@ -2323,7 +2323,8 @@ public abstract class StandardTypeSystem extends TypeSystem {
     protected abstract Iterable<? extends Type> parameterTypes();
   }
   
-  private static abstract class DelegatingMethod extends DelegatingFunction<DJMethod> implements DJMethod {
+  private static abstract class DelegatingMethod extends DelegatingFunction<DJMethod>
+                                                 implements DJMethod, DirectFunction {
     protected DelegatingMethod(DJMethod delegate) { super(delegate); }
     public DJClass declaringClass() { return _delegate.declaringClass(); }
     public boolean isStatic() { return _delegate.isStatic(); }
@@ -2336,6 +2337,13 @@ public abstract class StandardTypeSystem extends TypeSystem {
         throws EvaluatorException {
       return _delegate.evaluate(receiver, args, bindings, options); 
     }
+    public Object evaluateDirect(Object receiver, Object[] args, RuntimeBindings bindings, Options options)
+        throws EvaluatorException {
+      if (_delegate instanceof DirectFunction) {
+        return ((DirectFunction) _delegate).evaluateDirect(receiver, args, bindings, options);
+      }
+      else { return _delegate.evaluate(receiver, IterUtil.asIterable(args), bindings, options); }
+    }
   }
   
   private class ErasedMethod extends DelegatingMethod {
@@ -2371,7 +2379,7 @@ public abstract class StandardTypeSystem extends TypeSystem {
   }
   
   private static abstract class DelegatingConstructor extends DelegatingFunction<DJConstructor>
-                                                      implements DJConstructor {
+                                                      implements DJConstructor, DirectFunction {
     protected DelegatingConstructor(DJConstructor delegate) { super(delegate); }
     public DJClass declaringClass() { return _delegate.declaringClass(); }
     public Type returnType() { return _delegate.returnType(); }
@@ -2382,6 +2390,13 @@ public abstract class StandardTypeSystem extends TypeSystem {
         throws EvaluatorException {
       return _delegate.evaluate(outer, args, bindings, options); 
     }
+    public Object evaluateDirect(Object outer, Object[] args, RuntimeBindings bindings, Options options)
+        throws EvaluatorException {
+      if (_delegate instanceof DirectFunction) {
+        return ((DirectFunction) _delegate).evaluateDirect(outer, args, bindings, options);
+      }
+      else { return _delegate.evaluate(outer, IterUtil.asIterable(args), bindings, options); }
+    }
   }
   
   private class ErasedConstructor extends DelegatingConstructor {
@@ -248,4 +248,20 @@ public class SymbolUtil {
     return !IterUtil.isEmpty(params) && (IterUtil.last(params).type() instanceof VarargArrayType); 
   }
 
+  /**
+   * The reflection object underlying the given method's declared signature, or null if the method is not
+   * backed by a loaded Java method (it is a special method, for example, or declared in an uncompiled tree).
+   */
+  public static java.lang.reflect.Method javaMethod(DJMethod m) {
+    DJMethod declared = m.declaredSignature();
+    if (declared instanceof JavaClass.JavaMethod) { return ((JavaClass.JavaMethod) declared)._m; }
+    else { return null; }
+  }
+  
+  /** The reflection object underlying the given field, or null if it is not backed by a loaded Java field. */
+  public static java.lang.reflect.Field javaField(DJField f) {
+    if (f instanceof JavaClass.JavaField) { return ((JavaClass.JavaField) f)._f; }
+    else { return null; }
+  }
+
 }
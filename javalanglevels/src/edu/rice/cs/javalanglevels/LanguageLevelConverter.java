@@ -38,7 +38,9 @@ package edu.rice.cs.javalanglevels;
 
 import java.lang.reflect.Modifier;
 import java.io.*;
+import java.net.URL;
 import java.util.*;
+import java.util.concurrent.*;
 
 import org.objectweb.asm.*;
 
@@ -169,19 +171,25 @@ public class LanguageLevelConverter {
     _log.log("***** _classFile2SymbolData(" + qualifiedClassName + ", " + programRoot + ") called");
     
     ClassReader reader = null;
+    final URL classFile;
+    final SymbolCache.ClassSummary cached;
     try {
       String fileName = qualifiedClassName.replace('.', '/') + ".class";
       _log.log("***** reading class file: " + fileName);
-      InputStream stream = RESOURCES.value().getResourceAsStream(fileName);
-      if (stream == null && programRoot != null) {
-        stream = PathClassLoader.getResourceInPathAsStream(fileName, new File(programRoot));
-      }
-      if (stream == null) { 
-        _log.log("***** class file was empty! *****");
-        return null; 
+      classFile = RESOURCES.value().getResource(fileName);
+      cached = SymbolCache.ONLY.get(classFile, qualifiedClassName);
+      if (cached == null) {
+        InputStream stream = (classFile == null) ? null : classFile.openStream();
+        if (stream == null && programRoot != null) {
+          stream = PathClassLoader.getResourceInPathAsStream(fileName, new File(programRoot));
+        }
+        if (stream == null) { 
+          _log.log("***** class file was empty! *****");
+          return null; 
+        }
+        // Let IOUtil handle the stream here, because it closes it when it's done, unlike ASM.
+        reader = new ClassReader(IOUtil.toByteArray(stream));
       }
-      // Let IOUtil handle the stream here, because it closes it when it's done, unlike ASM.
-      reader = new ClassReader(IOUtil.toByteArray(stream));
     }
     catch (IOException e) { return null; }
     
@@ -301,7 +309,15 @@ public class LanguageLevelConverter {
       
     };
     _log.log("***** Loading member signatures for file system class " + qualifiedClassName + " and all of its unloaded supertypes");
-    reader.accept(extractData, ClassReader.SKIP_CODE);
+    if (cached != null) { cached.accept(extractData); }
+    else {
+      SymbolCache.Recorder recorder = SymbolCache.ONLY.recorder(classFile, extractData);
+      if (recorder == null) { reader.accept(extractData, ClassReader.SKIP_CODE); }
+      else {
+        reader.accept(recorder, ClassReader.SKIP_CODE);
+        SymbolCache.ONLY.put(classFile, qualifiedClassName, recorder.summary());
+      }
+    }
 //    System.err.println("####### Finished loading " + qualifiedClassName);
     
     // Remove the class from the list of continuations to resolve.
@@ -370,6 +386,94 @@ public class LanguageLevelConverter {
   /** Add the visitor error to the list of errors, */
   private void _addVisitorError(Pair<String, JExpressionIF> ve) { _visitorErrors.addLast(ve); }
   
+  /** The outcome of reading and parsing a single file. */
+  private static class Parse {
+    final File file;
+    boolean isEmpty = false;
+    SourceFile sourceFile = null;
+    Set<String> topLevelClasses = null;
+    ParseException parseException = null;
+    IOException ioException = null;
+    Parse(File f) { file = f; }
+  }
+  
+  /** Reads and parses a file, recording the names of its top-level classes.  Touches no shared state, so it may be
+    * run concurrently on different files.  Only language level and Java files are parsed.  Any other exception thrown
+    * in parsing is wrapped in an UnexpectedException. */
+  private static Parse _parse(File f) {
+    Parse result = new Parse(f);
+    try {
+      BufferedReader tempBr = new BufferedReader(new FileReader(f));
+      String firstLine = tempBr.readLine();
+      tempBr.close();
+      if (firstLine == null) { result.isEmpty = true; }
+      else if (isJavaFile(f)) {
+        JExprParser jep = new JExprParser(f);
+        _log.log("Parsing " + f);
+        try {
+          final SourceFile sf = jep.SourceFile();
+          // Parse the classes in sf
+          final Set<String> topLevelClasses = new HashSet<String>();
+          for (TypeDefBase t: sf.getTypes()) {
+            t.visit(new JExpressionIFAbstractVisitor<Void>() {
+              public Void forClassDef(ClassDef that) {
+                String className = that.getName().getText();
+                _log.log("Class '" + className + "' found in file " + sf);
+                topLevelClasses.add(className); 
+                return null; 
+              }
+              public Void defaultCase(JExpressionIF that) { return null; }
+            });
+          }
+          result.sourceFile = sf;
+          result.topLevelClasses = topLevelClasses;
+        }
+        catch (RuntimeException e) { throw new UnexpectedException(e); }  // any other Exception in parsing
+        _log.log("Completed parsing " + f);
+      }
+    }
+    catch (IOException ioe) { result.ioException = ioe; }
+    catch (ParseException pe) { result.parseException = pe; }
+    return result;
+  }
+  
+  /** Parses the files, using a thread per processor when there are several of them.  The LanguageLevelVisitor passes
+    * and the Augmentor rely on static state, so only parsing is done concurrently.
+    * @return the results of parsing, in the same order as files */
+  private static List<Parse> _parseAll(File[] files) {
+    List<Parse> result = new ArrayList<Parse>(files.length);
+    int threads = Math.min(files.length, Runtime.getRuntime().availableProcessors());
+    if (threads <= 1) {
+      for (File f : files) { result.add(_parse(f)); }
+      return result;
+    }
+    
+    ExecutorService pool = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+      public Thread newThread(Runnable r) {
+        Thread t = new Thread(r, "LanguageLevelConverter parser");
+        t.setDaemon(true);
+        return t;
+      }
+    });
+    try {
+      List<Future<Parse>> futures = new ArrayList<Future<Parse>>(files.length);
+      for (final File f : files) {
+        futures.add(pool.submit(new Callable<Parse>() { public Parse call() { return _parse(f); } }));
+      }
+      for (Future<Parse> future : futures) { result.add(future.get()); }
+      return result;
+    }
+    catch (InterruptedException e) { throw new UnexpectedException(e); }
+    catch (ExecutionException e) {
+      // _parse has already wrapped any other Exception in parsing; errors are not wrapped on either path
+      Throwable cause = e.getCause();
+      if (cause instanceof UnexpectedException) throw (UnexpectedException) cause;
+      if (cause instanceof Error) throw (Error) cause;
+      throw new UnexpectedException(cause);
+    }
+    finally { pool.shutdownNow(); }
+  }
+  
   
   /** Parse, Visit, Type Check, and Convert any language level files in the array of files. */
   public Pair<LinkedList<JExprParseException>, LinkedList<Pair<String, JExpressionIF>>>
@@ -445,51 +549,31 @@ public class LanguageLevelConverter {
     /* Maintains the list of Full Java files, which are parsed for symbols and checked for gross errors. */
     LinkedList<File> javaFiles = new LinkedList<File>();
     
+    /* Parse all of the files concurrently; the results are consumed below in the original file order. */
+    List<Parse> parses = _parseAll(files);
+    
     /** First pass: classfication and conformance checking */
-    for (File f : files) {    
+    for (Parse p : parses) {    
+      File f = p.file;
       try {
 //        if (filesNotToCheck.contains(f)) continue;  // Detects equal File objects
         
+        if (p.ioException != null) throw p.ioException;
         // Check for a null file
-        BufferedReader tempBr = new BufferedReader(new FileReader(f));
-        String firstLine = tempBr.readLine();
-        tempBr.close();
-        if (firstLine == null) continue;
+        if (p.isEmpty) continue;
         
         if (isAdvancedFile(f))  advanced.addLast(f);
         else if (isFullJavaFile(f)) javaFiles.addLast(f);
         
         if (isJavaFile(f)) {  /* a .dj0, .dj1, .dj2,, .dj, or .java file; all but .dj and .java are legacy */
-          System.out.flush();
-          SourceFile sf = null;
-          JExprParser jep = new JExprParser(f);
-          try { 
-            _log.log("Parsing " + f);
-            sf = jep.SourceFile();  // Does the SourceFile method parse the file f embedded in jep?  NO!
-            // Parse the classes in sf
-            final Set<String> topLevelClasses = new HashSet<String>();
-            final SourceFile fsf = sf;
-            for (TypeDefBase t: sf.getTypes()) {
-              t.visit(new JExpressionIFAbstractVisitor<Void>() {
-                public Void forClassDef(ClassDef that) {
-                  String className = that.getName().getText();
-                  _log.log("Class '" + className + "' found in file " + fsf);
-                  topLevelClasses.add(className); 
-                  return null; 
-                }
-                public Void defaultCase(JExpressionIF that) { return null; }
-              });
-            }
-            sourceToTopLevelClassMap.put(f, topLevelClasses);
-            _log.log("Completed parsing " + f);
-          } 
-          catch (ParseException pe) {
+          if (p.parseException != null) {
             // If there is a ParseException, go to next file.
-            _addParseException(pe);
-            _log.log("GENERATED (non-Parse) exception in parsing file " + sf);
+            _addParseException(p.parseException);
+            _log.log("GENERATED (non-Parse) exception in parsing file " + f);
             continue;
           }
-          catch (Exception pe) { throw new UnexpectedException(pe); }  // catch any other Exceptions thrown in parsing
+          SourceFile sf = p.sourceFile;
+          sourceToTopLevelClassMap.put(f, p.topLevelClasses);
           
           LinkedList<String> importedPackageBase = new LinkedList<String>();
           importedPackageBase.add("java.lang");
@@ -658,6 +742,9 @@ public class LanguageLevelConverter {
 //      }
 //  }
     
+    // Save the library class signatures read by the llv and type checking passes for later conversions.
+    SymbolCache.ONLY.flush();
+    
     // If there were any errors in the llv pass or the type checking pass, just return them.
     if (_parseExceptions.size() > 0 || _visitorErrors.size() > 0) {
       return new Pair<LinkedList<JExprParseException>, 
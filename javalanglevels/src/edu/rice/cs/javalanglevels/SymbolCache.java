@@ -0,0 +1,507 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2010, JavaPLT group at Rice University (drjava@rice.edu)
+ * All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ *    * Redistributions of source code must retain the above copyright
+ *      notice, this list of conditions and the following disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright
+ *      notice, this list of conditions and the following disclaimer in the
+ *      documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the
+ *      names of its contributors may be used to endorse or promote products
+ *      derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS
+ * "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT
+ * LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR
+ * A PARTICULAR PURPOSE ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR
+ * CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL,
+ * EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO,
+ * PROCUREMENT OF SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR
+ * PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF
+ * LIABILITY, WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING
+ * NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE OF THIS
+ * SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software.
+ * Open Source Initative Approved is a trademark of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project
+ * from http://www.drjava.org/ or http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+
+package edu.rice.cs.javalanglevels;
+
+import java.io.*;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.util.*;
+
+import org.objectweb.asm.*;
+
+import junit.framework.TestCase;
+
+import edu.rice.cs.javalanglevels.util.Log;
+import edu.rice.cs.plt.io.IOUtil;
+
+/** A persistent cache of the class file information that LanguageLevelConverter extracts from library classes.  For
+  * each jar file on the boot class path or class path, the cache keeps a file holding the signatures of the classes
+  * that have been read from that jar.  A cache file is only used if the jar still has the path, size, and modification
+  * time recorded in it.  It is read into memory when the jar is first consulted, and a class is decoded only when it
+  * is looked up; the file is not kept open, so that a flush can replace it on every platform.  Classes read from
+  * directories are never cached, since they belong to the program being converted.  The cache is disabled unless
+  * {@link #DIRECTORY_PROPERTY} names its directory; DrJava sets it to a directory next to its configuration file.
+  */
+public class SymbolCache {
+  
+  public static final Log _log = new Log("SymbolCache.txt", false);
+  
+  /** System property naming the cache directory; if it is not set or is the empty string, the cache is disabled. */
+  public static final String DIRECTORY_PROPERTY = "edu.rice.cs.javalanglevels.symbolcache";
+  
+  /** The cache used by LanguageLevelConverter. */
+  public static final SymbolCache ONLY = new SymbolCache(_defaultDirectory());
+  
+  private static final int MAGIC = 0x4c4c5343;  // "LLSC"
+  private static final int VERSION = 1;
+  
+  /** The directory holding the cache files, or null if the cache is disabled. */
+  private final File _dir;
+  
+  /** The caches of the jar files consulted so far. */
+  private final Map<File, JarCache> _jars = new HashMap<File, JarCache>();
+  
+  /** @param dir  The directory holding the cache files, or null to disable caching. */
+  public SymbolCache(File dir) { _dir = dir; }
+  
+  private static File _defaultDirectory() {
+    String dir = System.getProperty(DIRECTORY_PROPERTY, "");
+    return dir.equals("") ? null : new File(dir);
+  }
+  
+  /** @return the cached signatures of the class, or null if they are not cached.
+    * @param classFile  The location of the class file, as found on the class path.
+    * @param className  The fully qualified name of the class.
+    */
+  public synchronized ClassSummary get(URL classFile, String className) {
+    JarCache jc = _jarCache(classFile);
+    return (jc == null) ? null : jc.get(className);
+  }
+  
+  /** Records the signatures of a class read from a class file.  They are written to disk by the next flush.
+    * @param classFile  The location of the class file, as found on the class path.
+    * @param className  The fully qualified name of the class.
+    * @param summary  The signatures of the class.
+    */
+  public synchronized void put(URL classFile, String className, ClassSummary summary) {
+    JarCache jc = _jarCache(classFile);
+    if (jc != null) { jc.put(className, summary); }
+  }
+  
+  /** @return a visitor that delegates to the given visitor while recording the signatures it sees, or null if the
+    *         class file at the given location would not be cached.
+    * @param classFile  The location of the class file, as found on the class path.
+    * @param delegate  The visitor to delegate to.
+    */
+  public synchronized Recorder recorder(URL classFile, ClassVisitor delegate) {
+    return (_jarCache(classFile) == null) ? null : new Recorder(delegate);
+  }
+  
+  /** Writes all recorded signatures to the cache files.  Failures are logged and leave the signatures pending. */
+  public synchronized void flush() {
+    for (JarCache jc : _jars.values()) {
+      try { jc.flush(); }
+      catch (IOException e) { _log.log("Could not write symbol cache for " + jc._jar + ": " + e); }
+    }
+  }
+  
+  /** @return the cache of the jar containing the class file, or null if the class file is not in a jar or the cache
+    *         is disabled. */
+  private JarCache _jarCache(URL classFile) {
+    if (_dir == null) return null;
+    File jar = jarOf(classFile);
+    if (jar == null) return null;
+    JarCache jc = _jars.get(jar);
+    if (jc == null) {
+      jc = new JarCache(jar);
+      _jars.put(jar, jc);
+    }
+    return jc;
+  }
+  
+  /** @return the jar file containing the resource at the given URL, or null if it is not in a local jar file.  Classes
+    *         in the runtime image of a modular JDK are treated as belonging to the image file. */
+  public static File jarOf(URL resource) {
+    if (resource == null) return null;
+    if (resource.getProtocol().equals("jrt")) {
+      File modules = new File(new File(System.getProperty("java.home"), "lib"), "modules");
+      return modules.isFile() ? modules : null;
+    }
+    if (! resource.getProtocol().equals("jar")) return null;
+    String spec = resource.getFile();
+    int sep = spec.indexOf("!/");
+    if (sep < 0 || ! spec.startsWith("file:")) return null;
+    try { return new File(new URI(spec.substring(0, sep))); }
+    catch (URISyntaxException e) { return null; }
+    catch (IllegalArgumentException e) { return null; }
+  }
+  
+  /** The cached signatures for the classes of one jar file. */
+  private class JarCache {
+    private final File _jar;
+    private final long _size;
+    private final long _modified;
+    private final File _file;
+    
+    /** The contents of the cache file, or null if there is no valid cache file. */
+    private ByteBuffer _buffer = null;
+    /** Maps class names to the offset and length of their records in _buffer.  Created on first lookup. */
+    private Map<String, int[]> _index = null;
+    /** Signatures recorded since the last flush. */
+    private final Map<String, ClassSummary> _pending = new HashMap<String, ClassSummary>();
+    
+    JarCache(File jar) {
+      _jar = jar;
+      _size = jar.length();
+      _modified = jar.lastModified();
+      _file = new File(_dir, jar.getName() + "-" + Integer.toHexString(jar.getAbsolutePath().hashCode()) + ".symbols");
+    }
+    
+    ClassSummary get(String className) {
+      ClassSummary pending = _pending.get(className);
+      if (pending != null) return pending;
+      if (_index == null) { _load(); }
+      int[] entry = _index.get(className);
+      if (entry == null) return null;
+      byte[] data = new byte[entry[1]];
+      ByteBuffer b = _buffer.duplicate();
+      b.position(entry[0]);
+      b.get(data);
+      return new ClassSummary(data);
+    }
+    
+    void put(String className, ClassSummary summary) { _pending.put(className, summary); }
+    
+    /** Reads the cache file and its index, if the file exists and was made for the current jar. */
+    private void _load() {
+      _index = new HashMap<String, int[]>();
+      if (! _file.isFile()) return;
+      try {
+        ByteBuffer buffer = ByteBuffer.wrap(IOUtil.toByteArray(_file));
+        DataInputStream in = new DataInputStream(new ByteBufferInputStream(buffer.duplicate()));
+        if (in.readInt() != MAGIC || in.readInt() != VERSION || ! in.readUTF().equals(_jar.getAbsolutePath()) ||
+            in.readLong() != _size || in.readLong() != _modified) {
+          _log.log("Ignoring stale symbol cache " + _file);
+          return;
+        }
+        int count = in.readInt();
+        Map<String, int[]> index = new HashMap<String, int[]>(count * 2);
+        for (int i = 0; i < count; i++) {
+          String name = in.readUTF();
+          index.put(name, new int[] { in.readInt(), in.readInt() });
+        }
+        _buffer = buffer;
+        _index = index;
+      }
+      catch (IOException e) { _log.log("Could not read symbol cache " + _file + ": " + e); }
+      catch (RuntimeException e) { _log.log("Corrupt symbol cache " + _file + ": " + e); }
+    }
+    
+    /** Writes the cached and pending signatures to a new cache file, which replaces the old one. */
+    void flush() throws IOException {
+      if (_pending.isEmpty()) return;
+      if (_index == null) { _load(); }
+      
+      Map<String, byte[]> records = new TreeMap<String, byte[]>();
+      for (Map.Entry<String, int[]> e : _index.entrySet()) {
+        byte[] data = new byte[e.getValue()[1]];
+        ByteBuffer b = _buffer.duplicate();
+        b.position(e.getValue()[0]);
+        b.get(data);
+        records.put(e.getKey(), data);
+      }
+      for (Map.Entry<String, ClassSummary> e : _pending.entrySet()) { records.put(e.getKey(), e.getValue()._data); }
+      
+      ByteArrayOutputStream header = new ByteArrayOutputStream();
+      DataOutputStream out = new DataOutputStream(header);
+      out.writeInt(MAGIC);
+      out.writeInt(VERSION);
+      out.writeUTF(_jar.getAbsolutePath());
+      out.writeLong(_size);
+      out.writeLong(_modified);
+      out.writeInt(records.size());
+      int headerSize = out.size();
+      for (String name : records.keySet()) { headerSize += 2 + _utfLength(name) + 8; }
+      int offset = headerSize;
+      for (Map.Entry<String, byte[]> e : records.entrySet()) {
+        out.writeUTF(e.getKey());
+        out.writeInt(offset);
+        out.writeInt(e.getValue().length);
+        offset += e.getValue().length;
+      }
+      out.flush();
+      assert header.size() == headerSize;
+      
+      if (! _dir.isDirectory() && ! _dir.mkdirs()) { throw new IOException("Could not create " + _dir); }
+      File temp = File.createTempFile(_file.getName(), ".tmp", _dir);
+      OutputStream file = new BufferedOutputStream(new FileOutputStream(temp));
+      try {
+        header.writeTo(file);
+        for (byte[] data : records.values()) { file.write(data); }
+      }
+      finally { file.close(); }
+      if (! temp.renameTo(_file)) {
+        _file.delete();
+        if (! temp.renameTo(_file)) {
+          temp.delete();
+          throw new IOException("Could not replace " + _file);
+        }
+      }
+      _pending.clear();
+      _index = null;
+      _buffer = null;
+    }
+  }
+  
+  /** @return the number of bytes in the modified UTF-8 encoding of s, as written by DataOutput.writeUTF. */
+  private static int _utfLength(String s) {
+    int length = 0;
+    for (int i = 0; i < s.length(); i++) {
+      char c = s.charAt(i);
+      if (c >= 0x0001 && c <= 0x007F) length++;
+      else if (c > 0x07FF) length += 3;
+      else length += 2;
+    }
+    return length;
+  }
+  
+  /** An input stream reading from a ByteBuffer. */
+  private static class ByteBufferInputStream extends InputStream {
+    private final ByteBuffer _b;
+    ByteBufferInputStream(ByteBuffer b) { _b = b; }
+    public int read() { return _b.hasRemaining() ? (_b.get() & 0xFF) : -1; }
+    public int read(byte[] bytes, int off, int len) {
+      if (! _b.hasRemaining()) return -1;
+      len = Math.min(len, _b.remaining());
+      _b.get(bytes, off, len);
+      return len;
+    }
+  }
+  
+  /** The signatures of a class: its header, its fields, and its non-private methods, in class file order. */
+  public static class ClassSummary {
+    private final byte[] _data;
+    
+    private ClassSummary(byte[] data) { _data = data; }
+    
+    /** Replays the signatures to the visitor, as a ClassReader would with ClassReader.SKIP_CODE (but omitting
+      * private methods, generic signatures, constant values, annotations, attributes, and inner classes). */
+    public void accept(ClassVisitor cv) {
+      try {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(_data));
+        int version = in.readInt();
+        int access = in.readInt();
+        String name = in.readUTF();
+        String superName = in.readBoolean() ? in.readUTF() : null;
+        String[] interfaces = _readStrings(in);
+        cv.visit(version, access, name, null, superName, interfaces);
+        int fields = in.readInt();
+        for (int i = 0; i < fields; i++) { cv.visitField(in.readInt(), in.readUTF(), in.readUTF(), null, null); }
+        int methods = in.readInt();
+        for (int i = 0; i < methods; i++) {
+          cv.visitMethod(in.readInt(), in.readUTF(), in.readUTF(), null, _readStrings(in));
+        }
+        cv.visitEnd();
+      }
+      catch (IOException e) { throw new IllegalStateException("Corrupt symbol cache entry", e); }
+    }
+    
+    private static String[] _readStrings(DataInputStream in) throws IOException {
+      int length = in.readInt();
+      if (length < 0) return null;
+      String[] result = new String[length];
+      for (int i = 0; i < result.length; i++) { result[i] = in.readUTF(); }
+      return result;
+    }
+  }
+  
+  /** A class visitor that records the signatures it sees in a ClassSummary, and passes them on to a delegate. */
+  public static class Recorder extends ClassVisitor {
+    private final ByteArrayOutputStream _bytes = new ByteArrayOutputStream();
+    private final DataOutputStream _header = new DataOutputStream(_bytes);
+    private final ByteArrayOutputStream _fieldBytes = new ByteArrayOutputStream();
+    private final DataOutputStream _fieldOut = new DataOutputStream(_fieldBytes);
+    private final ByteArrayOutputStream _methodBytes = new ByteArrayOutputStream();
+    private final DataOutputStream _methodOut = new DataOutputStream(_methodBytes);
+    private int _fields = 0;
+    private int _methods = 0;
+    
+    Recorder(ClassVisitor delegate) { super(Opcodes.ASM4, delegate); }
+    
+    public void visit(int version, int access, String name, String sig, String sup, String[] interfaces) {
+      try {
+        _header.writeInt(version);
+        _header.writeInt(access);
+        _header.writeUTF(name);
+        _header.writeBoolean(sup != null);
+        if (sup != null) { _header.writeUTF(sup); }
+        _writeStrings(_header, interfaces);
+      }
+      catch (IOException e) { throw new IllegalStateException(e); }  // impossible for an in-memory stream
+      super.visit(version, access, name, sig, sup, interfaces);
+    }
+    
+    public FieldVisitor visitField(int access, String name, String desc, String sig, Object value) {
+      try {
+        _fieldOut.writeInt(access);
+        _fieldOut.writeUTF(name);
+        _fieldOut.writeUTF(desc);
+        _fields++;
+      }
+      catch (IOException e) { throw new IllegalStateException(e); }
+      return super.visitField(access, name, desc, sig, value);
+    }
+    
+    public MethodVisitor visitMethod(int access, String name, String desc, String sig, String[] exceptions) {
+      if ((access & Opcodes.ACC_PRIVATE) == 0) {
+        try {
+          _methodOut.writeInt(access);
+          _methodOut.writeUTF(name);
+          _methodOut.writeUTF(desc);
+          _writeStrings(_methodOut, exceptions);
+          _methods++;
+        }
+        catch (IOException e) { throw new IllegalStateException(e); }
+      }
+      return super.visitMethod(access, name, desc, sig, exceptions);  // record first: the delegate may modify exceptions
+    }
+    
+    /** @return the recorded signatures; only valid after the class has been visited. */
+    public ClassSummary summary() {
+      try {
+        _header.writeInt(_fields);
+        _fieldBytes.writeTo(_header);
+        _header.writeInt(_methods);
+        _methodBytes.writeTo(_header);
+        _header.flush();
+      }
+      catch (IOException e) { throw new IllegalStateException(e); }
+      return new ClassSummary(_bytes.toByteArray());
+    }
+    
+    private static void _writeStrings(DataOutputStream out, String[] strings) throws IOException {
+      if (strings == null) { out.writeInt(-1); }
+      else {
+        out.writeInt(strings.length);
+        for (String s : strings) { out.writeUTF(s); }
+      }
+    }
+  }
+  
+  /** Tests the methods in the above class. */
+  public static class SymbolCacheTest extends TestCase {
+    
+    public SymbolCacheTest() { this(""); }
+    public SymbolCacheTest(String name) { super(name); }
+    
+    private File _dir;
+    
+    public void setUp() throws IOException { _dir = IOUtil.createAndMarkTempDirectory("symbolcache", ""); }
+    public void tearDown() { IOUtil.deleteRecursively(_dir); }
+    
+    /** Records a textual trace of the signatures it is shown, mimicking the visitor in LanguageLevelConverter. */
+    private static class Tracer extends ClassVisitor {
+      final StringBuilder trace = new StringBuilder();
+      Tracer() { super(Opcodes.ASM4); }
+      public void visit(int version, int access, String name, String sig, String sup, String[] interfaces) {
+        trace.append("class " + access + " " + name + " " + sup + " " + Arrays.toString(interfaces) + "\n");
+      }
+      public FieldVisitor visitField(int access, String name, String desc, String sig, Object value) {
+        trace.append("field " + access + " " + name + " " + desc + "\n");
+        return null;
+      }
+      public MethodVisitor visitMethod(int access, String name, String desc, String sig, String[] exceptions) {
+        if ((access & Opcodes.ACC_PRIVATE) == 0) {
+          trace.append("method " + access + " " + name + " " + desc + " " + Arrays.toString(exceptions) + "\n");
+        }
+        if (exceptions != null) { for (int i = 0; i < exceptions.length; i++) { exceptions[i] = "mangled"; } }
+        return null;
+      }
+    }
+    
+    private static URL _resource(Class<?> c) {
+      return ClassLoader.getSystemResource(c.getName().replace('.', '/') + ".class");
+    }
+    
+    private static String _readAndRecord(SymbolCache cache, Class<?> c) throws IOException {
+      URL url = _resource(c);
+      Tracer direct = new Tracer();
+      Recorder r = cache.recorder(url, direct);
+      assertNotNull("recorder for " + url, r);
+      new ClassReader(IOUtil.toByteArray(url.openStream())).accept(r, ClassReader.SKIP_CODE);
+      cache.put(url, c.getName(), r.summary());
+      return direct.trace.toString();
+    }
+    
+    private static String _replay(SymbolCache cache, Class<?> c) {
+      ClassSummary s = cache.get(_resource(c), c.getName());
+      assertNotNull("cached " + c, s);
+      Tracer t = new Tracer();
+      s.accept(t);
+      return t.trace.toString();
+    }
+    
+    public void testRoundTrip() throws IOException {
+      assertNotNull("TestCase comes from a jar", jarOf(_resource(TestCase.class)));
+      SymbolCache cache = new SymbolCache(_dir);
+      String testCase = _readAndRecord(cache, TestCase.class);
+      String assertClass = _readAndRecord(cache, junit.framework.Assert.class);
+      assertEquals("pending TestCase", testCase, _replay(cache, TestCase.class));
+      cache.flush();
+      
+      SymbolCache fresh = new SymbolCache(_dir);  // as in a new JVM
+      assertEquals("TestCase", testCase, _replay(fresh, TestCase.class));
+      assertEquals("Assert", assertClass, _replay(fresh, junit.framework.Assert.class));
+      assertNull("TestSuite was never read", 
+                 fresh.get(_resource(junit.framework.TestSuite.class), "junit.framework.TestSuite"));
+      
+      _readAndRecord(fresh, junit.framework.TestSuite.class);
+      fresh.flush();
+      SymbolCache third = new SymbolCache(_dir);
+      assertEquals("TestCase after merge", testCase, _replay(third, TestCase.class));
+      assertNotNull("TestSuite after merge", 
+                    third.get(_resource(junit.framework.TestSuite.class), "junit.framework.TestSuite"));
+    }
+    
+    public void testUncachedLocations() throws IOException {
+      SymbolCache cache = new SymbolCache(_dir);
+      File dir = IOUtil.createAndMarkTempDirectory("classes", "");
+      URL classFile = new File(dir, "A.class").toURI().toURL();
+      assertNull("directory", jarOf(classFile));
+      assertNull("no recorder for directories", cache.recorder(classFile, new Tracer()));
+      assertNull("disabled", new SymbolCache(null).recorder(_resource(TestCase.class), new Tracer()));
+    }
+    
+    public void testStaleCache() throws IOException {
+      File jar = new File(_dir, "lib.jar");
+      IOUtil.copyFile(jarOf(_resource(TestCase.class)), jar);
+      URL url = new URL("jar:" + jar.toURI().toURL() + "!/junit/framework/TestCase.class");
+      SymbolCache cache = new SymbolCache(_dir);
+      Recorder r = cache.recorder(url, new Tracer());
+      new ClassReader(IOUtil.toByteArray(url.openStream())).accept(r, ClassReader.SKIP_CODE);
+      cache.put(url, "junit.framework.TestCase", r.summary());
+      cache.flush();
+      assertNotNull("cached", new SymbolCache(_dir).get(url, "junit.framework.TestCase"));
+      
+      assertTrue(jar.setLastModified(jar.lastModified() - 10000));
+      assertNull("jar changed", new SymbolCache(_dir).get(url, "junit.framework.TestCase"));
+    }
+  }
+}
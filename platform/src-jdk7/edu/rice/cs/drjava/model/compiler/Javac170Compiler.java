@@ -43,8 +43,6 @@ import java.util.Iterator;
 import javax.tools.JavaFileObject;
 import javax.tools.JavaCompiler;
 import javax.tools.Diagnostic;
-import javax.tools.DiagnosticCollector;
-import javax.tools.StandardJavaFileManager;
 import javax.tools.ToolProvider;
 
 // DJError class is not in the same package as this
@@ -62,7 +60,10 @@ import static edu.rice.cs.plt.debug.DebugUtil.error;
   * Java 9+ in incompatible at the JDK level.  Eliminate code that refers to Java versions older than 8.
   * @version $Id$
   */
-public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompiler {
+public class Javac170Compiler extends JavacCompiler implements InMemoryCompiler { // Javac170FilteringCompiler {
+  
+  /** The javac instance reused by all compiles, created on the first compile. */
+  private volatile Javac170Session _session = null;
   
   public Javac170Compiler(JavaVersion.FullVersion version, String location, List<? extends File> defaultBootClassPath) {
     super(version, location, defaultBootClassPath);
@@ -119,14 +120,8 @@ public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompil
     Iterable<String> options = _createOptions(classPath, sourcePath, destination, bootClassPath, sourceVersion, showWarnings);
     LinkedList<DJError> errors = new LinkedList<DJError>();
 
-    // This is the class that javax.tools.ToolProvider.getSystemJavaCompiler() uses.
-    // We create an instance of that class directly, bypassing ToolProvider, because ToolProvider returns null
-    // if DrJava is started with just the JRE, instead of with the JDK, even if tools.jar is later made available
-    // to the class loader.
-    JavaCompiler compiler = null;
-    try {
-      compiler = (JavaCompiler)(Class.forName("com.sun.tools.javac.api.JavacTool").newInstance());
-    }
+    Javac170Session session;
+    try { session = _getSession(); }
     catch(ClassNotFoundException e) {
       errors.addFirst(new DJError("Compile exception: " + e, false));
       error.log(e);
@@ -143,42 +138,14 @@ public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompil
       return errors;
     }
     
-    /** Default FileManager provided by Context class */
-    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
-    StandardJavaFileManager fileManager = compiler.getStandardFileManager(diagnostics, null, null);    
-    Iterable<? extends JavaFileObject> fileObjects = fileManager.getJavaFileObjectsFromFiles(files);
+    List<File> paths = new LinkedList<File>();
+    if (classPath != null) paths.addAll(classPath);
+    if (bootClassPath != null) paths.addAll(bootClassPath);
+    else if (_defaultBootClassPath != null) paths.addAll(_defaultBootClassPath);
     
     try {
 //      System.err.println("Calling '" + compiler + "' with options " + options);
-      compiler.getTask(null, fileManager, diagnostics, options, null, fileObjects).call();
-      for (Diagnostic<? extends JavaFileObject> d: diagnostics.getDiagnostics()) {
-        Diagnostic.Kind dt = d.getKind();
-        boolean isWarning = false;  // init required by javac
-        
-        switch (dt) {
-          case OTHER:             continue; // skip, do not record
-          case NOTE:              continue; // skip, do not record
-          case MANDATORY_WARNING: isWarning = true; break;
-          case WARNING:           isWarning = true; break;
-          case ERROR:             isWarning = false; break;
-        }
-        
-        /* The new Java 6.0 Diagnostic interface appears to be broken.  The expression d.getSource().getName() returns a 
-         * non-existent path--the name of the test file (allocated as a TEMP file) appended to the source root for 
-         * DrJava--in GlobalModelCompileErrorsTest.testCompileFailsCorrectLineNumbers().  The expression 
-         * d.getSource().toUri().getPath() returns the correct result as does ((JCDiagnostic) d).getSourceName(). */
-        if (d.getSource() != null) {
-          errors.add(new DJError(new File(d.getSource().toUri().getPath()), // d.getSource().getName() fails! 
-                                 ((int) d.getLineNumber()) - 1,  // javac starts counting at 1
-                                 ((int) d.getColumnNumber()) - 1, 
-                                 d.getMessage(null),    // null is the locale
-                                 isWarning));
-        }
-        else {
-          errors.add(new DJError(d.getMessage(null), isWarning));
-        }
-      }
-      fileManager.close();
+      _addErrors(session.compile(files, options, paths), errors);
     }
     catch(Throwable t) {  // compiler threw an exception/error (typically out of memory error)
       errors.addFirst(new DJError("Compile exception: " + t, false));
@@ -189,6 +156,82 @@ public class Javac170Compiler extends JavacCompiler { // Javac170FilteringCompil
     return errors;
   }
   
+  /** Compiles sources held in memory, such as the text of unsaved documents, into the given store.  Diagnostics 
+    * refer to the URIs of the sources, which for {@link SourceSnapshot}s are the files of the documents.
+    */
+  public List<? extends DJError> compileInMemory(List<? extends JavaFileObject> sources, List<? extends File> classPath,
+                                                 List<? extends File> bootClassPath, String sourceVersion, 
+                                                 boolean showWarnings, InMemoryClassStore output) {
+    debug.logStart("compileInMemory()");
+    Iterable<String> options = _createOptions(classPath, null, null, bootClassPath, sourceVersion, showWarnings);
+    LinkedList<DJError> errors = new LinkedList<DJError>();
+    
+    List<File> paths = new LinkedList<File>();
+    if (classPath != null) paths.addAll(classPath);
+    if (bootClassPath != null) paths.addAll(bootClassPath);
+    else if (_defaultBootClassPath != null) paths.addAll(_defaultBootClassPath);
+    
+    try { _addErrors(_getSession().compile(sources, options, paths, output), errors); }
+    catch(Throwable t) {  // compiler could not be loaded or threw an exception/error
+      errors.addFirst(new DJError("Compile exception: " + t, false));
+      error.log(t);
+    }
+    
+    debug.logEnd("compileInMemory()");
+    return errors;
+  }
+  
+  /** Converts javac diagnostics to DJErrors, skipping notes. */
+  private static void _addErrors(Iterable<Diagnostic<? extends JavaFileObject>> diagnostics, List<DJError> errors) {
+    for (Diagnostic<? extends JavaFileObject> d: diagnostics) {
+      Diagnostic.Kind dt = d.getKind();
+      boolean isWarning = false;  // init required by javac
+      
+      switch (dt) {
+        case OTHER:             continue; // skip, do not record
+        case NOTE:              continue; // skip, do not record
+        case MANDATORY_WARNING: isWarning = true; break;
+        case WARNING:           isWarning = true; break;
+        case ERROR:             isWarning = false; break;
+      }
+      
+      /* The new Java 6.0 Diagnostic interface appears to be broken.  The expression d.getSource().getName() returns a 
+       * non-existent path--the name of the test file (allocated as a TEMP file) appended to the source root for 
+       * DrJava--in GlobalModelCompileErrorsTest.testCompileFailsCorrectLineNumbers().  The expression 
+       * d.getSource().toUri().getPath() returns the correct result as does ((JCDiagnostic) d).getSourceName(). */
+      if (d.getSource() != null) {
+        errors.add(new DJError(new File(d.getSource().toUri().getPath()), // d.getSource().getName() fails! 
+                               ((int) d.getLineNumber()) - 1,  // javac starts counting at 1
+                               ((int) d.getColumnNumber()) - 1, 
+                               d.getMessage(null),    // null is the locale
+                               isWarning));
+      }
+      else {
+        errors.add(new DJError(d.getMessage(null), isWarning));
+      }
+    }
+  }
+  
+  /** @return the phase timings of the last compile, e.g. "parse 12 ms, enter 3 ms, analyze 40 ms, generate 8 ms" */
+  public String getLastCompileTimings() {
+    Javac170Session session = _session;
+    return (session == null) ? "" : session.getLastTimings();
+  }
+  
+  /** Returns the javac session, creating it on the first compile.
+    * JavacTool is the class that javax.tools.ToolProvider.getSystemJavaCompiler() uses.  We create an instance of that
+    * class directly, bypassing ToolProvider, because ToolProvider returns null if DrJava is started with just the JRE,
+    * instead of with the JDK, even if tools.jar is later made available to the class loader.
+    */
+  private synchronized Javac170Session _getSession() throws ClassNotFoundException, InstantiationException,
+    IllegalAccessException {
+    if (_session == null) {
+      JavaCompiler compiler = (JavaCompiler)(Class.forName("com.sun.tools.javac.api.JavacTool").newInstance());
+      _session = new Javac170Session(compiler);
+    }
+    return _session;
+  }
+  
   private Iterable<String> _createOptions(List<? extends File> classPath, List<? extends File> sourcePath, File destination, 
                                           List<? extends File> bootClassPath, String sourceVersion, boolean showWarnings) {    
     if (bootClassPath == null) { bootClassPath = _defaultBootClassPath; }
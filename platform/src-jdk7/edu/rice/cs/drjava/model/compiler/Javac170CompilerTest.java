@@ -1,8 +1,14 @@
 package edu.rice.cs.drjava.model.compiler;
 
+import java.util.Arrays;
 import java.util.List;
 import java.util.LinkedList;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+import edu.rice.cs.plt.io.IOUtil;
 import edu.rice.cs.plt.reflect.JavaVersion;
 
 // DJError class is not in the same package as this
@@ -18,6 +24,85 @@ public class Javac170CompilerTest extends TestCase {
     assertTrue(doCompile(c, "testFiles/IterableTest.java").isEmpty());
   }
   
+  /** Checks that the file manager is reused between compiles and that a jar that changed is re-read. */
+  public void testSessionReuseAndChangedJar() throws IOException {
+    Javac170Compiler c = new Javac170Compiler(JavaVersion.CURRENT_FULL, "", null);
+    Javac170Compiler libCompiler = new Javac170Compiler(JavaVersion.CURRENT_FULL, "", null);
+    File dir = IOUtil.createAndMarkTempDirectory("javac170session", "");
+    try {
+      File classes = new File(dir, "classes");
+      File out = new File(dir, "out");
+      classes.mkdir();
+      out.mkdir();
+      File jar = new File(dir, "lib.jar");
+    
+      File lib = new File(dir, "Lib.java");
+      IOUtil.writeStringToFile(lib, "public class Lib { public static int one() { return 1; } }");
+      assertTrue(libCompiler.compile(Arrays.asList(lib), null, null, classes, null, null, true).isEmpty());
+      _jar(new File(classes, "Lib.class"), jar);
+    
+      File user1 = new File(dir, "User1.java");
+      IOUtil.writeStringToFile(user1, "public class User1 { int x = Lib.one(); }");
+      List<? extends DJError> errors1 = 
+        c.compile(Arrays.asList(user1), Arrays.asList(jar), null, out, null, null, true);
+      assertTrue("compiled against jar: " + errors1, errors1.isEmpty());
+      assertTrue("phases reported: " + c.getLastCompileTimings(), c.getLastCompileTimings().indexOf("parse") >= 0);
+    
+      // replace the jar with a version of Lib that has another method
+      IOUtil.writeStringToFile(lib, "public class Lib { public static int one() { return 1; } " +
+                               "public static int two() { return 2; } }");
+      assertTrue(libCompiler.compile(Arrays.asList(lib), null, null, classes, null, null, true).isEmpty());
+      assertTrue(jar.delete());
+      _jar(new File(classes, "Lib.class"), jar);
+      jar.setLastModified(jar.lastModified() + 2000);  // ensure the stamp differs even on coarse file systems
+    
+      File user2 = new File(dir, "User2.java");
+      IOUtil.writeStringToFile(user2, "public class User2 { int x = Lib.two(); }");
+      List<? extends DJError> errors = c.compile(Arrays.asList(user2), Arrays.asList(jar), null, out, null, null, true);
+      assertTrue("changed jar is re-read: " + errors, errors.isEmpty());
+      assertTrue("file manager reused: " + c.getLastCompileTimings(), 
+                 c.getLastCompileTimings().indexOf("reused") >= 0);
+    }
+    finally { IOUtil.deleteRecursively(dir); }
+  }
+  
+  /** Compiles unsaved text into memory; nothing is written next to the (nonexistent) source files. */
+  public void testCompileInMemory() throws IOException {
+    Javac170Compiler c = new Javac170Compiler(JavaVersion.CURRENT_FULL, "", null);
+    File dir = IOUtil.createAndMarkTempDirectory("javac170memory", "");
+    try {
+      File a = new File(dir, "A.java");
+      File b = new File(dir, "B.java");
+      InMemoryClassStore store = new InMemoryClassStore();
+      List<SourceSnapshot> sources = 
+        Arrays.asList(new SourceSnapshot(a, "public class A { class Inner { } B b = new B(); }"),
+                      new SourceSnapshot(b, "public class B { }"));
+      List<? extends DJError> errors = c.compileInMemory(sources, null, null, null, true, store);
+      assertTrue("compiled: " + errors, errors.isEmpty());
+      assertEquals("[A, A$Inner, B]", store.getClassNames().toString());
+      assertTrue("class file", store.get("B").length > 0);
+      assertEquals("no files written", 0, dir.list().length);
+    
+      store.clear();
+      errors = c.compileInMemory(Arrays.asList(new SourceSnapshot(a, "public class A {\n  int x = \"\"; }")),
+                                 null, null, null, true, store);
+      assertEquals(1, errors.size());
+      assertEquals(a.getAbsoluteFile(), errors.get(0).file());
+      assertEquals(1, errors.get(0).lineNumber());
+    }
+    finally { IOUtil.deleteRecursively(dir); }
+  }
+  
+  private static void _jar(File classFile, File jar) throws IOException {
+    JarOutputStream out = new JarOutputStream(new FileOutputStream(jar));
+    try {
+      out.putNextEntry(new JarEntry(classFile.getName()));
+      out.write(IOUtil.toByteArray(classFile));
+      out.closeEntry();
+    }
+    finally { out.close(); }
+  }
+  
   private static List<? extends DJError> doCompile(CompilerInterface c, String... files) {
     return c.compile(fileList(files), null, null, null, null, null, true);
   }
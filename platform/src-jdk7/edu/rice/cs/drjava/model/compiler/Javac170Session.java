@@ -0,0 +1,322 @@
+/*BEGIN_COPYRIGHT_BLOCK
+ *
+ * Copyright (c) 2001-2019, JavaPLT group at Rice University (drjava@rice.edu).  All rights reserved.
+ * 
+ * Redistribution and use in source and binary forms, with or without modification, are permitted provided that the 
+ * following conditions are met:
+ *    * Redistributions of source code must retain the above copyright notice, this list of conditions and the following
+ *      disclaimer.
+ *    * Redistributions in binary form must reproduce the above copyright notice, this list of conditions and the 
+ *      following disclaimer in the documentation and/or other materials provided with the distribution.
+ *    * Neither the names of DrJava, the JavaPLT group, Rice University, nor the names of its contributors may be used 
+ *      to endorse or promote products derived from this software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS" AND ANY EXPRESS OR IMPLIED WARRANTIES, 
+ * INCLUDING, BUT NOT LIMITED TO, THE IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE ARE 
+ * DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, 
+ * SPECIAL, EXEMPLARY, OR CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF SUBSTITUTE GOODS OR 
+ * SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, 
+ * WHETHER IN CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) ARISING IN ANY WAY OUT OF THE USE
+ * OF THIS SOFTWARE, EVEN IF ADVISED OF THE POSSIBILITY OF SUCH DAMAGE.
+ *
+ * This software is Open Source Initiative approved Open Source Software. Open Source Initative Approved is a trademark
+ * of the Open Source Initiative.
+ * 
+ * This file is part of DrJava.  Download the current version of this project from http://www.drjava.org/ or 
+ * http://sourceforge.net/projects/drjava/
+ * 
+ * END_COPYRIGHT_BLOCK*/
+
+package edu.rice.cs.drjava.model.compiler;
+
+import java.io.File;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Timer;
+import java.util.TimerTask;
+
+import javax.tools.Diagnostic;
+import javax.tools.DiagnosticCollector;
+import javax.tools.DiagnosticListener;
+import javax.tools.FileObject;
+import javax.tools.ForwardingJavaFileManager;
+import javax.tools.JavaCompiler;
+import javax.tools.JavaFileManager;
+import javax.tools.JavaFileObject;
+import javax.tools.StandardJavaFileManager;
+import javax.tools.StandardLocation;
+
+// Uses JDK 7/8 tools classes
+import com.sun.source.util.JavacTask;
+import com.sun.source.util.TaskEvent;
+import com.sun.source.util.TaskListener;
+
+import static edu.rice.cs.plt.debug.DebugUtil.debug;
+
+/** A javac instance that is kept alive between compiles.  Creating the JavacTool and its StandardJavaFileManager for 
+  * every compile makes javac re-open and re-index every jar on the class path and the boot class path.  A session 
+  * keeps the file manager, and with it the open jars, until the session has been idle for {@link #IDLE_RELEASE} 
+  * milliseconds.  A jar whose size or modification time has changed since the last compile is evicted from the file
+  * manager; if that is not possible (the file manager is not javac's own), the file manager is replaced.
+  * <p>
+  * javac keeps its symbol tables in a context that belongs to a single compilation task, so those are not shared 
+  * between compiles.
+  * <p>
+  * Sources may also be given as file objects held in memory, in which case the class files go to an 
+  * {@link InMemoryClassStore} instead of disk.
+  * <p>
+  * Each compile records the time spent in the javac phases (parse, enter, analyze (attribution and flow analysis),
+  * generate), which is available from {@link #getLastTimings}.
+  */
+class Javac170Session {
+  /** The time after the last compile at which the file manager and its open jars are released. */
+  static final long IDLE_RELEASE = 10 * 60 * 1000L;
+  
+  /** The options that set locations of the file manager.  javac applies them to a file manager only once, when
+    * the file manager is first used, so the file manager is replaced if one of these options changes.
+    */
+  private static final String[] LOCATION_OPTIONS = { "-classpath", "-sourcepath", "-d", "-bootclasspath" };
+  
+  /** Releases idle sessions. */
+  private static final Timer RELEASE_TIMER = new Timer("Javac session release", true);
+  
+  private final JavaCompiler _compiler;
+  /** The diagnostic listener of the file manager; forwards to the collector of the current compile. */
+  private final ForwardingListener _listener = new ForwardingListener();
+  /** The file manager, or null if it has not been created or has been released. */
+  private StandardJavaFileManager _fileManager = null;
+  /** Size and modification time of the jars used by the file manager, to detect changed jars. */
+  private final Map<File, String> _stamps = new HashMap<File, String>();
+  /** The location options given to the last compile, with their values. */
+  private List<String> _locationOptions = new ArrayList<String>();
+  private TimerTask _release = null;
+  
+  private volatile String _lastTimings = "";
+  
+  Javac170Session(JavaCompiler compiler) { _compiler = compiler; }
+  
+  /** Compiles the files.
+    * @param files the source files to compile
+    * @param options the options for javac
+    * @param paths the class path and boot class path entries; jars among them are checked for changes
+    * @return the diagnostics reported by javac
+    */
+  synchronized List<Diagnostic<? extends JavaFileObject>> compile(List<? extends File> files, Iterable<String> options,
+                                                                  Iterable<? extends File> paths) {
+    return _compile(files, null, options, paths, null);
+  }
+  
+  /** Compiles sources held in memory and puts the class files into a store instead of writing them to disk.
+    * @param sources the source objects to compile
+    * @param options the options for javac
+    * @param paths the class path and boot class path entries; jars among them are checked for changes
+    * @param output the store that receives the class files
+    * @return the diagnostics reported by javac
+    */
+  synchronized List<Diagnostic<? extends JavaFileObject>> compile(Iterable<? extends JavaFileObject> sources, 
+                                                                  Iterable<String> options,
+                                                                  Iterable<? extends File> paths,
+                                                                  InMemoryClassStore output) {
+    return _compile(null, sources, options, paths, output);
+  }
+  
+  /** Compiles either files or source objects; class files go to disk if output is null. */
+  private List<Diagnostic<? extends JavaFileObject>> _compile(List<? extends File> files, 
+                                                              Iterable<? extends JavaFileObject> sources,
+                                                              Iterable<String> options, Iterable<? extends File> paths,
+                                                              InMemoryClassStore output) {
+    if (_release != null) { _release.cancel(); _release = null; }
+    long start = System.nanoTime();
+    
+    List<String> locationOptions = new ArrayList<String>();
+    for (Iterator<String> i = options.iterator(); i.hasNext(); ) {
+      String o = i.next();
+      for (String l : LOCATION_OPTIONS) {
+        if (l.equals(o) && i.hasNext()) { locationOptions.add(o); locationOptions.add(i.next()); break; }
+      }
+    }
+    boolean reused = (_fileManager != null);
+    if (reused && ! locationOptions.equals(_locationOptions)) { _closeFileManager(); reused = false; }
+    _locationOptions = locationOptions;
+    if (reused) _evictChangedJars(paths);
+    else _recordStamps(paths);
+    if (_fileManager == null) _fileManager = _compiler.getStandardFileManager(_listener, null, null);
+    
+    DiagnosticCollector<JavaFileObject> diagnostics = new DiagnosticCollector<JavaFileObject>();
+    PhaseTimer timer = new PhaseTimer();
+    _listener.target = diagnostics;
+    boolean success = false;
+    try {
+      Iterable<? extends JavaFileObject> fileObjects = 
+        (files != null) ? _fileManager.getJavaFileObjectsFromFiles(files) : sources;
+      JavaFileManager fileManager = (output != null) ? new MemoryOutputFileManager(_fileManager, output) : _fileManager;
+      JavaCompiler.CompilationTask task = _compiler.getTask(null, fileManager, diagnostics, options, null, fileObjects);
+      if (task instanceof JavacTask) ((JavacTask) task).setTaskListener(timer);
+      task.call();
+      _fileManager.flush();
+      success = true;
+    }
+    catch(java.io.IOException e) { throw new RuntimeException(e); }
+    finally {
+      _listener.target = null;
+      if (! success) _closeFileManager();  // javac failed; do not trust the state of the file manager
+      _lastTimings = timer.toString() + ", total " + (System.nanoTime() - start) / 1000000 + " ms" + 
+        (reused ? " (file manager reused)" : "");
+      debug.log("javac phases: " + _lastTimings);
+      _release = new TimerTask() { public void run() { release(); } };
+      RELEASE_TIMER.schedule(_release, IDLE_RELEASE);
+    }
+    return diagnostics.getDiagnostics();
+  }
+  
+  /** @return the phase timings of the last compile, e.g. "parse 12 ms, enter 3 ms, analyze 40 ms, generate 8 ms" */
+  String getLastTimings() { return _lastTimings; }
+  
+  /** Closes the file manager and the jars it has opened.  The next compile creates a new file manager. */
+  synchronized void release() {
+    _closeFileManager();
+  }
+  
+  private void _closeFileManager() {
+    if (_fileManager != null) {
+      try { _fileManager.close(); }
+      catch (java.io.IOException e) { debug.log(e); }
+      _fileManager = null;
+    }
+    _stamps.clear();
+  }
+  
+  private static String _stamp(File f) { return f.length() + ":" + f.lastModified(); }
+  
+  private void _recordStamps(Iterable<? extends File> paths) {
+    _stamps.clear();
+    for (File f : paths) { if (f.isFile()) _stamps.put(f, _stamp(f)); }
+  }
+  
+  /** Removes the jars that have changed since the last compile from the file manager. */
+  private void _evictChangedJars(Iterable<? extends File> paths) {
+    for (File f : paths) {
+      if (! f.isFile()) continue;
+      String stamp = _stamp(f);
+      String old = _stamps.put(f, stamp);
+      if (old != null && ! old.equals(stamp) && ! _evict(f)) {
+        _closeFileManager();
+        _recordStamps(paths);
+        return;
+      }
+    }
+  }
+  
+  /** Closes and removes a jar from the archive cache of javac's JavacFileManager.
+    * @return true if the jar is no longer cached */
+  private boolean _evict(File jar) {
+    try {
+      Field field = null;
+      for (Class<?> c = _fileManager.getClass(); c != null && field == null; c = c.getSuperclass()) {
+        try { field = c.getDeclaredField("archives"); }
+        catch (NoSuchFieldException e) { /* try the superclass */ }
+      }
+      if (field == null) return false;
+      field.setAccessible(true);
+      Map<?, ?> archives = (Map<?, ?>) field.get(_fileManager);
+      File abs = jar.getAbsoluteFile();
+      for (Iterator<? extends Map.Entry<?, ?>> i = archives.entrySet().iterator(); i.hasNext(); ) {
+        Map.Entry<?, ?> e = i.next();
+        if (e.getKey() instanceof File && ((File) e.getKey()).getAbsoluteFile().equals(abs)) {
+          Object archive = e.getValue();
+          i.remove();
+          if (archive != null) {
+            Method close = _findClose(archive.getClass());
+            if (close != null) close.invoke(archive);
+          }
+        }
+      }
+      debug.log("javac session evicted " + jar);
+      return true;
+    }
+    catch (Exception e) { return false; }
+    catch (LinkageError e) { return false; }
+  }
+  
+  /** @return the close() method of an archive, made accessible, or null */
+  private static Method _findClose(Class<?> c) {
+    for (; c != null; c = c.getSuperclass()) {
+      try {
+        Method m = c.getDeclaredMethod("close");
+        m.setAccessible(true);
+        return m;
+      }
+      catch (NoSuchMethodException e) { /* try the superclass */ }
+    }
+    return null;
+  }
+  
+  /** Sends class output to an InMemoryClassStore; everything else goes to the session's file manager. */
+  private static final class MemoryOutputFileManager extends ForwardingJavaFileManager<StandardJavaFileManager> {
+    private final InMemoryClassStore _output;
+    
+    MemoryOutputFileManager(StandardJavaFileManager fileManager, InMemoryClassStore output) {
+      super(fileManager);
+      _output = output;
+    }
+    
+    @Override public JavaFileObject getJavaFileForOutput(Location location, String className, JavaFileObject.Kind kind,
+                                                         FileObject sibling) throws java.io.IOException {
+      if (location == StandardLocation.CLASS_OUTPUT && kind == JavaFileObject.Kind.CLASS) {
+        return _output.makeClassFile(className);
+      }
+      return super.getJavaFileForOutput(location, className, kind, sibling);
+    }
+    
+    /** javac's file manager only compares its own file objects. */
+    @Override public boolean isSameFile(FileObject a, FileObject b) {
+      try { return super.isSameFile(a, b); }
+      catch (IllegalArgumentException e) { return a.toUri().equals(b.toUri()); }
+    }
+  }
+  
+  /** Forwards the diagnostics of the file manager to the collector of the current compile. */
+  private static final class ForwardingListener implements DiagnosticListener<JavaFileObject> {
+    volatile DiagnosticListener<JavaFileObject> target;
+    public void report(Diagnostic<? extends JavaFileObject> d) {
+      DiagnosticListener<JavaFileObject> t = target;
+      if (t != null) t.report(d);
+    }
+  }
+  
+  /** Accumulates the time spent in each javac phase.  Phases may be nested (e.g. enter within annotation processing)
+    * and are started once per file or class, so only the outermost start and finish of each kind are timed.
+    */
+  private static final class PhaseTimer implements TaskListener {
+    private final TaskEvent.Kind[] _kinds = TaskEvent.Kind.values();
+    private final long[] _total = new long[_kinds.length];
+    private final long[] _start = new long[_kinds.length];
+    private final int[] _depth = new int[_kinds.length];
+    
+    public void started(TaskEvent e) {
+      int k = e.getKind().ordinal();
+      if (_depth[k]++ == 0) _start[k] = System.nanoTime();
+    }
+    
+    public void finished(TaskEvent e) {
+      int k = e.getKind().ordinal();
+      if (_depth[k] > 0 && --_depth[k] == 0) _total[k] += System.nanoTime() - _start[k];
+    }
+    
+    public String toString() {
+      StringBuilder sb = new StringBuilder();
+      for (int k = 0; k < _kinds.length; ++k) {
+        if (_total[k] == 0) continue;
+        if (sb.length() > 0) sb.append(", ");
+        sb.append(_kinds[k].name().toLowerCase()).append(' ').append(_total[k] / 1000000).append(" ms");
+      }
+      return (sb.length() == 0) ? "no phases reported" : sb.toString();
+    }
+  }
+}